@@ -0,0 +1,355 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A KDTree of values at RealLocalizable positions that supports insertion
+ * and removal of points.
+ *
+ * <p>
+ * The points are kept in a forest of immutable {@link FlatKDTree}s
+ * (Bentley and Saxe's logarithmic method): tree {@code i} (the
+ * <em>level</em>) holds at most {@code 2^i} points. A new point is merged
+ * with the points of the levels {@code 0, 1, ...} up to the first empty
+ * level {@code j}, and these are rebuilt as level {@code j}. Each point is
+ * thus rebuilt at most {@code log(size)} times, giving amortized
+ * {@code O(log^2 size)} insertion. Removed points are marked as deleted and
+ * skipped by searches. When half of the points of a level are deleted, the
+ * level is rebuilt without them.
+ * </p>
+ *
+ * <p>
+ * Points are identified by an integer id, which is returned by
+ * {@link #insert(RealLocalizable, Object)}. Ids of removed points are
+ * reused once their level has been rebuilt. To move a point, remove it and
+ * insert it at the new position.
+ * </p>
+ *
+ * <p>
+ * Use {@link net.imglib2.neighborsearch.NearestNeighborSearchOnDynamicKDTree},
+ * {@link net.imglib2.neighborsearch.KNearestNeighborSearchOnDynamicKDTree},
+ * and {@link net.imglib2.neighborsearch.RadiusNeighborSearchOnDynamicKDTree}
+ * to search the tree. A search visits each level, so searches cost
+ * {@code O(log^2 size)}.
+ * </p>
+ *
+ * @param <T>
+ *            type of values stored in the tree.
+ */
+public class DynamicKDTree< T > implements EuclideanSpace
+{
+	/**
+	 * the number of dimensions.
+	 */
+	final protected int n;
+
+	/**
+	 * the positions and values of the points.
+	 */
+	final private PointStore< T > points;
+
+	/**
+	 * the level of each point, or -1 if the id is not in use.
+	 */
+	protected int[] levelOf;
+
+	/**
+	 * whether each point has been removed (but is still in its level).
+	 */
+	protected boolean[] deleted;
+
+	/**
+	 * the trees of the levels, {@code null} for empty levels.
+	 */
+	protected FlatKDTree< T >[] trees;
+
+	/**
+	 * the id of each value of the tree of each level, in the order of the
+	 * values list the tree was constructed from.
+	 */
+	protected int[][] levelIds;
+
+	/**
+	 * the number of deleted points in each level.
+	 */
+	protected int[] numDeleted;
+
+	/**
+	 * Construct an empty tree.
+	 *
+	 * @param n
+	 *            the number of dimensions.
+	 */
+	@SuppressWarnings( { "rawtypes", "unchecked" } )
+	public DynamicKDTree( final int n )
+	{
+		this.n = n;
+		points = new PointStore< T >( n );
+		levelOf = new int[ points.capacity() ];
+		deleted = new boolean[ points.capacity() ];
+		trees = new FlatKDTree[ 32 ];
+		levelIds = new int[ 32 ][];
+		numDeleted = new int[ 32 ];
+	}
+
+	/**
+	 * Construct a tree containing the elements of the given
+	 * {@link IterableRealInterval}, with ids in iteration order. The
+	 * elements are put into a single level.
+	 *
+	 * @param interval
+	 *            elements in the tree are obtained by iterating this
+	 */
+	public DynamicKDTree( final IterableRealInterval< T > interval )
+	{
+		this( interval.numDimensions() );
+		final RealCursor< T > cursor = interval.localizingCursor();
+		while ( cursor.hasNext() )
+		{
+			cursor.fwd();
+			// copy the cursor, such that flyweight values stay valid
+			add( cursor, cursor.copyCursor().get() );
+		}
+		final int size = points.size;
+		if ( size > 0 )
+		{
+			final int[] ids = new int[ size ];
+			for ( int id = 0; id < size; ++id )
+				ids[ id ] = id;
+			build( 32 - Integer.numberOfLeadingZeros( size - 1 ), ids, size );
+		}
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	/**
+	 * Get the number of points in the tree.
+	 */
+	public int size()
+	{
+		return points.size;
+	}
+
+	/**
+	 * Check whether {@code id} refers to a point in the tree.
+	 */
+	public boolean contains( final int id )
+	{
+		return id >= 0 && id < points.idBound && levelOf[ id ] >= 0 && !deleted[ id ];
+	}
+
+	/**
+	 * Insert a point.
+	 *
+	 * @return the id of the point.
+	 */
+	public int insert( final RealLocalizable position, final T value )
+	{
+		final int id = add( position, value );
+
+		// collect the points of the full levels below the first empty level
+		int level = 0;
+		int count = 1;
+		while ( trees[ level ] != null )
+			count += trees[ level++ ].size();
+		final int[] ids = new int[ count ];
+		int i = 0;
+		ids[ i++ ] = id;
+		for ( int l = 0; l < level; ++l )
+		{
+			i = collect( l, ids, i );
+			clearLevel( l );
+		}
+		build( level, ids, i );
+		return id;
+	}
+
+	/**
+	 * Remove the point with the given id.
+	 */
+	public void remove( final int id )
+	{
+		if ( !contains( id ) )
+			throw new IllegalArgumentException( "No point with id " + id + "." );
+		deleted[ id ] = true;
+		points.remove( id );
+		final int level = levelOf[ id ];
+		if ( 2 * ++numDeleted[ level ] >= trees[ level ].size() )
+		{
+			// rebuild the level without the deleted points
+			final int[] ids = new int[ trees[ level ].size() - numDeleted[ level ] ];
+			final int count = collect( level, ids, 0 );
+			clearLevel( level );
+			build( level, ids, count );
+		}
+	}
+
+	/**
+	 * Remove all points.
+	 */
+	public void clear()
+	{
+		Arrays.fill( trees, null );
+		Arrays.fill( levelIds, null );
+		Arrays.fill( numDeleted, 0 );
+		points.clear();
+	}
+
+	/**
+	 * Store a point (without adding it to a level).
+	 */
+	private int add( final RealLocalizable position, final T value )
+	{
+		final int id = points.add( position, value );
+		if ( points.capacity() > levelOf.length )
+		{
+			levelOf = Arrays.copyOf( levelOf, points.capacity() );
+			deleted = Arrays.copyOf( deleted, points.capacity() );
+		}
+		deleted[ id ] = false;
+		levelOf[ id ] = -1;
+		return id;
+	}
+
+	/**
+	 * Append the ids of the points of {@code level} that are not deleted to
+	 * {@code ids}, starting at index {@code i}. The ids of deleted points are
+	 * freed.
+	 *
+	 * @return the index after the last appended id.
+	 */
+	private int collect( final int level, final int[] ids, int i )
+	{
+		for ( final int id : levelIds[ level ] )
+		{
+			if ( deleted[ id ] )
+			{
+				levelOf[ id ] = -1;
+				points.free( id );
+			}
+			else
+				ids[ i++ ] = id;
+		}
+		return i;
+	}
+
+	private void clearLevel( final int level )
+	{
+		trees[ level ] = null;
+		levelIds[ level ] = null;
+		numDeleted[ level ] = 0;
+	}
+
+	/**
+	 * Build the tree of {@code level} from the first {@code count} points of
+	 * {@code ids}.
+	 */
+	private void build( final int level, final int[] ids, final int count )
+	{
+		if ( count == 0 )
+			return;
+		final int[] levelIds = count == ids.length ? ids : Arrays.copyOf( ids, count );
+		final ArrayList< T > levelValues = new ArrayList< T >( count );
+		final double[] coordinates = new double[ count * n ];
+		for ( int i = 0; i < count; ++i )
+		{
+			final int id = levelIds[ i ];
+			levelValues.add( points.getValue( id ) );
+			System.arraycopy( points.positions, id * n, coordinates, i * n, n );
+			levelOf[ id ] = level;
+		}
+		trees[ level ] = new FlatKDTree< T >( levelValues, coordinates, n );
+		this.levelIds[ level ] = levelIds;
+		numDeleted[ level ] = 0;
+	}
+
+	/**
+	 * Get the number of levels (some of which may be empty).
+	 */
+	public int numLevels()
+	{
+		return trees.length;
+	}
+
+	/**
+	 * Get the tree of {@code level}, or {@code null} if the level is empty.
+	 * The tree contains deleted points, which are identified by
+	 * {@link #contains(int)} {@code == false} for their {@link #getId(int, int)
+	 * id}.
+	 */
+	public FlatKDTree< T > getLevel( final int level )
+	{
+		return trees[ level ];
+	}
+
+	/**
+	 * Get the id of node {@code i} of the tree of {@code level}.
+	 */
+	public int getId( final int level, final int i )
+	{
+		return levelIds[ level ][ trees[ level ].getValueIndex( i ) ];
+	}
+
+	/**
+	 * Get coordinate {@code d} of point {@code id}.
+	 */
+	public double getDoublePosition( final int id, final int d )
+	{
+		return points.getDoublePosition( id, d );
+	}
+
+	/**
+	 * Get the value of point {@code id}.
+	 */
+	public T getValue( final int id )
+	{
+		return points.getValue( id );
+	}
+
+	/**
+	 * Create a {@link PointEntry} referring to point {@code id}.
+	 */
+	public PointEntry< T > entry( final int id )
+	{
+		return new PointEntry< T >( points, id );
+	}
+}
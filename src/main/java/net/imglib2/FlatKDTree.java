@@ -0,0 +1,425 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2;
+
+import java.util.List;
+
+import net.imglib2.util.KthElement;
+
+/**
+ * KDTree to access values at RealLocalizable positions, stored in an implicit
+ * array layout.
+ *
+ * <p>
+ * In contrast to {@link KDTree}, nodes are not represented by objects.
+ * Instead, the tree is left-balanced and stored in heap order: The root is
+ * node 0, and the children of node {@code i} are nodes {@code 2i+1} and
+ * {@code 2i+2}. Nodes at depth {@code h} split along dimension
+ * {@code h % n}. Node coordinates are stored in a single flattened
+ * {@code double[]} array, and the values are referenced by their index in the
+ * list given at construction. This reduces the memory footprint to
+ * {@code n} doubles and one int per point, and improves cache locality of
+ * searches.
+ * </p>
+ *
+ * <p>
+ * Use {@link net.imglib2.neighborsearch.NearestNeighborSearchOnFlatKDTree},
+ * {@link net.imglib2.neighborsearch.KNearestNeighborSearchOnFlatKDTree}, and
+ * {@link net.imglib2.neighborsearch.RadiusNeighborSearchOnFlatKDTree} to
+ * search the tree.
+ * </p>
+ *
+ * @param <T>
+ *            type of values stored in the tree.
+ */
+public class FlatKDTree< T > implements RealInterval
+{
+	/**
+	 * the number of dimensions.
+	 */
+	final protected int n;
+
+	/**
+	 * the number of nodes in the tree.
+	 */
+	final protected int size;
+
+	/**
+	 * the coordinates of the nodes. Coordinate {@code d} of node {@code i} is
+	 * at {@code positions[ i * n + d ]}.
+	 */
+	final protected double[] positions;
+
+	/**
+	 * the index into the {@link #values} list of each node.
+	 */
+	final protected int[] valueIndices;
+
+	/**
+	 * the values, in the order given at construction.
+	 */
+	final protected List< T > values;
+
+	/**
+	 * minimum of each dimension.
+	 */
+	final protected double[] min;
+
+	/**
+	 * maximum of each dimension.
+	 */
+	final protected double[] max;
+
+	/**
+	 * Construct a FlatKDTree from the elements in the given list. The lists
+	 * are not modified.
+	 *
+	 * <p>
+	 * Note that the constructor can be called with the same list for both
+	 * {@code values == positions} if {@code T extends RealLocalizable}.
+	 * </p>
+	 *
+	 * @param values
+	 *            a list of values
+	 * @param positions
+	 *            a list of positions corresponding to the values
+	 */
+	public < L extends RealLocalizable > FlatKDTree( final List< T > values, final List< L > positions )
+	{
+		this( values, flatten( positions ), positions.get( 0 ).numDimensions() );
+	}
+
+	/**
+	 * Construct a FlatKDTree from the given values and flattened coordinates.
+	 * The arrays and the list are not modified.
+	 *
+	 * @param values
+	 *            a list of values
+	 * @param coordinates
+	 *            coordinates of the values. Coordinate {@code d} of value
+	 *            {@code i} is at {@code coordinates[ i * n + d ]}. Elements
+	 *            after the first {@code values.size() * n} are ignored.
+	 * @param n
+	 *            the number of dimensions.
+	 */
+	public FlatKDTree( final List< T > values, final double[] coordinates, final int n )
+	{
+		assert coordinates.length >= values.size() * n;
+
+		this.n = n;
+		this.size = values.size();
+		this.values = values;
+
+		this.min = new double[ n ];
+		this.max = new double[ n ];
+		for ( int d = 0; d < n; ++d )
+		{
+			min[ d ] = Double.MAX_VALUE;
+			max[ d ] = -Double.MAX_VALUE;
+		}
+		for ( int i = 0, o = 0; i < size; ++i )
+		{
+			for ( int d = 0; d < n; ++d, ++o )
+			{
+				final double x = coordinates[ o ];
+				if ( x < min[ d ] )
+					min[ d ] = x;
+				if ( x > max[ d ] )
+					max[ d ] = x;
+			}
+		}
+
+		final int[] permutation = new int[ size ];
+		for ( int k = 0; k < size; ++k )
+			permutation[ k ] = k;
+		valueIndices = new int[ size ];
+		makeNode( coordinates, new double[ size ], permutation, 0, size - 1, 0, 0 );
+
+		positions = new double[ size * n ];
+		for ( int i = 0; i < size; ++i )
+			System.arraycopy( coordinates, valueIndices[ i ] * n, positions, i * n, n );
+	}
+
+	private static < L extends RealLocalizable > double[] flatten( final List< L > positions )
+	{
+		final int n = positions.get( 0 ).numDimensions();
+		final double[] coordinates = new double[ positions.size() * n ];
+		int o = 0;
+		for ( final L position : positions )
+		{
+			assert position.numDimensions() == n;
+			for ( int d = 0; d < n; ++d )
+				coordinates[ o++ ] = position.getDoublePosition( d );
+		}
+		return coordinates;
+	}
+
+	/**
+	 * Construct the tree by recursively adding nodes. The elements of
+	 * {@code permutation} between indices i and j (inclusive) are split at the
+	 * pivot element with respect to coordinates in the given dimension d. The
+	 * pivot is chosen such that the left subtree is complete (except maybe for
+	 * its last level), and becomes the node with the given index. The left and
+	 * right partitions of the sublist are processed recursively and form the
+	 * left and right subtrees of the node.
+	 *
+	 * @param coordinates
+	 *            flattened coordinates of the values
+	 * @param keys
+	 *            temporary storage for the coordinates in dimension d
+	 * @param permutation
+	 *            the indices of values to process
+	 * @param i
+	 *            start index of sublist to process
+	 * @param j
+	 *            end index of sublist to process
+	 * @param node
+	 *            index of the node to create
+	 * @param d
+	 *            dimension along which to split the sublist
+	 */
+	private void makeNode( final double[] coordinates, final double[] keys, final int[] permutation, final int i, final int j, final int node, final int d )
+	{
+		if ( j < i )
+			return;
+
+		final int k = i + leftSubtreeSize( j - i + 1 );
+		for ( int l = i; l <= j; ++l )
+			keys[ l ] = coordinates[ permutation[ l ] * n + d ];
+		KthElement.kthElement( i, j, k, keys, permutation );
+		valueIndices[ node ] = permutation[ k ];
+
+		final int dChild = ( d + 1 == n ) ? 0 : d + 1;
+		makeNode( coordinates, keys, permutation, i, k - 1, 2 * node + 1, dChild );
+		makeNode( coordinates, keys, permutation, k + 1, j, 2 * node + 2, dChild );
+	}
+
+	/**
+	 * Get the size of the left subtree of a left-balanced tree with
+	 * {@code size} nodes.
+	 */
+	static int leftSubtreeSize( final int size )
+	{
+		if ( size < 2 )
+			return 0;
+		final int h = 31 - Integer.numberOfLeadingZeros( size );
+		final int lastLevelHalf = 1 << ( h - 1 );
+		final int lastLevel = size - ( 1 << h ) + 1;
+		return lastLevelHalf - 1 + Math.min( lastLevel, lastLevelHalf );
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	/**
+	 * Get the number of nodes in the tree.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Get the flattened node coordinates. Coordinate {@code d} of node
+	 * {@code i} is at {@code positions[ i * n + d ]}. The returned array must
+	 * not be modified.
+	 */
+	public double[] getPositions()
+	{
+		return positions;
+	}
+
+	/**
+	 * Get coordinate {@code d} of node {@code i}.
+	 */
+	public double getDoublePosition( final int i, final int d )
+	{
+		return positions[ i * n + d ];
+	}
+
+	/**
+	 * Get the index (into the values list given at construction) of the value
+	 * of node {@code i}.
+	 */
+	public int getValueIndex( final int i )
+	{
+		return valueIndices[ i ];
+	}
+
+	/**
+	 * Get the value of node {@code i}.
+	 */
+	public T getValue( final int i )
+	{
+		return values.get( valueIndices[ i ] );
+	}
+
+	/**
+	 * Compute the squared Euclidean distance between node {@code i} and
+	 * {@code p}.
+	 */
+	public double squDistance( final int i, final double[] p )
+	{
+		double sum = 0;
+		for ( int d = 0, o = i * n; d < n; ++d, ++o )
+		{
+			final double diff = positions[ o ] - p[ d ];
+			sum += diff * diff;
+		}
+		return sum;
+	}
+
+	/**
+	 * Create a {@link Node} referring to node {@code i}.
+	 */
+	public Node node( final int i )
+	{
+		return new Node( i );
+	}
+
+	/**
+	 * A reference to a node of the tree, providing its position and value.
+	 */
+	public final class Node implements RealLocalizable, Sampler< T >
+	{
+		private final int index;
+
+		public Node( final int index )
+		{
+			this.index = index;
+		}
+
+		/**
+		 * Get the index of this node in the tree.
+		 */
+		public int getIndex()
+		{
+			return index;
+		}
+
+		/**
+		 * Get the index (into the values list given at construction) of the
+		 * value of this node.
+		 */
+		public int getValueIndex()
+		{
+			return valueIndices[ index ];
+		}
+
+		@Override
+		public int numDimensions()
+		{
+			return n;
+		}
+
+		@Override
+		public void localize( final float[] position )
+		{
+			for ( int d = 0; d < n; ++d )
+				position[ d ] = ( float ) positions[ index * n + d ];
+		}
+
+		@Override
+		public void localize( final double[] position )
+		{
+			System.arraycopy( positions, index * n, position, 0, n );
+		}
+
+		@Override
+		public float getFloatPosition( final int d )
+		{
+			return ( float ) positions[ index * n + d ];
+		}
+
+		@Override
+		public double getDoublePosition( final int d )
+		{
+			return positions[ index * n + d ];
+		}
+
+		@Override
+		public T get()
+		{
+			return values.get( valueIndices[ index ] );
+		}
+
+		@Override
+		public Node copy()
+		{
+			return this;
+		}
+	}
+
+	@Override
+	public double realMin( final int d )
+	{
+		return min[ d ];
+	}
+
+	@Override
+	public void realMin( final double[] m )
+	{
+		for ( int d = 0; d < n; ++d )
+			m[ d ] = min[ d ];
+	}
+
+	@Override
+	public void realMin( final RealPositionable m )
+	{
+		m.setPosition( min );
+	}
+
+	@Override
+	public double realMax( final int d )
+	{
+		return max[ d ];
+	}
+
+	@Override
+	public void realMax( final double[] m )
+	{
+		for ( int d = 0; d < n; ++d )
+			m[ d ] = max[ d ];
+	}
+
+	@Override
+	public void realMax( final RealPositionable m )
+	{
+		m.setPosition( max );
+	}
+}
@@ -39,6 +39,9 @@ import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 import net.imglib2.util.KthElement;
 
@@ -74,6 +77,13 @@ public class KDTree< T > implements EuclideanSpace, IterableRealInterval< T >
 	 */
 	final protected double[] max;
 
+	/**
+	 * When constructing the tree in parallel, sublists with more than this
+	 * number of elements are split into subtrees which are constructed as
+	 * separate fork-join tasks. Smaller sublists are processed sequentially.
+	 */
+	protected static final int PARALLEL_THRESHOLD = 4096;
+
 	/**
 	 * A KDTreeNode that stores it's value as a reference.
 	 */
@@ -188,6 +198,31 @@ public class KDTree< T > implements EuclideanSpace, IterableRealInterval< T >
 	 *            a list of positions corresponding to the values
 	 */
 	public < L extends RealLocalizable > KDTree( final List< T > values, final List< L > positions )
+	{
+		this( values, positions, null );
+	}
+
+	/**
+	 * Construct a KDTree from the elements in the given list. If a
+	 * {@link ForkJoinPool} is given and {@code positions} is a
+	 * {@link RandomAccess} list, the left and right subtrees of large sublists
+	 * are constructed in parallel. The resulting tree is identical to the one
+	 * constructed sequentially.
+	 *
+	 * <p>
+	 * Note that the constructor can be called with the same list for both
+	 * {@code values == positions} if {@code T extends RealLocalizable}.
+	 * </p>
+	 *
+	 * @param values
+	 *            a list of values
+	 * @param positions
+	 *            a list of positions corresponding to the values
+	 * @param pool
+	 *            the pool used to construct the tree in parallel, or
+	 *            {@code null} to construct it sequentially.
+	 */
+	public < L extends RealLocalizable > KDTree( final List< T > values, final List< L > positions, final ForkJoinPool pool )
 	{
 		assert values.size() == positions.size();
 
@@ -219,8 +254,10 @@ public class KDTree< T > implements EuclideanSpace, IterableRealInterval< T >
 
 		if ( values == positions )
 		{
-			if ( positions instanceof java.util.RandomAccess )
-				root = makeNode( positions, 0, positions.size() - 1, 0 );
+			if ( positions instanceof RandomAccess )
+				root = pool == null
+						? makeNode( positions, 0, positions.size() - 1, 0 )
+						: pool.invoke( new ValueNodeTask< L >( positions, 0, positions.size() - 1, 0, null, null ) );
 			else
 				root = makeNode( positions.listIterator(), positions.listIterator( positions.size() ), 0 );
 		}
@@ -230,8 +267,10 @@ public class KDTree< T > implements EuclideanSpace, IterableRealInterval< T >
 			for ( int k = 0; k < permutation.length; ++k )
 				permutation[ k ] = k;
 
-			if ( positions instanceof java.util.RandomAccess )
-				root = makeNode( positions, 0, positions.size() - 1, 0, values, permutation );
+			if ( positions instanceof RandomAccess )
+				root = pool == null
+						? makeNode( positions, 0, positions.size() - 1, 0, values, permutation )
+						: pool.invoke( new ValueNodeTask< L >( positions, 0, positions.size() - 1, 0, values, permutation ) );
 			else
 				root = makeNode( positions.listIterator(), positions.listIterator( positions.size() ), 0, values, permutation );
 		}
@@ -245,6 +284,23 @@ public class KDTree< T > implements EuclideanSpace, IterableRealInterval< T >
 	 *            elements in the tree are obtained by iterating this
 	 */
 	public KDTree( final IterableRealInterval< T > interval )
+	{
+		this( interval, null );
+	}
+
+	/**
+	 * Construct a KDTree from the elements of the given
+	 * {@link IterableRealInterval}. If a {@link ForkJoinPool} is given, the
+	 * left and right subtrees of large sublists are constructed in parallel.
+	 * The resulting tree is identical to the one constructed sequentially.
+	 *
+	 * @param interval
+	 *            elements in the tree are obtained by iterating this
+	 * @param pool
+	 *            the pool used to construct the tree in parallel, or
+	 *            {@code null} to construct it sequentially.
+	 */
+	public KDTree( final IterableRealInterval< T > interval, final ForkJoinPool pool )
 	{
 		this.n = interval.numDimensions();
 		this.size = interval.size();
@@ -259,7 +315,9 @@ public class KDTree< T > implements EuclideanSpace, IterableRealInterval< T >
 			cursor.next();
 			values.add( cursor.copyCursor() );
 		}
-		root = makeSamplerNode( values, 0, values.size() - 1, 0 );
+		root = pool == null
+				? makeSamplerNode( values, 0, values.size() - 1, 0 )
+				: pool.invoke( new SamplerNodeTask( values, 0, values.size() - 1, 0 ) );
 	}
 
 	/**
@@ -522,6 +580,115 @@ public class KDTree< T > implements EuclideanSpace, IterableRealInterval< T >
 		}
 	}
 
+	/**
+	 * Fork-join version of {@link #makeNode(List, int, int, int, List, int[])}
+	 * and {@link #makeNode(List, int, int, int)}. Sublists larger than
+	 * {@link #PARALLEL_THRESHOLD} are split at the median element, and the
+	 * left subtree is forked while the right subtree is constructed by the
+	 * current thread. The subtrees cover disjoint ranges of the positions list
+	 * (and permutation array), so they can be constructed concurrently.
+	 * Smaller sublists are processed sequentially.
+	 */
+	private final class ValueNodeTask< L extends RealLocalizable > extends RecursiveTask< ValueNode< T > >
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final List< L > positions;
+
+		private final int i;
+
+		private final int j;
+
+		private final int d;
+
+		/**
+		 * list of values corresponding to permuted positions, or {@code null}
+		 * if the positions are the values.
+		 */
+		private final List< T > values;
+
+		private final int[] permutation;
+
+		ValueNodeTask( final List< L > positions, final int i, final int j, final int d, final List< T > values, final int[] permutation )
+		{
+			this.positions = positions;
+			this.i = i;
+			this.j = j;
+			this.d = d;
+			this.values = values;
+			this.permutation = permutation;
+		}
+
+		@SuppressWarnings( "unchecked" )
+		@Override
+		protected ValueNode< T > compute()
+		{
+			if ( j - i < PARALLEL_THRESHOLD )
+				return values == null
+						? makeNode( positions, i, j, d )
+						: makeNode( positions, i, j, d, values, permutation );
+
+			final int k = i + ( j - i ) / 2;
+			if ( values == null )
+				KthElement.kthElement( i, j, k, positions, new DimComparator< L >( d ) );
+			else
+				KthElement.kthElement( i, j, k, positions, permutation, new DimComparator< L >( d ) );
+
+			final int dChild = ( d + 1 == n ) ? 0 : d + 1;
+			final ValueNodeTask< L > leftTask = new ValueNodeTask< L >( positions, i, k - 1, dChild, values, permutation );
+			leftTask.fork();
+			final ValueNode< T > right = new ValueNodeTask< L >( positions, k + 1, j, dChild, values, permutation ).compute();
+			final ValueNode< T > left = leftTask.join();
+
+			final L position = positions.get( k );
+			final T value = values == null ? ( T ) position : values.get( permutation[ k ] );
+			return new ValueNode< T >( value, position, d, left, right );
+		}
+	}
+
+	/**
+	 * Fork-join version of {@link #makeSamplerNode(List, int, int, int)}. See
+	 * {@link ValueNodeTask}.
+	 */
+	private final class SamplerNodeTask extends RecursiveTask< SamplerNode< T > >
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final List< RealCursor< T > > elements;
+
+		private final int i;
+
+		private final int j;
+
+		private final int d;
+
+		SamplerNodeTask( final List< RealCursor< T > > elements, final int i, final int j, final int d )
+		{
+			this.elements = elements;
+			this.i = i;
+			this.j = j;
+			this.d = d;
+		}
+
+		@Override
+		protected SamplerNode< T > compute()
+		{
+			if ( j - i < PARALLEL_THRESHOLD )
+				return makeSamplerNode( elements, i, j, d );
+
+			final int k = i + ( j - i ) / 2;
+			KthElement.kthElement( i, j, k, elements, new DimComparator< RealCursor< T > >( d ) );
+
+			final int dChild = ( d + 1 == n ) ? 0 : d + 1;
+			final SamplerNodeTask leftTask = new SamplerNodeTask( elements, i, k - 1, dChild );
+			leftTask.fork();
+			final SamplerNode< T > right = new SamplerNodeTask( elements, k + 1, j, dChild ).compute();
+			final SamplerNode< T > left = leftTask.join();
+
+			return new SamplerNode< T >( elements.get( k ), elements.get( k ), d, left, right );
+		}
+	}
+
 	/**
 	 * Get the root node.
 	 *
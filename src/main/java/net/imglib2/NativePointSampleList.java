@@ -0,0 +1,303 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import net.imglib2.type.NativeType;
+
+/**
+ * A list of {@link NativeType} data samples at explicit integer coordinates.
+ * In contrast to {@link PointSampleList}, which keeps a {@link Point} and a
+ * sample object per point, coordinates are stored in a single flat
+ * {@code long[]} array and samples in a {@link NativeType} array. Samples
+ * are copied when they are {@link #add(Localizable, NativeType) added}, and
+ * cursors are flyweights that only move an index over the arrays.
+ *
+ * As with {@link java.util.ArrayList}, cursors obtained before an
+ * {@link #add(Localizable, NativeType)} must not be used afterwards.
+ *
+ * @param <T>
+ *            sample type
+ */
+public class NativePointSampleList< T extends NativeType< T > > extends AbstractInterval implements IterableInterval< T >
+{
+	public class NativePointSampleListCursor implements Cursor< T >
+	{
+		protected int index;
+
+		protected int offset;
+
+		final protected T sample;
+
+		protected NativePointSampleListCursor()
+		{
+			sample = samples.createLinkedType();
+			reset();
+		}
+
+		protected NativePointSampleListCursor( final NativePointSampleListCursor cursor )
+		{
+			sample = samples.createLinkedType();
+			index = cursor.index;
+			offset = cursor.offset;
+			sample.updateIndex( Math.max( 0, index ) );
+		}
+
+		@Override
+		public NativePointSampleListCursor copy()
+		{
+			return new NativePointSampleListCursor( this );
+		}
+
+		@Override
+		final public NativePointSampleListCursor copyCursor()
+		{
+			return copy();
+		}
+
+		@Override
+		public double getDoublePosition( final int d )
+		{
+			return coordinates[ offset + d ];
+		}
+
+		@Override
+		public float getFloatPosition( final int d )
+		{
+			return coordinates[ offset + d ];
+		}
+
+		@Override
+		public int getIntPosition( final int d )
+		{
+			return ( int ) coordinates[ offset + d ];
+		}
+
+		@Override
+		public long getLongPosition( final int d )
+		{
+			return coordinates[ offset + d ];
+		}
+
+		@Override
+		public void localize( final float[] pos )
+		{
+			for ( int d = 0; d < n; ++d )
+				pos[ d ] = coordinates[ offset + d ];
+		}
+
+		@Override
+		public void localize( final double[] pos )
+		{
+			for ( int d = 0; d < n; ++d )
+				pos[ d ] = coordinates[ offset + d ];
+		}
+
+		@Override
+		public void localize( final int[] pos )
+		{
+			for ( int d = 0; d < n; ++d )
+				pos[ d ] = ( int ) coordinates[ offset + d ];
+		}
+
+		@Override
+		public void localize( final long[] pos )
+		{
+			System.arraycopy( coordinates, offset, pos, 0, n );
+		}
+
+		@Override
+		public int numDimensions()
+		{
+			return n;
+		}
+
+		@Override
+		public T get()
+		{
+			return sample;
+		}
+
+		@Override
+		public void fwd()
+		{
+			++index;
+			offset += n;
+			sample.updateIndex( index );
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return index < samples.size() - 1;
+		}
+
+		@Override
+		public void jumpFwd( final long steps )
+		{
+			index += steps;
+			offset = index * n;
+			sample.updateIndex( index );
+		}
+
+		@Override
+		public void reset()
+		{
+			index = -1;
+			offset = -n;
+		}
+
+		@Override
+		public T next()
+		{
+			fwd();
+			return sample;
+		}
+
+		@Override
+		public void remove()
+		{
+			/* Not yet implemented */
+		}
+	}
+
+	/**
+	 * the coordinates of the points. Coordinate {@code d} of point {@code i}
+	 * is at {@code coordinates[ i * n + d ]}.
+	 */
+	protected long[] coordinates;
+
+	final protected NativeSampleArray< T > samples;
+
+	private static Interval initInterval( final int n )
+	{
+		final long[] min = new long[ n ];
+		final long[] max = new long[ n ];
+		for ( int d = 0; d < n; ++d )
+		{
+			min[ d ] = Long.MAX_VALUE;
+			max[ d ] = Long.MIN_VALUE;
+		}
+		return new FinalInterval( min, max );
+	}
+
+	/**
+	 * @param type
+	 *            - the sample type
+	 * @param n
+	 *            - number of dimensions
+	 * @param initialCapacity
+	 *            - the number of points that can be added before the storage
+	 *            is grown
+	 */
+	public NativePointSampleList( final T type, final int n, final int initialCapacity )
+	{
+		super( initInterval( n ) );
+		samples = new NativeSampleArray< T >( type, initialCapacity );
+		coordinates = new long[ Math.max( 1, initialCapacity ) * n ];
+	}
+
+	/**
+	 * @param type
+	 *            - the sample type
+	 * @param n
+	 *            - number of dimensions
+	 */
+	public NativePointSampleList( final T type, final int n )
+	{
+		this( type, n, 16 );
+	}
+
+	/**
+	 * Add a point. Its coordinates and sample value are copied.
+	 */
+	public void add( final Localizable position, final T sample )
+	{
+		final int size = samples.size();
+		final int capacity = samples.ensureCapacity( size + 1 );
+		if ( coordinates.length < Math.multiplyExact( capacity, n ) )
+			coordinates = Arrays.copyOf( coordinates, Math.multiplyExact( capacity, n ) );
+		final int offset = size * n;
+		samples.add( sample );
+		for ( int d = 0; d < n; ++d )
+		{
+			final long x = position.getLongPosition( d );
+			coordinates[ offset + d ] = x;
+
+			if ( x < min[ d ] )
+				min[ d ] = x;
+			if ( x > max[ d ] )
+				max[ d ] = x;
+		}
+	}
+
+	@Override
+	public NativePointSampleListCursor cursor()
+	{
+		return new NativePointSampleListCursor();
+	}
+
+	@Override
+	public Object iterationOrder()
+	{
+		return this; // iteration order is only compatible with ourselves
+	}
+
+	@Override
+	public T firstElement()
+	{
+		return samples.createLinkedType();
+	}
+
+	@Override
+	public NativePointSampleListCursor localizingCursor()
+	{
+		return new NativePointSampleListCursor();
+	}
+
+	@Override
+	public long size()
+	{
+		return samples.size();
+	}
+
+	@Override
+	public Iterator< T > iterator()
+	{
+		return cursor();
+	}
+}
@@ -0,0 +1,381 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import net.imglib2.type.NativeType;
+
+/**
+ * A list of {@link NativeType} data samples at explicit
+ * {@link RealLocalizable real coordinates}. In contrast to
+ * {@link RealPointSampleList}, which keeps a {@link RealPoint} and a sample
+ * object per point, coordinates are stored in a single flat {@code double[]}
+ * array and samples in a {@link NativeType} array. Samples are copied when
+ * they are {@link #add(RealLocalizable, NativeType) added}, and cursors are
+ * flyweights that only move an index over the arrays, so large lists take
+ * {@code n} doubles plus the sample's primitive storage per point.
+ *
+ * The list can be searched like any {@link IterableRealInterval}, e.g. with
+ * {@link KDTree#KDTree(IterableRealInterval)} or
+ * {@link net.imglib2.neighborsearch.NearestNeighborSearchOnIterableRealInterval}.
+ * {@link #createFlatKDTree()} builds a {@link FlatKDTree} directly from the
+ * flat coordinates, without creating objects per point.
+ * As with {@link java.util.ArrayList}, cursors obtained before an
+ * {@link #add(RealLocalizable, NativeType)} must not be used afterwards.
+ *
+ * @param <T>
+ *            sample type
+ */
+public class NativeRealPointSampleList< T extends NativeType< T > > implements IterableRealInterval< T >
+{
+	public class NativeRealPointSampleListCursor implements RealCursor< T >
+	{
+		protected int index;
+
+		protected int offset;
+
+		final protected T sample;
+
+		protected NativeRealPointSampleListCursor()
+		{
+			sample = samples.createLinkedType();
+			reset();
+		}
+
+		protected NativeRealPointSampleListCursor( final NativeRealPointSampleListCursor cursor )
+		{
+			sample = samples.createLinkedType();
+			index = cursor.index;
+			offset = cursor.offset;
+			sample.updateIndex( Math.max( 0, index ) );
+		}
+
+		@Override
+		public NativeRealPointSampleListCursor copy()
+		{
+			return new NativeRealPointSampleListCursor( this );
+		}
+
+		@Override
+		final public NativeRealPointSampleListCursor copyCursor()
+		{
+			return copy();
+		}
+
+		@Override
+		public double getDoublePosition( final int d )
+		{
+			return coordinates[ offset + d ];
+		}
+
+		@Override
+		public float getFloatPosition( final int d )
+		{
+			return ( float ) coordinates[ offset + d ];
+		}
+
+		@Override
+		public void localize( final float[] pos )
+		{
+			for ( int d = 0; d < n; ++d )
+				pos[ d ] = ( float ) coordinates[ offset + d ];
+		}
+
+		@Override
+		public void localize( final double[] pos )
+		{
+			System.arraycopy( coordinates, offset, pos, 0, n );
+		}
+
+		@Override
+		public int numDimensions()
+		{
+			return n;
+		}
+
+		@Override
+		public T get()
+		{
+			return sample;
+		}
+
+		@Override
+		public void fwd()
+		{
+			++index;
+			offset += n;
+			sample.updateIndex( index );
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return index < samples.size() - 1;
+		}
+
+		@Override
+		public void jumpFwd( final long steps )
+		{
+			index += steps;
+			offset = index * n;
+			sample.updateIndex( index );
+		}
+
+		@Override
+		public void reset()
+		{
+			index = -1;
+			offset = -n;
+		}
+
+		@Override
+		public T next()
+		{
+			fwd();
+			return sample;
+		}
+
+		@Override
+		public void remove()
+		{
+			/* Not yet implemented */
+		}
+	}
+
+	final protected int n;
+
+	/**
+	 * the coordinates of the points. Coordinate {@code d} of point {@code i}
+	 * is at {@code coordinates[ i * n + d ]}.
+	 */
+	protected double[] coordinates;
+
+	final protected NativeSampleArray< T > samples;
+
+	final protected double[] min, max;
+
+	/**
+	 * @param type
+	 *            - the sample type
+	 * @param n
+	 *            - number of dimensions
+	 * @param initialCapacity
+	 *            - the number of points that can be added before the storage
+	 *            is grown
+	 */
+	public NativeRealPointSampleList( final T type, final int n, final int initialCapacity )
+	{
+		this.n = n;
+		samples = new NativeSampleArray< T >( type, initialCapacity );
+		coordinates = new double[ Math.max( 1, initialCapacity ) * n ];
+		min = new double[ n ];
+		max = new double[ n ];
+		for ( int d = 0; d < n; ++d )
+		{
+			min[ d ] = Double.MAX_VALUE;
+			max[ d ] = -Double.MAX_VALUE;
+		}
+	}
+
+	/**
+	 * @param type
+	 *            - the sample type
+	 * @param n
+	 *            - number of dimensions
+	 */
+	public NativeRealPointSampleList( final T type, final int n )
+	{
+		this( type, n, 16 );
+	}
+
+	/**
+	 * Add a point. Its coordinates and sample value are copied.
+	 */
+	public void add( final RealLocalizable position, final T sample )
+	{
+		final int offset = prepareAdd();
+		for ( int d = 0; d < n; ++d )
+			coordinates[ offset + d ] = position.getDoublePosition( d );
+		finishAdd( offset, sample );
+	}
+
+	/**
+	 * Add a point. Its coordinates and sample value are copied.
+	 */
+	public void add( final double[] position, final T sample )
+	{
+		final int offset = prepareAdd();
+		System.arraycopy( position, 0, coordinates, offset, n );
+		finishAdd( offset, sample );
+	}
+
+	private int prepareAdd()
+	{
+		final int size = samples.size();
+		final int capacity = samples.ensureCapacity( size + 1 );
+		if ( coordinates.length < Math.multiplyExact( capacity, n ) )
+			coordinates = Arrays.copyOf( coordinates, Math.multiplyExact( capacity, n ) );
+		return size * n;
+	}
+
+	private void finishAdd( final int offset, final T sample )
+	{
+		samples.add( sample );
+		for ( int d = 0; d < n; ++d )
+		{
+			final double x = coordinates[ offset + d ];
+
+			if ( x < min[ d ] )
+				min[ d ] = x;
+			if ( x > max[ d ] )
+				max[ d ] = x;
+		}
+	}
+
+	/**
+	 * Create a {@link FlatKDTree} of the points in this list. The tree is
+	 * built from the flat coordinate array, and its values are a view on the
+	 * samples of this list, so no objects are created per point. The tree
+	 * contains the points added so far. Its values reflect changes to the
+	 * samples of these points, and remain valid when points are added.
+	 */
+	public FlatKDTree< T > createFlatKDTree()
+	{
+		final int size = samples.size();
+		final List< T > values = new AbstractList< T >()
+		{
+			@Override
+			public T get( final int index )
+			{
+				if ( index < 0 || index >= size )
+					throw new IndexOutOfBoundsException( "Index: " + index + ", Size: " + size );
+				final T t = samples.createLinkedType();
+				t.updateIndex( index );
+				return t;
+			}
+
+			@Override
+			public int size()
+			{
+				return size;
+			}
+		};
+		return new FlatKDTree< T >( values, coordinates, n );
+	}
+
+	@Override
+	public NativeRealPointSampleListCursor cursor()
+	{
+		return new NativeRealPointSampleListCursor();
+	}
+
+	@Override
+	public Object iterationOrder()
+	{
+		return this; // iteration order is only compatible with ourselves
+	}
+
+	@Override
+	public T firstElement()
+	{
+		return samples.createLinkedType();
+	}
+
+	@Override
+	public NativeRealPointSampleListCursor localizingCursor()
+	{
+		return new NativeRealPointSampleListCursor();
+	}
+
+	@Override
+	public long size()
+	{
+		return samples.size();
+	}
+
+	@Override
+	public double realMax( final int d )
+	{
+		return max[ d ];
+	}
+
+	@Override
+	public void realMax( final double[] m )
+	{
+		for ( int d = 0; d < n; ++d )
+			m[ d ] = max[ d ];
+	}
+
+	@Override
+	public void realMax( final RealPositionable m )
+	{
+		m.setPosition( max );
+	}
+
+	@Override
+	public double realMin( final int d )
+	{
+		return min[ d ];
+	}
+
+	@Override
+	public void realMin( final double[] m )
+	{
+		for ( int d = 0; d < n; ++d )
+			m[ d ] = min[ d ];
+	}
+
+	@Override
+	public void realMin( final RealPositionable m )
+	{
+		m.setPosition( min );
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	@Override
+	public Iterator< T > iterator()
+	{
+		return cursor();
+	}
+}
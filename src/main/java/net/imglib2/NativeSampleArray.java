@@ -0,0 +1,132 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2;
+
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.ImgUtil;
+import net.imglib2.view.Views;
+
+/**
+ * A growable array of {@link NativeType} samples, stored in a
+ * one-dimensional {@link ArrayImg}. When the capacity is exceeded, the
+ * samples are copied into a new {@link ArrayImg} of twice the capacity.
+ * Types obtained from {@link #createLinkedType()} refer to the
+ * {@link ArrayImg} at the time of the call, and become invalid when it is
+ * replaced.
+ *
+ * @param <T>
+ *            sample type
+ */
+final class NativeSampleArray< T extends NativeType< T > >
+{
+	private static final int DEFAULT_CAPACITY = 16;
+
+	private final T type;
+
+	private ArrayImg< T, ? > img;
+
+	/**
+	 * a type linked to {@link #img} used to add samples.
+	 */
+	private T writer;
+
+	private int size = 0;
+
+	NativeSampleArray( final T type, final int initialCapacity )
+	{
+		this.type = type.createVariable();
+		allocate( Math.max( 1, initialCapacity ) );
+	}
+
+	NativeSampleArray( final T type )
+	{
+		this( type, DEFAULT_CAPACITY );
+	}
+
+	private void allocate( final int capacity )
+	{
+		final ArrayImg< T, ? > newImg = new ArrayImgFactory< T >().create( new long[] { capacity }, type );
+		if ( size > 0 )
+			ImgUtil.copy( Views.interval( img, new long[] { 0 }, new long[] { size - 1 } ), Views.interval( newImg, new long[] { 0 }, new long[] { size - 1 } ) );
+		img = newImg;
+		writer = createLinkedType();
+	}
+
+	/**
+	 * Ensure that the array can hold {@code minCapacity} samples without
+	 * growing. Returns the (new) capacity.
+	 */
+	int ensureCapacity( final int minCapacity )
+	{
+		if ( minCapacity < 0 )
+			throw new OutOfMemoryError( "Too many samples." );
+		final int capacity = ( int ) img.size();
+		if ( minCapacity > capacity )
+		{
+			final long grown = Math.min( Integer.MAX_VALUE - 8, 2L * capacity );
+			allocate( ( int ) Math.max( minCapacity, grown ) );
+		}
+		return ( int ) img.size();
+	}
+
+	/**
+	 * Append a copy of {@code sample}.
+	 */
+	void add( final T sample )
+	{
+		ensureCapacity( size + 1 );
+		writer.updateIndex( size++ );
+		writer.set( sample );
+	}
+
+	int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Create a type linked to the current storage. Use
+	 * {@link NativeType#updateIndex(int)} to select the sample.
+	 */
+	T createLinkedType()
+	{
+		final T t = img.createLinkedType();
+		t.updateContainer( this );
+		t.updateIndex( 0 );
+		return t;
+	}
+}
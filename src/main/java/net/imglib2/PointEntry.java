@@ -0,0 +1,106 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2;
+
+/**
+ * A reference to a point of a {@link SpatialHashGrid} or
+ * {@link DynamicKDTree}, providing its (current) position and value.
+ *
+ * @param <T>
+ *            type of values stored.
+ */
+public final class PointEntry< T > implements RealLocalizable, Sampler< T >
+{
+	private final PointStore< T > store;
+
+	private final int id;
+
+	PointEntry( final PointStore< T > store, final int id )
+	{
+		this.store = store;
+		this.id = id;
+	}
+
+	/**
+	 * Get the id of the point.
+	 */
+	public int getId()
+	{
+		return id;
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return store.n;
+	}
+
+	@Override
+	public void localize( final float[] position )
+	{
+		for ( int d = 0; d < store.n; ++d )
+			position[ d ] = ( float ) store.getDoublePosition( id, d );
+	}
+
+	@Override
+	public void localize( final double[] position )
+	{
+		System.arraycopy( store.positions, id * store.n, position, 0, store.n );
+	}
+
+	@Override
+	public float getFloatPosition( final int d )
+	{
+		return ( float ) store.getDoublePosition( id, d );
+	}
+
+	@Override
+	public double getDoublePosition( final int d )
+	{
+		return store.getDoublePosition( id, d );
+	}
+
+	@Override
+	public T get()
+	{
+		return store.getValue( id );
+	}
+
+	@Override
+	public PointEntry< T > copy()
+	{
+		return this;
+	}
+}
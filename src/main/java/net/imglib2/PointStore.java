@@ -0,0 +1,195 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * The positions and values of the points of a dynamic point collection
+ * ({@link SpatialHashGrid}, {@link DynamicKDTree}), indexed by integer ids.
+ * Coordinates are stored in a single flattened {@code double[]} array.
+ * Ids of removed points are reused once they are {@link #free(int) freed}.
+ *
+ * <p>
+ * The owning structure keeps its own per-id arrays, and grows them to
+ * {@link #capacity()} after {@link #add(RealLocalizable, Object)}.
+ * </p>
+ *
+ * @param <T>
+ *            type of values stored.
+ */
+final class PointStore< T >
+{
+	private static final int DEFAULT_CAPACITY = 16;
+
+	/**
+	 * the number of dimensions.
+	 */
+	final int n;
+
+	/**
+	 * the number of (not removed) points.
+	 */
+	int size;
+
+	/**
+	 * ids in {@code [0, idBound)} have been assigned.
+	 */
+	int idBound;
+
+	/**
+	 * the coordinates of the points. Coordinate {@code d} of point {@code id}
+	 * is at {@code positions[ id * n + d ]}.
+	 */
+	double[] positions;
+
+	/**
+	 * the values of the points ({@code null} for removed ids).
+	 */
+	final ArrayList< T > values;
+
+	/**
+	 * ids that can be reused (a stack of size {@link #numFree}).
+	 */
+	private int[] free;
+
+	private int numFree;
+
+	PointStore( final int n )
+	{
+		this.n = n;
+		positions = new double[ DEFAULT_CAPACITY * n ];
+		values = new ArrayList< T >( DEFAULT_CAPACITY );
+		free = new int[ DEFAULT_CAPACITY ];
+	}
+
+	/**
+	 * Get the number of ids that can be assigned without growing.
+	 */
+	int capacity()
+	{
+		return free.length;
+	}
+
+	/**
+	 * Store a point, reusing a freed id if there is one.
+	 *
+	 * @return the id of the point.
+	 */
+	int add( final RealLocalizable position, final T value )
+	{
+		final int id;
+		if ( numFree > 0 )
+		{
+			id = free[ --numFree ];
+			values.set( id, value );
+		}
+		else
+		{
+			if ( idBound == free.length )
+			{
+				final int capacity = 2 * free.length;
+				positions = Arrays.copyOf( positions, Math.multiplyExact( capacity, n ) );
+				free = Arrays.copyOf( free, capacity );
+			}
+			id = idBound++;
+			values.add( value );
+		}
+		setPosition( id, position );
+		++size;
+		return id;
+	}
+
+	/**
+	 * Remove point {@code id}. The id is not reused until it is
+	 * {@link #free(int) freed}.
+	 */
+	void remove( final int id )
+	{
+		values.set( id, null );
+		--size;
+	}
+
+	/**
+	 * Make the id of a removed point available for reuse.
+	 */
+	void free( final int id )
+	{
+		free[ numFree++ ] = id;
+	}
+
+	/**
+	 * Remove all points and forget all ids.
+	 */
+	void clear()
+	{
+		values.clear();
+		size = 0;
+		idBound = 0;
+		numFree = 0;
+	}
+
+	void setPosition( final int id, final RealLocalizable position )
+	{
+		for ( int d = 0; d < n; ++d )
+			positions[ id * n + d ] = position.getDoublePosition( d );
+	}
+
+	double getDoublePosition( final int id, final int d )
+	{
+		return positions[ id * n + d ];
+	}
+
+	T getValue( final int id )
+	{
+		return values.get( id );
+	}
+
+	/**
+	 * Compute the squared Euclidean distance between point {@code id} and
+	 * {@code p}.
+	 */
+	double squDistance( final int id, final double[] p )
+	{
+		double sum = 0;
+		for ( int d = 0, o = id * n; d < n; ++d, ++o )
+		{
+			final double diff = positions[ o ] - p[ d ];
+			sum += diff * diff;
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,486 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2;
+
+import java.util.Arrays;
+
+/**
+ * A spatial hash of values at RealLocalizable positions, for nearest
+ * neighbor searches on point clouds that change.
+ *
+ * <p>
+ * Space is divided into a uniform grid of cubic cells of side length
+ * {@link #getCellSize()}. Each cell is hashed to a bucket of a hash table,
+ * and the points of each bucket are kept in a doubly linked list. Points
+ * are identified by an integer id, which is returned by
+ * {@link #insert(RealLocalizable, Object)} and can be used to
+ * {@link #move(int, RealLocalizable)} or {@link #remove(int)} the point.
+ * Ids of removed points are reused. The linked lists are stored in
+ * {@code int[]} arrays, so inserting, moving and removing points does not
+ * allocate (unless the arrays grow).
+ * </p>
+ *
+ * <p>
+ * Several cells may share a bucket, so {@link #firstInCell(long[])} and
+ * {@link #nextInCell(int, long[])} skip the points of other cells. If the
+ * cell size is chosen such that a cell contains a few points on average,
+ * nearest neighbor, <em>k</em>-nearest neighbor and radius queries only
+ * visit a few cells around the query for roughly uniform point clouds.
+ * </p>
+ *
+ * <p>
+ * Use {@link net.imglib2.neighborsearch.NearestNeighborSearchOnSpatialHashGrid},
+ * {@link net.imglib2.neighborsearch.KNearestNeighborSearchOnSpatialHashGrid},
+ * and {@link net.imglib2.neighborsearch.RadiusNeighborSearchOnSpatialHashGrid}
+ * to search the grid.
+ * </p>
+ *
+ * @param <T>
+ *            type of values stored in the grid.
+ */
+public class SpatialHashGrid< T > implements EuclideanSpace
+{
+	/**
+	 * large primes to hash cell positions, see Teschner et al.,
+	 * "Optimized Spatial Hashing for Collision Detection of Deformable
+	 * Objects", 2003.
+	 */
+	private static final long[] PRIMES = { 73856093, 19349663, 83492791, 49979687, 86028121, 15485863, 32452843, 67867967 };
+
+	/**
+	 * the number of dimensions.
+	 */
+	final protected int n;
+
+	/**
+	 * the side length of the cells.
+	 */
+	final protected double cellSize;
+
+	final private double invCellSize;
+
+	/**
+	 * the positions and values of the points.
+	 */
+	final private PointStore< T > points;
+
+	/**
+	 * the cell of each point. Coordinate {@code d} of the cell of point
+	 * {@code id} is at {@code cells[ id * n + d ]}.
+	 */
+	protected long[] cells;
+
+	/**
+	 * the bucket of each point, or -1 if the id is not in use.
+	 */
+	protected int[] buckets;
+
+	/**
+	 * the next and previous point of each point in its bucket list, or -1.
+	 */
+	protected int[] next, prev;
+
+	/**
+	 * the first point of each bucket list, or -1. The length is a power of
+	 * two.
+	 */
+	protected int[] heads;
+
+	/**
+	 * bounding box of the cells that contain (or once contained) points.
+	 */
+	final protected long[] minCell, maxCell;
+
+	/**
+	 * temporary cell position.
+	 */
+	final private long[] tmpCell;
+
+	/**
+	 * Construct an empty grid.
+	 *
+	 * @param n
+	 *            the number of dimensions.
+	 * @param cellSize
+	 *            the side length of the grid cells.
+	 */
+	public SpatialHashGrid( final int n, final double cellSize )
+	{
+		if ( !( cellSize > 0 ) )
+			throw new IllegalArgumentException( "Cell size must be positive." );
+		this.n = n;
+		this.cellSize = cellSize;
+		this.invCellSize = 1.0 / cellSize;
+		points = new PointStore< T >( n );
+		final int capacity = points.capacity();
+		cells = new long[ capacity * n ];
+		buckets = new int[ capacity ];
+		next = new int[ capacity ];
+		prev = new int[ capacity ];
+		heads = new int[ capacity ];
+		Arrays.fill( heads, -1 );
+		minCell = new long[ n ];
+		maxCell = new long[ n ];
+		Arrays.fill( minCell, Long.MAX_VALUE );
+		Arrays.fill( maxCell, Long.MIN_VALUE );
+		tmpCell = new long[ n ];
+	}
+
+	/**
+	 * Construct a grid containing the elements of the given
+	 * {@link IterableRealInterval}, with ids in iteration order.
+	 *
+	 * @param interval
+	 *            elements in the grid are obtained by iterating this
+	 * @param cellSize
+	 *            the side length of the grid cells.
+	 */
+	public SpatialHashGrid( final IterableRealInterval< T > interval, final double cellSize )
+	{
+		this( interval.numDimensions(), cellSize );
+		final RealCursor< T > cursor = interval.localizingCursor();
+		while ( cursor.hasNext() )
+		{
+			cursor.fwd();
+			// copy the cursor, such that flyweight values stay valid
+			insert( cursor, cursor.copyCursor().get() );
+		}
+	}
+
+	/**
+	 * Construct a grid containing the elements of the given
+	 * {@link IterableRealInterval}. The cell size is chosen such that a
+	 * cell contains about two points on average, if the points are
+	 * uniformly distributed in the bounding box of the interval.
+	 *
+	 * @param interval
+	 *            elements in the grid are obtained by iterating this
+	 */
+	public SpatialHashGrid( final IterableRealInterval< T > interval )
+	{
+		this( interval, defaultCellSize( interval ) );
+	}
+
+	private static double defaultCellSize( final IterableRealInterval< ? > interval )
+	{
+		final int n = interval.numDimensions();
+		double volume = 1;
+		double maxExtent = 0;
+		for ( int d = 0; d < n; ++d )
+		{
+			final double extent = Math.max( 0, interval.realMax( d ) - interval.realMin( d ) );
+			volume *= extent;
+			maxExtent = Math.max( maxExtent, extent );
+		}
+		final long size = interval.size();
+		if ( size == 0 || maxExtent == 0 )
+			return 1;
+		if ( volume == 0 )
+			// degenerate (flat) point cloud
+			return maxExtent / Math.pow( size / 2.0, 1.0 / n );
+		return Math.pow( 2.0 * volume / size, 1.0 / n );
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	/**
+	 * Get the side length of the grid cells.
+	 */
+	public double getCellSize()
+	{
+		return cellSize;
+	}
+
+	/**
+	 * Get the number of points in the grid.
+	 */
+	public int size()
+	{
+		return points.size;
+	}
+
+	/**
+	 * Get an upper bound for the ids of the points: all ids are in
+	 * {@code [0, idBound())}.
+	 */
+	public int idBound()
+	{
+		return points.idBound;
+	}
+
+	/**
+	 * Check whether {@code id} refers to a point in the grid.
+	 */
+	public boolean contains( final int id )
+	{
+		return id >= 0 && id < points.idBound && buckets[ id ] >= 0;
+	}
+
+	/**
+	 * Insert a point.
+	 *
+	 * @return the id of the point.
+	 */
+	public int insert( final RealLocalizable position, final T value )
+	{
+		final int id = points.add( position, value );
+		if ( points.capacity() > buckets.length )
+			grow();
+		// not linked yet (rehash must skip it)
+		buckets[ id ] = -1;
+		if ( points.size > heads.length )
+			rehash( 2 * heads.length );
+		link( id );
+		return id;
+	}
+
+	/**
+	 * Remove the point with the given id.
+	 */
+	public void remove( final int id )
+	{
+		if ( !contains( id ) )
+			throw new IllegalArgumentException( "No point with id " + id + "." );
+		unlink( id );
+		buckets[ id ] = -1;
+		points.remove( id );
+		points.free( id );
+	}
+
+	/**
+	 * Move the point with the given id to a new position.
+	 */
+	public void move( final int id, final RealLocalizable position )
+	{
+		if ( !contains( id ) )
+			throw new IllegalArgumentException( "No point with id " + id + "." );
+		boolean sameCell = true;
+		for ( int d = 0; d < n && sameCell; ++d )
+			sameCell = getCellPosition( position.getDoublePosition( d ) ) == cells[ id * n + d ];
+		points.setPosition( id, position );
+		if ( !sameCell )
+		{
+			unlink( id );
+			link( id );
+		}
+	}
+
+	/**
+	 * Remove all points.
+	 */
+	public void clear()
+	{
+		Arrays.fill( heads, -1 );
+		points.clear();
+		Arrays.fill( minCell, Long.MAX_VALUE );
+		Arrays.fill( maxCell, Long.MIN_VALUE );
+	}
+
+	private void grow()
+	{
+		final int capacity = points.capacity();
+		cells = Arrays.copyOf( cells, capacity * n );
+		buckets = Arrays.copyOf( buckets, capacity );
+		next = Arrays.copyOf( next, capacity );
+		prev = Arrays.copyOf( prev, capacity );
+	}
+
+	private void rehash( final int numBuckets )
+	{
+		heads = new int[ numBuckets ];
+		Arrays.fill( heads, -1 );
+		for ( int id = 0; id < points.idBound; ++id )
+			if ( buckets[ id ] >= 0 )
+				link( id );
+	}
+
+	/**
+	 * Add a point to the list of the bucket of its cell, and extend the
+	 * bounding box of occupied cells.
+	 */
+	private void link( final int id )
+	{
+		for ( int d = 0; d < n; ++d )
+		{
+			final long c = getCellPosition( points.getDoublePosition( id, d ) );
+			tmpCell[ d ] = c;
+			cells[ id * n + d ] = c;
+			if ( c < minCell[ d ] )
+				minCell[ d ] = c;
+			if ( c > maxCell[ d ] )
+				maxCell[ d ] = c;
+		}
+		final int bucket = bucket( tmpCell );
+		final int head = heads[ bucket ];
+		buckets[ id ] = bucket;
+		next[ id ] = head;
+		prev[ id ] = -1;
+		if ( head >= 0 )
+			prev[ head ] = id;
+		heads[ bucket ] = id;
+	}
+
+	private void unlink( final int id )
+	{
+		final int p = prev[ id ];
+		final int nx = next[ id ];
+		if ( p >= 0 )
+			next[ p ] = nx;
+		else
+			heads[ buckets[ id ] ] = nx;
+		if ( nx >= 0 )
+			prev[ nx ] = p;
+	}
+
+	private int bucket( final long[] cell )
+	{
+		long h = 0;
+		for ( int d = 0; d < n; ++d )
+			h ^= cell[ d ] * PRIMES[ d % PRIMES.length ] + d;
+		h ^= h >>> 29;
+		h *= 0xbf58476d1ce4e5b9L;
+		h ^= h >>> 32;
+		return ( int ) h & ( heads.length - 1 );
+	}
+
+	/**
+	 * Get the grid cell coordinate of a coordinate.
+	 */
+	public long getCellPosition( final double x )
+	{
+		return ( long ) Math.floor( x * invCellSize );
+	}
+
+	/**
+	 * Get the grid cell containing {@code position}.
+	 */
+	public void getCellPosition( final double[] position, final long[] cell )
+	{
+		for ( int d = 0; d < n; ++d )
+			cell[ d ] = getCellPosition( position[ d ] );
+	}
+
+	/**
+	 * Get the minimum of the bounding box of occupied cells. The bounding box
+	 * contains all cells that contain points, but it does not shrink when
+	 * points are removed or moved.
+	 */
+	public void getMinCell( final long[] cell )
+	{
+		System.arraycopy( minCell, 0, cell, 0, n );
+	}
+
+	/**
+	 * Get the maximum of the bounding box of occupied cells.
+	 *
+	 * @see #getMinCell(long[])
+	 */
+	public void getMaxCell( final long[] cell )
+	{
+		System.arraycopy( maxCell, 0, cell, 0, n );
+	}
+
+	/**
+	 * Get the id of the first point in {@code cell}, or -1 if the cell is
+	 * empty.
+	 */
+	public int firstInCell( final long[] cell )
+	{
+		return skipToCell( heads[ bucket( cell ) ], cell );
+	}
+
+	/**
+	 * Get the id of the point following point {@code id} in {@code cell}, or
+	 * -1 if there is none.
+	 */
+	public int nextInCell( final int id, final long[] cell )
+	{
+		return skipToCell( next[ id ], cell );
+	}
+
+	/**
+	 * Follow the bucket list from point {@code id} to the first point in
+	 * {@code cell}.
+	 */
+	private int skipToCell( int id, final long[] cell )
+	{
+		A: for ( ; id >= 0; id = next[ id ] )
+		{
+			for ( int d = 0, o = id * n; d < n; ++d, ++o )
+				if ( cells[ o ] != cell[ d ] )
+					continue A;
+			return id;
+		}
+		return -1;
+	}
+
+	/**
+	 * Get coordinate {@code d} of point {@code id}.
+	 */
+	public double getDoublePosition( final int id, final int d )
+	{
+		return points.getDoublePosition( id, d );
+	}
+
+	/**
+	 * Get the value of point {@code id}.
+	 */
+	public T getValue( final int id )
+	{
+		return points.getValue( id );
+	}
+
+	/**
+	 * Compute the squared Euclidean distance between point {@code id} and
+	 * {@code p}.
+	 */
+	public double squDistance( final int id, final double[] p )
+	{
+		return points.squDistance( id, p );
+	}
+
+	/**
+	 * Create a {@link PointEntry} referring to point {@code id}. It provides
+	 * the current position of the point.
+	 */
+	public PointEntry< T > entry( final int id )
+	{
+		return new PointEntry< T >( points, id );
+	}
+}
@@ -33,6 +33,8 @@
  */
 package net.imglib2.display.projector;
 
+import java.util.concurrent.ExecutorService;
+
 import net.imglib2.Point;
 import net.imglib2.display.projector.sampler.SamplingProjector2D;
 import net.imglib2.display.projector.specialized.ArrayImgXYByteProjector;
@@ -58,6 +60,12 @@ public abstract class AbstractProjector2D extends Point implements Projector
 
 	protected final long[] max;
 
+	/**
+	 * used to render in parallel by projectors that support it, or
+	 * {@code null} to render on the calling thread.
+	 */
+	protected ExecutorService executorService = null;
+
 	/**
 	 * initializes a reference point with the specified number of dimensions.
 	 * Start position is 0,0,...,0
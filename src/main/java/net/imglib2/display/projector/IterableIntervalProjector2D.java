@@ -33,6 +33,10 @@
  */
 package net.imglib2.display.projector;
 
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
 import net.imglib2.Cursor;
 import net.imglib2.FinalInterval;
 import net.imglib2.FlatIterationOrder;
@@ -40,6 +44,7 @@ import net.imglib2.IterableInterval;
 import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessible;
 import net.imglib2.converter.Converter;
+import net.imglib2.util.Parallelization;
 import net.imglib2.view.RandomAccessibleIntervalCursor;
 import net.imglib2.view.Views;
 
@@ -98,6 +103,29 @@ public class IterableIntervalProjector2D< A, B > extends AbstractProjector2D
 		this.numDimensions = source.numDimensions();
 	}
 
+	/**
+	 * Render in parallel, using the common {@link ForkJoinPool}.
+	 *
+	 * @see #multiThreaded(ExecutorService)
+	 */
+	public IterableIntervalProjector2D< A, B > multiThreaded()
+	{
+		return multiThreaded( ForkJoinPool.commonPool() );
+	}
+
+	/**
+	 * Render in parallel, using the given {@link ExecutorService}. The target
+	 * is split into bands of consecutive pixels (in the iteration order of the
+	 * target), which are rendered concurrently, each with its own cursors and
+	 * {@link RandomAccess}es. The {@link Converter} is shared between threads,
+	 * so it must be thread-safe.
+	 */
+	public IterableIntervalProjector2D< A, B > multiThreaded( final ExecutorService executorService )
+	{
+		this.executorService = Objects.requireNonNull( executorService );
+		return this;
+	}
+
 	/**
 	 * projects data from the source to the target and applies the former
 	 * specified {@link Converter} e.g. for normalization.
@@ -118,60 +146,68 @@ public class IterableIntervalProjector2D< A, B > extends AbstractProjector2D
 		// order fits in the case of one sized dims. Tobi?
 		final IterableInterval< A > ii = Views.iterable( Views.interval( source, new FinalInterval( min, max ) ) );
 
-		final Cursor< A > sourceCursor = ii.cursor();
-
-		if ( target.iterationOrder().equals( ii.iterationOrder() ) && !( sourceCursor instanceof RandomAccessibleIntervalCursor ) )
+		if ( target.iterationOrder().equals( ii.iterationOrder() ) && !( ii.cursor() instanceof RandomAccessibleIntervalCursor ) )
 		{
-			final Cursor< B > targetCursor = target.cursor();
-			while ( targetCursor.hasNext() )
-			{
-				converter.convert( sourceCursor.next(), targetCursor.next() );
-			}
+			Parallelization.forEachChunk( executorService, target.size(), ( offset, length ) -> {
+				final Cursor< A > sourceCursor = ii.cursor();
+				final Cursor< B > targetCursor = target.cursor();
+				sourceCursor.jumpFwd( offset );
+				targetCursor.jumpFwd( offset );
+				for ( long i = 0; i < length; ++i )
+				{
+					converter.convert( sourceCursor.next(), targetCursor.next() );
+				}
+			} );
 		}
 		else if ( target.iterationOrder() instanceof FlatIterationOrder )
 		{
-			final Cursor< B > targetCursor = target.cursor();
-			targetCursor.fwd();
 			final FinalInterval sourceInterval = new FinalInterval( min, max );
 
-			// use localizing cursor
-			final RandomAccess< A > sourceRandomAccess = source.randomAccess( sourceInterval );
-			sourceRandomAccess.setPosition( position );
-
 			final long cr = -target.dimension( 0 );
 
 			final long width = target.dimension( 0 );
 			final long height = target.dimension( 1 );
 
-			sourceRandomAccess.setPosition( min );
-			for ( long y = 0; y < height; ++y )
-			{
-				for ( long x = 0; x < width; ++x )
+			// split into bands of rows
+			Parallelization.forEachChunk( executorService, height, ( y0, numRows ) -> {
+				final Cursor< B > targetCursor = target.cursor();
+				targetCursor.jumpFwd( y0 * width + 1 );
+
+				// use localizing cursor
+				final RandomAccess< A > sourceRandomAccess = source.randomAccess( sourceInterval );
+				sourceRandomAccess.setPosition( min );
+				sourceRandomAccess.move( y0, dimY );
+				for ( long y = 0; y < numRows; ++y )
 				{
-					converter.convert( sourceRandomAccess.get(), targetCursor.get() );
-					sourceRandomAccess.fwd( dimX );
-					targetCursor.fwd();
+					for ( long x = 0; x < width; ++x )
+					{
+						converter.convert( sourceRandomAccess.get(), targetCursor.get() );
+						sourceRandomAccess.fwd( dimX );
+						targetCursor.fwd();
+					}
+					sourceRandomAccess.move( cr, dimX );
+					sourceRandomAccess.fwd( dimY );
 				}
-				sourceRandomAccess.move( cr, dimX );
-				sourceRandomAccess.fwd( dimY );
-			}
-
+			} );
 		}
 		else
 		{
-			final Cursor< B > targetCursor = target.localizingCursor();
-			
-			// use localizing cursor
-			final RandomAccess< A > sourceRandomAccess = source.randomAccess();
-			sourceRandomAccess.setPosition( position );
-			while ( targetCursor.hasNext() )
-			{
-				final B b = targetCursor.next();
-				sourceRandomAccess.setPosition( targetCursor.getLongPosition( 0 ), dimX );
-				sourceRandomAccess.setPosition( targetCursor.getLongPosition( 1 ), dimY );
-
-				converter.convert( sourceRandomAccess.get(), b );
-			}
+			Parallelization.forEachChunk( executorService, target.size(), ( offset, length ) -> {
+				final Cursor< B > targetCursor = target.localizingCursor();
+				targetCursor.jumpFwd( offset );
+
+				// use localizing cursor
+				final RandomAccess< A > sourceRandomAccess = source.randomAccess();
+				sourceRandomAccess.setPosition( position );
+				for ( long i = 0; i < length; ++i )
+				{
+					final B b = targetCursor.next();
+					sourceRandomAccess.setPosition( targetCursor.getLongPosition( 0 ), dimX );
+					sourceRandomAccess.setPosition( targetCursor.getLongPosition( 1 ), dimY );
+
+					converter.convert( sourceRandomAccess.get(), b );
+				}
+			} );
 		}
 	}
 }
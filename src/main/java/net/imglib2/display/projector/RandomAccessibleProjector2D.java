@@ -33,6 +33,10 @@
  */
 package net.imglib2.display.projector;
 
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
 import net.imglib2.FinalInterval;
 import net.imglib2.FlatIterationOrder;
 import net.imglib2.IterableInterval;
@@ -40,6 +44,7 @@ import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessible;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.converter.Converter;
+import net.imglib2.util.Parallelization;
 
 /**
  * A general 2D Projector that uses two dimensions as input to create the 2D
@@ -105,6 +110,28 @@ public class RandomAccessibleProjector2D< A, B > extends AbstractProjector2D
 		this.numDimensions = source.numDimensions();
 	}
 
+	/**
+	 * Render in parallel, using the common {@link ForkJoinPool}.
+	 *
+	 * @see #multiThreaded(ExecutorService)
+	 */
+	public RandomAccessibleProjector2D< A, B > multiThreaded()
+	{
+		return multiThreaded( ForkJoinPool.commonPool() );
+	}
+
+	/**
+	 * Render in parallel, using the given {@link ExecutorService}. The target
+	 * is split into bands of rows, which are rendered concurrently, each with
+	 * its own {@link RandomAccess}es. The {@link Converter} is shared between
+	 * threads, so it must be thread-safe.
+	 */
+	public RandomAccessibleProjector2D< A, B > multiThreaded( final ExecutorService executorService )
+	{
+		this.executorService = Objects.requireNonNull( executorService );
+		return this;
+	}
+
 	/**
 	 * projects data from the source to the target and applies the former
 	 * specified {@link Converter} e.g. for normalization.
@@ -123,27 +150,31 @@ public class RandomAccessibleProjector2D< A, B > extends AbstractProjector2D
 
 		final long cr = -target.dimension( dimX );
 
-		final RandomAccess< B > targetRandomAccess = target.randomAccess( target );
-		final RandomAccess< A > sourceRandomAccess = source.randomAccess( sourceInterval );
-
 		final long width = target.dimension( dimX );
 		final long height = target.dimension( dimY );
 
-		sourceRandomAccess.setPosition( min );
-		targetRandomAccess.setPosition( min[ dimX ], dimX );
-		targetRandomAccess.setPosition( min[ dimY ], dimY );
-		for ( long y = 0; y < height; ++y )
-		{
-			for ( long x = 0; x < width; ++x )
+		// split into bands of rows
+		Parallelization.forEachChunk( executorService, height, ( y0, numRows ) -> {
+			final RandomAccess< B > targetRandomAccess = target.randomAccess( target );
+			final RandomAccess< A > sourceRandomAccess = source.randomAccess( sourceInterval );
+
+			sourceRandomAccess.setPosition( min );
+			sourceRandomAccess.move( y0, dimY );
+			targetRandomAccess.setPosition( min[ dimX ], dimX );
+			targetRandomAccess.setPosition( min[ dimY ] + y0, dimY );
+			for ( long y = 0; y < numRows; ++y )
 			{
-				converter.convert( sourceRandomAccess.get(), targetRandomAccess.get() );
-				sourceRandomAccess.fwd( dimX );
-				targetRandomAccess.fwd( dimX );
+				for ( long x = 0; x < width; ++x )
+				{
+					converter.convert( sourceRandomAccess.get(), targetRandomAccess.get() );
+					sourceRandomAccess.fwd( dimX );
+					targetRandomAccess.fwd( dimX );
+				}
+				sourceRandomAccess.move( cr, dimX );
+				targetRandomAccess.move( cr, dimX );
+				sourceRandomAccess.fwd( dimY );
+				targetRandomAccess.fwd( dimY );
 			}
-			sourceRandomAccess.move( cr, dimX );
-			targetRandomAccess.move( cr, dimX );
-			sourceRandomAccess.fwd( dimY );
-			targetRandomAccess.fwd( dimY );
-		}
+		} );
 	}
 }
@@ -35,6 +35,9 @@
 package net.imglib2.display.projector.composite;
 
 import java.util.ArrayList;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 
 import net.imglib2.Cursor;
 import net.imglib2.FinalInterval;
@@ -44,6 +47,7 @@ import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.converter.Converter;
 import net.imglib2.display.projector.AbstractProjector2D;
 import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.util.Parallelization;
 
 /**
  * Creates a composite image from across multiple dimensional positions along an
@@ -137,6 +141,29 @@ public class CompositeXYProjector< A > extends AbstractProjector2D
 		return true;
 	}
 
+	/**
+	 * Render in parallel, using the common {@link ForkJoinPool}.
+	 *
+	 * @see #multiThreaded(ExecutorService)
+	 */
+	public CompositeXYProjector< A > multiThreaded()
+	{
+		return multiThreaded( ForkJoinPool.commonPool() );
+	}
+
+	/**
+	 * Render in parallel, using the given {@link ExecutorService}. The target
+	 * is split into bands of consecutive pixels (in the iteration order of the
+	 * target), which are rendered concurrently, each with its own cursor and
+	 * {@link RandomAccess}. The {@link Converter}s are shared between threads,
+	 * so they must be thread-safe.
+	 */
+	public CompositeXYProjector< A > multiThreaded( final ExecutorService executorService )
+	{
+		this.executorService = Objects.requireNonNull( executorService );
+		return this;
+	}
+
 	// -- Projector methods --
 
 	// private static long calls = 0;
@@ -182,41 +209,45 @@ public class CompositeXYProjector< A > extends AbstractProjector2D
 			return;
 		}
 
-		final Cursor< ARGBType > targetCursor = target.localizingCursor();
-		final ARGBType bi = new ARGBType();
+		Parallelization.forEachChunk( executorService, target.size(), ( offset, length ) -> {
+			final RandomAccess< A > sourceRandomAccessCopy = sourceRandomAccess.copyRandomAccess();
+			final Cursor< ARGBType > targetCursor = target.localizingCursor();
+			targetCursor.jumpFwd( offset );
+			final ARGBType bi = new ARGBType();
 
-		while ( targetCursor.hasNext() )
-		{
-			targetCursor.fwd();
-			sourceRandomAccess.setPosition( targetCursor.getLongPosition( 0 ), 0 );
-			sourceRandomAccess.setPosition( targetCursor.getLongPosition( 1 ), 1 );
-			int aSum = 0, rSum = 0, gSum = 0, bSum = 0;
-			for ( int i = 0; i < size; i++ )
+			for ( long j = 0; j < length; ++j )
 			{
-				sourceRandomAccess.setPosition( currentPositions[ i ], dimIndex );
-				currentConverters[ i ].convert( sourceRandomAccess.get(), bi );
-
-				// accumulate converted result
-				final int value = bi.get();
-				final int a = ARGBType.alpha( value );
-				final int r = ARGBType.red( value );
-				final int g = ARGBType.green( value );
-				final int b = ARGBType.blue( value );
-				aSum += a;
-				rSum += r;
-				gSum += g;
-				bSum += b;
+				targetCursor.fwd();
+				sourceRandomAccessCopy.setPosition( targetCursor.getLongPosition( 0 ), 0 );
+				sourceRandomAccessCopy.setPosition( targetCursor.getLongPosition( 1 ), 1 );
+				int aSum = 0, rSum = 0, gSum = 0, bSum = 0;
+				for ( int i = 0; i < size; i++ )
+				{
+					sourceRandomAccessCopy.setPosition( currentPositions[ i ], dimIndex );
+					currentConverters[ i ].convert( sourceRandomAccessCopy.get(), bi );
+
+					// accumulate converted result
+					final int value = bi.get();
+					final int a = ARGBType.alpha( value );
+					final int r = ARGBType.red( value );
+					final int g = ARGBType.green( value );
+					final int b = ARGBType.blue( value );
+					aSum += a;
+					rSum += r;
+					gSum += g;
+					bSum += b;
+				}
+				if ( aSum > 255 )
+					aSum = 255;
+				if ( rSum > 255 )
+					rSum = 255;
+				if ( gSum > 255 )
+					gSum = 255;
+				if ( bSum > 255 )
+					bSum = 255;
+				targetCursor.get().set( ARGBType.rgba( rSum, gSum, bSum, aSum ) );
 			}
-			if ( aSum > 255 )
-				aSum = 255;
-			if ( rSum > 255 )
-				rSum = 255;
-			if ( gSum > 255 )
-				gSum = 255;
-			if ( bSum > 255 )
-				bSum = 255;
-			targetCursor.get().set( ARGBType.rgba( rSum, gSum, bSum, aSum ) );
-		}
+		} );
 	}
 
 	// -- Helper methods --
@@ -265,13 +296,17 @@ public class CompositeXYProjector< A > extends AbstractProjector2D
 
 	protected void mapSingle( final RandomAccess< A > sourceRandomAccess, final Converter< A, ARGBType > conv )
 	{
-		final Cursor< ARGBType > targetCursor = target.localizingCursor();
-		while ( targetCursor.hasNext() )
-		{
-			targetCursor.fwd();
-			sourceRandomAccess.setPosition( targetCursor.getLongPosition( 0 ), 0 );
-			sourceRandomAccess.setPosition( targetCursor.getLongPosition( 1 ), 1 );
-			conv.convert( sourceRandomAccess.get(), targetCursor.get() );
-		}
+		Parallelization.forEachChunk( executorService, target.size(), ( offset, length ) -> {
+			final RandomAccess< A > sourceRandomAccessCopy = sourceRandomAccess.copyRandomAccess();
+			final Cursor< ARGBType > targetCursor = target.localizingCursor();
+			targetCursor.jumpFwd( offset );
+			for ( long j = 0; j < length; ++j )
+			{
+				targetCursor.fwd();
+				sourceRandomAccessCopy.setPosition( targetCursor.getLongPosition( 0 ), 0 );
+				sourceRandomAccessCopy.setPosition( targetCursor.getLongPosition( 1 ), 1 );
+				conv.convert( sourceRandomAccessCopy.get(), targetCursor.get() );
+			}
+		} );
 	}
 }
@@ -33,6 +33,9 @@
  */
 package net.imglib2.display.projector.volatiles;
 
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
 import net.imglib2.Cursor;
 import net.imglib2.FinalInterval;
 import net.imglib2.IterableInterval;
@@ -42,12 +45,21 @@ import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.Volatile;
 import net.imglib2.converter.Converter;
 import net.imglib2.display.projector.IterableIntervalProjector2D;
+import net.imglib2.util.Parallelization;
 import net.imglib2.view.Views;
 
 /**
  * {@link IterableIntervalProjector2D} for {@link Volatile} input. After each
  * {@link #map()} call, the projector has a {@link #isValid() state} that
  * signalizes whether all projected pixels were valid.
+ * <p>
+ * The projector remembers which target pixels were rendered from valid data.
+ * Subsequent {@link #map()} calls only render the pixels that were invalid,
+ * so that progressive loading costs time proportional to the newly arrived
+ * data. The remembered state is discarded, and all pixels are rendered again,
+ * when the position of the projector changes, or when {@link #invalidate()}
+ * is called, e.g., because the source or the converter changed.
+ * </p>
  *
  * @author Stephan Saalfeld
  */
@@ -55,9 +67,26 @@ public class Volatile2DRandomAccessibleProjector< T, A extends Volatile< T >, B
 {
 	protected boolean valid = false;
 
+	/**
+	 * for each target pixel (in iteration order), whether it was rendered
+	 * from valid data.
+	 */
+	private boolean[] validPixels = null;
+
+	/**
+	 * the number of target pixels that were not rendered from valid data.
+	 */
+	private long numInvalidPixels;
+
+	/**
+	 * the position of the last {@link #map()} call.
+	 */
+	private final long[] lastPosition;
+
 	public Volatile2DRandomAccessibleProjector( final int dimX, final int dimY, final RandomAccessible< A > source, final RandomAccessibleInterval< B > target, final Converter< ? super A, B > converter )
 	{
 		super( dimX, dimY, source, Views.iterable( target ), converter );
+		lastPosition = new long[ position.length ];
 	}
 
 	/**
@@ -68,13 +97,50 @@ public class Volatile2DRandomAccessibleProjector< T, A extends Volatile< T >, B
 		return valid;
 	}
 
+	/**
+	 * @return the number of target pixels that were not rendered from
+	 *         {@link Volatile#isValid() valid} data in the last {@link #map()}
+	 *         call.
+	 */
+	public long getNumInvalidPixels()
+	{
+		return numInvalidPixels;
+	}
+
+	/**
+	 * Forget which target pixels were rendered from valid data, so that the
+	 * next {@link #map()} call renders all pixels.
+	 */
+	public void invalidate()
+	{
+		validPixels = null;
+		valid = false;
+	}
+
 	/**
 	 * projects data from the source to the target and applies the former
-	 * specified {@link Converter} e.g. for normalization.
+	 * specified {@link Converter} e.g. for normalization. Only target pixels
+	 * that were not rendered from valid data before are rendered.
 	 */
 	@Override
 	public void map()
 	{
+		final long size = target.size();
+		if ( validPixels == null || validPixels.length != size || !Arrays.equals( position, lastPosition ) )
+		{
+			if ( size > Integer.MAX_VALUE )
+				throw new IllegalArgumentException( "Target is too large" );
+			validPixels = new boolean[ ( int ) size ];
+			numInvalidPixels = size;
+			System.arraycopy( position, 0, lastPosition, 0, position.length );
+		}
+		else if ( numInvalidPixels == 0 )
+		{
+			// nothing to do
+			valid = true;
+			return;
+		}
+
 		// fix interval for all dimensions
 		for ( int d = 0; d < position.length; ++d )
 			min[ d ] = max[ d ] = position[ d ];
@@ -85,29 +151,62 @@ public class Volatile2DRandomAccessibleProjector< T, A extends Volatile< T >, B
 		max[ 1 ] = target.max( 1 );
 
 		final IterableInterval< A > srcIterable = Views.iterable( Views.interval( source, new FinalInterval( min, max ) ) );
-		final Cursor< B > targetCursor = target.localizingCursor();
 
+		final boolean[] validPixels = this.validPixels;
+		final AtomicLong numInvalid = new AtomicLong();
 		if ( target.iterationOrder().equals( srcIterable.iterationOrder() ) )
 		{
 			// use cursors
-			final Cursor< A > sourceCursor = srcIterable.cursor();
-			while ( targetCursor.hasNext() )
-			{
-				converter.convert( sourceCursor.next(), targetCursor.next() );
-			}
+			Parallelization.forEachChunk( executorService, size, ( offset, length ) -> {
+				final Cursor< A > sourceCursor = srcIterable.cursor();
+				final Cursor< B > targetCursor = target.cursor();
+				sourceCursor.jumpFwd( offset );
+				targetCursor.jumpFwd( offset );
+				long chunkInvalid = 0;
+				for ( int i = ( int ) offset; i < offset + length; ++i )
+				{
+					sourceCursor.fwd();
+					targetCursor.fwd();
+					if ( validPixels[ i ] )
+						continue;
+					final A a = sourceCursor.get();
+					if ( a.isValid() )
+						validPixels[ i ] = true;
+					else
+						++chunkInvalid;
+					converter.convert( a, targetCursor.get() );
+				}
+				numInvalid.addAndGet( chunkInvalid );
+			} );
 		}
 		else
 		{
 			// use localizing cursor
-			final RandomAccess< A > sourceRandomAccess = source.randomAccess();
-			while ( targetCursor.hasNext() )
-			{
-				final B b = targetCursor.next();
-				sourceRandomAccess.setPosition( targetCursor.getLongPosition( 0 ), 0 );
-				sourceRandomAccess.setPosition( targetCursor.getLongPosition( 1 ), 1 );
-
-				converter.convert( sourceRandomAccess.get(), b );
-			}
+			Parallelization.forEachChunk( executorService, size, ( offset, length ) -> {
+				final Cursor< B > targetCursor = target.localizingCursor();
+				targetCursor.jumpFwd( offset );
+				final RandomAccess< A > sourceRandomAccess = source.randomAccess();
+				sourceRandomAccess.setPosition( position );
+				long chunkInvalid = 0;
+				for ( int i = ( int ) offset; i < offset + length; ++i )
+				{
+					targetCursor.fwd();
+					if ( validPixels[ i ] )
+						continue;
+					sourceRandomAccess.setPosition( targetCursor.getLongPosition( 0 ), 0 );
+					sourceRandomAccess.setPosition( targetCursor.getLongPosition( 1 ), 1 );
+
+					final A a = sourceRandomAccess.get();
+					if ( a.isValid() )
+						validPixels[ i ] = true;
+					else
+						++chunkInvalid;
+					converter.convert( a, targetCursor.get() );
+				}
+				numInvalid.addAndGet( chunkInvalid );
+			} );
 		}
+		numInvalidPixels = numInvalid.get();
+		valid = numInvalidPixels == 0;
 	}
 }
@@ -138,6 +138,18 @@ public class DiscreteFrequencyDistribution implements Img< LongType >
 		accessor.get().set( value );
 	}
 
+	/**
+	 * Adds {@code count} to the frequency count associated with a given bin.
+	 * The count may be negative.
+	 */
+	public void addFrequency( final long[] binPos, final long count )
+	{
+		accessor.setPosition( binPos );
+		final LongType value = accessor.get();
+		value.set( value.get() + count );
+		totalValues += count;
+	}
+
 	/**
 	 * Returns the relative frequency {@code (0 <= f <= 1)} associated with a given bin.
 	 */
@@ -34,16 +34,22 @@
 
 package net.imglib2.histogram;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 
 import net.imglib2.Cursor;
 import net.imglib2.Interval;
+import net.imglib2.IterableInterval;
 import net.imglib2.Positionable;
 import net.imglib2.RandomAccess;
 import net.imglib2.RealPositionable;
 import net.imglib2.img.Img;
 import net.imglib2.img.ImgFactory;
 import net.imglib2.type.numeric.integer.LongType;
+import net.imglib2.util.Parallelization;
 
 /**
  * A Histogram1d is a histogram that tracks up to four kinds of values: 1)
@@ -449,6 +455,56 @@ public class Histogram1d< T > implements Img< LongType >
 		subtract( data );
 	}
 
+	/**
+	 * Counts the data contained in the given data source using the underlying
+	 * bin distribution. The data is split into chunks which are counted in
+	 * parallel using the given {@link ExecutorService}. Each chunk is counted
+	 * into its own {@code long[]} bins, which are merged into this histogram
+	 * afterwards.
+	 * 
+	 * @param data
+	 *            The total data to count
+	 * @param executorService
+	 *            The executor used to count chunks of the data in parallel
+	 */
+	public void countData( final IterableInterval< T > data, final ExecutorService executorService )
+	{
+		reset();
+		if ( data.size() > 0 )
+			firstValue = data.firstElement();
+		modifyCounts( data, executorService, 1 );
+	}
+
+	/**
+	 * Counts additional data contained in a given iterable interval. The data
+	 * is counted in parallel as in
+	 * {@link #countData(IterableInterval, ExecutorService)}.
+	 * 
+	 * @param data
+	 *            The new data to count
+	 * @param executorService
+	 *            The executor used to count chunks of the data in parallel
+	 */
+	public void addData( final IterableInterval< T > data, final ExecutorService executorService )
+	{
+		modifyCounts( data, executorService, 1 );
+	}
+
+	/**
+	 * Uncounts some original data contained in a given iterable interval. The
+	 * data is processed in parallel as in
+	 * {@link #countData(IterableInterval, ExecutorService)}.
+	 * 
+	 * @param data
+	 *            The old data to uncount
+	 * @param executorService
+	 *            The executor used to count chunks of the data in parallel
+	 */
+	public void subtractData( final IterableInterval< T > data, final ExecutorService executorService )
+	{
+		modifyCounts( data, executorService, -1 );
+	}
+
 	/**
 	 * Directly increment a bin by position.
 	 * 
@@ -765,4 +821,52 @@ public class Histogram1d< T > implements Img< LongType >
 		}
 	}
 
+	/**
+	 * Counts the data in chunks, in parallel. The last element of the bins
+	 * array of each chunk holds the number of ignored values. The counts are
+	 * multiplied by {@code sign} and added to the distribution.
+	 */
+	private void modifyCounts( final IterableInterval< T > data, final ExecutorService executorService, final int sign )
+	{
+		final int binCount = ( int ) getBinCount();
+		final long size = data.size();
+		final long numChunks = Math.min( size, 4L * Parallelization.numThreads( executorService ) );
+		final List< Callable< long[] > > tasks = new ArrayList<>();
+		for ( long i = 0; i < numChunks; i++ )
+		{
+			final long offset = i * size / numChunks;
+			final long length = ( i + 1 ) * size / numChunks - offset;
+			final BinMapper1d< T > chunkMapper = mapper.copy();
+			tasks.add( () -> {
+				final long[] bins = new long[ binCount + 1 ];
+				final Cursor< T > cursor = data.cursor();
+				cursor.jumpFwd( offset );
+				for ( long l = 0; l < length; ++l )
+				{
+					final long bin = chunkMapper.map( cursor.next() );
+					if ( bin == Long.MIN_VALUE || bin == Long.MAX_VALUE )
+						++bins[ binCount ];
+					else
+						++bins[ ( int ) bin ];
+				}
+				return bins;
+			} );
+		}
+
+		final long[] total = new long[ binCount + 1 ];
+		for ( final long[] bins : Parallelization.invokeAll( executorService, tasks ) )
+			for ( int i = 0; i <= binCount; ++i )
+				total[ i ] += bins[ i ];
+
+		for ( int i = 0; i < binCount; ++i )
+		{
+			if ( total[ i ] != 0 )
+			{
+				pos[ 0 ] = i;
+				distrib.addFrequency( pos, sign * total[ i ] );
+			}
+		}
+		ignoredCount += sign * total[ binCount ];
+	}
+
 }
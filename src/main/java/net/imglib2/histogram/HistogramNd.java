@@ -37,15 +37,20 @@ package net.imglib2.histogram;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 
 import net.imglib2.Cursor;
 import net.imglib2.Interval;
+import net.imglib2.IterableInterval;
 import net.imglib2.Positionable;
 import net.imglib2.RandomAccess;
 import net.imglib2.RealPositionable;
 import net.imglib2.img.Img;
 import net.imglib2.img.ImgFactory;
 import net.imglib2.type.numeric.integer.LongType;
+import net.imglib2.util.IntervalIndexer;
+import net.imglib2.util.Parallelization;
 
 // TODO - calculate lazily but should be able to count upper/lower/middle in
 // one pass rather than the multiple passes that are now in place.
@@ -804,6 +809,53 @@ public class HistogramNd< T > implements Img< LongType >
 		subtract( data );
 	}
 
+	/**
+	 * Counts the data contained in the given data sources using the underlying
+	 * bin distribution. The data sources must have equal iteration order. The
+	 * data is split into chunks which are counted in parallel using the given
+	 * {@link ExecutorService}. Each chunk is counted into its own
+	 * {@code long[]} bins, which are merged into this histogram afterwards.
+	 * 
+	 * @param data
+	 *            The total data to count
+	 * @param executorService
+	 *            The executor used to count chunks of the data in parallel
+	 */
+	public void countData( final List< ? extends IterableInterval< T >> data, final ExecutorService executorService )
+	{
+		reset();
+		modifyCounts( data, executorService, 1 );
+	}
+
+	/**
+	 * Counts additional data contained in the given data sources. The data is
+	 * counted in parallel as in {@link #countData(List, ExecutorService)}.
+	 * 
+	 * @param data
+	 *            The new data to count
+	 * @param executorService
+	 *            The executor used to count chunks of the data in parallel
+	 */
+	public void addData( final List< ? extends IterableInterval< T >> data, final ExecutorService executorService )
+	{
+		modifyCounts( data, executorService, 1 );
+	}
+
+	/**
+	 * Uncounts some original data contained in the given data sources. The
+	 * data is processed in parallel as in
+	 * {@link #countData(List, ExecutorService)}.
+	 * 
+	 * @param data
+	 *            The old data to uncount
+	 * @param executorService
+	 *            The executor used to count chunks of the data in parallel
+	 */
+	public void subtractData( final List< ? extends IterableInterval< T >> data, final ExecutorService executorService )
+	{
+		modifyCounts( data, executorService, -1 );
+	}
+
 	/**
 	 * Directly increment a bin by position.
 	 * 
@@ -1098,6 +1150,86 @@ public class HistogramNd< T > implements Img< LongType >
 		while ( hasNext );
 	}
 
+	/**
+	 * Counts the data in chunks, in parallel. The last element of the bins
+	 * array of each chunk holds the number of ignored values. The counts are
+	 * multiplied by {@code sign} and added to the distribution.
+	 */
+	private void modifyCounts( final List< ? extends IterableInterval< T >> data, final ExecutorService executorService, final int sign )
+	{
+		final int n = mappers.size();
+		if ( data.size() != n )
+			throw new IllegalArgumentException( "number of data sources does not match number of bin mappers" );
+		final Object iterationOrder = data.get( 0 ).iterationOrder();
+		long size = Long.MAX_VALUE;
+		for ( final IterableInterval< T > d : data )
+		{
+			if ( !iterationOrder.equals( d.iterationOrder() ) )
+				throw new IllegalArgumentException( "data sources must have equal iteration order" );
+			size = Math.min( size, d.size() );
+		}
+		final long[] dims = new long[ n ];
+		distrib.dimensions( dims );
+		final long numBins = distrib.size();
+		if ( numBins >= Integer.MAX_VALUE )
+			throw new IllegalArgumentException( "too many bins for parallel counting" );
+		final int binCount = ( int ) numBins;
+
+		final long numChunks = Math.min( size, 4L * Parallelization.numThreads( executorService ) );
+		final List< Callable< long[] > > tasks = new ArrayList<>();
+		for ( long i = 0; i < numChunks; i++ )
+		{
+			final long offset = i * size / numChunks;
+			final long length = ( i + 1 ) * size / numChunks - offset;
+			final List< BinMapper1d< T > > chunkMappers = new ArrayList<>( n );
+			for ( final BinMapper1d< T > mapper : mappers )
+				chunkMappers.add( mapper.copy() );
+			tasks.add( () -> {
+				final long[] bins = new long[ binCount + 1 ];
+				final List< Cursor< T > > cursors = new ArrayList<>( n );
+				for ( final IterableInterval< T > d : data )
+				{
+					final Cursor< T > cursor = d.cursor();
+					cursor.jumpFwd( offset );
+					cursors.add( cursor );
+				}
+				final long[] binPos = new long[ n ];
+				for ( long l = 0; l < length; ++l )
+				{
+					boolean ignored = false;
+					for ( int d = 0; d < n; ++d )
+					{
+						final long bin = chunkMappers.get( d ).map( cursors.get( d ).next() );
+						if ( bin == Long.MIN_VALUE || bin == Long.MAX_VALUE )
+							ignored = true;
+						binPos[ d ] = bin;
+					}
+					if ( ignored )
+						++bins[ binCount ];
+					else
+						++bins[ ( int ) IntervalIndexer.positionToIndex( binPos, dims ) ];
+				}
+				return bins;
+			} );
+		}
+
+		final long[] total = new long[ binCount + 1 ];
+		for ( final long[] bins : Parallelization.invokeAll( executorService, tasks ) )
+			for ( int i = 0; i <= binCount; ++i )
+				total[ i ] += bins[ i ];
+
+		final long[] binPos = new long[ n ];
+		for ( int i = 0; i < binCount; ++i )
+		{
+			if ( total[ i ] != 0 )
+			{
+				IntervalIndexer.indexToPosition( i, dims, binPos );
+				distrib.addFrequency( binPos, sign * total[ i ] );
+			}
+		}
+		ignoredCount += sign * total[ binCount ];
+	}
+
 	private void count( final List< T > values, final Counter counter )
 	{
 		map( values, pos );
@@ -0,0 +1,171 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.img.array;
+
+import net.imglib2.Cursor;
+import net.imglib2.FlatIterationOrder;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.AbstractImg;
+import net.imglib2.img.NativeImg;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.img.cell.CellImg;
+import net.imglib2.type.NativeType;
+
+/**
+ * An image in flat memory layout, like {@link ArrayImg}, that can hold more
+ * than {@link Integer#MAX_VALUE} pixels.
+ * <p>
+ * The flat array is split into segments, each of which is a primitive array
+ * addressed by an {@code int} index. Each segment covers a contiguous range of
+ * the flat index, i.e., a slab that spans the full extent of the fastest
+ * varying dimensions. Internally, the segments are the cells of a
+ * {@link CellImg}. Because the segments are contiguous, iterating the image
+ * cell by cell is the same as iterating in {@link FlatIterationOrder}, so
+ * cursors only have to switch segments a few times and otherwise move through a
+ * flat array like an {@link ArrayCursor}.
+ * </p>
+ * <p>
+ * Use {@link LargeArrayImgFactory} to create {@link LargeArrayImg}s.
+ * </p>
+ *
+ * @param <T>
+ *            the pixel type
+ * @param <A>
+ *            the underlying native access type of each segment
+ */
+public class LargeArrayImg< T extends NativeType< T >, A > extends AbstractImg< T > implements NativeImg< T, A >
+{
+	private final CellImg< T, A > segments;
+
+	private final LargeArrayImgFactory< T > factory;
+
+	/**
+	 * @param segments
+	 *            a {@link CellImg} whose cells are contiguous ranges of the
+	 *            flat index, as created by {@link LargeArrayImgFactory}.
+	 * @param factory
+	 *            the factory that created this image.
+	 */
+	public LargeArrayImg( final CellImg< T, A > segments, final LargeArrayImgFactory< T > factory )
+	{
+		super( segments.getCellGrid().getImgDimensions() );
+		this.segments = segments;
+		this.factory = factory;
+	}
+
+	/**
+	 * @return the {@link CellImg} whose cells are the segments of this image.
+	 */
+	public CellImg< T, A > getSegments()
+	{
+		return segments;
+	}
+
+	/**
+	 * @return the {@link CellGrid} that describes the segments of this image.
+	 */
+	public CellGrid getSegmentGrid()
+	{
+		return segments.getCellGrid();
+	}
+
+	@Override
+	public A update( final Object updater )
+	{
+		return segments.update( updater );
+	}
+
+	@Override
+	public void setLinkedType( final T type )
+	{
+		segments.setLinkedType( type );
+	}
+
+	@Override
+	public T createLinkedType()
+	{
+		return segments.createLinkedType();
+	}
+
+	@Override
+	public Cursor< T > cursor()
+	{
+		return segments.cursor();
+	}
+
+	@Override
+	public Cursor< T > localizingCursor()
+	{
+		return segments.localizingCursor();
+	}
+
+	@Override
+	public RandomAccess< T > randomAccess()
+	{
+		return segments.randomAccess();
+	}
+
+	@Override
+	public RandomAccess< T > randomAccess( final Interval interval )
+	{
+		return segments.randomAccess( interval );
+	}
+
+	@Override
+	public FlatIterationOrder iterationOrder()
+	{
+		return new FlatIterationOrder( this );
+	}
+
+	@Override
+	public LargeArrayImgFactory< T > factory()
+	{
+		return factory;
+	}
+
+	@Override
+	public LargeArrayImg< T, ? > copy()
+	{
+		final LargeArrayImg< T, ? > copy = factory.create( dimension, firstElement().createVariable() );
+
+		final Cursor< T > source = this.cursor();
+		final Cursor< T > target = copy.cursor();
+
+		while ( source.hasNext() )
+			target.next().set( source.next() );
+
+		return copy;
+	}
+}
@@ -0,0 +1,173 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.img.array;
+
+import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.NativeImgFactory;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.img.basictypeaccess.array.CharArray;
+import net.imglib2.img.basictypeaccess.array.DoubleArray;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.img.basictypeaccess.array.ShortArray;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.Fraction;
+
+/**
+ * Factory for creating {@link LargeArrayImg}s. Each segment of the created
+ * images holds at most {@code maxEntitiesPerSegment} entities, by default
+ * {@link #DEFAULT_MAX_ENTITIES_PER_SEGMENT}.
+ */
+public class LargeArrayImgFactory< T extends NativeType< T > > extends NativeImgFactory< T >
+{
+	public static final int DEFAULT_MAX_ENTITIES_PER_SEGMENT = 1 << 30;
+
+	private final int maxEntitiesPerSegment;
+
+	public LargeArrayImgFactory()
+	{
+		this( DEFAULT_MAX_ENTITIES_PER_SEGMENT );
+	}
+
+	public LargeArrayImgFactory( final int maxEntitiesPerSegment )
+	{
+		if ( maxEntitiesPerSegment <= 0 )
+			throw new IllegalArgumentException( "maxEntitiesPerSegment <= 0" );
+		this.maxEntitiesPerSegment = maxEntitiesPerSegment;
+	}
+
+	/**
+	 * Compute the dimensions of segments, such that each segment is a
+	 * contiguous range of the flat index of an image with the given
+	 * {@code dimensions}, and holds at most {@code maxEntitiesPerSegment}
+	 * entities and at most {@code Integer.MAX_VALUE} pixels. Segments span the full extent of the fastest varying
+	 * dimensions, then a part of the next dimension, and have size 1 in all
+	 * remaining dimensions.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if a single pixel needs more than
+	 *             {@code maxEntitiesPerSegment} entities.
+	 */
+	public static int[] getSegmentDimensions( final long[] dimensions, final Fraction entitiesPerPixel, final int maxEntitiesPerSegment ) throws IllegalArgumentException
+	{
+		// the number of pixels in a cell must fit into an int, also for types
+		// with less than one entity per pixel
+		long maxPixels = Math.min( ( long ) ( maxEntitiesPerSegment / entitiesPerPixel.getRatio() ), Integer.MAX_VALUE );
+		while ( maxPixels > 0 && entitiesPerPixel.mulCeil( maxPixels ) > maxEntitiesPerSegment )
+			--maxPixels;
+		if ( maxPixels <= 0 )
+			throw new IllegalArgumentException( "maxEntitiesPerSegment too small for a single pixel." );
+
+		final int n = dimensions.length;
+		final int[] segmentDimensions = new int[ n ];
+		long numPixels = 1;
+		int d = 0;
+		for ( ; d < n && dimensions[ d ] <= maxPixels / numPixels; ++d )
+		{
+			segmentDimensions[ d ] = ( int ) dimensions[ d ];
+			numPixels *= dimensions[ d ];
+		}
+		if ( d < n )
+			segmentDimensions[ d++ ] = ( int ) ( maxPixels / numPixels );
+		for ( ; d < n; ++d )
+			segmentDimensions[ d ] = 1;
+		return segmentDimensions;
+	}
+
+	@Override
+	public LargeArrayImg< T, ? > create( final long[] dim, final T type )
+	{
+		return ( LargeArrayImg< T, ? > ) type.createSuitableNativeImg( this, dim );
+	}
+
+	private CellImgFactory< T > segmentFactory( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		CellImgFactory.verifyDimensions( dimensions );
+		return new CellImgFactory<>( getSegmentDimensions( dimensions, entitiesPerPixel, maxEntitiesPerSegment ) );
+	}
+
+	@Override
+	public LargeArrayImg< T, ByteArray > createByteInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return new LargeArrayImg<>( segmentFactory( dimensions, entitiesPerPixel ).createByteInstance( dimensions, entitiesPerPixel ), this );
+	}
+
+	@Override
+	public LargeArrayImg< T, CharArray > createCharInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return new LargeArrayImg<>( segmentFactory( dimensions, entitiesPerPixel ).createCharInstance( dimensions, entitiesPerPixel ), this );
+	}
+
+	@Override
+	public LargeArrayImg< T, ShortArray > createShortInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return new LargeArrayImg<>( segmentFactory( dimensions, entitiesPerPixel ).createShortInstance( dimensions, entitiesPerPixel ), this );
+	}
+
+	@Override
+	public LargeArrayImg< T, IntArray > createIntInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return new LargeArrayImg<>( segmentFactory( dimensions, entitiesPerPixel ).createIntInstance( dimensions, entitiesPerPixel ), this );
+	}
+
+	@Override
+	public LargeArrayImg< T, LongArray > createLongInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return new LargeArrayImg<>( segmentFactory( dimensions, entitiesPerPixel ).createLongInstance( dimensions, entitiesPerPixel ), this );
+	}
+
+	@Override
+	public LargeArrayImg< T, FloatArray > createFloatInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return new LargeArrayImg<>( segmentFactory( dimensions, entitiesPerPixel ).createFloatInstance( dimensions, entitiesPerPixel ), this );
+	}
+
+	@Override
+	public LargeArrayImg< T, DoubleArray > createDoubleInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return new LargeArrayImg<>( segmentFactory( dimensions, entitiesPerPixel ).createDoubleInstance( dimensions, entitiesPerPixel ), this );
+	}
+
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	@Override
+	public < S > ImgFactory< S > imgFactory( final S type ) throws IncompatibleTypeException
+	{
+		if ( NativeType.class.isInstance( type ) )
+			return new LargeArrayImgFactory( maxEntitiesPerSegment );
+		throw new IncompatibleTypeException( this, type.getClass().getCanonicalName() + " does not implement NativeType." );
+	}
+}
@@ -0,0 +1,219 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.img.array;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.NativeImgFactory;
+import net.imglib2.img.basictypeaccess.nio.AbstractBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.ByteBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.CharBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.DoubleBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.FloatBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.IntBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.LongBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.ShortBufferAccess;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.Fraction;
+
+/**
+ * Factory for {@link ArrayImg}s that store their data in a {@link ByteBuffer}
+ * instead of a primitive Java array. By default, a new direct (off-heap)
+ * {@link ByteBuffer} is allocated for each image. Alternatively, the factory
+ * can be constructed with an existing {@link ByteBuffer}, e.g., a
+ * {@link MappedByteBuffer}, that all created images will wrap without copying.
+ * Use {@link #map(Path, ByteOrder, NativeType, long...)} to map a raw file
+ * into an image.
+ * <p>
+ * Note, that {@link ArrayImg#factory()} and {@link ArrayImg#copy()} of the
+ * created images use a standard {@link ArrayImgFactory}.
+ * </p>
+ */
+public class OffHeapArrayImgFactory< T extends NativeType< T > > extends NativeImgFactory< T >
+{
+	/**
+	 * Provides the {@link ByteBuffer} for an image that requires
+	 * {@code numBytes} bytes.
+	 */
+	@FunctionalInterface
+	private interface BufferProvider
+	{
+		ByteBuffer get( long numBytes ) throws IOException;
+	}
+
+	private final BufferProvider provider;
+
+	/**
+	 * Create a factory that allocates a new direct {@link ByteBuffer} for each
+	 * image.
+	 */
+	public OffHeapArrayImgFactory()
+	{
+		this( ( BufferProvider ) null );
+	}
+
+	/**
+	 * Create a factory that wraps the given {@link ByteBuffer} for each image,
+	 * starting at the position of the buffer, and using the byte order of the
+	 * buffer.
+	 */
+	public OffHeapArrayImgFactory( final ByteBuffer buffer )
+	{
+		this( numBytes -> {
+			if ( buffer.remaining() < numBytes )
+				throw new IllegalArgumentException( "ByteBuffer too small: " + buffer.remaining() + " < " + numBytes + " bytes" );
+			return buffer.duplicate().order( buffer.order() );
+		} );
+	}
+
+	private OffHeapArrayImgFactory( final BufferProvider provider )
+	{
+		this.provider = provider;
+	}
+
+	/**
+	 * Map a raw file into an {@link ArrayImg}. The file is mapped read-write,
+	 * and is enlarged if it is too small to hold the image. Changes to the
+	 * pixels are written to the file.
+	 *
+	 * @param file
+	 *            the raw file.
+	 * @param order
+	 *            the byte order of the file.
+	 * @param type
+	 *            the pixel type.
+	 * @param dimensions
+	 *            the image dimensions.
+	 */
+	public static < T extends NativeType< T > > ArrayImg< T, ? > map( final Path file, final ByteOrder order, final T type, final long... dimensions ) throws IOException
+	{
+		try (final FileChannel channel = FileChannel.open( file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE ))
+		{
+			final OffHeapArrayImgFactory< T > factory = new OffHeapArrayImgFactory<>(
+					( BufferProvider ) numBytes -> channel.map( MapMode.READ_WRITE, 0, numBytes ).order( order ) );
+			return factory.create( dimensions, type );
+		}
+		catch ( final UncheckedIOException e )
+		{
+			throw e.getCause();
+		}
+	}
+
+	@Override
+	public ArrayImg< T, ? > create( final long[] dim, final T type )
+	{
+		return ( ArrayImg< T, ? > ) type.createSuitableNativeImg( this, dim );
+	}
+
+	private < A extends AbstractBufferAccess< A > > ArrayImg< T, A > createInstance( final A creator, final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		final int numEntities = ArrayImgFactory.numEntitiesRangeCheck( dimensions, entitiesPerPixel );
+		final A data;
+		if ( provider == null )
+			data = creator.createArray( numEntities );
+		else
+		{
+			try
+			{
+				data = creator.newInstance( provider.get( ( long ) numEntities * creator.getBytesPerEntity() ) );
+			}
+			catch ( final IOException e )
+			{
+				throw new UncheckedIOException( e );
+			}
+		}
+		return new ArrayImg<>( data, dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayImg< T, ByteBufferAccess > createByteInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new ByteBufferAccess( 0 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayImg< T, CharBufferAccess > createCharInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new CharBufferAccess( 0 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayImg< T, ShortBufferAccess > createShortInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new ShortBufferAccess( 0 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayImg< T, IntBufferAccess > createIntInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new IntBufferAccess( 0 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayImg< T, LongBufferAccess > createLongInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new LongBufferAccess( 0 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayImg< T, FloatBufferAccess > createFloatInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new FloatBufferAccess( 0 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayImg< T, DoubleBufferAccess > createDoubleInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new DoubleBufferAccess( 0 ), dimensions, entitiesPerPixel );
+	}
+
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	@Override
+	public < S > ImgFactory< S > imgFactory( final S type ) throws IncompatibleTypeException
+	{
+		if ( NativeType.class.isInstance( type ) )
+			return new OffHeapArrayImgFactory( provider );
+		throw new IncompatibleTypeException( this, type.getClass().getCanonicalName() + " does not implement NativeType." );
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.img.basictypeaccess.nio;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+
+/**
+ * Abstract base class for accesses that store their data in a
+ * {@link ByteBuffer} instead of a primitive Java array. The buffer may be
+ * direct, i.e., live outside the Java heap, or may be a
+ * {@link java.nio.MappedByteBuffer} that maps a file into memory.
+ * <p>
+ * {@link #getCurrentStorageArray()} returns the underlying {@link ByteBuffer}.
+ * Note that, unlike the primitive array accesses, buffer accesses cannot be
+ * serialized.
+ * </p>
+ *
+ * @param <A>
+ *            the type of the access itself
+ */
+public abstract class AbstractBufferAccess< A extends AbstractBufferAccess< A > > implements ArrayDataAccess< A >
+{
+	private static final long serialVersionUID = 1L;
+
+	protected final transient ByteBuffer buffer;
+
+	public AbstractBufferAccess( final ByteBuffer buffer )
+	{
+		this.buffer = buffer;
+	}
+
+	/**
+	 * Create an access of the same type that wraps the given
+	 * {@link ByteBuffer}.
+	 */
+	public abstract A newInstance( ByteBuffer buffer );
+
+	/**
+	 * @return the number of bytes per entity stored in this access.
+	 */
+	public abstract int getBytesPerEntity();
+
+	@Override
+	public ByteBuffer getCurrentStorageArray()
+	{
+		return buffer;
+	}
+
+	/**
+	 * Allocate a direct {@link ByteBuffer} in native byte order that can hold
+	 * {@code numEntities} entities of {@code bytesPerEntity} bytes each.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the buffer would be larger than
+	 *             {@link Integer#MAX_VALUE} bytes.
+	 */
+	public static ByteBuffer allocate( final int numEntities, final int bytesPerEntity ) throws IllegalArgumentException
+	{
+		final long numBytes = ( long ) numEntities * bytesPerEntity;
+		if ( numBytes > Integer.MAX_VALUE )
+			throw new IllegalArgumentException( "Number of bytes too large for a ByteBuffer: " + numBytes + " > " + Integer.MAX_VALUE );
+		return ByteBuffer.allocateDirect( ( int ) numBytes ).order( ByteOrder.nativeOrder() );
+	}
+}
@@ -0,0 +1,323 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.img.cell;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.imglib2.img.cell.LazyCellImg.Get;
+
+/**
+ * Abstract base class for caches that can be put between a {@link LazyCellImg}
+ * and the {@link Get} method that actually loads its {@link Cell}s.
+ * <p>
+ * If a requested cell is not present in the cache, it is obtained from the
+ * loader and put into the cache. Concurrent requests for the same missing
+ * cell are de-duplicated, i.e., the loader is called only once, and all
+ * requesting threads wait for and receive the same {@link Cell}. If the loader
+ * throws an exception, it is propagated to all waiting threads and the next
+ * request will try to load the cell again.
+ * </p>
+ * <p>
+ * Derived classes implement the storage and eviction policy by implementing
+ * {@link #getIfPresent(long)}, {@link #put(long, Cell)} and
+ * {@link #invalidateAll()}. They must call {@link #onEviction(long, Cell)}
+ * whenever a cell is removed from the cache. If the removed cell is still
+ * available, they should call {@link #markEvicting(long, Cell)} atomically
+ * with its removal. Until {@link #onEviction(long, Cell)} returns, requests for
+ * the cell are then answered with the evicted cell instead of loading it
+ * again. This ensures that an {@link EvictionListener} that writes back
+ * modified cells finishes before the cell can be loaded again.
+ * </p>
+ * <p>
+ * A cell that is answered from an ongoing eviction is put into the cache
+ * again, and may be evicted again before the first eviction finished. The
+ * listener calls for the same cell are then run one after the other, and
+ * the cell is available until the last of them returns. Each call sees the
+ * current data of the cell, so the last write-back contains the newest
+ * data.
+ * </p>
+ *
+ * @param <A>
+ *            the underlying native access type
+ */
+public abstract class AbstractCellCache< A > implements Get< Cell< A > >
+{
+	/**
+	 * Listener that is notified when a {@link Cell} is evicted from an
+	 * {@link AbstractCellCache}.
+	 */
+	@FunctionalInterface
+	public interface EvictionListener< A >
+	{
+		/**
+		 * Called after the cell with the given flattened grid index has been
+		 * removed from the cache. {@code cell} may be {@code null} if the cell
+		 * is not available anymore, e.g., because it was garbage-collected.
+		 */
+		void onEviction( long index, Cell< A > cell );
+	}
+
+	protected final Get< Cell< A > > loader;
+
+	private final ConcurrentHashMap< Long, FutureTask< Cell< A > > > loading = new ConcurrentHashMap<>();
+
+	/**
+	 * Cells that are being evicted, with the number of pending
+	 * {@link #onEviction(long, Cell)} calls for each.
+	 */
+	private final ConcurrentHashMap< Long, Eviction< A > > evicting = new ConcurrentHashMap<>();
+
+	private static final class Eviction< A >
+	{
+		final Cell< A > cell;
+
+		/**
+		 * number of pending evictions, only modified inside
+		 * {@link ConcurrentHashMap#compute}.
+		 */
+		int pending;
+
+		Eviction( final Cell< A > cell )
+		{
+			this.cell = cell;
+		}
+	}
+
+	private final AtomicLong hitCount = new AtomicLong();
+
+	private final AtomicLong missCount = new AtomicLong();
+
+	private final AtomicLong evictionCount = new AtomicLong();
+
+	private volatile EvictionListener< A > evictionListener = null;
+
+	/**
+	 * @param loader
+	 *            is called to obtain cells that are not in the cache.
+	 */
+	public AbstractCellCache( final Get< Cell< A > > loader )
+	{
+		this.loader = loader;
+	}
+
+	@Override
+	public Cell< A > get( final long index )
+	{
+		Cell< A > cell = getIfPresent( index );
+		if ( cell != null )
+		{
+			hitCount.incrementAndGet();
+			return cell;
+		}
+
+		final FutureTask< Cell< A > > task = new FutureTask<>( () -> loader.get( index ) );
+		final FutureTask< Cell< A > > existing = loading.putIfAbsent( index, task );
+		if ( existing != null )
+		{
+			// another thread is already loading the cell
+			hitCount.incrementAndGet();
+			return waitFor( existing );
+		}
+
+		try
+		{
+			// the cell might have been loaded and put by another thread
+			// between getIfPresent() and putIfAbsent()
+			cell = getIfPresent( index );
+			if ( cell != null )
+			{
+				hitCount.incrementAndGet();
+				return cell;
+			}
+
+			// the cell might be in the process of being evicted
+			final Eviction< A > eviction = evicting.get( index );
+			if ( eviction != null )
+			{
+				cell = eviction.cell;
+				hitCount.incrementAndGet();
+				put( index, cell );
+				return cell;
+			}
+
+			missCount.incrementAndGet();
+			task.run();
+			cell = waitFor( task );
+			put( index, cell );
+			return cell;
+		}
+		finally
+		{
+			loading.remove( index, task );
+		}
+	}
+
+	private Cell< A > waitFor( final FutureTask< Cell< A > > task )
+	{
+		try
+		{
+			return task.get();
+		}
+		catch ( final InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException( e );
+		}
+		catch ( final ExecutionException e )
+		{
+			final Throwable cause = e.getCause();
+			if ( cause instanceof RuntimeException )
+				throw ( RuntimeException ) cause;
+			if ( cause instanceof Error )
+				throw ( Error ) cause;
+			throw new RuntimeException( cause );
+		}
+	}
+
+	/**
+	 * Get the cell with the given flattened grid index if it is present in
+	 * the cache.
+	 *
+	 * @return the cell, or {@code null} if it is not present.
+	 */
+	protected abstract Cell< A > getIfPresent( long index );
+
+	/**
+	 * Put a freshly loaded cell into the cache, possibly evicting other cells.
+	 */
+	protected abstract void put( long index, Cell< A > cell );
+
+	/**
+	 * Remove all cells from the cache. Evicted cells are reported to the
+	 * {@link EvictionListener}.
+	 */
+	public abstract void invalidateAll();
+
+	/**
+	 * Should be called by derived classes atomically with the removal of a
+	 * cell from the cache, followed by a call to
+	 * {@link #onEviction(long, Cell)}.
+	 */
+	protected void markEvicting( final long index, final Cell< A > cell )
+	{
+		evicting.compute( index, ( k, e ) -> {
+			if ( e == null || e.cell != cell )
+				e = new Eviction<>( cell );
+			++e.pending;
+			return e;
+		} );
+	}
+
+	/**
+	 * Must be called by derived classes whenever a cell is removed from the
+	 * cache.
+	 */
+	protected void onEviction( final long index, final Cell< A > cell )
+	{
+		evictionCount.incrementAndGet();
+		final Eviction< A > eviction = cell == null ? null : evicting.get( index );
+		if ( eviction == null || eviction.cell != cell )
+		{
+			notifyListener( index, cell );
+			return;
+		}
+		try
+		{
+			// evictions of the same cell must not overlap, such that an older
+			// write-back cannot finish after a newer one
+			synchronized ( eviction )
+			{
+				notifyListener( index, cell );
+			}
+		}
+		finally
+		{
+			evicting.computeIfPresent( index, ( k, e ) -> e == eviction && --e.pending == 0 ? null : e );
+		}
+	}
+
+	private void notifyListener( final long index, final Cell< A > cell )
+	{
+		final EvictionListener< A > listener = evictionListener;
+		if ( listener != null )
+			listener.onEviction( index, cell );
+	}
+
+	/**
+	 * Set a listener that is notified whenever a cell is evicted from the
+	 * cache, or {@code null} to remove the current listener.
+	 */
+	public void setEvictionListener( final EvictionListener< A > listener )
+	{
+		this.evictionListener = listener;
+	}
+
+	/**
+	 * @return how many requests were answered from the cache (including
+	 *         requests that waited for a concurrent load of the same cell).
+	 */
+	public long getHitCount()
+	{
+		return hitCount.get();
+	}
+
+	/**
+	 * @return how many requests had to call the loader.
+	 */
+	public long getMissCount()
+	{
+		return missCount.get();
+	}
+
+	/**
+	 * @return how many cells have been evicted from the cache.
+	 */
+	public long getEvictionCount()
+	{
+		return evictionCount.get();
+	}
+
+	/**
+	 * Reset hit, miss, and eviction counters to zero.
+	 */
+	public void resetStatistics()
+	{
+		hitCount.set( 0 );
+		missCount.set( 0 );
+		evictionCount.set( 0 );
+	}
+}
@@ -0,0 +1,523 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.imglib2.Volatile;
+import net.imglib2.img.basictypeaccess.volatiles.VolatileArrayDataAccess;
+import net.imglib2.img.cell.LazyCellImg.Get;
+import net.imglib2.util.Fraction;
+
+/**
+ * A cache for the {@link Cell}s of a {@link LazyCellImg} with
+ * {@link Volatile} pixels, which loads cells asynchronously.
+ * <p>
+ * If a requested cell is not loaded yet, {@link #get(long)} does not block.
+ * It returns a placeholder cell whose data is not
+ * {@link VolatileArrayDataAccess#isValid() valid}, and enqueues a request to
+ * load the cell. Requests are processed by a pool of fetcher threads, in the
+ * order of a {@link CellLoadQueue}. When a cell is loaded, it replaces the placeholder, and the
+ * {@link LoadListener} is notified. Subsequent requests return the loaded
+ * cell. A renderer can therefore draw what is available, and repaint when
+ * more cells were loaded.
+ * </p>
+ * <p>
+ * {@link #get(long)} requests cells at the {@link #VISIBLE} level. Cells can
+ * be requested ahead of time at the {@link #PREFETCH} or {@link #BACKGROUND}
+ * level with {@link #prefetch(long, int)}. Within a level, the most recent
+ * requests are processed first. When the viewport changes, requests that are
+ * no longer relevant can be discarded with {@link #cancelRequests()}.
+ * </p>
+ * <p>
+ * The loader must return cells with valid data. If it throws an exception
+ * or error, the cell stays invalid, and the next request for it tries again.
+ * The failure is reported to the {@link LoadListener} and kept as
+ * {@link #getLastFailure()}, and the fetcher thread continues with the next
+ * request.
+ * </p>
+ * <p>
+ * Loaded cells and placeholders are kept up to a maximum number of bytes, as
+ * computed by {@link BoundedCellCache#numBytes(Cell)}. When it is exceeded,
+ * the least recently used cells are removed, and are loaded again when they
+ * are requested again.
+ * </p>
+ *
+ * @param <A>
+ *            the underlying volatile access type
+ */
+public class AsyncCellCache< A extends VolatileArrayDataAccess< A > > implements Get< Cell< A > >, Closeable
+{
+	/**
+	 * Priority level of cells that are needed for the current frame.
+	 */
+	public static final int VISIBLE = 0;
+
+	/**
+	 * Priority level of cells that are likely needed for the next frames.
+	 */
+	public static final int PREFETCH = 1;
+
+	/**
+	 * Priority level of cells that are loaded when nothing else is to do.
+	 */
+	public static final int BACKGROUND = 2;
+
+	private static final int NUM_PRIORITY_LEVELS = 3;
+
+	/**
+	 * Listener that is notified when a {@link Cell} of an
+	 * {@link AsyncCellCache} has been loaded.
+	 */
+	@FunctionalInterface
+	public interface LoadListener
+	{
+		/**
+		 * Called by the fetcher thread after the cell with the given
+		 * flattened grid index has been loaded.
+		 */
+		void cellLoaded( long index );
+
+		/**
+		 * Called by the fetcher thread after loading the cell with the given
+		 * flattened grid index failed with {@code cause}.
+		 */
+		default void cellFailed( final long index, final Throwable cause )
+		{}
+	}
+
+	private final CellGrid grid;
+
+	private final A creator;
+
+	private final Fraction entitiesPerPixel;
+
+	private final Get< Cell< A > > loader;
+
+	private static final class Entry< A >
+	{
+		final Cell< A > cell;
+
+		final long weight;
+
+		Entry( final Cell< A > cell, final long weight )
+		{
+			this.cell = cell;
+			this.weight = weight;
+		}
+	}
+
+	private final long maxBytes;
+
+	/**
+	 * loaded cells and placeholders, in least recently used order.
+	 */
+	private final LinkedHashMap< Long, Entry< A > > cells = new LinkedHashMap<>( 16, 0.75f, true );
+
+	/**
+	 * total number of bytes of {@link #cells}.
+	 */
+	private long weight = 0;
+
+	/**
+	 * cells that are being loaded by a fetcher thread.
+	 */
+	private final Set< Long > loading = ConcurrentHashMap.newKeySet();
+
+	private final CellLoadQueue queue = new CellLoadQueue( NUM_PRIORITY_LEVELS );
+
+	/**
+	 * incremented by {@link #invalidateAll()}, to discard loads that were in
+	 * progress.
+	 */
+	private final AtomicInteger generation = new AtomicInteger();
+
+	private final AtomicLong loadCount = new AtomicLong();
+
+	private final AtomicLong failureCount = new AtomicLong();
+
+	private volatile Throwable lastFailure = null;
+
+	private final Thread[] fetchers;
+
+	private volatile LoadListener loadListener = null;
+
+	private volatile boolean closed = false;
+
+	/**
+	 * Create a cache that keeps cells with at most a quarter of the maximum
+	 * heap size.
+	 *
+	 * @param grid
+	 *            the grid of the cells.
+	 * @param creator
+	 *            used to create the (invalid) data of placeholder cells.
+	 * @param entitiesPerPixel
+	 *            the number of entities of the data per pixel.
+	 * @param loader
+	 *            is called by the fetcher threads to load cells.
+	 * @param numFetcherThreads
+	 *            the number of fetcher threads.
+	 */
+	public AsyncCellCache( final CellGrid grid, final A creator, final Fraction entitiesPerPixel, final Get< Cell< A > > loader, final int numFetcherThreads )
+	{
+		this( grid, creator, entitiesPerPixel, loader, numFetcherThreads, Runtime.getRuntime().maxMemory() / 4 );
+	}
+
+	/**
+	 * @param grid
+	 *            the grid of the cells.
+	 * @param creator
+	 *            used to create the (invalid) data of placeholder cells.
+	 * @param entitiesPerPixel
+	 *            the number of entities of the data per pixel.
+	 * @param loader
+	 *            is called by the fetcher threads to load cells.
+	 * @param numFetcherThreads
+	 *            the number of fetcher threads.
+	 * @param maxBytes
+	 *            maximum number of bytes of cell data (of loaded cells and
+	 *            placeholders) held in the cache.
+	 */
+	public AsyncCellCache( final CellGrid grid, final A creator, final Fraction entitiesPerPixel, final Get< Cell< A > > loader, final int numFetcherThreads, final long maxBytes )
+	{
+		if ( numFetcherThreads <= 0 )
+			throw new IllegalArgumentException( "numFetcherThreads <= 0" );
+		if ( maxBytes <= 0 )
+			throw new IllegalArgumentException( "maxBytes <= 0" );
+		this.grid = grid;
+		this.creator = creator;
+		this.entitiesPerPixel = entitiesPerPixel;
+		this.loader = loader;
+		this.maxBytes = maxBytes;
+
+		fetchers = new Thread[ numFetcherThreads ];
+		for ( int i = 0; i < numFetcherThreads; ++i )
+		{
+			fetchers[ i ] = new Thread( this::fetch, "imglib2-cell-fetcher-" + ( i + 1 ) );
+			fetchers[ i ].setDaemon( true );
+			fetchers[ i ].start();
+		}
+	}
+
+	/**
+	 * Get the cell with the given flattened grid index. If it is not loaded
+	 * yet, return a placeholder with invalid data, and request the cell at the
+	 * {@link #VISIBLE} level.
+	 */
+	@Override
+	public Cell< A > get( final long index )
+	{
+		Cell< A > cell = getIfPresent( index );
+		if ( cell == null )
+			cell = putIfAbsent( index, createPlaceholder( index ) );
+		if ( !cell.getData().isValid() )
+			request( index, VISIBLE );
+		return cell;
+	}
+
+	/**
+	 * Request that the cell with the given flattened grid index is loaded, if
+	 * it is not loaded yet.
+	 *
+	 * @param level
+	 *            the priority level, one of {@link #VISIBLE},
+	 *            {@link #PREFETCH}, or {@link #BACKGROUND}.
+	 */
+	public void prefetch( final long index, final int level )
+	{
+		if ( !isLoaded( index ) )
+			request( index, level );
+	}
+
+	/**
+	 * @return whether the cell with the given flattened grid index is loaded.
+	 */
+	public boolean isLoaded( final long index )
+	{
+		final Cell< A > cell = getIfPresent( index );
+		return cell != null && cell.getData().isValid();
+	}
+
+	private Cell< A > getIfPresent( final long index )
+	{
+		synchronized ( cells )
+		{
+			final Entry< A > entry = cells.get( index );
+			return entry == null ? null : entry.cell;
+		}
+	}
+
+	/**
+	 * Put {@code cell} unless there is a cell for {@code index} already.
+	 *
+	 * @return the cell for {@code index} in the cache.
+	 */
+	private Cell< A > putIfAbsent( final long index, final Cell< A > cell )
+	{
+		synchronized ( cells )
+		{
+			final Entry< A > entry = cells.get( index );
+			if ( entry != null )
+				return entry.cell;
+			put( index, cell );
+			return cell;
+		}
+	}
+
+	/**
+	 * Put {@code cell}, and remove least recently used cells while the
+	 * maximum number of bytes is exceeded, but never {@code cell}. Must be
+	 * called while holding the lock on {@link #cells}.
+	 */
+	private void put( final long index, final Cell< A > cell )
+	{
+		final Entry< A > entry = new Entry<>( cell, BoundedCellCache.numBytes( cell ) );
+		final Entry< A > previous = cells.put( index, entry );
+		if ( previous != null )
+			weight -= previous.weight;
+		weight += entry.weight;
+		final Iterator< Entry< A > > it = cells.values().iterator();
+		while ( weight > maxBytes && cells.size() > 1 )
+		{
+			weight -= it.next().weight;
+			it.remove();
+		}
+	}
+
+	private Cell< A > createPlaceholder( final long index )
+	{
+		final int n = grid.numDimensions();
+		final long[] cellMin = new long[ n ];
+		final int[] cellDims = new int[ n ];
+		grid.getCellDimensions( index, cellMin, cellDims );
+		long numPixels = 1;
+		for ( int d = 0; d < n; ++d )
+			numPixels *= cellDims[ d ];
+		final A data = creator.createArray( ( int ) entitiesPerPixel.mulCeil( numPixels ), false );
+		return new Cell<>( cellDims, cellMin, data );
+	}
+
+	private void request( final long index, final int level )
+	{
+		if ( !loading.contains( index ) )
+			queue.put( index, level );
+	}
+
+	private void fetch()
+	{
+		while ( !closed )
+		{
+			final long index;
+			try
+			{
+				index = queue.take();
+			}
+			catch ( final InterruptedException e )
+			{
+				return;
+			}
+
+			// the cell might have been loaded after it was requested again
+			if ( isLoaded( index ) || !loading.add( index ) )
+				continue;
+
+			try
+			{
+				final int gen = generation.get();
+				final Cell< A > loaded;
+				try
+				{
+					loaded = loader.get( index );
+				}
+				catch ( final Throwable e )
+				{
+					failureCount.incrementAndGet();
+					lastFailure = e;
+					final LoadListener listener = loadListener;
+					if ( listener != null )
+						listener.cellFailed( index, e );
+					continue;
+				}
+
+				synchronized ( generation )
+				{
+					// discard loads that were invalidated
+					if ( gen != generation.get() )
+						continue;
+					synchronized ( cells )
+					{
+						put( index, loaded );
+					}
+				}
+				loadCount.incrementAndGet();
+				final LoadListener listener = loadListener;
+				if ( listener != null )
+					listener.cellLoaded( index );
+			}
+			finally
+			{
+				loading.remove( index );
+			}
+		}
+	}
+
+	/**
+	 * Discard all requests that are waiting to be loaded. Loads that are in
+	 * progress are not affected. Placeholder cells stay invalid until they are
+	 * requested again.
+	 */
+	public void cancelRequests()
+	{
+		queue.clear();
+	}
+
+	/**
+	 * Remove all cells and discard all requests. Loads that are in progress
+	 * are discarded when they finish.
+	 */
+	public void invalidateAll()
+	{
+		synchronized ( generation )
+		{
+			generation.incrementAndGet();
+			queue.clear();
+			synchronized ( cells )
+			{
+				cells.clear();
+				weight = 0;
+			}
+		}
+	}
+
+	/**
+	 * Set a listener that is notified whenever a cell has been loaded, or
+	 * {@code null} to remove the current listener.
+	 */
+	public void setLoadListener( final LoadListener listener )
+	{
+		this.loadListener = listener;
+	}
+
+	/**
+	 * @return the number of cells (loaded cells and placeholders) in the
+	 *         cache.
+	 */
+	public int size()
+	{
+		synchronized ( cells )
+		{
+			return cells.size();
+		}
+	}
+
+	/**
+	 * @return the number of bytes of the cells in the cache.
+	 */
+	public long getWeight()
+	{
+		synchronized ( cells )
+		{
+			return weight;
+		}
+	}
+
+	/**
+	 * @return the maximum number of bytes of the cells in the cache.
+	 */
+	public long getMaxBytes()
+	{
+		return maxBytes;
+	}
+
+	/**
+	 * @return the number of requests that are waiting to be loaded.
+	 */
+	public int getNumQueuedRequests()
+	{
+		return queue.size();
+	}
+
+	/**
+	 * @return the number of cells that are being loaded.
+	 */
+	public int getNumLoading()
+	{
+		return loading.size();
+	}
+
+	/**
+	 * @return how many cells have been loaded.
+	 */
+	public long getLoadCount()
+	{
+		return loadCount.get();
+	}
+
+	/**
+	 * @return how many times the loader threw an exception.
+	 */
+	public long getFailureCount()
+	{
+		return failureCount.get();
+	}
+
+	/**
+	 * @return the exception thrown by the loader most recently, or
+	 *         {@code null} if it never failed.
+	 */
+	public Throwable getLastFailure()
+	{
+		return lastFailure;
+	}
+
+	/**
+	 * Stop the fetcher threads. Requests that are waiting are discarded.
+	 */
+	@Override
+	public void close()
+	{
+		closed = true;
+		for ( final Thread fetcher : fetchers )
+			fetcher.interrupt();
+	}
+}
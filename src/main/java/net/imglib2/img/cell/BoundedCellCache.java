@@ -0,0 +1,240 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.img.cell;
+
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.cell.LazyCellImg.Get;
+
+/**
+ * A cache of {@link Cell}s with a bounded capacity. When the total weight of
+ * the cached cells exceeds the capacity, the least recently used cells are
+ * evicted.
+ * <p>
+ * The weight of a cell is computed by a {@link Weigher}. Use
+ * {@link #withMaxCells(Get, long)} to bound the number of cached cells, and
+ * {@link #withMaxBytes(Get, long)} to bound the memory occupied by the cached
+ * cells' primitive arrays.
+ * </p>
+ *
+ * @param <A>
+ *            the underlying native access type
+ */
+public class BoundedCellCache< A > extends AbstractCellCache< A >
+{
+	/**
+	 * Computes the weight of a {@link Cell}.
+	 */
+	@FunctionalInterface
+	public interface Weigher< A >
+	{
+		long weight( Cell< A > cell );
+	}
+
+	private static final class Entry< A >
+	{
+		final Cell< A > cell;
+
+		final long weight;
+
+		Entry( final Cell< A > cell, final long weight )
+		{
+			this.cell = cell;
+			this.weight = weight;
+		}
+	}
+
+	private final long maxWeight;
+
+	private final Weigher< A > weigher;
+
+	private final LinkedHashMap< Long, Entry< A > > map = new LinkedHashMap<>( 16, 0.75f, true );
+
+	private long weight = 0;
+
+	/**
+	 * @param loader
+	 *            is called to obtain cells that are not in the cache.
+	 * @param maxWeight
+	 *            maximum total weight of cached cells.
+	 * @param weigher
+	 *            computes the weight of each cell.
+	 */
+	public BoundedCellCache( final Get< Cell< A > > loader, final long maxWeight, final Weigher< A > weigher )
+	{
+		super( loader );
+		if ( maxWeight <= 0 )
+			throw new IllegalArgumentException( "maxWeight <= 0" );
+		this.maxWeight = maxWeight;
+		this.weigher = weigher;
+	}
+
+	/**
+	 * Create a cache that holds at most {@code maxCells} cells.
+	 */
+	public static < A > BoundedCellCache< A > withMaxCells( final Get< Cell< A > > loader, final long maxCells )
+	{
+		return new BoundedCellCache<>( loader, maxCells, cell -> 1 );
+	}
+
+	/**
+	 * Create a cache that holds cells with at most {@code maxBytes} bytes of
+	 * primitive array data, as computed by {@link #numBytes(Cell)}.
+	 */
+	public static < A > BoundedCellCache< A > withMaxBytes( final Get< Cell< A > > loader, final long maxBytes )
+	{
+		return new BoundedCellCache<>( loader, maxBytes, BoundedCellCache::numBytes );
+	}
+
+	/**
+	 * Estimate the number of bytes occupied by the data of a {@link Cell}. If
+	 * the data is an {@link ArrayDataAccess} backed by a primitive array or a
+	 * {@link ByteBuffer}, this is the size of the array or buffer in bytes.
+	 * Otherwise, this is the number of pixels in the cell.
+	 */
+	public static long numBytes( final Cell< ? > cell )
+	{
+		final Object data = cell.getData();
+		if ( data instanceof ArrayDataAccess )
+		{
+			final Object array = ( ( ArrayDataAccess< ? > ) data ).getCurrentStorageArray();
+			if ( array instanceof ByteBuffer )
+				return ( ( ByteBuffer ) array ).capacity();
+			if ( array != null && array.getClass().isArray() && array.getClass().getComponentType().isPrimitive() )
+				return ( long ) Array.getLength( array ) * bytesPerElement( array.getClass().getComponentType() );
+		}
+		return cell.size();
+	}
+
+	private static int bytesPerElement( final Class< ? > primitive )
+	{
+		if ( primitive == byte.class || primitive == boolean.class )
+			return 1;
+		if ( primitive == short.class || primitive == char.class )
+			return 2;
+		if ( primitive == int.class || primitive == float.class )
+			return 4;
+		return 8;
+	}
+
+	@Override
+	protected Cell< A > getIfPresent( final long index )
+	{
+		synchronized ( map )
+		{
+			final Entry< A > entry = map.get( index );
+			return entry == null ? null : entry.cell;
+		}
+	}
+
+	@Override
+	protected void put( final long index, final Cell< A > cell )
+	{
+		final Entry< A > entry = new Entry<>( cell, weigher.weight( cell ) );
+		final List< Map.Entry< Long, Entry< A > > > evicted = new ArrayList<>();
+		synchronized ( map )
+		{
+			final Entry< A > previous = map.put( index, entry );
+			if ( previous != null )
+				weight -= previous.weight;
+			weight += entry.weight;
+
+			// evict least recently used cells, but never the one just inserted
+			final Iterator< Map.Entry< Long, Entry< A > > > it = map.entrySet().iterator();
+			while ( weight > maxWeight && map.size() > 1 )
+			{
+				final Map.Entry< Long, Entry< A > > eldest = it.next();
+				it.remove();
+				weight -= eldest.getValue().weight;
+				evicted.add( eldest );
+				markEvicting( eldest.getKey(), eldest.getValue().cell );
+			}
+		}
+		for ( final Map.Entry< Long, Entry< A > > e : evicted )
+			onEviction( e.getKey(), e.getValue().cell );
+	}
+
+	@Override
+	public void invalidateAll()
+	{
+		final List< Map.Entry< Long, Entry< A > > > evicted;
+		synchronized ( map )
+		{
+			evicted = new ArrayList<>( map.entrySet() );
+			for ( final Map.Entry< Long, Entry< A > > e : evicted )
+				markEvicting( e.getKey(), e.getValue().cell );
+			map.clear();
+			weight = 0;
+		}
+		for ( final Map.Entry< Long, Entry< A > > e : evicted )
+			onEviction( e.getKey(), e.getValue().cell );
+	}
+
+	/**
+	 * @return the maximum total weight of cached cells.
+	 */
+	public long getMaxWeight()
+	{
+		return maxWeight;
+	}
+
+	/**
+	 * @return the current total weight of cached cells.
+	 */
+	public long getWeight()
+	{
+		synchronized ( map )
+		{
+			return weight;
+		}
+	}
+
+	/**
+	 * @return the number of cached cells.
+	 */
+	public int size()
+	{
+		synchronized ( map )
+		{
+			return map.size();
+		}
+	}
+}
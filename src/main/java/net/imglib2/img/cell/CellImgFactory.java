@@ -201,6 +201,18 @@ public class CellImgFactory< T extends NativeType< T > > extends NativeImgFactor
 	private < A extends ArrayDataAccess< A > >
 			CellImg< T, A >
 			createInstance( final A creator, final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( this, defaultCellDimensions, creator, dimensions, entitiesPerPixel );
+	}
+
+	/**
+	 * Create a {@link CellImg} with cells of (at most)
+	 * {@code defaultCellDimensions}, whose data is created by
+	 * {@code creator}.
+	 */
+	static < T extends NativeType< T >, A extends ArrayDataAccess< A > >
+			CellImg< T, A >
+			createInstance( final NativeImgFactory< T > factory, final int[] defaultCellDimensions, final A creator, final long[] dimensions, final Fraction entitiesPerPixel )
 	{
 		verifyDimensions( dimensions );
 
@@ -227,6 +239,6 @@ public class CellImgFactory< T extends NativeType< T > > extends NativeImgFactor
 			cellCursor.set( new Cell<>( cellDims, cellMin, data ) );
 		}
 
-		return new CellImg<>( this, grid, cells, entitiesPerPixel );
+		return new CellImg<>( factory, grid, cells, entitiesPerPixel );
 	}
 }
@@ -0,0 +1,260 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A blocking queue of requests to load cells, identified by their flattened
+ * grid index, with a fixed number of priority levels.
+ * <p>
+ * Requests are taken from the most urgent non-empty level, which is level
+ * {@code 0}. Within a level, the most recently added request is taken first.
+ * When a viewer renders a new frame, the requests for the cells it needs now
+ * are thus served before the requests that were added for earlier frames.
+ * </p>
+ * <p>
+ * Each cell is queued at most once. If a queued cell is added again with the
+ * same or a more urgent level, its request is moved to the front of that
+ * level. Otherwise, the request is left where it is. Requests that are no
+ * longer relevant, e.g., because the viewport changed, can be discarded all at
+ * once with {@link #clear()}.
+ * </p>
+ */
+public class CellLoadQueue
+{
+	/**
+	 * A request in one of the level deques. A request is stale (and skipped
+	 * when it is polled) if it is not the current request for its cell in
+	 * {@link CellLoadQueue#requests}.
+	 */
+	private static final class Request
+	{
+		final long index;
+
+		final int level;
+
+		Request( final long index, final int level )
+		{
+			this.index = index;
+			this.level = level;
+		}
+	}
+
+	private final ArrayDeque< Request >[] levels;
+
+	private final HashMap< Long, Request > requests = new HashMap<>();
+
+	/**
+	 * number of requests in all deques, including stale ones.
+	 */
+	private int numEntries = 0;
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final Condition notEmpty = lock.newCondition();
+
+	/**
+	 * @param numLevels
+	 *            the number of priority levels.
+	 */
+	@SuppressWarnings( { "rawtypes", "unchecked" } )
+	public CellLoadQueue( final int numLevels )
+	{
+		if ( numLevels <= 0 )
+			throw new IllegalArgumentException( "numLevels <= 0" );
+		levels = new ArrayDeque[ numLevels ];
+		for ( int l = 0; l < numLevels; ++l )
+			levels[ l ] = new ArrayDeque<>();
+	}
+
+	/**
+	 * @return the number of priority levels.
+	 */
+	public int numLevels()
+	{
+		return levels.length;
+	}
+
+	/**
+	 * Add a request for the cell with the given flattened grid index at the
+	 * given level.
+	 *
+	 * @return {@code false} if the cell was already queued at a more urgent
+	 *         level, {@code true} otherwise.
+	 */
+	public boolean put( final long index, final int level )
+	{
+		if ( level < 0 || level >= levels.length )
+			throw new IllegalArgumentException( "Invalid priority level " + level );
+		lock.lock();
+		try
+		{
+			final Request current = requests.get( index );
+			if ( current != null && current.level < level )
+				return false;
+			final Request request = new Request( index, level );
+			requests.put( index, request );
+			levels[ level ].addFirst( request );
+			if ( ++numEntries > 2 * requests.size() + 64 )
+				removeStale();
+			notEmpty.signal();
+			return true;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Remove stale requests from the deques. Must be called with the lock
+	 * held.
+	 */
+	private void removeStale()
+	{
+		for ( final ArrayDeque< Request > level : levels )
+			level.removeIf( request -> requests.get( request.index ) != request );
+		numEntries = requests.size();
+	}
+
+	/**
+	 * Take the most urgent request, waiting if the queue is empty.
+	 *
+	 * @return the flattened grid index of the requested cell.
+	 */
+	public long take() throws InterruptedException
+	{
+		lock.lockInterruptibly();
+		try
+		{
+			while ( true )
+			{
+				for ( final ArrayDeque< Request > level : levels )
+				{
+					Request request;
+					while ( ( request = level.pollFirst() ) != null )
+					{
+						--numEntries;
+						if ( requests.get( request.index ) == request )
+						{
+							requests.remove( request.index );
+							return request.index;
+						}
+					}
+				}
+				notEmpty.await();
+			}
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Remove the request for the cell with the given flattened grid index, if
+	 * it is queued.
+	 *
+	 * @return whether the cell was queued.
+	 */
+	public boolean remove( final long index )
+	{
+		lock.lock();
+		try
+		{
+			// the request stays in its deque, and is skipped when it is polled
+			return requests.remove( index ) != null;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return whether the cell with the given flattened grid index is queued.
+	 */
+	public boolean contains( final long index )
+	{
+		lock.lock();
+		try
+		{
+			return requests.containsKey( index );
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Remove all requests.
+	 */
+	public void clear()
+	{
+		lock.lock();
+		try
+		{
+			requests.clear();
+			for ( final ArrayDeque< Request > level : levels )
+				level.clear();
+			numEntries = 0;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return the number of queued requests.
+	 */
+	public int size()
+	{
+		lock.lock();
+		try
+		{
+			return requests.size();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+}
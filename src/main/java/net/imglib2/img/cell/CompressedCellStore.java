@@ -0,0 +1,325 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import net.imglib2.Dirty;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.basictypeaccess.array.DirtyShortArray;
+import net.imglib2.img.cell.AbstractCellCache.EvictionListener;
+import net.imglib2.img.cell.LazyCellImg.Get;
+
+/**
+ * An in-memory store that keeps the {@link Cell}s of a {@link LazyCellImg}
+ * compressed. Cells that are evicted from an {@link AbstractCellCache} are
+ * compressed with {@link Deflater}, and are decompressed when they are
+ * requested again. The cache thus holds the hot, decompressed cells, while the
+ * cold cells occupy only their compressed size. Cells that have never been
+ * compressed are obtained from a loader.
+ * <p>
+ * Only cells that were modified are compressed. Whether a cell was modified is
+ * determined through the {@link Dirty} interface of its data, so the cells
+ * should use one of the {@code Dirty*Array} accesses, e.g.,
+ * {@link DirtyShortArray}. Cells with data that does not implement
+ * {@link Dirty} are compressed whenever they are evicted. Cells that are
+ * decompressed are created clean.
+ * </p>
+ * <p>
+ * Typical usage:
+ * </p>
+ *
+ * <pre>
+ * {@code
+ * CompressedCellStore< DirtyShortArray > store = new CompressedCellStore<>( grid, new DirtyShortArray( 0 ), loader );
+ * BoundedCellCache< DirtyShortArray > cache = store.createCache( maxBytes );
+ * LazyCellImg< UnsignedShortType, DirtyShortArray > img = new LazyCellImg<>( grid, new UnsignedShortType(), cache );
+ * }
+ * </pre>
+ *
+ * @param <A>
+ *            the underlying native access type
+ */
+public class CompressedCellStore< A extends ArrayDataAccess< A > > implements Get< Cell< A > >, EvictionListener< A >
+{
+	/**
+	 * Compressed data of a cell.
+	 */
+	private static final class Compressed
+	{
+		final byte[] bytes;
+
+		final int numEntities;
+
+		final int numBytes;
+
+		/**
+		 * orders the snapshots of a cell, larger is newer.
+		 */
+		final long version;
+
+		Compressed( final byte[] bytes, final int numEntities, final int numBytes, final long version )
+		{
+			this.bytes = bytes;
+			this.numEntities = numEntities;
+			this.numBytes = numBytes;
+			this.version = version;
+		}
+	}
+
+	private final CellGrid grid;
+
+	private final A creator;
+
+	private final Get< Cell< A > > loader;
+
+	private final int level;
+
+	private final ConcurrentHashMap< Long, Compressed > cells = new ConcurrentHashMap<>();
+
+	private final AtomicLong version = new AtomicLong();
+
+	private final AtomicLong compressedBytes = new AtomicLong();
+
+	private final AtomicLong uncompressedBytes = new AtomicLong();
+
+	private final AtomicLong compressCount = new AtomicLong();
+
+	private final AtomicLong decompressCount = new AtomicLong();
+
+	/**
+	 * Create a store that compresses cells with {@link Deflater#BEST_SPEED}.
+	 *
+	 * @param grid
+	 *            the grid of the cells.
+	 * @param creator
+	 *            used to create the data of cells that are decompressed.
+	 * @param loader
+	 *            is called to obtain cells that were never compressed.
+	 */
+	public CompressedCellStore( final CellGrid grid, final A creator, final Get< Cell< A > > loader )
+	{
+		this( grid, creator, loader, Deflater.BEST_SPEED );
+	}
+
+	/**
+	 * Create a store that compresses cells with the given {@link Deflater}
+	 * compression level.
+	 *
+	 * @param grid
+	 *            the grid of the cells.
+	 * @param creator
+	 *            used to create the data of cells that are decompressed.
+	 * @param loader
+	 *            is called to obtain cells that were never compressed.
+	 * @param level
+	 *            the compression level (0-9).
+	 */
+	public CompressedCellStore( final CellGrid grid, final A creator, final Get< Cell< A > > loader, final int level )
+	{
+		if ( level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION )
+			throw new IllegalArgumentException( "Invalid compression level " + level );
+		this.grid = grid;
+		this.creator = creator;
+		this.loader = loader;
+		this.level = level;
+	}
+
+	/**
+	 * Create a {@link BoundedCellCache} that obtains its cells from this store
+	 * and compresses modified cells into this store when they are evicted.
+	 *
+	 * @param maxBytes
+	 *            maximum number of bytes of decompressed cell data held in the
+	 *            cache.
+	 */
+	public BoundedCellCache< A > createCache( final long maxBytes )
+	{
+		final BoundedCellCache< A > cache = BoundedCellCache.withMaxBytes( this, maxBytes );
+		cache.setEvictionListener( this );
+		return cache;
+	}
+
+	@Override
+	public Cell< A > get( final long index )
+	{
+		final Compressed compressed = cells.get( index );
+		if ( compressed == null )
+			return loader.get( index );
+
+		final int n = grid.numDimensions();
+		final long[] cellMin = new long[ n ];
+		final int[] cellDims = new int[ n ];
+		grid.getCellDimensions( index, cellMin, cellDims );
+
+		final A data = creator.createArray( compressed.numEntities );
+		final ByteBuffer buffer = ByteBuffer.wrap( decompress( compressed ) ).order( ByteOrder.nativeOrder() );
+		StorageArrays.read( buffer, data.getCurrentStorageArray() );
+		decompressCount.incrementAndGet();
+		return new Cell<>( cellDims, cellMin, data );
+	}
+
+	@Override
+	public void onEviction( final long index, final Cell< A > cell )
+	{
+		if ( cell == null )
+			return;
+		final A data = cell.getData();
+		if ( data instanceof Dirty && !( ( Dirty ) data ).isDirty() )
+			return;
+
+		final Object array = data.getCurrentStorageArray();
+		final int numBytes = StorageArrays.numBytes( array );
+		final ByteBuffer buffer = ByteBuffer.allocate( numBytes ).order( ByteOrder.nativeOrder() );
+		final long snapshotVersion = version.incrementAndGet();
+		StorageArrays.write( array, buffer );
+		final Compressed compressed = new Compressed( compress( buffer.array() ), Array.getLength( array ), numBytes, snapshotVersion );
+
+		// concurrent evictions of the same cell may finish out of order, keep
+		// the newest snapshot
+		final Compressed[] replaced = new Compressed[ 1 ];
+		final Compressed current = cells.compute( index, ( k, previous ) -> {
+			if ( previous != null && previous.version > compressed.version )
+				return previous;
+			replaced[ 0 ] = previous;
+			return compressed;
+		} );
+		if ( current != compressed )
+			return;
+		if ( replaced[ 0 ] != null )
+		{
+			compressedBytes.addAndGet( -replaced[ 0 ].bytes.length );
+			uncompressedBytes.addAndGet( -replaced[ 0 ].numBytes );
+		}
+		compressedBytes.addAndGet( compressed.bytes.length );
+		uncompressedBytes.addAndGet( numBytes );
+		compressCount.incrementAndGet();
+	}
+
+	private byte[] compress( final byte[] bytes )
+	{
+		final Deflater deflater = new Deflater( level );
+		try
+		{
+			deflater.setInput( bytes );
+			deflater.finish();
+			final ByteArrayOutputStream out = new ByteArrayOutputStream( Math.max( 64, bytes.length / 4 ) );
+			final byte[] chunk = new byte[ 8192 ];
+			while ( !deflater.finished() )
+				out.write( chunk, 0, deflater.deflate( chunk ) );
+			return out.toByteArray();
+		}
+		finally
+		{
+			deflater.end();
+		}
+	}
+
+	private static byte[] decompress( final Compressed compressed )
+	{
+		final byte[] bytes = new byte[ compressed.numBytes ];
+		final Inflater inflater = new Inflater();
+		try
+		{
+			inflater.setInput( compressed.bytes );
+			int offset = 0;
+			while ( offset < bytes.length )
+			{
+				final int inflated = inflater.inflate( bytes, offset, bytes.length - offset );
+				if ( inflated == 0 && ( inflater.finished() || inflater.needsInput() ) )
+					throw new IllegalStateException( "Corrupt compressed cell data" );
+				offset += inflated;
+			}
+			return bytes;
+		}
+		catch ( final DataFormatException e )
+		{
+			throw new IllegalStateException( "Corrupt compressed cell data", e );
+		}
+		finally
+		{
+			inflater.end();
+		}
+	}
+
+	/**
+	 * @return the number of cells held in compressed form.
+	 */
+	public int getNumCompressedCells()
+	{
+		return cells.size();
+	}
+
+	/**
+	 * @return the total size of the compressed cells in bytes.
+	 */
+	public long getCompressedBytes()
+	{
+		return compressedBytes.get();
+	}
+
+	/**
+	 * @return the total size that the compressed cells occupy when
+	 *         decompressed, in bytes.
+	 */
+	public long getUncompressedBytes()
+	{
+		return uncompressedBytes.get();
+	}
+
+	/**
+	 * @return how many times cells have been compressed.
+	 */
+	public long getCompressCount()
+	{
+		return compressCount.get();
+	}
+
+	/**
+	 * @return how many times cells have been decompressed.
+	 */
+	public long getDecompressCount()
+	{
+		return decompressCount.get();
+	}
+}
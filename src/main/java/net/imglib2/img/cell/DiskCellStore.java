@@ -0,0 +1,292 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.img.cell;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.imglib2.Dirty;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.basictypeaccess.array.DirtyShortArray;
+import net.imglib2.img.cell.AbstractCellCache.EvictionListener;
+import net.imglib2.img.cell.LazyCellImg.Get;
+
+/**
+ * A disk-backed store for the {@link Cell}s of a {@link LazyCellImg}. Cells
+ * that are evicted from an {@link AbstractCellCache} are written to a spill
+ * file, and are read back from that file when they are requested again. Cells
+ * that have never been written are obtained from a loader.
+ * <p>
+ * Only cells that were modified are written. Whether a cell was modified is
+ * determined through the {@link Dirty} interface of its data, so the cells
+ * should use one of the {@code Dirty*Array} accesses, e.g.,
+ * {@link DirtyShortArray}. Cells with data that does not implement
+ * {@link Dirty} are written whenever they are evicted. Cells that are read
+ * back from the spill file are created clean.
+ * </p>
+ * <p>
+ * Typical usage:
+ * </p>
+ *
+ * <pre>
+ * {@code
+ * DiskCellStore< DirtyShortArray > store = new DiskCellStore<>( grid, new DirtyShortArray( 0 ), loader );
+ * BoundedCellCache< DirtyShortArray > cache = store.createCache( maxBytes );
+ * LazyCellImg< UnsignedShortType, DirtyShortArray > img = new LazyCellImg<>( grid, new UnsignedShortType(), cache );
+ * }
+ * </pre>
+ * <p>
+ * Modified cells that are still in the cache are not written to the spill
+ * file until they are evicted. Call {@link AbstractCellCache#invalidateAll()}
+ * to write them.
+ * </p>
+ *
+ * @param <A>
+ *            the underlying native access type
+ */
+public class DiskCellStore< A extends ArrayDataAccess< A > > implements Get< Cell< A > >, EvictionListener< A >, Closeable
+{
+	/**
+	 * Location of a cell in the spill file.
+	 */
+	private static final class Slot
+	{
+		final long offset;
+
+		final int numEntities;
+
+		volatile boolean written = false;
+
+		Slot( final long offset, final int numEntities )
+		{
+			this.offset = offset;
+			this.numEntities = numEntities;
+		}
+	}
+
+	private final CellGrid grid;
+
+	private final A creator;
+
+	private final Get< Cell< A > > loader;
+
+	private final Path file;
+
+	private final boolean deleteOnClose;
+
+	private final FileChannel channel;
+
+	private final ConcurrentHashMap< Long, Slot > slots = new ConcurrentHashMap<>();
+
+	private final AtomicLong fileSize = new AtomicLong();
+
+	private final AtomicLong writeCount = new AtomicLong();
+
+	private final AtomicLong readCount = new AtomicLong();
+
+	/**
+	 * Create a store that spills cells to a temporary file, which is deleted
+	 * when the store is {@link #close() closed}.
+	 *
+	 * @param grid
+	 *            the grid of the cells.
+	 * @param creator
+	 *            used to create the data of cells that are read from the
+	 *            spill file.
+	 * @param loader
+	 *            is called to obtain cells that were never written.
+	 */
+	public DiskCellStore( final CellGrid grid, final A creator, final Get< Cell< A > > loader ) throws IOException
+	{
+		this( grid, creator, loader, Files.createTempFile( "imglib2-cells", ".spill" ), true );
+	}
+
+	/**
+	 * Create a store that spills cells to the given file. Existing content of
+	 * the file is discarded.
+	 *
+	 * @param grid
+	 *            the grid of the cells.
+	 * @param creator
+	 *            used to create the data of cells that are read from the
+	 *            spill file.
+	 * @param loader
+	 *            is called to obtain cells that were never written.
+	 * @param file
+	 *            the spill file.
+	 */
+	public DiskCellStore( final CellGrid grid, final A creator, final Get< Cell< A > > loader, final Path file ) throws IOException
+	{
+		this( grid, creator, loader, file, false );
+	}
+
+	private DiskCellStore( final CellGrid grid, final A creator, final Get< Cell< A > > loader, final Path file, final boolean deleteOnClose ) throws IOException
+	{
+		this.grid = grid;
+		this.creator = creator;
+		this.loader = loader;
+		this.file = file;
+		this.deleteOnClose = deleteOnClose;
+		this.channel = FileChannel.open( file,
+				StandardOpenOption.CREATE,
+				StandardOpenOption.READ,
+				StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING );
+	}
+
+	/**
+	 * Create a {@link BoundedCellCache} that obtains its cells from this store
+	 * and writes modified cells back to this store when they are evicted.
+	 *
+	 * @param maxBytes
+	 *            maximum number of bytes of cell data held in memory.
+	 */
+	public BoundedCellCache< A > createCache( final long maxBytes )
+	{
+		final BoundedCellCache< A > cache = BoundedCellCache.withMaxBytes( this, maxBytes );
+		cache.setEvictionListener( this );
+		return cache;
+	}
+
+	@Override
+	public Cell< A > get( final long index )
+	{
+		final Slot slot = slots.get( index );
+		if ( slot == null || !slot.written )
+			return loader.get( index );
+
+		final int n = grid.numDimensions();
+		final long[] cellMin = new long[ n ];
+		final int[] cellDims = new int[ n ];
+		grid.getCellDimensions( index, cellMin, cellDims );
+
+		final A data = creator.createArray( slot.numEntities );
+		final Object array = data.getCurrentStorageArray();
+		final ByteBuffer buffer = ByteBuffer.allocate( StorageArrays.numBytes( array ) ).order( ByteOrder.nativeOrder() );
+		try
+		{
+			synchronized ( slot )
+			{
+				while ( buffer.hasRemaining() )
+					if ( channel.read( buffer, slot.offset + buffer.position() ) < 0 )
+						throw new IOException( "Unexpected end of spill file " + file );
+			}
+		}
+		catch ( final IOException e )
+		{
+			throw new UncheckedIOException( e );
+		}
+		buffer.flip();
+		StorageArrays.read( buffer, array );
+		readCount.incrementAndGet();
+		return new Cell<>( cellDims, cellMin, data );
+	}
+
+	@Override
+	public void onEviction( final long index, final Cell< A > cell )
+	{
+		if ( cell == null )
+			return;
+		final A data = cell.getData();
+		if ( data instanceof Dirty && !( ( Dirty ) data ).isDirty() )
+			return;
+
+		final Object array = data.getCurrentStorageArray();
+		final int numBytes = StorageArrays.numBytes( array );
+		final Slot slot = slots.computeIfAbsent( index, k -> new Slot( fileSize.getAndAdd( numBytes ), Array.getLength( array ) ) );
+		final ByteBuffer buffer = ByteBuffer.allocate( numBytes ).order( ByteOrder.nativeOrder() );
+		StorageArrays.write( array, buffer );
+		buffer.flip();
+		try
+		{
+			synchronized ( slot )
+			{
+				while ( buffer.hasRemaining() )
+					channel.write( buffer, slot.offset + buffer.position() );
+				slot.written = true;
+			}
+		}
+		catch ( final IOException e )
+		{
+			throw new UncheckedIOException( e );
+		}
+		writeCount.incrementAndGet();
+	}
+
+	/**
+	 * @return how many cells have been written to the spill file.
+	 */
+	public long getWriteCount()
+	{
+		return writeCount.get();
+	}
+
+	/**
+	 * @return how many cells have been read from the spill file.
+	 */
+	public long getReadCount()
+	{
+		return readCount.get();
+	}
+
+	/**
+	 * @return the spill file.
+	 */
+	public Path getFile()
+	{
+		return file;
+	}
+
+	/**
+	 * Close the spill file. If the file was created by this store, it is
+	 * deleted. Cells that were written to the file are lost.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		channel.close();
+		if ( deleteOnClose )
+			Files.deleteIfExists( file );
+	}
+}
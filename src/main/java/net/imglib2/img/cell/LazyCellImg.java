@@ -14,7 +14,9 @@ import net.imglib2.util.Fraction;
 /**
  * A {@link AbstractCellImg} that obtains its Cells lazily when they are
  * accessed. Cells are obtained by a {@link Get} method that is provided by the
- * user. Typically this is some kind of cache.
+ * user. Typically this is some kind of cache, e.g., a {@link BoundedCellCache}
+ * or {@link SoftRefCellCache} wrapping the {@link Get} that actually loads the
+ * cells.
  *
  * @param <T>
  *            the pixel type
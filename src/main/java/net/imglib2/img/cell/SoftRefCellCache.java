@@ -0,0 +1,143 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.img.cell;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.imglib2.img.cell.LazyCellImg.Get;
+
+/**
+ * A cache of {@link Cell}s that holds cells through {@link SoftReference}s.
+ * Cells stay in memory until the garbage collector needs to reclaim memory.
+ * <p>
+ * Evictions by the garbage collector are counted and reported to the
+ * {@link AbstractCellCache.EvictionListener EvictionListener} with a
+ * {@code null} cell, because the cell is not available anymore at that time.
+ * </p>
+ *
+ * @param <A>
+ *            the underlying native access type
+ */
+public class SoftRefCellCache< A > extends AbstractCellCache< A >
+{
+	private static final class Entry< A > extends SoftReference< Cell< A > >
+	{
+		final long index;
+
+		Entry( final long index, final Cell< A > cell, final ReferenceQueue< Cell< A > > queue )
+		{
+			super( cell, queue );
+			this.index = index;
+		}
+	}
+
+	private final ConcurrentHashMap< Long, Entry< A > > map = new ConcurrentHashMap<>();
+
+	private final ReferenceQueue< Cell< A > > queue = new ReferenceQueue<>();
+
+	/**
+	 * @param loader
+	 *            is called to obtain cells that are not in the cache.
+	 */
+	public SoftRefCellCache( final Get< Cell< A > > loader )
+	{
+		super( loader );
+	}
+
+	@Override
+	protected Cell< A > getIfPresent( final long index )
+	{
+		cleanUp();
+		final Entry< A > entry = map.get( index );
+		return entry == null ? null : entry.get();
+	}
+
+	@Override
+	protected void put( final long index, final Cell< A > cell )
+	{
+		final Entry< A > previous = map.put( index, new Entry<>( index, cell, queue ) );
+		if ( previous != null )
+			// the previous cell has been garbage-collected, but was not yet
+			// removed by cleanUp()
+			onEviction( index, null );
+	}
+
+	@Override
+	public void invalidateAll()
+	{
+		final List< Entry< A > > evicted = new ArrayList<>( map.values() );
+		for ( final Entry< A > entry : evicted )
+		{
+			if ( map.remove( entry.index, entry ) )
+			{
+				final Cell< A > cell = entry.get();
+				entry.clear();
+				if ( cell != null )
+					markEvicting( entry.index, cell );
+				onEviction( entry.index, cell );
+			}
+		}
+		cleanUp();
+	}
+
+	/**
+	 * Remove entries whose cells have been garbage-collected.
+	 */
+	@SuppressWarnings( "unchecked" )
+	private void cleanUp()
+	{
+		Reference< ? extends Cell< A > > ref;
+		while ( ( ref = queue.poll() ) != null )
+		{
+			final Entry< A > entry = ( Entry< A > ) ref;
+			if ( map.remove( entry.index, entry ) )
+				onEviction( entry.index, null );
+		}
+	}
+
+	/**
+	 * @return the number of cache entries. This may include entries whose
+	 *         cells have been garbage-collected in the meantime.
+	 */
+	public int size()
+	{
+		cleanUp();
+		return map.size();
+	}
+}
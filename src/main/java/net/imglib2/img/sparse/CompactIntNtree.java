@@ -0,0 +1,152 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.sparse;
+
+import net.imglib2.img.basictypeaccess.IntAccess;
+
+/**
+ * IntAccess based on a {@link CompactNtree}, which stores values in a
+ * {@code int[]} array.
+ */
+public final class CompactIntNtree implements IntAccess, CompactNtreeAccess< CompactIntNtree >
+{
+	private final long[] position;
+
+	private final Storage data;
+
+	/**
+	 * Standard constructor called by factory
+	 *
+	 * @param dimensions
+	 *            The dimensions of the tree
+	 * @param value
+	 *            Uniform value of created nodes of the tree
+	 */
+	public CompactIntNtree( final long[] dimensions, final long[] position, final int value )
+	{
+		this.data = new Storage( dimensions, value );
+		this.position = position;
+	}
+
+	/* Copy constructor */
+	private CompactIntNtree( final Storage data, final long[] position )
+	{
+		this.data = data;
+		this.position = position;
+	}
+
+	@Override
+	public int getValue( final int index )
+	{
+		// ignore index, get tree position from RandomAccess/Cursor
+		return data.values[ data.getNode( position ) ];
+	}
+
+	@Override
+	public void setValue( final int index, final int value )
+	{
+		// ignore index, get tree position from RandomAccess/Cursor
+		data.pending = value;
+		data.setPendingValue( position );
+	}
+
+	@Override
+	public Storage getCurrentStorageNtree()
+	{
+		return data;
+	}
+
+	@Override
+	public CompactIntNtree createInstance( final long[] pos )
+	{
+		return new CompactIntNtree( data, pos );
+	}
+
+	/**
+	 * {@link CompactNtree} with {@code int} values.
+	 */
+	public static final class Storage extends CompactNtree
+	{
+		private int[] values;
+
+		private int pending;
+
+		Storage( final long[] dimensions, final int value )
+		{
+			super( dimensions );
+			values = new int[] { value };
+		}
+
+		/**
+		 * Get the value of a node.
+		 */
+		public int getValue( final int node )
+		{
+			return values[ node ];
+		}
+
+		@Override
+		protected boolean isPendingValue( final int node )
+		{
+			return values[ node ] == pending;
+		}
+
+		@Override
+		protected void setPendingValue( final int node )
+		{
+			values[ node ] = pending;
+		}
+
+		@Override
+		protected void copyValue( final int from, final int to )
+		{
+			values[ to ] = values[ from ];
+		}
+
+		@Override
+		protected boolean valuesEqual( final int a, final int b )
+		{
+			return values[ a ] == values[ b ];
+		}
+
+		@Override
+		protected void resizeValues( final int capacity )
+		{
+			final int[] newValues = new int[ capacity ];
+			System.arraycopy( values, 0, newValues, 0, values.length );
+			values = newValues;
+		}
+	}
+}
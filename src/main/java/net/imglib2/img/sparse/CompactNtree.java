@@ -0,0 +1,318 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.sparse;
+
+/**
+ * N-dimensional equivalent of a quad/oct-tree, with nodes stored in arrays.
+ * 
+ * <p>
+ * In contrast to {@link Ntree}, nodes are not objects. A node is an index into
+ * arrays that hold, for each node, the index of its first child and its value.
+ * The children of a node are stored at consecutive indices. Values are stored
+ * in primitive arrays by the subclasses, so they are not boxed. Blocks of
+ * children that are removed by merging are reused for later splits.
+ * </p>
+ * 
+ * <p>
+ * Concurrent reads are safe, but writes must not happen concurrently with
+ * other reads or writes.
+ * </p>
+ * 
+ * <p>
+ * Subclasses store the value to write in a field, and call
+ * {@link #setPendingValue(long[])}.
+ * </p>
+ */
+public abstract class CompactNtree
+{
+	/**
+	 * number of dimensions.
+	 */
+	final int n;
+
+	/**
+	 * maximum depth of the tree.
+	 */
+	final int numTreeLevels;
+
+	/**
+	 * how many children (if any) each node has.
+	 */
+	final int numChildren;
+
+	/**
+	 * dimensions of tree
+	 */
+	final long[] dimensions;
+
+	/**
+	 * the index of the first child of each node, or -1 if the node is a leaf.
+	 */
+	private int[] firstChild;
+
+	/**
+	 * number of used entries in the node arrays.
+	 */
+	private int size;
+
+	/**
+	 * first indices of blocks of children that can be reused.
+	 */
+	private int[] freeBlocks;
+
+	private int numFreeBlocks;
+
+	/**
+	 * nodes visited by the last write, from the root to the leaf.
+	 */
+	private final int[] path;
+
+	/**
+	 * Create a tree capable of representing an array of the given dimensions.
+	 * Initially, the tree contains only a root node with index 0. Subclasses
+	 * must initialize its value.
+	 * 
+	 * @param dimensions
+	 *            of the array
+	 */
+	protected CompactNtree( final long[] dimensions )
+	{
+		this.n = dimensions.length;
+		this.dimensions = dimensions.clone();
+
+		// set the maximum number of levels in the ntree.
+		// This is how many times to split the maximum dimension
+		// in half to arrive at a single pixel
+		long maxdim = 0;
+		for ( int d = 0; d < n; ++d )
+			maxdim = Math.max( maxdim, dimensions[ d ] );
+		this.numTreeLevels = ( int ) Math.ceil( Math.log( maxdim ) / Math.log( 2 ) ) + 1;
+		this.numChildren = 1 << n;
+
+		this.firstChild = new int[] { -1 };
+		this.size = 1;
+		this.freeBlocks = new int[ 4 ];
+		this.numFreeBlocks = 0;
+		this.path = new int[ numTreeLevels ];
+	}
+
+	/**
+	 * Get the number of nodes in the tree.
+	 */
+	public int numNodes()
+	{
+		return size - numFreeBlocks * numChildren;
+	}
+
+	/**
+	 * Get the capacity of the node arrays.
+	 */
+	public int capacity()
+	{
+		return firstChild.length;
+	}
+
+	/**
+	 * Get the index of the first child of a node, or -1 if the node is a
+	 * leaf.
+	 */
+	public int getFirstChild( final int node )
+	{
+		return firstChild[ node ];
+	}
+
+	/**
+	 * Get the index of the child containing position, of a node at the given
+	 * level.
+	 */
+	private int childIndex( final long[] position, final int level )
+	{
+		final long bitmask = 1 << level;
+		int childindex = 0;
+		for ( int d = 0; d < n; ++d )
+			if ( ( position[ d ] & bitmask ) != 0 )
+				childindex |= 1 << d;
+		return childindex;
+	}
+
+	/**
+	 * Get the lowest-level node containing position. Note that position is not
+	 * necessarily the only pixel inside the node. So use this for read-access
+	 * to pixel values only.
+	 * 
+	 * @param position
+	 *            a position inside the image.
+	 * @return the lowest-level node containing position.
+	 */
+	protected final int getNode( final long[] position )
+	{
+		int current = 0;
+		for ( int l = numTreeLevels - 2; l >= 0; --l )
+		{
+			final int first = firstChild[ current ];
+			if ( first < 0 )
+				break;
+			current = first + childIndex( position, l );
+		}
+		return current;
+	}
+
+	/**
+	 * Set the pending value at position. If necessary, new nodes will be
+	 * created. If possible, nodes will be merged.
+	 * 
+	 * @param position
+	 *            a position inside the image.
+	 */
+	protected final void setPendingValue( final long[] position )
+	{
+		int current = 0;
+		int depth = 0;
+		path[ 0 ] = 0;
+		for ( int l = numTreeLevels - 2; l >= 0; --l )
+		{
+			int first = firstChild[ current ];
+			if ( first < 0 )
+			{
+				if ( isPendingValue( current ) )
+					return;
+				first = split( current );
+			}
+			current = first + childIndex( position, l );
+			path[ ++depth ] = current;
+		}
+		if ( isPendingValue( current ) )
+			return;
+		setPendingValue( current );
+		mergeUpwards( depth );
+	}
+
+	/**
+	 * Create children for a leaf node, which have the value of the node.
+	 * 
+	 * @return the index of the first child.
+	 */
+	private int split( final int node )
+	{
+		final int first = allocateBlock();
+		for ( int i = 0; i < numChildren; ++i )
+		{
+			firstChild[ first + i ] = -1;
+			copyValue( node, first + i );
+		}
+		firstChild[ node ] = first;
+		return first;
+	}
+
+	private int allocateBlock()
+	{
+		if ( numFreeBlocks > 0 )
+			return freeBlocks[ --numFreeBlocks ];
+
+		final int first = size;
+		size += numChildren;
+		if ( size > firstChild.length )
+		{
+			final int capacity = Math.max( size, 2 * firstChild.length );
+			final int[] newFirstChild = new int[ capacity ];
+			System.arraycopy( firstChild, 0, newFirstChild, 0, first );
+			firstChild = newFirstChild;
+			resizeValues( capacity );
+		}
+		return first;
+	}
+
+	private void freeBlock( final int first )
+	{
+		if ( numFreeBlocks == freeBlocks.length )
+		{
+			final int[] newFreeBlocks = new int[ 2 * numFreeBlocks ];
+			System.arraycopy( freeBlocks, 0, newFreeBlocks, 0, numFreeBlocks );
+			freeBlocks = newFreeBlocks;
+		}
+		freeBlocks[ numFreeBlocks++ ] = first;
+	}
+
+	/**
+	 * If all the children of a node on the path of the last write have the
+	 * same value remove them all. Continue with the parent of the node, until
+	 * the root is reached or the children cannot be merged.
+	 * 
+	 * @param depth
+	 *            the depth of the leaf of the last write.
+	 */
+	private void mergeUpwards( final int depth )
+	{
+		for ( int k = depth - 1; k >= 0; --k )
+		{
+			final int parent = path[ k ];
+			final int first = firstChild[ parent ];
+			for ( int i = 0; i < numChildren; ++i )
+				if ( firstChild[ first + i ] >= 0 )
+					return;
+			for ( int i = 1; i < numChildren; ++i )
+				if ( !valuesEqual( first, first + i ) )
+					return;
+			copyValue( first, parent );
+			firstChild[ parent ] = -1;
+			freeBlock( first );
+		}
+	}
+
+	/**
+	 * Check whether the node has the pending value.
+	 */
+	protected abstract boolean isPendingValue( int node );
+
+	/**
+	 * Set the value of the node to the pending value.
+	 */
+	protected abstract void setPendingValue( int node );
+
+	/**
+	 * Copy the value of node {@code from} to node {@code to}.
+	 */
+	protected abstract void copyValue( int from, int to );
+
+	/**
+	 * Check whether nodes {@code a} and {@code b} have equal values.
+	 */
+	protected abstract boolean valuesEqual( int a, int b );
+
+	/**
+	 * Resize the values array to the given capacity, keeping its contents.
+	 */
+	protected abstract void resizeValues( int capacity );
+}
@@ -0,0 +1,127 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.sparse;
+
+import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.NativeImgFactory;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.Fraction;
+
+/**
+ * Factory for {@link NtreeImg}s based on {@link CompactNtree}s, which store
+ * values in primitive arrays instead of boxed values in {@link Ntree} nodes.
+ * Compact trees need less memory, but must not be written concurrently.
+ */
+public class CompactNtreeImgFactory< T extends NativeType< T >> extends NativeImgFactory< T >
+{
+	@Override
+	public NtreeImg< T, ? > create( final long[] dim, final T type )
+	{
+		return ( NtreeImg< T, ? > ) type.createSuitableNativeImg( this, dim );
+	}
+
+	@Override
+	public NtreeImg< T, CompactByteNtree > createByteInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		if ( entitiesPerPixel.getNumerator() != entitiesPerPixel.getDenominator() )
+			throw new RuntimeException( "not implemented" );
+
+		return new NtreeImg< T, CompactByteNtree >( new CompactByteNtree( dimensions, new long[ dimensions.length ], ( byte ) 0 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public NtreeImg< T, CompactCharNtree > createCharInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		if ( entitiesPerPixel.getNumerator() != entitiesPerPixel.getDenominator() )
+			throw new RuntimeException( "not implemented" );
+
+		return new NtreeImg< T, CompactCharNtree >( new CompactCharNtree( dimensions, new long[ dimensions.length ], ( char ) 0 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public NtreeImg< T, CompactShortNtree > createShortInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		if ( entitiesPerPixel.getNumerator() != entitiesPerPixel.getDenominator() )
+			throw new RuntimeException( "not implemented" );
+
+		return new NtreeImg< T, CompactShortNtree >( new CompactShortNtree( dimensions, new long[ dimensions.length ], ( short ) 0 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public NtreeImg< T, CompactIntNtree > createIntInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		if ( entitiesPerPixel.getNumerator() != entitiesPerPixel.getDenominator() )
+			throw new RuntimeException( "not implemented" );
+
+		return new NtreeImg< T, CompactIntNtree >( new CompactIntNtree( dimensions, new long[ dimensions.length ], 0 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public NtreeImg< T, CompactLongNtree > createLongInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		if ( entitiesPerPixel.getNumerator() != entitiesPerPixel.getDenominator() )
+			throw new RuntimeException( "not implemented" );
+
+		return new NtreeImg< T, CompactLongNtree >( new CompactLongNtree( dimensions, new long[ dimensions.length ], 0 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public NtreeImg< T, CompactFloatNtree > createFloatInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		if ( entitiesPerPixel.getNumerator() != entitiesPerPixel.getDenominator() )
+			throw new RuntimeException( "not implemented" );
+
+		return new NtreeImg< T, CompactFloatNtree >( new CompactFloatNtree( dimensions, new long[ dimensions.length ], 0.0f ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public NtreeImg< T, CompactDoubleNtree > createDoubleInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		if ( entitiesPerPixel.getNumerator() != entitiesPerPixel.getDenominator() )
+			throw new RuntimeException( "not implemented" );
+
+		return new NtreeImg< T, CompactDoubleNtree >( new CompactDoubleNtree( dimensions, new long[ dimensions.length ], 0.0d ), dimensions, entitiesPerPixel );
+	}
+
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	@Override
+	public < S > ImgFactory< S > imgFactory( final S type ) throws IncompatibleTypeException
+	{
+		if ( NativeType.class.isInstance( type ) )
+			return new CompactNtreeImgFactory();
+		throw new IncompatibleTypeException( this, type.getClass().getCanonicalName() + " does not implement NativeType." );
+	}
+}
@@ -34,9 +34,21 @@
 
 package net.imglib2.img.sparse;
 
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
 /**
  * N-dimensional equivalent of a quad/oct-tree.
  * 
+ * <p>
+ * The tree can be read and written concurrently. Reads do not lock: Node
+ * values and children arrays are published through volatile fields, and
+ * children arrays are fully initialized before they are published. Writes
+ * lock only the subtree below the child of the root node that contains the
+ * written position. Only writes that split or merge the root node lock the
+ * whole tree.
+ * </p>
+ * 
  * @author Tobias Pietzsch
  */
 public final class Ntree< T extends Comparable< T >>
@@ -45,11 +57,11 @@ public final class Ntree< T extends Comparable< T >>
 	public static final class NtreeNode< T >
 	{
 
-		private T value;
+		private volatile T value;
 
 		private final NtreeNode< T > parent;
 
-		private NtreeNode< T >[] children;
+		private volatile NtreeNode< T >[] children;
 
 		public NtreeNode( final NtreeNode< T > parent, final T value )
 		{
@@ -109,6 +121,18 @@ public final class Ntree< T extends Comparable< T >>
 	 */
 	final long[] dimensions;
 
+	/**
+	 * Writes that modify only the subtree of one child of the root hold the
+	 * read lock (and the corresponding {@link #subtreeLocks subtree lock}).
+	 * Writes that split or merge the root hold the write lock.
+	 */
+	private final ReentrantReadWriteLock rootLock = new ReentrantReadWriteLock();
+
+	/**
+	 * one lock for the subtree of each child of the root.
+	 */
+	private final Object[] subtreeLocks;
+
 	// /**
 	// * KNIME requirements, empty constructor for fast serialization
 	// */
@@ -142,6 +166,16 @@ public final class Ntree< T extends Comparable< T >>
 		this.numChildren = 1 << n;
 
 		this.root = new NtreeNode< T >( null, value );
+
+		this.subtreeLocks = createSubtreeLocks( numChildren );
+	}
+
+	private static Object[] createSubtreeLocks( final int numChildren )
+	{
+		final Object[] locks = new Object[ numChildren ];
+		for ( int i = 0; i < numChildren; ++i )
+			locks[ i ] = new Object();
+		return locks;
 	}
 
 	/**
@@ -172,7 +206,31 @@ public final class Ntree< T extends Comparable< T >>
 		n = ntree.n;
 		numTreeLevels = ntree.numTreeLevels;
 		numChildren = ntree.numChildren;
-		root = copyRecursively( ntree.root, null );
+		subtreeLocks = createSubtreeLocks( numChildren );
+		final Lock lock = ntree.rootLock.writeLock();
+		lock.lock();
+		try
+		{
+			root = copyRecursively( ntree.root, null );
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Get the index of the child containing position, of a node at the given
+	 * level.
+	 */
+	private int childIndex( final long[] position, final int level )
+	{
+		final long bitmask = 1 << level;
+		int childindex = 0;
+		for ( int d = 0; d < n; ++d )
+			if ( ( position[ d ] & bitmask ) != 0 )
+				childindex |= 1 << d;
+		return childindex;
 	}
 
 	/**
@@ -184,24 +242,32 @@ public final class Ntree< T extends Comparable< T >>
 	 *            a position inside the image.
 	 * @return the lowest-level node containing position.
 	 */
-	synchronized NtreeNode< T > getNode( final long[] position )
+	NtreeNode< T > getNode( final long[] position )
 	{
 		NtreeNode< T > current = root;
 		for ( int l = numTreeLevels - 2; l >= 0; --l )
 		{
-			if ( !current.hasChildren() )
+			final NtreeNode< T >[] children = current.children;
+			if ( children == null )
 				break;
-
-			final long bitmask = 1 << l;
-			int childindex = 0;
-			for ( int d = 0; d < n; ++d )
-				if ( ( position[ d ] & bitmask ) != 0 )
-					childindex |= 1 << d;
-			current = current.children[ childindex ];
+			current = children[ childIndex( position, l ) ];
 		}
 		return current;
 	}
 
+	/**
+	 * Split a leaf node into children which have the value of the node.
+	 */
+	@SuppressWarnings( "unchecked" )
+	private NtreeNode< T >[] split( final NtreeNode< T > node )
+	{
+		final NtreeNode< T >[] children = new NtreeNode[ numChildren ];
+		for ( int i = 0; i < numChildren; ++i )
+			children[ i ] = new NtreeNode< T >( node, node.getValue() );
+		node.children = children;
+		return children;
+	}
+
 	/**
 	 * Create a node containing only position (if it does not exist already).
 	 * This may insert nodes at several levels in the tree.
@@ -210,27 +276,26 @@ public final class Ntree< T extends Comparable< T >>
 	 *            a position inside the image.
 	 * @return node containing exactly position.
 	 */
-	@SuppressWarnings( "unchecked" )
-	synchronized NtreeNode< T > createNode( final long[] position )
+	NtreeNode< T > createNode( final long[] position )
 	{
-		NtreeNode< T > current = root;
-		for ( int l = numTreeLevels - 2; l >= 0; --l )
+		final Lock lock = rootLock.writeLock();
+		lock.lock();
+		try
 		{
-			if ( !current.hasChildren() )
+			NtreeNode< T > current = root;
+			for ( int l = numTreeLevels - 2; l >= 0; --l )
 			{
-				current.children = new NtreeNode[ numChildren ];
-				for ( int i = 0; i < numChildren; ++i )
-					current.children[ i ] = new NtreeNode< T >( current, current.getValue() );
+				NtreeNode< T >[] children = current.children;
+				if ( children == null )
+					children = split( current );
+				current = children[ childIndex( position, l ) ];
 			}
-
-			final long bitmask = 1 << l;
-			int childindex = 0;
-			for ( int d = 0; d < n; ++d )
-				if ( ( position[ d ] & bitmask ) != 0 )
-					childindex |= 1 << d;
-			current = current.children[ childindex ];
+			return current;
+		}
+		finally
+		{
+			lock.unlock();
 		}
-		return current;
 	}
 
 	/**
@@ -245,33 +310,89 @@ public final class Ntree< T extends Comparable< T >>
 	 *            value to store at position.
 	 * @return node containing position.
 	 */
-	@SuppressWarnings( "unchecked" )
-	synchronized NtreeNode< T > createNodeWithValue( final long[] position, final T value )
+	NtreeNode< T > createNodeWithValue( final long[] position, final T value )
 	{
-		NtreeNode< T > current = root;
-		for ( int l = numTreeLevels - 2; l >= 0; --l )
+		final int level = numTreeLevels - 2;
+		final int childindex = level >= 0 ? childIndex( position, level ) : 0;
+		NtreeNode< T > node = null;
+		final Lock shared = rootLock.readLock();
+		shared.lock();
+		try
 		{
-			if ( !current.hasChildren() )
+			final NtreeNode< T >[] rootChildren = root.children;
+			if ( rootChildren != null )
+			{
+				synchronized ( subtreeLocks[ childindex ] )
+				{
+					node = setValue( rootChildren[ childindex ], level - 1, position, value );
+				}
+				if ( node.parent != root || !canMerge( rootChildren ) )
+					return node;
+			}
+		}
+		finally
+		{
+			shared.unlock();
+		}
+
+		// Either the root has no children, or the children of the root can
+		// be merged into the root. Both modify the root, which requires
+		// exclusive access to the tree.
+		final Lock exclusive = rootLock.writeLock();
+		exclusive.lock();
+		try
+		{
+			final NtreeNode< T >[] rootChildren = root.children;
+			if ( node != null && rootChildren != null && rootChildren[ childindex ] == node )
+				return mergeUpwards( node );
+			return setValue( root, level, position, value );
+		}
+		finally
+		{
+			exclusive.unlock();
+		}
+	}
+
+	/**
+	 * Check whether the given children are leaves with equal values.
+	 */
+	private boolean canMerge( final NtreeNode< T >[] children )
+	{
+		final NtreeNode< T > child0 = children[ 0 ];
+		if ( child0.hasChildren() )
+			return false;
+		for ( int i = 1; i < numChildren; ++i )
+		{
+			final NtreeNode< T > child = children[ i ];
+			if ( child.hasChildren() || child0.getValue().compareTo( child.getValue() ) != 0 )
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Set the value at position in the subtree of {@code node}, which is at
+	 * the given level. New nodes are created as necessary. Nodes are merged
+	 * upwards, but not into the parent of {@code node}.
+	 */
+	private NtreeNode< T > setValue( final NtreeNode< T > node, final int level, final long[] position, final T value )
+	{
+		NtreeNode< T > current = node;
+		for ( int l = level; l >= 0; --l )
+		{
+			NtreeNode< T >[] children = current.children;
+			if ( children == null )
 			{
 				if ( current.getValue().compareTo( value ) == 0 )
 					return current;
-
-				current.children = new NtreeNode[ numChildren ];
-				for ( int i = 0; i < numChildren; ++i )
-					current.children[ i ] = new NtreeNode< T >( current, current.getValue() );
+				children = split( current );
 			}
-
-			final long bitmask = 1 << l;
-			int childindex = 0;
-			for ( int d = 0; d < n; ++d )
-				if ( ( position[ d ] & bitmask ) != 0 )
-					childindex |= 1 << d;
-			current = current.children[ childindex ];
+			current = children[ childIndex( position, l ) ];
 		}
 		if ( current.getValue().compareTo( value ) == 0 )
 			return current;
 		current.setValue( value );
-		return mergeUpwards( current );
+		return mergeUpwards( current, node );
 	}
 
 	/**
@@ -285,21 +406,35 @@ public final class Ntree< T extends Comparable< T >>
 	 */
 	NtreeNode< T > mergeUpwards( final NtreeNode< T > node )
 	{
+		return mergeUpwards( node, root );
+	}
+
+	/**
+	 * If all the children of our parent have the same value remove them all.
+	 * Call recursively for parent, until {@code top} is reached.
+	 * 
+	 * @param node
+	 *            the starting node (whose parents should be tested
+	 *            recursively).
+	 * @param top
+	 *            the node into which is merged last
+	 * @return node that the starting node was ultimately merged into.
+	 */
+	private NtreeNode< T > mergeUpwards( final NtreeNode< T > node, final NtreeNode< T > top )
+	{
+		if ( node == top )
+			return node;
 		final NtreeNode< T > parent = node.parent;
 		if ( parent == null )
 			return node;
-		final NtreeNode< T > child0 = parent.children[ 0 ];
-		if ( child0.hasChildren() )
+		final NtreeNode< T >[] children = parent.children;
+		if ( !canMerge( children ) )
 			return node;
-		for ( int i = 1; i < numChildren; ++i )
-		{
-			final NtreeNode< T > child = parent.children[ i ];
-			if ( child.hasChildren() || child0.getValue().compareTo( child.getValue() ) != 0 )
-				return node;
-		}
-		parent.setValue( child0.getValue() );
+		// set the value before removing the children, so that concurrent
+		// readers which find no children see the merged value
+		parent.setValue( children[ 0 ].getValue() );
 		parent.children = null;
-		return mergeUpwards( parent );
+		return mergeUpwards( parent, top );
 	}
 
 	/**
@@ -34,10 +34,11 @@
 
 package net.imglib2.img.sparse;
 
-public interface NtreeAccess< L extends Comparable< L >, A extends NtreeAccess< L, A > >
+public interface NtreeAccess< L extends Comparable< L >, A extends NtreeAccess< L, A > > extends SparseAccess< A >
 {
 
 	Ntree< L > getCurrentStorageNtree();
 
+	@Override
 	A createInstance( long[] pos );
 }
@@ -0,0 +1,330 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.sparse;
+
+import net.imglib2.AbstractInterval;
+import net.imglib2.Iterator;
+import net.imglib2.Sampler;
+import net.imglib2.img.sparse.Ntree.NtreeNode;
+import net.imglib2.img.sparse.NtreeImg.PositionProvider;
+import net.imglib2.type.NativeType;
+
+/**
+ * Iterates the leaves of the tree underlying a {@link NtreeImg}. Each leaf is
+ * a block of pixels with uniform value. The cursor is the {@link net.imglib2.Interval} of
+ * the current block (clipped to the image), and {@link #get()} is the value of
+ * the block. This allows to process a uniform block as a whole, instead of
+ * visiting every pixel.
+ * 
+ * <p>
+ * {@link #get()} returns a copy of the value of the current block, so blocks
+ * can be read but not written through this cursor. The tree must not be
+ * modified while blocks are iterated.
+ * </p>
+ */
+public final class NtreeBlockCursor< T extends NativeType< T > > extends AbstractInterval implements Iterator, Sampler< T >, PositionProvider
+{
+	private final NtreeImg< T, ? > img;
+
+	/**
+	 * linked to the pixel at the minimum of the current block.
+	 */
+	private final T type;
+
+	/**
+	 * the value of the current block, returned by {@link #get()}.
+	 */
+	private final T value;
+
+	/**
+	 * the tree, if the img is based on a {@link Ntree}.
+	 */
+	private final Ntree< ? > ntree;
+
+	/**
+	 * the tree, if the img is based on a {@link CompactNtree}.
+	 */
+	private final CompactNtree compactNtree;
+
+	private final int numTreeLevels;
+
+	private final int numChildren;
+
+	/**
+	 * nodes on the path from the root to the next leaf, if {@link #ntree} is
+	 * used.
+	 */
+	private final NtreeNode< ? >[] nodeStack;
+
+	/**
+	 * nodes on the path from the root to the next leaf, if
+	 * {@link #compactNtree} is used.
+	 */
+	private final int[] indexStack;
+
+	/**
+	 * for each node on the path, the index of the next child to visit, or -1
+	 * if the node has not been visited yet.
+	 */
+	private final int[] nextChild;
+
+	/**
+	 * for each node on the path, the minimum of the block it covers.
+	 */
+	private final long[][] minStack;
+
+	/**
+	 * depth of the top of the stack, or -1 if there are no more blocks.
+	 */
+	private int depth;
+
+	/**
+	 * minimum and size of the next block.
+	 */
+	private final long[] nextMin;
+
+	private long nextSize;
+
+	public NtreeBlockCursor( final NtreeImg< T, ? > img )
+	{
+		super( img.numDimensions() );
+
+		this.img = img;
+		final SparseAccess< ? > data = img.data;
+		if ( data instanceof NtreeAccess )
+		{
+			ntree = ( ( NtreeAccess< ?, ? > ) data ).getCurrentStorageNtree();
+			compactNtree = null;
+			numTreeLevels = ntree.numTreeLevels;
+			numChildren = ntree.numChildren;
+			nodeStack = new NtreeNode< ? >[ numTreeLevels ];
+			indexStack = null;
+		}
+		else if ( data instanceof CompactNtreeAccess )
+		{
+			ntree = null;
+			compactNtree = ( ( CompactNtreeAccess< ? > ) data ).getCurrentStorageNtree();
+			numTreeLevels = compactNtree.numTreeLevels;
+			numChildren = compactNtree.numChildren;
+			nodeStack = null;
+			indexStack = new int[ numTreeLevels ];
+		}
+		else
+			throw new IllegalArgumentException( "Unsupported sparse access " + data.getClass().getName() );
+
+		nextChild = new int[ numTreeLevels ];
+		minStack = new long[ numTreeLevels ][ n ];
+		nextMin = new long[ n ];
+
+		this.type = img.createLinkedType();
+		reset();
+		type.updateContainer( this );
+		this.value = type.createVariable();
+	}
+
+	private NtreeBlockCursor( final NtreeBlockCursor< T > cursor )
+	{
+		super( cursor.n );
+
+		this.img = cursor.img;
+		this.ntree = cursor.ntree;
+		this.compactNtree = cursor.compactNtree;
+		this.numTreeLevels = cursor.numTreeLevels;
+		this.numChildren = cursor.numChildren;
+		this.nodeStack = cursor.nodeStack == null ? null : cursor.nodeStack.clone();
+		this.indexStack = cursor.indexStack == null ? null : cursor.indexStack.clone();
+		this.nextChild = cursor.nextChild.clone();
+		this.minStack = new long[ numTreeLevels ][];
+		for ( int k = 0; k < numTreeLevels; ++k )
+			minStack[ k ] = cursor.minStack[ k ].clone();
+		this.depth = cursor.depth;
+		this.nextMin = cursor.nextMin.clone();
+		this.nextSize = cursor.nextSize;
+		for ( int d = 0; d < n; ++d )
+		{
+			min[ d ] = cursor.min[ d ];
+			max[ d ] = cursor.max[ d ];
+		}
+
+		this.type = img.createLinkedType();
+		type.updateContainer( this );
+		this.value = cursor.value.copy();
+	}
+
+	/**
+	 * Get the number of pixels in the current block.
+	 */
+	public long size()
+	{
+		long size = 1;
+		for ( int d = 0; d < n; ++d )
+			size *= max[ d ] - min[ d ] + 1;
+		return size;
+	}
+
+	/**
+	 * Get the value of the current block. This is not linked to the image,
+	 * i.e., setting it does not change the image.
+	 */
+	@Override
+	public T get()
+	{
+		return value;
+	}
+
+	public T next()
+	{
+		fwd();
+		return get();
+	}
+
+	@Override
+	public void fwd()
+	{
+		for ( int d = 0; d < n; ++d )
+		{
+			min[ d ] = nextMin[ d ];
+			max[ d ] = Math.min( nextMin[ d ] + nextSize, img.dimension( d ) ) - 1;
+		}
+		value.set( type );
+		findNext();
+	}
+
+	@Override
+	public void jumpFwd( final long steps )
+	{
+		for ( long i = 0; i < steps; ++i )
+			fwd();
+	}
+
+	@Override
+	public boolean hasNext()
+	{
+		return depth >= 0;
+	}
+
+	@Override
+	public void reset()
+	{
+		depth = 0;
+		if ( ntree != null )
+			nodeStack[ 0 ] = ntree.getRootNode();
+		else
+			indexStack[ 0 ] = 0;
+		nextChild[ 0 ] = -1;
+		for ( int d = 0; d < n; ++d )
+		{
+			minStack[ 0 ][ d ] = 0;
+			min[ d ] = 0;
+			max[ d ] = -1;
+		}
+		findNext();
+	}
+
+	@Override
+	public NtreeBlockCursor< T > copy()
+	{
+		return new NtreeBlockCursor< T >( this );
+	}
+
+	@Override
+	public long[] getPosition()
+	{
+		return min;
+	}
+
+	private boolean isLeaf( final int k )
+	{
+		if ( ntree != null )
+			return !nodeStack[ k ].hasChildren();
+		return compactNtree.getFirstChild( indexStack[ k ] ) < 0;
+	}
+
+	private void pushChild( final int k, final int childindex )
+	{
+		if ( ntree != null )
+			nodeStack[ k + 1 ] = nodeStack[ k ].getChildren()[ childindex ];
+		else
+			indexStack[ k + 1 ] = compactNtree.getFirstChild( indexStack[ k ] ) + childindex;
+	}
+
+	/**
+	 * Advance the traversal to the next leaf which intersects the image, and
+	 * store its minimum and size in {@link #nextMin} and {@link #nextSize}.
+	 */
+	private void findNext()
+	{
+		while ( depth >= 0 )
+		{
+			if ( nextChild[ depth ] < 0 )
+			{
+				if ( isLeaf( depth ) )
+				{
+					System.arraycopy( minStack[ depth ], 0, nextMin, 0, n );
+					nextSize = 1l << ( numTreeLevels - 1 - depth );
+					// pop the leaf when searching for the next one
+					nextChild[ depth ] = numChildren;
+					return;
+				}
+				nextChild[ depth ] = 0;
+			}
+
+			final int childindex = nextChild[ depth ];
+			if ( childindex == numChildren )
+			{
+				--depth;
+				continue;
+			}
+			++nextChild[ depth ];
+
+			final long childSize = 1l << ( numTreeLevels - 2 - depth );
+			final long[] parentMin = minStack[ depth ];
+			final long[] childMin = minStack[ depth + 1 ];
+			boolean inside = true;
+			for ( int d = 0; d < n; ++d )
+			{
+				childMin[ d ] = parentMin[ d ] + ( ( childindex & ( 1 << d ) ) != 0 ? childSize : 0 );
+				if ( childMin[ d ] >= img.dimension( d ) )
+					inside = false;
+			}
+			if ( inside )
+			{
+				pushChild( depth, childindex );
+				++depth;
+				nextChild[ depth ] = -1;
+			}
+		}
+	}
+}
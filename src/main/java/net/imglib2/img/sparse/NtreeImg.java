@@ -46,7 +46,7 @@ import net.imglib2.util.Fraction;
  * @author Tobias Pietzsch
  * 
  */
-public final class NtreeImg< T extends NativeType< T >, A extends NtreeAccess< ?, A >> extends AbstractNativeImg< T, A > implements Serializable
+public final class NtreeImg< T extends NativeType< T >, A extends SparseAccess< A >> extends AbstractNativeImg< T, A > implements Serializable
 {
 
 	/**
@@ -109,9 +109,19 @@ public final class NtreeImg< T extends NativeType< T >, A extends NtreeAccess< ?
 		return cursor();
 	}
 
+	/**
+	 * Create a cursor over the blocks of uniform value in this image.
+	 */
+	public NtreeBlockCursor< T > blockCursor()
+	{
+		return new NtreeBlockCursor< T >( this );
+	}
+
 	@Override
 	public ImgFactory< T > factory()
 	{
+		if ( data instanceof CompactNtreeAccess )
+			return new CompactNtreeImgFactory< T >();
 		return new NtreeImgFactory< T >();
 	}
 
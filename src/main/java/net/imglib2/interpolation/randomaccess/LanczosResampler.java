@@ -0,0 +1,526 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.interpolation.randomaccess;
+
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.util.Parallelization;
+import net.imglib2.util.Util;
+
+/**
+ * Resamples a {@link RandomAccessible} into a
+ * {@link RandomAccessibleInterval} with a separable kernel, by default the
+ * Lanczos kernel used by {@link LanczosInterpolator}. The transform from
+ * target to source must be axis-aligned, i.e., a scaling and translation
+ * of each dimension. Then the {@code (2a)^n} kernel weights of a target
+ * pixel are the product of {@code n} one-dimensional weights, which are
+ * computed once for each target coordinate of each dimension. The kernel is
+ * applied one dimension after the other, costing {@code O(n * 2a)} instead
+ * of {@code O((2a)^n)} operations per pixel.
+ *
+ * When a dimension is downsampled ({@code |scale| < 1}), the kernel is
+ * stretched to the footprint of a target pixel, i.e., it has radius
+ * {@code ceil(a / |scale|)} and weights {@code |scale| * L(|scale| * x)},
+ * normalized to sum 1 for each target coordinate. This low-pass filters the
+ * source to avoid aliasing. The kernel windows of neighboring target pixels
+ * then overlap as in upsampling, so the separable cost per source pixel
+ * stays {@code O(n * 2a)}.
+ *
+ * The target is processed in tiles, whose size is chosen such that the
+ * buffers of a tile are bounded. For each tile, the source values that are
+ * covered by the kernel windows of its target coordinates are read into a
+ * {@code double[]} buffer, which is then convolved and subsampled along
+ * dimension 0, 1, ..., n-1. Optionally, tiles are processed in parallel.
+ *
+ * The source must be defined at all positions that are required to
+ * interpolate the target, so it is usually extended with an out-of-bounds
+ * strategy.
+ *
+ * @param <S>
+ *            source pixel type
+ */
+public class LanczosResampler< S extends RealType< S > >
+{
+	/**
+	 * A symmetric one-dimensional interpolation kernel, such as a windowed
+	 * sinc. The value at position {@code p} is interpolated from the
+	 * {@code 2 * radius()} source values at {@code floor(p) - radius() + 1}
+	 * to {@code floor(p) + radius()}.
+	 */
+	public interface Kernel
+	{
+		int radius();
+
+		double weight( double x );
+	}
+
+	/**
+	 * The Lanczos kernel {@code sinc(x) sinc(x/a)} with radius {@code a}.
+	 */
+	public static Kernel lanczos( final int a )
+	{
+		return new Kernel()
+		{
+			@Override
+			public int radius()
+			{
+				return a;
+			}
+
+			@Override
+			public double weight( final double x )
+			{
+				if ( x == 0 )
+					return 1;
+				if ( x <= -a || x >= a )
+					return 0;
+				final double px = Math.PI * x;
+				return a * Math.sin( px ) * Math.sin( px / a ) / ( px * px );
+			}
+		};
+	}
+
+	/**
+	 * Maximum number of elements of the buffers of a tile. The tile size is
+	 * chosen such that the source block (and the buffers convolved from it)
+	 * fit, if possible.
+	 */
+	private static final long MAX_BUFFER_SIZE = 1 << 22;
+
+	private final RandomAccessible< S > source;
+
+	private final int n;
+
+	private final Kernel kernel;
+
+	private final boolean clip;
+
+	private final double min, max;
+
+	private ExecutorService executorService = null;
+
+	/**
+	 * Creates a resampler with a Lanczos kernel of radius 3 that clips to
+	 * the range of the target type.
+	 */
+	public LanczosResampler( final RandomAccessible< S > source )
+	{
+		this( source, 3, true );
+	}
+
+	/**
+	 * Creates a resampler with a Lanczos kernel of radius {@code alpha}.
+	 *
+	 * @param clip
+	 *            whether to clip values to the range of the target type
+	 */
+	public LanczosResampler( final RandomAccessible< S > source, final int alpha, final boolean clip )
+	{
+		this( source, lanczos( alpha ), clip, 0, 0 );
+	}
+
+	/**
+	 * Creates a resampler with the given kernel.
+	 *
+	 * @param clip
+	 *            whether to clip values to {@code [min, max]}
+	 * @param min
+	 *            range for clipping (if min==max, the range of the target
+	 *            type is used)
+	 * @param max
+	 *            range for clipping (if min==max, the range of the target
+	 *            type is used)
+	 */
+	public LanczosResampler( final RandomAccessible< S > source, final Kernel kernel, final boolean clip, final double min, final double max )
+	{
+		this.source = source;
+		this.n = source.numDimensions();
+		this.kernel = kernel;
+		this.clip = clip;
+		this.min = min;
+		this.max = max;
+	}
+
+	/**
+	 * Process tiles in parallel using the {@link ForkJoinPool#commonPool()}.
+	 */
+	public LanczosResampler< S > multiThreaded()
+	{
+		return multiThreaded( ForkJoinPool.commonPool() );
+	}
+
+	/**
+	 * Process tiles in parallel using the given {@link ExecutorService}.
+	 */
+	public LanczosResampler< S > multiThreaded( final ExecutorService executorService )
+	{
+		this.executorService = Objects.requireNonNull( executorService );
+		return this;
+	}
+
+	/**
+	 * Resample the source into {@code target}, scaling each dimension
+	 * {@code d} by {@code scale[ d ]}. That is, target pixel {@code t}
+	 * corresponds to source position {@code t / scale}.
+	 */
+	public < T extends RealType< T > > void scale( final RandomAccessibleInterval< T > target, final double... scale )
+	{
+		resample( target, scale, new double[ n ] );
+	}
+
+	/**
+	 * Resample the source into {@code target}. Target pixel {@code t}
+	 * corresponds to source position {@code ( t - translation ) / scale}.
+	 */
+	public < T extends RealType< T > > void resample( final RandomAccessibleInterval< T > target, final double[] scale, final double[] translation )
+	{
+		if ( target.numDimensions() != n )
+			throw new IllegalArgumentException( "Source and target dimensions differ." );
+		if ( scale.length != n || translation.length != n )
+			throw new IllegalArgumentException( "Expected " + n + " scale factors and translations." );
+		for ( int d = 0; d < n; ++d )
+			if ( target.dimension( d ) == 0 )
+				return;
+
+		// for each dimension and target coordinate, the first source
+		// coordinate of the kernel window and the kernel weights
+		final int[] k = new int[ n ];
+		final long[][] starts = new long[ n ][];
+		final double[][] weights = new double[ n ][];
+		for ( int d = 0; d < n; ++d )
+		{
+			// when downsampling, stretch the kernel to the footprint of a
+			// target pixel to avoid aliasing
+			final double stretch = Math.min( 1, Math.abs( scale[ d ] ) );
+			final int radius = stretch == 1 ? kernel.radius() : ( int ) Math.ceil( kernel.radius() / stretch );
+			k[ d ] = 2 * radius;
+			final int size = ( int ) target.dimension( d );
+			starts[ d ] = new long[ size ];
+			weights[ d ] = new double[ size * k[ d ] ];
+			for ( int t = 0; t < size; ++t )
+			{
+				final double s = ( target.min( d ) + t - translation[ d ] ) / scale[ d ];
+				final long start = ( long ) Math.floor( s ) - radius + 1;
+				starts[ d ][ t ] = start;
+				final int offset = t * k[ d ];
+				double sum = 0;
+				for ( int i = 0; i < k[ d ]; ++i )
+				{
+					final double w = stretch * kernel.weight( stretch * ( s - ( start + i ) ) );
+					weights[ d ][ offset + i ] = w;
+					sum += w;
+				}
+				if ( stretch < 1 && sum != 0 )
+					for ( int i = 0; i < k[ d ]; ++i )
+						weights[ d ][ offset + i ] /= sum;
+			}
+		}
+
+		final double minValue, maxValue;
+		if ( clip && min == max )
+		{
+			final T type = Util.getTypeFromInterval( target );
+			minValue = type.getMinValue();
+			maxValue = type.getMaxValue();
+		}
+		else
+		{
+			minValue = min;
+			maxValue = max;
+		}
+
+		// halve the tile in the dimension with the largest extent until the
+		// estimated buffer size is small enough
+		final int[] tileSize = new int[ n ];
+		final double[] sourcePerTarget = new double[ n ];
+		for ( int d = 0; d < n; ++d )
+		{
+			tileSize[ d ] = starts[ d ].length;
+			sourcePerTarget[ d ] = Math.abs( 1 / scale[ d ] );
+		}
+		while ( true )
+		{
+			int largest = -1;
+			double largestExtent = 1;
+			for ( int d = 0; d < n; ++d )
+			{
+				final double extent = Math.max( tileSize[ d ], sourceExtent( tileSize[ d ], sourcePerTarget[ d ], k[ d ] ) );
+				if ( tileSize[ d ] > 1 && extent > largestExtent )
+				{
+					largest = d;
+					largestExtent = extent;
+				}
+			}
+			if ( largest < 0 || estimateBufferSize( tileSize, sourcePerTarget, k ) <= MAX_BUFFER_SIZE )
+				break;
+			tileSize[ largest ] = ( tileSize[ largest ] + 1 ) / 2;
+		}
+
+		final long[] numTiles = new long[ n ];
+		long totalTiles = 1;
+		for ( int d = 0; d < n; ++d )
+		{
+			numTiles[ d ] = ( starts[ d ].length + tileSize[ d ] - 1 ) / tileSize[ d ];
+			totalTiles *= numTiles[ d ];
+		}
+
+		Parallelization.forEachChunk( executorService, totalTiles, ( firstTile, numChunkTiles ) -> {
+			final RandomAccess< S > in = source.randomAccess();
+			final RandomAccess< T > out = target.randomAccess();
+			final int[] from = new int[ n ];
+			final int[] to = new int[ n ];
+			for ( long tile = firstTile; tile < firstTile + numChunkTiles; ++tile )
+			{
+				long i = tile;
+				for ( int d = 0; d < n; ++d )
+				{
+					from[ d ] = ( int ) ( i % numTiles[ d ] ) * tileSize[ d ];
+					to[ d ] = Math.min( starts[ d ].length, from[ d ] + tileSize[ d ] );
+					i /= numTiles[ d ];
+				}
+				resampleTile( in, out, target, starts, weights, k, from, to, minValue, maxValue );
+			}
+		} );
+	}
+
+	/**
+	 * Estimate the number of source coordinates covered by the kernel
+	 * windows of {@code targetSize} consecutive target coordinates.
+	 */
+	private static double sourceExtent( final int targetSize, final double sourcePerTarget, final int k )
+	{
+		return Math.min( ( double ) targetSize * k, ( targetSize - 1 ) * sourcePerTarget + k );
+	}
+
+	/**
+	 * Estimate the size of the largest buffer of a tile, i.e., of the source
+	 * block and of the blocks after convolving dimension 0, 1, ..., n-1.
+	 */
+	private static double estimateBufferSize( final int[] tileSize, final double[] sourcePerTarget, final int[] k )
+	{
+		final int n = tileSize.length;
+		double largest = 0;
+		for ( int c = 0; c <= n; ++c )
+		{
+			double size = 1;
+			for ( int d = 0; d < n; ++d )
+				size *= d < c ? tileSize[ d ] : sourceExtent( tileSize[ d ], sourcePerTarget[ d ], k[ d ] );
+			largest = Math.max( largest, size );
+		}
+		return largest;
+	}
+
+	/**
+	 * Collect the source coordinates covered by the kernel windows starting
+	 * at {@code starts[ from ]} to {@code starts[ to - 1 ]}, in increasing
+	 * order, into {@code coordinates}. For each window, store the index of
+	 * its first coordinate in {@code windows[ j - from ]}. The elements of a
+	 * window are consecutive in {@code coordinates}.
+	 *
+	 * @return the number of collected coordinates.
+	 */
+	private static int collectWindows( final long[] starts, final int from, final int to, final int k, final long[] coordinates, final int[] windows )
+	{
+		// windows are sorted by start, in increasing order for positive and
+		// in decreasing order for negative scale
+		final boolean increasing = starts[ from ] <= starts[ to - 1 ];
+		int size = 0;
+		long last = Long.MIN_VALUE;
+		for ( int i = 0; i < to - from; ++i )
+		{
+			final int j = increasing ? from + i : to - 1 - i;
+			final long start = starts[ j ];
+			if ( start > last )
+			{
+				windows[ j - from ] = size;
+				for ( int x = 0; x < k; ++x )
+					coordinates[ size++ ] = start + x;
+			}
+			else
+			{
+				windows[ j - from ] = size - ( int ) ( last - start + 1 );
+				for ( long x = last + 1; x < start + k; ++x )
+					coordinates[ size++ ] = x;
+			}
+			last = start + k - 1;
+		}
+		return size;
+	}
+
+	/**
+	 * Resample the target coordinates {@code [from[ d ], to[ d ])} of each
+	 * dimension {@code d}.
+	 */
+	private < T extends RealType< T > > void resampleTile(
+			final RandomAccess< S > in,
+			final RandomAccess< T > out,
+			final RandomAccessibleInterval< T > target,
+			final long[][] starts,
+			final double[][] weights,
+			final int[] k,
+			final int[] from,
+			final int[] to,
+			final double minValue,
+			final double maxValue )
+	{
+		// collect the source coordinates of the kernel windows
+		final long[][] coordinates = new long[ n ][];
+		final int[][] windows = new int[ n ][];
+		final int[] dims = new int[ n ];
+		for ( int d = 0; d < n; ++d )
+		{
+			coordinates[ d ] = new long[ ( to[ d ] - from[ d ] ) * k[ d ] ];
+			windows[ d ] = new int[ to[ d ] - from[ d ] ];
+			dims[ d ] = collectWindows( starts[ d ], from[ d ], to[ d ], k[ d ], coordinates[ d ], windows[ d ] );
+		}
+
+		// read the source values at these coordinates
+		double[] buffer = new double[ size( dims ) ];
+		final int[] position = new int[ n ];
+		final long[] x0 = coordinates[ 0 ];
+		for ( int i = 0; i < buffer.length; i += dims[ 0 ] )
+		{
+			for ( int d = 0; d < n; ++d )
+				in.setPosition( coordinates[ d ][ position[ d ] ], d );
+			buffer[ i ] = in.get().getRealDouble();
+			for ( int x = 1; x < dims[ 0 ]; ++x )
+			{
+				in.move( x0[ x ] - x0[ x - 1 ], 0 );
+				buffer[ i + x ] = in.get().getRealDouble();
+			}
+			for ( int d = 1; d < n; ++d )
+			{
+				if ( ++position[ d ] < dims[ d ] )
+					break;
+				position[ d ] = 0;
+			}
+		}
+
+		// convolve and subsample one dimension after the other
+		for ( int d = 0; d < n; ++d )
+		{
+			final int f = from[ d ];
+			final int targetSize = to[ d ] - f;
+			final int sourceSize = dims[ d ];
+			int inner = 1;
+			for ( int e = 0; e < d; ++e )
+				inner *= dims[ e ];
+			final int outer = buffer.length / ( inner * sourceSize );
+			final double[] convolved = new double[ outer * targetSize * inner ];
+			final int[] dWindows = windows[ d ];
+			final int dk = k[ d ];
+			final double[] dWeights = weights[ d ];
+			for ( int o = 0; o < outer; ++o )
+			{
+				final int inBase = o * sourceSize * inner;
+				final int outBase = o * targetSize * inner;
+				for ( int j = 0; j < targetSize; ++j )
+				{
+					final int outOffset = outBase + j * inner;
+					final int inOffset = inBase + dWindows[ j ] * inner;
+					final int weightOffset = ( f + j ) * dk;
+					if ( inner == 1 )
+					{
+						double sum = 0;
+						for ( int i = 0; i < dk; ++i )
+							sum += dWeights[ weightOffset + i ] * buffer[ inOffset + i ];
+						convolved[ outOffset ] = sum;
+					}
+					else
+					{
+						for ( int i = 0; i < dk; ++i )
+						{
+							final double w = dWeights[ weightOffset + i ];
+							final int line = inOffset + i * inner;
+							for ( int x = 0; x < inner; ++x )
+								convolved[ outOffset + x ] += w * buffer[ line + x ];
+						}
+					}
+				}
+			}
+			buffer = convolved;
+			dims[ d ] = targetSize;
+		}
+
+		// write the target tile
+		final long[] targetPosition = new long[ n ];
+		for ( int d = 0; d < n; ++d )
+		{
+			targetPosition[ d ] = target.min( d ) + from[ d ];
+			position[ d ] = 0;
+		}
+		for ( int i = 0; i < buffer.length; i += dims[ 0 ] )
+		{
+			out.setPosition( targetPosition );
+			for ( int d = 1; d < n; ++d )
+				out.move( position[ d ], d );
+			for ( int x = 0; x < dims[ 0 ]; ++x )
+			{
+				double value = buffer[ i + x ];
+				if ( clip )
+				{
+					if ( value < minValue )
+						value = minValue;
+					else if ( value > maxValue )
+						value = maxValue;
+				}
+				out.get().setReal( value );
+				out.fwd( 0 );
+			}
+			for ( int d = 1; d < n; ++d )
+			{
+				if ( ++position[ d ] < dims[ d ] )
+					break;
+				position[ d ] = 0;
+			}
+		}
+	}
+
+	private static int size( final int[] dims )
+	{
+		long size = 1;
+		for ( final int d : dims )
+			size *= d;
+		if ( size > Integer.MAX_VALUE )
+			throw new IllegalArgumentException( "Source block is too large: " + size + " elements." );
+		return ( int ) size;
+	}
+}
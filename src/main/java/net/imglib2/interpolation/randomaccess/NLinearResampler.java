@@ -0,0 +1,371 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.interpolation.randomaccess;
+
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.util.IntervalIndexer;
+import net.imglib2.util.Parallelization;
+
+/**
+ * Resamples a {@link RandomAccessible} into a
+ * {@link RandomAccessibleInterval} with multi-linear interpolation. The
+ * result is the same as sampling
+ * {@code Views.interpolate( source, new NLinearInterpolatorFactory() )} at
+ * the transformed position of each target pixel, but the whole target is
+ * computed in one go:
+ * <ul>
+ * <li>The target is processed line by line along dimension 0. Along a line,
+ * the source position is advanced incrementally.</li>
+ * <li>Values are accumulated as {@code double}s, instead of {@code mul()} and
+ * {@code add()} on {@link RealType} variables.</li>
+ * <li>If the transform maps target dimension 0 to source dimension 0 only
+ * (scaling and translation, for example), the weights of the other dimensions
+ * are computed once per line, and the values interpolated along those
+ * dimensions are reused by consecutive target pixels that fall between the
+ * same source pixels.</li>
+ * <li>Optionally, lines are processed in parallel.</li>
+ * </ul>
+ *
+ * The transform from target to source coordinates is given as an affine
+ * matrix of {@code n} rows and {@code n + 1} columns in row-packed order,
+ * i.e., source position
+ * {@code s[ r ] = a[ r * ( n + 1 ) + n ] + sum_c a[ r * ( n + 1 ) + c ] * t[ c ]}
+ * for target position {@code t}.
+ *
+ * The source must be defined at all positions that are required to
+ * interpolate the target, so it is usually extended with an out-of-bounds
+ * strategy.
+ *
+ * @param <S>
+ *            source pixel type
+ */
+public class NLinearResampler< S extends RealType< S > >
+{
+	private final RandomAccessible< S > source;
+
+	private final int n;
+
+	private ExecutorService executorService = null;
+
+	public NLinearResampler( final RandomAccessible< S > source )
+	{
+		this.source = source;
+		this.n = source.numDimensions();
+	}
+
+	/**
+	 * Process lines in parallel using the {@link ForkJoinPool#commonPool()}.
+	 */
+	public NLinearResampler< S > multiThreaded()
+	{
+		return multiThreaded( ForkJoinPool.commonPool() );
+	}
+
+	/**
+	 * Process lines in parallel using the given {@link ExecutorService}.
+	 */
+	public NLinearResampler< S > multiThreaded( final ExecutorService executorService )
+	{
+		this.executorService = Objects.requireNonNull( executorService );
+		return this;
+	}
+
+	/**
+	 * Resample the source into {@code target}, scaling each dimension
+	 * {@code d} by {@code scale[ d ]}. That is, target pixel {@code t}
+	 * corresponds to source position {@code t / scale}.
+	 */
+	public < T extends RealType< T > > void scale( final RandomAccessibleInterval< T > target, final double... scale )
+	{
+		if ( scale.length != n )
+			throw new IllegalArgumentException( "Expected " + n + " scale factors." );
+		final double[] affine = new double[ n * ( n + 1 ) ];
+		for ( int d = 0; d < n; ++d )
+			affine[ d * ( n + 1 ) + d ] = 1.0 / scale[ d ];
+		resample( target, affine );
+	}
+
+	/**
+	 * Resample the source into {@code target}. Target pixel {@code t}
+	 * corresponds to source position {@code affine * t}, where {@code affine}
+	 * is a row-packed {@code n x (n+1)} matrix.
+	 */
+	public < T extends RealType< T > > void resample( final RandomAccessibleInterval< T > target, final double[] affine )
+	{
+		if ( target.numDimensions() != n )
+			throw new IllegalArgumentException( "Source and target dimensions differ." );
+		if ( affine.length != n * ( n + 1 ) )
+			throw new IllegalArgumentException( "Expected an affine matrix with " + ( n * ( n + 1 ) ) + " elements." );
+
+		final long width = target.dimension( 0 );
+		final long[] lineDimensions = new long[ n - 1 ];
+		for ( int d = 1; d < n; ++d )
+			lineDimensions[ d - 1 ] = target.dimension( d );
+		final long numLines = numElements( lineDimensions );
+		if ( width == 0 || numLines == 0 )
+			return;
+
+		// source step for a step along target dimension 0
+		final double[] step = new double[ n ];
+		boolean alongDimension0 = true;
+		for ( int d = 0; d < n; ++d )
+		{
+			step[ d ] = affine[ d * ( n + 1 ) ];
+			if ( d > 0 && step[ d ] != 0 )
+				alongDimension0 = false;
+		}
+		final boolean separable = alongDimension0;
+
+		Parallelization.forEachChunk( executorService, numLines, ( firstLine, length ) -> {
+			final LineResampler< T > resampler = separable
+					? new SeparableLineResampler<>( source.randomAccess(), target.randomAccess(), width, step )
+					: new LineResampler<>( source.randomAccess(), target.randomAccess(), width, step );
+			final long[] linePosition = new long[ n - 1 ];
+			final long[] targetPosition = new long[ n ];
+			final double[] sourcePosition = new double[ n ];
+			for ( long line = firstLine; line < firstLine + length; ++line )
+			{
+				if ( n > 1 )
+					IntervalIndexer.indexToPosition( line, lineDimensions, linePosition );
+				targetPosition[ 0 ] = target.min( 0 );
+				for ( int d = 1; d < n; ++d )
+					targetPosition[ d ] = target.min( d ) + linePosition[ d - 1 ];
+				for ( int r = 0; r < n; ++r )
+				{
+					final int row = r * ( n + 1 );
+					double s = affine[ row + n ];
+					for ( int c = 0; c < n; ++c )
+						s += affine[ row + c ] * targetPosition[ c ];
+					sourcePosition[ r ] = s;
+				}
+				resampler.resampleLine( targetPosition, sourcePosition );
+			}
+		} );
+	}
+
+	private static long numElements( final long[] dimensions )
+	{
+		long size = 1;
+		for ( final long d : dimensions )
+			size *= d;
+		return size;
+	}
+
+	/**
+	 * Interpolates the pixels of one target line. Each pixel is interpolated
+	 * from all {@code 2^n} surrounding source pixels.
+	 */
+	private static class LineResampler< T extends RealType< T > >
+	{
+		final RandomAccess< ? extends RealType< ? > > in;
+
+		final RandomAccess< T > out;
+
+		final int n;
+
+		final long width;
+
+		final double[] step;
+
+		final long[] floor;
+
+		/**
+		 * Weights of the {@code 2^n} corners, indexed as in
+		 * {@link NLinearInterpolator#weights}.
+		 */
+		final double[] weights;
+
+		LineResampler( final RandomAccess< ? extends RealType< ? > > in, final RandomAccess< T > out, final long width, final double[] step )
+		{
+			this.in = in;
+			this.out = out;
+			this.n = in.numDimensions();
+			this.width = width;
+			this.step = step;
+			floor = new long[ n ];
+			weights = new double[ 1 << n ];
+		}
+
+		void resampleLine( final long[] targetPosition, final double[] sourcePosition )
+		{
+			out.setPosition( targetPosition );
+			for ( int d = 0; d < n; ++d )
+				floor[ d ] = ( long ) Math.floor( sourcePosition[ d ] );
+			in.setPosition( floor );
+			for ( long x = 0; x < width; ++x )
+			{
+				weights[ 0 ] = 1.0;
+				for ( int d = n - 1; d >= 0; --d )
+				{
+					final double p = sourcePosition[ d ] + x * step[ d ];
+					final long f = ( long ) Math.floor( p );
+					if ( f != floor[ d ] )
+					{
+						in.move( f - floor[ d ], d );
+						floor[ d ] = f;
+					}
+					final double w = p - f;
+					final double wInv = 1.0 - w;
+					final int wInvIndexIncrement = 1 << d;
+					final int baseIndexIncrement = wInvIndexIncrement * 2;
+					for ( int baseIndex = 0; baseIndex < weights.length; baseIndex += baseIndexIncrement )
+					{
+						weights[ baseIndex + wInvIndexIncrement ] = weights[ baseIndex ] * w;
+						weights[ baseIndex ] *= wInv;
+					}
+				}
+				out.get().setReal( accumulate( in, 0, n, weights ) );
+				out.fwd( 0 );
+			}
+		}
+
+		/**
+		 * Sum the values of the corners of a {@code 2 x ... x 2} hypercube in
+		 * dimensions {@code [firstDimension, n)}, starting at the current
+		 * position of {@code in}, multiplied by their {@code weights}. The
+		 * corners are visited in Gray code order, such that {@code in} moves
+		 * in one dimension per corner. {@code in} is returned to its initial
+		 * position.
+		 */
+		static double accumulate( final RandomAccess< ? extends RealType< ? > > in, final int firstDimension, final int n, final double[] weights )
+		{
+			final int numCorners = 1 << ( n - firstDimension );
+			double sum = weights[ 0 ] * in.get().getRealDouble();
+			for ( int k = 1; k < numCorners; ++k )
+			{
+				final int bit = Integer.numberOfTrailingZeros( k );
+				final int code = k ^ ( k >> 1 );
+				if ( ( code & ( 1 << bit ) ) != 0 )
+					in.fwd( firstDimension + bit );
+				else
+					in.bck( firstDimension + bit );
+				sum += weights[ code ] * in.get().getRealDouble();
+			}
+			// the last Gray code has only the highest bit set
+			if ( numCorners > 1 )
+				in.bck( n - 1 );
+			return sum;
+		}
+	}
+
+	/**
+	 * Interpolates the pixels of one target line, that is parallel to source
+	 * dimension 0. The weights of dimensions {@code [1, n)} are the same for
+	 * all pixels of the line. For each source column (source dimension 0
+	 * position) the values are interpolated along dimensions {@code [1, n)}
+	 * once, and the target pixels interpolate linearly between two such
+	 * columns.
+	 */
+	private static class SeparableLineResampler< T extends RealType< T > > extends LineResampler< T >
+	{
+		SeparableLineResampler( final RandomAccess< ? extends RealType< ? > > in, final RandomAccess< T > out, final long width, final double[] step )
+		{
+			super( in, out, width, step );
+		}
+
+		@Override
+		void resampleLine( final long[] targetPosition, final double[] sourcePosition )
+		{
+			// weights of dimensions [1, n), indexed by the Gray code bits of
+			// dimensions [1, n)
+			weights[ 0 ] = 1.0;
+			for ( int d = n - 1; d >= 1; --d )
+			{
+				final double p = sourcePosition[ d ];
+				final long f = ( long ) Math.floor( p );
+				floor[ d ] = f;
+				final double w = p - f;
+				final double wInv = 1.0 - w;
+				final int wInvIndexIncrement = 1 << ( d - 1 );
+				final int baseIndexIncrement = wInvIndexIncrement * 2;
+				for ( int baseIndex = 0; baseIndex < 1 << ( n - 1 ); baseIndex += baseIndexIncrement )
+				{
+					weights[ baseIndex + wInvIndexIncrement ] = weights[ baseIndex ] * w;
+					weights[ baseIndex ] *= wInv;
+				}
+			}
+
+			floor[ 0 ] = ( long ) Math.floor( sourcePosition[ 0 ] );
+			in.setPosition( floor );
+			out.setPosition( targetPosition );
+
+			// columns at floor[ 0 ] and floor[ 0 ] + 1
+			long column = floor[ 0 ];
+			double column0 = accumulate( in, 1, n, weights );
+			in.fwd( 0 );
+			double column1 = accumulate( in, 1, n, weights );
+
+			for ( long x = 0; x < width; ++x )
+			{
+				final double p = sourcePosition[ 0 ] + x * step[ 0 ];
+				final long f = ( long ) Math.floor( p );
+				if ( f != column )
+				{
+					if ( f == column + 1 )
+					{
+						column0 = column1;
+						in.fwd( 0 );
+						column1 = accumulate( in, 1, n, weights );
+					}
+					else if ( f == column - 1 )
+					{
+						column1 = column0;
+						in.move( -2, 0 );
+						column0 = accumulate( in, 1, n, weights );
+						in.fwd( 0 );
+					}
+					else
+					{
+						in.setPosition( f, 0 );
+						column0 = accumulate( in, 1, n, weights );
+						in.fwd( 0 );
+						column1 = accumulate( in, 1, n, weights );
+					}
+					column = f;
+				}
+				final double w = p - f;
+				out.get().setReal( column0 + w * ( column1 - column0 ) );
+				out.fwd( 0 );
+			}
+		}
+	}
+}
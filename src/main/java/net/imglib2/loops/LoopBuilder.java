@@ -36,19 +36,30 @@ package net.imglib2.loops;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import net.imglib2.Cursor;
 import net.imglib2.Dimensions;
 import net.imglib2.FinalInterval;
 import net.imglib2.Interval;
+import net.imglib2.IterableInterval;
+import net.imglib2.Iterator;
 import net.imglib2.Positionable;
 import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.Sampler;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.img.cell.CellImg;
+import net.imglib2.img.planar.PlanarImg;
 import net.imglib2.util.Intervals;
+import net.imglib2.util.Parallelization;
+import net.imglib2.view.RandomAccessibleIntervalCursor;
 
 /**
  * {@link LoopBuilder} provides an easy way to write fast loops on
@@ -72,6 +83,16 @@ import net.imglib2.util.Intervals;
  * The {@link RandomAccessibleInterval}s {@code imageA}, {@code imageB} and
  * {@code sum} must have equal dimensions, but the bounds of there
  * {@link Intervals} can differ.
+ * <p>
+ * If all images have the same iteration order, e.g. {@link CellImg}s with the
+ * same {@link CellGrid}, the loop uses their {@link Cursor}s instead of
+ * {@link RandomAccess}es.
+ * </p>
+ * <p>
+ * By calling {@link #multiThreaded()} the loop is split into chunks, and the
+ * chunks are processed in parallel. In that case, the action given to
+ * {@link #forEachPixel} must be thread safe.
+ * </p>
  *
  * @author Matthias Arzt
  */
@@ -82,6 +103,8 @@ public class LoopBuilder< T >
 
 	private final RandomAccessibleInterval< ? >[] images;
 
+	private ExecutorService executorService = null;
+
 	private LoopBuilder( final RandomAccessibleInterval< ? >... images )
 	{
 		this.images = images;
@@ -112,18 +135,116 @@ public class LoopBuilder< T >
 		return new LoopBuilder<>( a, b, c );
 	}
 
+	/**
+	 * Execute the loop in parallel, using the common {@link ForkJoinPool}.
+	 *
+	 * @see #multiThreaded(ExecutorService)
+	 */
+	public LoopBuilder< T > multiThreaded()
+	{
+		return multiThreaded( ForkJoinPool.commonPool() );
+	}
+
+	/**
+	 * Execute the loop in parallel, using the given {@link ExecutorService}.
+	 * If the images have equal iteration order, the pixels are split into
+	 * chunks along that iteration order, and each chunk is processed with its
+	 * own set of {@link Cursor}s. Otherwise the interval is split into chunks
+	 * along the slowest varying dimension, and each chunk is processed with
+	 * its own set of {@link RandomAccess}es. Every chunk uses its own loop
+	 * instance. The action passed to {@link #forEachPixel} is shared between
+	 * the chunks, and must therefore be thread safe.
+	 */
+	public LoopBuilder< T > multiThreaded( final ExecutorService executorService )
+	{
+		this.executorService = Objects.requireNonNull( executorService );
+		return this;
+	}
+
 	public void forEachPixel( final T action )
 	{
 		Objects.requireNonNull( action );
-		final List< RandomAccess< ? > > samplers = Stream.of( images ).map( this::initRandomAccess ).collect( Collectors.toList() );
+		if ( haveEqualIterationOrder() )
+			Parallelization.forEachChunk( executorService, Intervals.numElements( dimensions ), ( offset, length ) -> createCursorLoop( action, offset, length ).run() );
+		else
+		{
+			final int d = slowestDimension();
+			final long size = d < 0 ? 1 : dimensions.dimension( d );
+			Parallelization.forEachChunk( executorService, size, ( offset, length ) -> createIntervalLoop( action, d, offset, length ).run() );
+		}
+	}
+
+	/**
+	 * True, if all the images are {@link IterableInterval}s with equal
+	 * iteration order, and their cursors are not just wrappers around a
+	 * {@link RandomAccess}. This is for example the case for {@link ArrayImg}s
+	 * and {@link PlanarImg}s of equal dimensions, or for {@link CellImg}s with
+	 * equal {@link CellGrid}. The images can then be processed with cursors,
+	 * that iterate cell by cell over the underlying flat arrays.
+	 */
+	private boolean haveEqualIterationOrder()
+	{
+		if ( !( images[ 0 ] instanceof IterableInterval ) )
+			return false;
+		final Object order = ( ( IterableInterval< ? > ) images[ 0 ] ).iterationOrder();
+		for ( final RandomAccessibleInterval< ? > image : images )
+		{
+			if ( !( image instanceof IterableInterval ) )
+				return false;
+			final IterableInterval< ? > iterable = ( IterableInterval< ? > ) image;
+			if ( !order.equals( iterable.iterationOrder() ) || iterable.cursor() instanceof RandomAccessibleIntervalCursor )
+				return false;
+		}
+		return true;
+	}
+
+	private int slowestDimension()
+	{
+		for ( int d = dimensions.numDimensions() - 1; d >= 0; d-- )
+			if ( dimensions.dimension( d ) > 1 )
+				return d;
+		return -1;
+	}
+
+	/**
+	 * Returns a loop over the pixels with index {@code [offset, offset +
+	 * length)} in the common iteration order of the images. The loop uses a new
+	 * set of {@link Cursor}s.
+	 */
+	private Runnable createCursorLoop( final T action, final long offset, final long length )
+	{
+		final List< Cursor< ? > > cursors = Stream.of( images ).map( image -> ( ( IterableInterval< ? > ) image ).cursor() ).collect( Collectors.toList() );
+		final Iterator synced = SyncedIterators.create( cursors );
+		synced.jumpFwd( offset );
+		return LoopUtils.createIteratorLoop( synced, length, RunnableFactory.bindActionToSamplers( action, cursors ) );
+	}
+
+	/**
+	 * Returns a loop over the sub interval, that starts at {@code offset} and
+	 * has the given {@code length} in dimension {@code d}. The loop uses a new
+	 * set of {@link RandomAccess}es.
+	 */
+	private Runnable createIntervalLoop( final T action, final int d, final long offset, final long length )
+	{
+		final long[] min = new long[ dimensions.numDimensions() ];
+		final long[] chunk = Intervals.dimensionsAsLongArray( dimensions );
+		if ( d >= 0 )
+		{
+			min[ d ] = offset;
+			chunk[ d ] = length;
+		}
+		final List< RandomAccess< ? > > samplers = Stream.of( images ).map( image -> initRandomAccess( image, min ) ).collect( Collectors.toList() );
 		final Positionable synced = SyncedPositionables.create( samplers );
-		LoopUtils.createIntervalLoop( synced, dimensions, RunnableFactory.bindActionToSamplers( action, samplers ) ).run();
+		return LoopUtils.createIntervalLoop( synced, new FinalInterval( chunk ), RunnableFactory.bindActionToSamplers( action, samplers ) );
 	}
 
-	private RandomAccess< ? > initRandomAccess( final RandomAccessibleInterval< ? > image )
+	private RandomAccess< ? > initRandomAccess( final RandomAccessibleInterval< ? > image, final long[] offset )
 	{
 		final RandomAccess< ? > ra = image.randomAccess();
-		ra.setPosition( Intervals.minAsLongArray( image ) );
+		final long[] position = Intervals.minAsLongArray( image );
+		for ( int d = 0; d < position.length; d++ )
+			position[ d ] += offset[ d ];
+		ra.setPosition( position );
 		return ra;
 	}
 
@@ -37,6 +37,7 @@ import java.util.Arrays;
 import java.util.List;
 
 import net.imglib2.Dimensions;
+import net.imglib2.Iterator;
 import net.imglib2.Positionable;
 
 /**
@@ -55,6 +56,8 @@ final public class LoopUtils
 
 	private static ClassCopyProvider< Runnable > factory = new ClassCopyProvider<>( LineProcessor.class, Runnable.class );
 
+	private static ClassCopyProvider< Runnable > iteratorFactory = new ClassCopyProvider<>( IteratorProcessor.class, Runnable.class );
+
 	/**
 	 * <p>
 	 * Returns a loop, that moves the given positonable along a line, and
@@ -120,6 +123,41 @@ final public class LoopUtils
 		return action;
 	}
 
+	/**
+	 * <p>
+	 * Returns a loop, that moves the given iterator forward {@code length}
+	 * times, and executes the given operation after each step. The method uses
+	 * {@link ClassCopyProvider}, such that the returned loop can be optimised
+	 * gracefully by the java just-in-time compiler. Aside from that, the result
+	 * is functionally equivalent to:
+	 * </p>
+	 *
+	 * <pre>
+	 * {@code Runnable result = () -> {
+	 *     for (long i = 0; i < length; i++) {
+	 *         iterator.fwd();
+	 *         operation.run();
+	 *     }
+	 * }
+	 * }
+	 * </pre>
+	 *
+	 * Unlike {@link #createLineLoop}, the iterator is not moved back after the
+	 * loops execution.
+	 *
+	 * @param iterator
+	 *            Iterator that is moved forward.
+	 * @param length
+	 *            Number of steps.
+	 * @param action
+	 *            Operation that is executed after each step.
+	 */
+	public static Runnable createIteratorLoop( final Iterator iterator, final long length, final Runnable action )
+	{
+		final List< Object > key = Arrays.asList( action.getClass(), iterator.getClass() );
+		return iteratorFactory.newInstanceForKey( key, action, iterator, length );
+	}
+
 	public static class LineProcessor implements Runnable
 	{
 
@@ -150,4 +188,31 @@ final public class LoopUtils
 			positionable.move( -lineLength, dimension );
 		}
 	}
+
+	public static class IteratorProcessor implements Runnable
+	{
+
+		private final Runnable action;
+
+		private final Iterator iterator;
+
+		private final long length;
+
+		public IteratorProcessor( final Runnable action, final Iterator iterator, final long length )
+		{
+			this.action = action;
+			this.iterator = iterator;
+			this.length = length;
+		}
+
+		@Override
+		public void run()
+		{
+			for ( long i = 0; i < length; i++ )
+			{
+				iterator.fwd();
+				action.run();
+			}
+		}
+	}
 }
@@ -0,0 +1,205 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.loops;
+
+import java.util.Arrays;
+import java.util.List;
+
+import net.imglib2.Iterator;
+
+/**
+ * Helper for the implementation of {@link LoopBuilder}. Used to bind together a
+ * list of {@link Iterator}s:
+ * <p>
+ * {@code
+ * Iterator synced = SyncedIterators.create(listOfIterators);
+ * }
+ * </p>
+ * <p>
+ * A call of {@link Iterator#fwd}, {@link Iterator#jumpFwd} or
+ * {@link Iterator#reset} on {@code synced} is forwarded to all the
+ * {@link Iterator}s in the list. {@link Iterator#hasNext} is answered by the
+ * first {@link Iterator} in the list.
+ * </p>
+ */
+public final class SyncedIterators
+{
+
+	private SyncedIterators()
+	{
+		// prevent class from instantiation
+	}
+
+	public static Iterator create( final List< ? extends Iterator > iterators )
+	{
+		switch ( iterators.size() )
+		{
+		case 0:
+			throw new AssertionError();
+		case 1:
+			return iterators.get( 0 );
+		case 2:
+			return new Forwarder2( iterators );
+		case 3:
+			return new Forwarder3( iterators );
+		default:
+			return new GeneralForwarder( iterators );
+		}
+	}
+
+	public static Iterator create( final Iterator... iterators )
+	{
+		return create( Arrays.asList( iterators ) );
+	}
+
+	private static class Forwarder2 implements Iterator
+	{
+
+		private final Iterator a, b;
+
+		public Forwarder2( final List< ? extends Iterator > values )
+		{
+			this.a = values.get( 0 );
+			this.b = values.get( 1 );
+		}
+
+		@Override
+		public void jumpFwd( final long steps )
+		{
+			a.jumpFwd( steps );
+			b.jumpFwd( steps );
+		}
+
+		@Override
+		public void fwd()
+		{
+			a.fwd();
+			b.fwd();
+		}
+
+		@Override
+		public void reset()
+		{
+			a.reset();
+			b.reset();
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return a.hasNext();
+		}
+	}
+
+	private static class Forwarder3 implements Iterator
+	{
+
+		private final Iterator a, b, c;
+
+		public Forwarder3( final List< ? extends Iterator > values )
+		{
+			this.a = values.get( 0 );
+			this.b = values.get( 1 );
+			this.c = values.get( 2 );
+		}
+
+		@Override
+		public void jumpFwd( final long steps )
+		{
+			a.jumpFwd( steps );
+			b.jumpFwd( steps );
+			c.jumpFwd( steps );
+		}
+
+		@Override
+		public void fwd()
+		{
+			a.fwd();
+			b.fwd();
+			c.fwd();
+		}
+
+		@Override
+		public void reset()
+		{
+			a.reset();
+			b.reset();
+			c.reset();
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return a.hasNext();
+		}
+	}
+
+	private static class GeneralForwarder implements Iterator
+	{
+
+		private final Iterator[] values;
+
+		public GeneralForwarder( final List< ? extends Iterator > values )
+		{
+			this.values = values.toArray( new Iterator[ values.size() ] );
+		}
+
+		@Override
+		public void jumpFwd( final long steps )
+		{
+			for ( final Iterator iterator : values )
+				iterator.jumpFwd( steps );
+		}
+
+		@Override
+		public void fwd()
+		{
+			for ( final Iterator iterator : values )
+				iterator.fwd();
+		}
+
+		@Override
+		public void reset()
+		{
+			for ( final Iterator iterator : values )
+				iterator.reset();
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return values[ 0 ].hasNext();
+		}
+	}
+}
@@ -0,0 +1,192 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.neighborsearch;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
+import net.imglib2.FlatKDTree;
+import net.imglib2.RealLocalizable;
+import net.imglib2.util.Parallelization;
+
+/**
+ * Performs <em>k</em>-nearest-neighbor searches on a {@link FlatKDTree} for
+ * many query points at once. For each query, the indices (into the values
+ * list the tree was constructed from) and square Euclidean distances of the
+ * <em>k</em> nearest neighbors are written into arrays, ordered by distance.
+ *
+ * <p>
+ * By calling {@link #multiThreaded()}, the queries are split into chunks
+ * which are processed in parallel. Each chunk uses its own
+ * {@link KNearestNeighborSearchOnFlatKDTree}, so no search state is shared
+ * between threads.
+ * </p>
+ *
+ * <pre>
+ * {@code
+ * KNearestNeighborBatchSearchOnFlatKDTree<T> search = new KNearestNeighborBatchSearchOnFlatKDTree<>(tree, k).multiThreaded();
+ * int[] indices = new int[numQueries * k];
+ * double[] squDistances = new double[numQueries * k];
+ * search.search(queries, indices, squDistances);
+ * }
+ * </pre>
+ */
+public class KNearestNeighborBatchSearchOnFlatKDTree< T >
+{
+	private final FlatKDTree< T > tree;
+
+	private final int n;
+
+	private final int k;
+
+	private ExecutorService executorService = null;
+
+	public KNearestNeighborBatchSearchOnFlatKDTree( final FlatKDTree< T > tree, final int k )
+	{
+		this.tree = tree;
+		this.n = tree.numDimensions();
+		this.k = k;
+	}
+
+	/**
+	 * Process the queries in parallel, using the common {@link ForkJoinPool}.
+	 *
+	 * @see #multiThreaded(ExecutorService)
+	 */
+	public KNearestNeighborBatchSearchOnFlatKDTree< T > multiThreaded()
+	{
+		return multiThreaded( ForkJoinPool.commonPool() );
+	}
+
+	/**
+	 * Process the queries in parallel, using the given
+	 * {@link ExecutorService}.
+	 */
+	public KNearestNeighborBatchSearchOnFlatKDTree< T > multiThreaded( final ExecutorService executorService )
+	{
+		this.executorService = Objects.requireNonNull( executorService );
+		return this;
+	}
+
+	public int getK()
+	{
+		return k;
+	}
+
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	/**
+	 * Search the <em>k</em> nearest neighbors of the query points given as a
+	 * flattened coordinate array.
+	 *
+	 * @param queries
+	 *            coordinates of the query points. Coordinate {@code d} of query
+	 *            {@code q} is at {@code queries[ q * n + d ]}.
+	 * @param indices
+	 *            the index of the <em>i</em><sup>th</sup> nearest neighbor of
+	 *            query {@code q} is stored at {@code indices[ q * k + i ]}. If
+	 *            the tree has less than <em>k</em> nodes, missing neighbors
+	 *            are -1.
+	 * @param squDistances
+	 *            the square Euclidean distance to the <em>i</em><sup>th</sup>
+	 *            nearest neighbor of query {@code q} is stored at
+	 *            {@code squDistances[ q * k + i ]}. May be {@code null}.
+	 */
+	public void search( final double[] queries, final int[] indices, final double[] squDistances )
+	{
+		final int numQueries = queries.length / n;
+		checkOutputSize( numQueries, indices, squDistances );
+		Parallelization.forEachChunk( executorService, numQueries, ( offset, length ) -> {
+			final KNearestNeighborSearchOnFlatKDTree< T > search = new KNearestNeighborSearchOnFlatKDTree< T >( tree, k );
+			final double[] reference = new double[ n ];
+			for ( int q = ( int ) offset; q < offset + length; ++q )
+			{
+				System.arraycopy( queries, q * n, reference, 0, n );
+				search.search( reference );
+				store( search, q, indices, squDistances );
+			}
+		} );
+	}
+
+	/**
+	 * Search the <em>k</em> nearest neighbors of the given query points.
+	 *
+	 * @param queries
+	 *            the query points.
+	 * @param indices
+	 *            the index of the <em>i</em><sup>th</sup> nearest neighbor of
+	 *            query {@code q} is stored at {@code indices[ q * k + i ]}. If
+	 *            the tree has less than <em>k</em> nodes, missing neighbors
+	 *            are -1.
+	 * @param squDistances
+	 *            the square Euclidean distance to the <em>i</em><sup>th</sup>
+	 *            nearest neighbor of query {@code q} is stored at
+	 *            {@code squDistances[ q * k + i ]}. May be {@code null}.
+	 */
+	public void search( final List< ? extends RealLocalizable > queries, final int[] indices, final double[] squDistances )
+	{
+		final int numQueries = queries.size();
+		checkOutputSize( numQueries, indices, squDistances );
+		Parallelization.forEachChunk( executorService, numQueries, ( offset, length ) -> {
+			final KNearestNeighborSearchOnFlatKDTree< T > search = new KNearestNeighborSearchOnFlatKDTree< T >( tree, k );
+			for ( int q = ( int ) offset; q < offset + length; ++q )
+			{
+				search.search( queries.get( q ) );
+				store( search, q, indices, squDistances );
+			}
+		} );
+	}
+
+	private void checkOutputSize( final int numQueries, final int[] indices, final double[] squDistances )
+	{
+		if ( indices.length < numQueries * k || ( squDistances != null && squDistances.length < numQueries * k ) )
+			throw new IllegalArgumentException( "output arrays must have at least " + numQueries * k + " elements" );
+	}
+
+	private void store( final KNearestNeighborSearchOnFlatKDTree< T > search, final int q, final int[] indices, final double[] squDistances )
+	{
+		for ( int i = 0, o = q * k; i < k; ++i, ++o )
+		{
+			indices[ o ] = search.getValueIndex( i );
+			if ( squDistances != null )
+				squDistances[ o ] = search.getSquareDistance( i );
+		}
+	}
+}
@@ -0,0 +1,315 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.neighborsearch;
+
+import net.imglib2.RealLocalizable;
+import net.imglib2.Sampler;
+import net.imglib2.SpatialHashGrid;
+
+/**
+ * Implementation of {@link KNearestNeighborSearch} search for
+ * {@link SpatialHashGrid}.
+ *
+ * <p>
+ * Cells are visited in rings of increasing Chebyshev distance {@code r}
+ * around the cell containing the query, until the <em>k</em>th best distance
+ * is smaller than the distance from the query to the outside of the visited
+ * cells. Cells that are farther from the query than the <em>k</em>th best
+ * distance are skipped. If
+ * the rings would contain more cells than the grid contains points, the
+ * remaining points are searched linearly instead.
+ * </p>
+ */
+public class KNearestNeighborSearchOnSpatialHashGrid< T > implements KNearestNeighborSearch< T >
+{
+	protected SpatialHashGrid< T > grid;
+
+	protected final int n;
+
+	protected final double[] pos;
+
+	protected final int k;
+
+	protected final int[] bestIds;
+
+	protected final double[] bestSquDistances;
+
+	private final long[] center, cell, minCell, maxCell, from, to;
+
+	public KNearestNeighborSearchOnSpatialHashGrid( final SpatialHashGrid< T > grid, final int k )
+	{
+		this.grid = grid;
+		this.n = grid.numDimensions();
+		this.pos = new double[ n ];
+		this.k = k;
+		this.bestIds = new int[ k ];
+		this.bestSquDistances = new double[ k ];
+		for ( int i = 0; i < k; ++i )
+		{
+			bestIds[ i ] = -1;
+			bestSquDistances[ i ] = Double.MAX_VALUE;
+		}
+		center = new long[ n ];
+		cell = new long[ n ];
+		minCell = new long[ n ];
+		maxCell = new long[ n ];
+		from = new long[ n ];
+		to = new long[ n ];
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	@Override
+	public int getK()
+	{
+		return k;
+	}
+
+	@Override
+	public void search( final RealLocalizable reference )
+	{
+		reference.localize( pos );
+		search();
+	}
+
+	/**
+	 * Perform <em>k</em>-nearest-neighbor search for a reference coordinate
+	 * given as an array.
+	 *
+	 * @param reference
+	 */
+	public void search( final double[] reference )
+	{
+		System.arraycopy( reference, 0, pos, 0, n );
+		search();
+	}
+
+	private void search()
+	{
+		for ( int i = 0; i < k; ++i )
+		{
+			bestIds[ i ] = -1;
+			bestSquDistances[ i ] = Double.MAX_VALUE;
+		}
+		if ( grid.size() == 0 )
+			return;
+
+		grid.getCellPosition( pos, center );
+		grid.getMinCell( minCell );
+		grid.getMaxCell( maxCell );
+		long maxRing = 0;
+		for ( int d = 0; d < n; ++d )
+			maxRing = Math.max( maxRing, Math.max( center[ d ] - minCell[ d ], maxCell[ d ] - center[ d ] ) );
+
+		final double cellSize = grid.getCellSize();
+		for ( long r = 0; r <= maxRing; ++r )
+		{
+			if ( Math.pow( 2 * r + 1, n ) > grid.size() )
+			{
+				searchAll();
+				return;
+			}
+			searchRing( r );
+			// distance from the query to the outside of the visited cells
+			double bound = Double.MAX_VALUE;
+			for ( int d = 0; d < n; ++d )
+				bound = Math.min( bound, Math.min(
+						pos[ d ] - ( center[ d ] - r ) * cellSize,
+						( center[ d ] + r + 1 ) * cellSize - pos[ d ] ) );
+			if ( bestSquDistances[ k - 1 ] <= bound * bound )
+				return;
+		}
+	}
+
+	/**
+	 * Consider the points in the cells at Chebyshev distance {@code r} from
+	 * {@link #center} (that are in the bounding box of occupied cells).
+	 */
+	private void searchRing( final long r )
+	{
+		for ( int d = 0; d < n; ++d )
+		{
+			from[ d ] = Math.max( center[ d ] - r, minCell[ d ] );
+			to[ d ] = Math.min( center[ d ] + r, maxCell[ d ] );
+			if ( from[ d ] > to[ d ] )
+				return;
+			cell[ d ] = from[ d ];
+		}
+		while ( true )
+		{
+			if ( isOnRing( r ) && squDistanceToCell() < bestSquDistances[ k - 1 ] )
+				for ( int id = grid.firstInCell( cell ); id >= 0; id = grid.nextInCell( id, cell ) )
+					consider( id );
+			int d = 0;
+			for ( ; d < n; ++d )
+			{
+				if ( cell[ d ] < to[ d ] )
+				{
+					++cell[ d ];
+					break;
+				}
+				cell[ d ] = from[ d ];
+			}
+			if ( d == n )
+				return;
+		}
+	}
+
+	/**
+	 * Compute the squared distance from the query to the nearest point of
+	 * {@link #cell}.
+	 */
+	private double squDistanceToCell()
+	{
+		final double cellSize = grid.getCellSize();
+		double sum = 0;
+		for ( int d = 0; d < n; ++d )
+		{
+			final double min = cell[ d ] * cellSize;
+			final double diff = pos[ d ] < min ? min - pos[ d ] : Math.max( 0, pos[ d ] - min - cellSize );
+			sum += diff * diff;
+		}
+		return sum;
+	}
+
+	private boolean isOnRing( final long r )
+	{
+		for ( int d = 0; d < n; ++d )
+			if ( Math.abs( cell[ d ] - center[ d ] ) == r )
+				return true;
+		return r == 0;
+	}
+
+	private void searchAll()
+	{
+		for ( int i = 0; i < k; ++i )
+		{
+			bestIds[ i ] = -1;
+			bestSquDistances[ i ] = Double.MAX_VALUE;
+		}
+		for ( int id = 0; id < grid.idBound(); ++id )
+			if ( grid.contains( id ) )
+				consider( id );
+	}
+
+	private void consider( final int id )
+	{
+		final double squDistance = grid.squDistance( id, pos );
+		if ( squDistance < bestSquDistances[ k - 1 ] )
+		{
+			int i = k - 1;
+			for ( int j = i - 1; i > 0 && squDistance < bestSquDistances[ j ]; --i, --j )
+			{
+				bestSquDistances[ i ] = bestSquDistances[ j ];
+				bestIds[ i ] = bestIds[ j ];
+			}
+			bestSquDistances[ i ] = squDistance;
+			bestIds[ i ] = id;
+		}
+	}
+
+	/**
+	 * Get the id of the <em>i</em><sup>th</sup> nearest neighbor, or -1 if
+	 * the grid has less than {@code i + 1} points.
+	 */
+	public int getId( final int i )
+	{
+		return bestIds[ i ];
+	}
+
+	@Override
+	public Sampler< T > getSampler( final int i )
+	{
+		return grid.entry( bestIds[ i ] );
+	}
+
+	@Override
+	public RealLocalizable getPosition( final int i )
+	{
+		return grid.entry( bestIds[ i ] );
+	}
+
+	@Override
+	public double getSquareDistance( final int i )
+	{
+		return bestSquDistances[ i ];
+	}
+
+	@Override
+	public double getDistance( final int i )
+	{
+		return Math.sqrt( bestSquDistances[ i ] );
+	}
+
+	/* NearestNeighborSearch */
+
+	@Override
+	public RealLocalizable getPosition()
+	{
+		return getPosition( 0 );
+	}
+
+	@Override
+	public Sampler< T > getSampler()
+	{
+		return getSampler( 0 );
+	}
+
+	@Override
+	public double getSquareDistance()
+	{
+		return getSquareDistance( 0 );
+	}
+
+	@Override
+	public double getDistance()
+	{
+		return getDistance( 0 );
+	}
+
+	@Override
+	public KNearestNeighborSearchOnSpatialHashGrid< T > copy()
+	{
+		final KNearestNeighborSearchOnSpatialHashGrid< T > copy = new KNearestNeighborSearchOnSpatialHashGrid< T >( grid, k );
+		System.arraycopy( pos, 0, copy.pos, 0, pos.length );
+		System.arraycopy( bestIds, 0, copy.bestIds, 0, k );
+		System.arraycopy( bestSquDistances, 0, copy.bestSquDistances, 0, k );
+		return copy;
+	}
+}
@@ -0,0 +1,120 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.neighborsearch;
+
+import net.imglib2.RealLocalizable;
+import net.imglib2.Sampler;
+import net.imglib2.SpatialHashGrid;
+
+/**
+ * Implementation of {@link NearestNeighborSearch} search for
+ * {@link SpatialHashGrid}. This is a
+ * {@link KNearestNeighborSearchOnSpatialHashGrid} with <em>k = 1</em>.
+ */
+public class NearestNeighborSearchOnSpatialHashGrid< T > implements NearestNeighborSearch< T >
+{
+	protected final KNearestNeighborSearchOnSpatialHashGrid< T > search;
+
+	public NearestNeighborSearchOnSpatialHashGrid( final SpatialHashGrid< T > grid )
+	{
+		this( new KNearestNeighborSearchOnSpatialHashGrid< T >( grid, 1 ) );
+	}
+
+	private NearestNeighborSearchOnSpatialHashGrid( final KNearestNeighborSearchOnSpatialHashGrid< T > search )
+	{
+		this.search = search;
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return search.numDimensions();
+	}
+
+	@Override
+	public void search( final RealLocalizable p )
+	{
+		search.search( p );
+	}
+
+	/**
+	 * Perform nearest-neighbor search for a reference coordinate given as an
+	 * array.
+	 *
+	 * @param reference
+	 */
+	public void search( final double[] reference )
+	{
+		search.search( reference );
+	}
+
+	/**
+	 * Get the id of the nearest neighbor, or -1 if the grid is empty.
+	 */
+	public int getId()
+	{
+		return search.getId( 0 );
+	}
+
+	@Override
+	public Sampler< T > getSampler()
+	{
+		return search.getSampler();
+	}
+
+	@Override
+	public RealLocalizable getPosition()
+	{
+		return search.getPosition();
+	}
+
+	@Override
+	public double getSquareDistance()
+	{
+		return search.getSquareDistance();
+	}
+
+	@Override
+	public double getDistance()
+	{
+		return search.getDistance();
+	}
+
+	@Override
+	public NearestNeighborSearchOnSpatialHashGrid< T > copy()
+	{
+		return new NearestNeighborSearchOnSpatialHashGrid< T >( search.copy() );
+	}
+}
@@ -0,0 +1,214 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.neighborsearch;
+
+import net.imglib2.RealLocalizable;
+import net.imglib2.Sampler;
+import net.imglib2.SpatialHashGrid;
+import net.imglib2.util.Util;
+
+/**
+ * Implementation of {@link RadiusNeighborSearch} search for
+ * {@link SpatialHashGrid}. The cells overlapping the search sphere are
+ * visited, unless there are more cells in its bounding box than points in
+ * the grid, in which case all points are checked. Results are kept in
+ * primitive arrays that grow as needed.
+ */
+public class RadiusNeighborSearchOnSpatialHashGrid< T > implements RadiusNeighborSearch< T >
+{
+	protected SpatialHashGrid< T > grid;
+
+	protected final int n;
+
+	protected final double[] pos;
+
+	protected int numNeighbors;
+
+	protected int[] resultIds;
+
+	protected double[] resultSquDistances;
+
+	private final long[] cell, minCell, maxCell, from, to;
+
+	public RadiusNeighborSearchOnSpatialHashGrid( final SpatialHashGrid< T > grid )
+	{
+		this.grid = grid;
+		this.n = grid.numDimensions();
+		this.pos = new double[ n ];
+		this.resultIds = new int[ 16 ];
+		this.resultSquDistances = new double[ 16 ];
+		cell = new long[ n ];
+		minCell = new long[ n ];
+		maxCell = new long[ n ];
+		from = new long[ n ];
+		to = new long[ n ];
+	}
+
+	@Override
+	public void search( final RealLocalizable reference, final double radius, final boolean sortResults )
+	{
+		assert radius >= 0;
+		reference.localize( pos );
+		numNeighbors = 0;
+		if ( grid.size() > 0 )
+			search( radius * radius, radius );
+		if ( sortResults && numNeighbors > 1 )
+			Util.quicksort( resultSquDistances, resultIds, 0, numNeighbors - 1 );
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	private void search( final double squRadius, final double radius )
+	{
+		grid.getMinCell( minCell );
+		grid.getMaxCell( maxCell );
+		double numCells = 1;
+		for ( int d = 0; d < n; ++d )
+		{
+			from[ d ] = Math.max( grid.getCellPosition( pos[ d ] - radius ), minCell[ d ] );
+			to[ d ] = Math.min( grid.getCellPosition( pos[ d ] + radius ), maxCell[ d ] );
+			if ( from[ d ] > to[ d ] )
+				return;
+			numCells *= to[ d ] - from[ d ] + 1;
+			cell[ d ] = from[ d ];
+		}
+
+		if ( numCells > grid.size() )
+		{
+			for ( int id = 0; id < grid.idBound(); ++id )
+				if ( grid.contains( id ) )
+					consider( id, squRadius );
+			return;
+		}
+
+		while ( true )
+		{
+			if ( squDistanceToCell() <= squRadius )
+				for ( int id = grid.firstInCell( cell ); id >= 0; id = grid.nextInCell( id, cell ) )
+					consider( id, squRadius );
+			int d = 0;
+			for ( ; d < n; ++d )
+			{
+				if ( cell[ d ] < to[ d ] )
+				{
+					++cell[ d ];
+					break;
+				}
+				cell[ d ] = from[ d ];
+			}
+			if ( d == n )
+				return;
+		}
+	}
+
+	/**
+	 * Compute the squared distance from the query to the nearest point of
+	 * {@link #cell}.
+	 */
+	private double squDistanceToCell()
+	{
+		final double cellSize = grid.getCellSize();
+		double sum = 0;
+		for ( int d = 0; d < n; ++d )
+		{
+			final double min = cell[ d ] * cellSize;
+			final double diff = pos[ d ] < min ? min - pos[ d ] : Math.max( 0, pos[ d ] - min - cellSize );
+			sum += diff * diff;
+		}
+		return sum;
+	}
+
+	private void consider( final int id, final double squRadius )
+	{
+		final double squDistance = grid.squDistance( id, pos );
+		if ( squDistance > squRadius )
+			return;
+		if ( numNeighbors == resultIds.length )
+		{
+			final int capacity = 2 * numNeighbors;
+			final int[] ids = new int[ capacity ];
+			final double[] squDistances = new double[ capacity ];
+			System.arraycopy( resultIds, 0, ids, 0, numNeighbors );
+			System.arraycopy( resultSquDistances, 0, squDistances, 0, numNeighbors );
+			resultIds = ids;
+			resultSquDistances = squDistances;
+		}
+		resultIds[ numNeighbors ] = id;
+		resultSquDistances[ numNeighbors ] = squDistance;
+		++numNeighbors;
+	}
+
+	@Override
+	public int numNeighbors()
+	{
+		return numNeighbors;
+	}
+
+	/**
+	 * Get the id of the <em>i</em><sup>th</sup> neighbor within radius.
+	 */
+	public int getId( final int i )
+	{
+		return resultIds[ i ];
+	}
+
+	@Override
+	public Sampler< T > getSampler( final int i )
+	{
+		return grid.entry( resultIds[ i ] );
+	}
+
+	@Override
+	public RealLocalizable getPosition( final int i )
+	{
+		return grid.entry( resultIds[ i ] );
+	}
+
+	@Override
+	public double getSquareDistance( final int i )
+	{
+		return resultSquDistances[ i ];
+	}
+
+	@Override
+	public double getDistance( final int i )
+	{
+		return Math.sqrt( resultSquDistances[ i ] );
+	}
+}
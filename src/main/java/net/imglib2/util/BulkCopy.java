@@ -0,0 +1,346 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.util;
+
+import java.lang.reflect.Array;
+import java.util.concurrent.ExecutorService;
+
+import net.imglib2.Dirty;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.cell.AbstractCellImg;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.transform.integer.MixedTransform;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.Type;
+import net.imglib2.view.IntervalView;
+import net.imglib2.view.MixedTransformView;
+
+/**
+ * Copies a {@link RandomAccessibleInterval} into another one line by line,
+ * along dimension 0. If both are backed by primitive arrays, i.e., are
+ * {@link ArrayImg}s, {@link PlanarImg}s, or {@link AbstractCellImg}s (possibly
+ * seen through translating {@link IntervalView}s), the contiguous runs of
+ * each line are copied with {@link System#arraycopy}. Otherwise, each line is
+ * copied pixel by pixel with {@link RandomAccess}es.
+ *
+ * @see ImgUtil#copy(RandomAccessibleInterval, RandomAccessibleInterval)
+ */
+final class BulkCopy
+{
+	private BulkCopy()
+	{}
+
+	/**
+	 * The primitive array that holds a run of pixels, and where the run
+	 * starts, as determined by {@link Locator#locate(long[], Run)}.
+	 */
+	static final class Run
+	{
+		Object array;
+
+		/**
+		 * index of the first pixel of the run in {@link #array}.
+		 */
+		int offset;
+
+		/**
+		 * the number of pixels in the run.
+		 */
+		long length;
+
+		/**
+		 * the access that holds {@link #array}.
+		 */
+		Object access;
+	}
+
+	/**
+	 * Finds the runs of pixels of one image. A locator is used by a single
+	 * thread.
+	 */
+	interface Locator
+	{
+		/**
+		 * Find the run of contiguous pixels that starts at {@code position}
+		 * and extends along dimension 0 (up to the end of the storage array,
+		 * cell, or line).
+		 *
+		 * @return false if the run is not backed by a primitive array.
+		 */
+		boolean locate( long[] position, Run run );
+	}
+
+	/**
+	 * Creates {@link Locator}s for one image.
+	 */
+	interface Layout
+	{
+		Locator locator();
+	}
+
+	static < T extends Type< T > > void copy( final RandomAccessibleInterval< T > source, final RandomAccessibleInterval< T > target, final ExecutorService executorService )
+	{
+		if ( !Intervals.equalDimensions( source, target ) )
+			throw new IllegalArgumentException( "Source and target dimensions differ." );
+		final int n = target.numDimensions();
+
+		final long width = target.dimension( 0 );
+		final long[] lineDimensions = new long[ n - 1 ];
+		long numLines = 1;
+		for ( int d = 1; d < n; ++d )
+		{
+			lineDimensions[ d - 1 ] = target.dimension( d );
+			numLines *= lineDimensions[ d - 1 ];
+		}
+		if ( width == 0 || numLines == 0 )
+			return;
+
+		final int entitiesPerPixel = entitiesPerPixel( target );
+		final Layout sourceLayout = entitiesPerPixel > 0 ? layout( source, entitiesPerPixel ) : null;
+		final Layout targetLayout = entitiesPerPixel > 0 ? layout( target, entitiesPerPixel ) : null;
+		final boolean bulk = sourceLayout != null && targetLayout != null;
+
+		Parallelization.forEachChunk( executorService, numLines, ( firstLine, length ) -> {
+			final long[] linePosition = new long[ n - 1 ];
+			final long[] sourcePosition = new long[ n ];
+			final long[] targetPosition = new long[ n ];
+			final Locator sourceLocator = bulk ? sourceLayout.locator() : null;
+			final Locator targetLocator = bulk ? targetLayout.locator() : null;
+			final Run sourceRun = new Run();
+			final Run targetRun = new Run();
+			final RandomAccess< T > sourceAccess = source.randomAccess();
+			final RandomAccess< T > targetAccess = target.randomAccess();
+			for ( long line = firstLine; line < firstLine + length; ++line )
+			{
+				if ( n > 1 )
+					IntervalIndexer.indexToPosition( line, lineDimensions, linePosition );
+				sourcePosition[ 0 ] = source.min( 0 );
+				targetPosition[ 0 ] = target.min( 0 );
+				for ( int d = 1; d < n; ++d )
+				{
+					sourcePosition[ d ] = source.min( d ) + linePosition[ d - 1 ];
+					targetPosition[ d ] = target.min( d ) + linePosition[ d - 1 ];
+				}
+
+				long x = 0;
+				if ( bulk )
+				{
+					while ( x < width && sourceLocator.locate( sourcePosition, sourceRun ) && targetLocator.locate( targetPosition, targetRun ) && sourceRun.array.getClass() == targetRun.array.getClass() )
+					{
+						final int runLength = ( int ) Math.min( width - x, Math.min( sourceRun.length, targetRun.length ) );
+						System.arraycopy(
+								sourceRun.array, sourceRun.offset * entitiesPerPixel,
+								targetRun.array, targetRun.offset * entitiesPerPixel,
+								runLength * entitiesPerPixel );
+						if ( targetRun.access instanceof Dirty )
+							( ( Dirty ) targetRun.access ).setDirty();
+						x += runLength;
+						sourcePosition[ 0 ] += runLength;
+						targetPosition[ 0 ] += runLength;
+					}
+				}
+
+				// copy the rest of the line pixel by pixel
+				if ( x < width )
+				{
+					sourceAccess.setPosition( sourcePosition );
+					targetAccess.setPosition( targetPosition );
+					for ( ; x < width; ++x )
+					{
+						targetAccess.get().set( sourceAccess.get() );
+						sourceAccess.fwd( 0 );
+						targetAccess.fwd( 0 );
+					}
+				}
+			}
+		} );
+	}
+
+	/**
+	 * Get the number of primitive entities per pixel, or 0 if the pixels are
+	 * not {@link NativeType}s with an integral number of entities.
+	 */
+	private static int entitiesPerPixel( final RandomAccessibleInterval< ? > img )
+	{
+		final Object type = Util.getTypeFromInterval( img );
+		if ( !( type instanceof NativeType ) )
+			return 0;
+		final Fraction fraction = ( ( NativeType< ? > ) type ).getEntitiesPerPixel();
+		if ( fraction.getDenominator() != 1 )
+			return 0;
+		return ( int ) fraction.getNumerator();
+	}
+
+	/**
+	 * Get the {@link Layout} of an image, or {@code null} if it is not backed
+	 * by primitive arrays with {@code entitiesPerPixel} entities per pixel.
+	 */
+	static Layout layout( final RandomAccessibleInterval< ? > img, final int entitiesPerPixel )
+	{
+		// unwrap translating views, accumulating the translation from view
+		// coordinates to image coordinates
+		final int n = img.numDimensions();
+		final long[] translation = new long[ n ];
+		RandomAccessible< ? > current = img;
+		while ( true )
+		{
+			if ( current instanceof IntervalView )
+				current = ( ( IntervalView< ? > ) current ).getSource();
+			else if ( current instanceof MixedTransformView )
+			{
+				final MixedTransformView< ? > view = ( MixedTransformView< ? > ) current;
+				final MixedTransform transform = view.getTransformToSource();
+				if ( !isTranslation( transform ) )
+					return null;
+				for ( int d = 0; d < n; ++d )
+					translation[ d ] += transform.getTranslation( d );
+				current = view.getSource();
+			}
+			else
+				break;
+		}
+
+		if ( current instanceof ArrayImg )
+			return arrayLayout( ( ArrayImg< ?, ? > ) current, translation, entitiesPerPixel );
+		if ( current instanceof PlanarImg )
+			return planarLayout( ( PlanarImg< ?, ? > ) current, translation, entitiesPerPixel );
+		if ( current instanceof AbstractCellImg )
+			return cellLayout( ( AbstractCellImg< ?, ?, ?, ? > ) current, translation, entitiesPerPixel );
+		return null;
+	}
+
+	private static boolean isTranslation( final MixedTransform transform )
+	{
+		final int n = transform.numTargetDimensions();
+		if ( transform.numSourceDimensions() != n )
+			return false;
+		for ( int d = 0; d < n; ++d )
+			if ( transform.getComponentZero( d ) || transform.getComponentMapping( d ) != d || transform.getComponentInversion( d ) )
+				return false;
+		return true;
+	}
+
+	/**
+	 * Get the primitive array of an access, or {@code null} if there is none
+	 * or if it does not hold {@code numEntities} entities. (The latter
+	 * catches types that pack several pixels into one entity, but still
+	 * report one entity per pixel.)
+	 */
+	private static Object primitiveArray( final Object access, final long numEntities )
+	{
+		if ( !( access instanceof ArrayDataAccess ) )
+			return null;
+		final Object array = ( ( ArrayDataAccess< ? > ) access ).getCurrentStorageArray();
+		if ( array == null || !array.getClass().isArray() || !array.getClass().getComponentType().isPrimitive() )
+			return null;
+		if ( Array.getLength( array ) != numEntities )
+			return null;
+		return array;
+	}
+
+	private static Layout arrayLayout( final ArrayImg< ?, ? > img, final long[] translation, final int entitiesPerPixel )
+	{
+		final Object access = img.update( null );
+		final Object array = primitiveArray( access, img.size() * entitiesPerPixel );
+		if ( array == null )
+			return null;
+		final int n = img.numDimensions();
+		final long[] dimensions = Intervals.dimensionsAsLongArray( img );
+		return () -> ( position, run ) -> {
+			long index = 0;
+			for ( int d = n - 1; d >= 0; --d )
+				index = index * dimensions[ d ] + position[ d ] + translation[ d ];
+			run.array = array;
+			run.access = access;
+			run.offset = ( int ) index;
+			run.length = dimensions[ 0 ] - position[ 0 ] - translation[ 0 ];
+			return true;
+		};
+	}
+
+	private static Layout planarLayout( final PlanarImg< ?, ? > img, final long[] translation, final int entitiesPerPixel )
+	{
+		final int n = img.numDimensions();
+		final long[] dimensions = Intervals.dimensionsAsLongArray( img );
+		final long planeEntities = dimensions[ 0 ] * ( n > 1 ? dimensions[ 1 ] : 1 ) * entitiesPerPixel;
+		final Object[] arrays = new Object[ img.numSlices() ];
+		for ( int i = 0; i < arrays.length; ++i )
+			if ( ( arrays[ i ] = primitiveArray( img.getPlane( i ), planeEntities ) ) == null )
+				return null;
+		return () -> ( position, run ) -> {
+			int plane = 0;
+			for ( int d = n - 1; d >= 2; --d )
+				plane = plane * ( int ) dimensions[ d ] + ( int ) ( position[ d ] + translation[ d ] );
+			run.array = arrays[ plane ];
+			run.access = img.getPlane( plane );
+			run.offset = ( int ) ( position[ 0 ] + translation[ 0 ] );
+			if ( n > 1 )
+				run.offset += ( int ) ( ( position[ 1 ] + translation[ 1 ] ) * dimensions[ 0 ] );
+			run.length = dimensions[ 0 ] - position[ 0 ] - translation[ 0 ];
+			return true;
+		};
+	}
+
+	private static Layout cellLayout( final AbstractCellImg< ?, ?, ?, ? > img, final long[] translation, final int entitiesPerPixel )
+	{
+		final int n = img.numDimensions();
+		return () -> {
+			final RandomAccess< ? extends Cell< ? > > cells = img.getCells().randomAccess();
+			final long[] imgPosition = new long[ n ];
+			final long[] cellPosition = new long[ n ];
+			return ( position, run ) -> {
+				for ( int d = 0; d < n; ++d )
+					imgPosition[ d ] = position[ d ] + translation[ d ];
+				img.getCellGrid().getCellPosition( imgPosition, cellPosition );
+				cells.setPosition( cellPosition );
+				final Cell< ? > cell = cells.get();
+				final Object access = cell.getData();
+				final Object array = primitiveArray( access, cell.size() * entitiesPerPixel );
+				if ( array == null )
+					return false;
+				run.array = array;
+				run.access = access;
+				run.offset = cell.globalPositionToIndex( imgPosition );
+				run.length = cell.min( 0 ) + cell.dimension( 0 ) - imgPosition[ 0 ];
+				return true;
+			};
+		};
+	}
+}
@@ -34,9 +34,18 @@
 
 package net.imglib2.util;
 
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+
 import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.cell.AbstractCellImg;
+import net.imglib2.img.planar.PlanarImg;
 import net.imglib2.type.BooleanType;
+import net.imglib2.type.Type;
 import net.imglib2.type.numeric.IntegerType;
 import net.imglib2.type.numeric.RealType;
 
@@ -288,4 +297,43 @@ public class ImgUtil
 			dest[ this_offset ] = t.get();
 		}
 	}
+
+	/**
+	 * Copy the pixels of {@code source} into {@code target}. Both must have
+	 * the same dimensions, but may have different minima; the pixel at the
+	 * minimum of {@code source} is copied to the minimum of {@code target}.
+	 * 
+	 * If both are backed by primitive arrays, i.e., are {@link ArrayImg}s,
+	 * {@link PlanarImg}s, or {@link AbstractCellImg}s, possibly seen through
+	 * translated or interval views, contiguous runs of pixels are copied with
+	 * {@link System#arraycopy}. Otherwise, the pixels are copied line by line
+	 * with {@link RandomAccess}es.
+	 * 
+	 * @param source
+	 *            - the source of the data
+	 * @param target
+	 *            - the destination for the copy
+	 */
+	public static < T extends Type< T > > void copy( final RandomAccessibleInterval< T > source, final RandomAccessibleInterval< T > target )
+	{
+		BulkCopy.copy( source, target, null );
+	}
+
+	/**
+	 * Copy the pixels of {@code source} into {@code target}, like
+	 * {@link #copy(RandomAccessibleInterval, RandomAccessibleInterval)}. The
+	 * lines of the image are split into chunks that are copied in parallel
+	 * using {@code executorService}.
+	 * 
+	 * @param source
+	 *            - the source of the data
+	 * @param target
+	 *            - the destination for the copy
+	 * @param executorService
+	 *            - used to copy in parallel
+	 */
+	public static < T extends Type< T > > void copy( final RandomAccessibleInterval< T > source, final RandomAccessibleInterval< T > target, final ExecutorService executorService )
+	{
+		BulkCopy.copy( source, target, Objects.requireNonNull( executorService ) );
+	}
 }
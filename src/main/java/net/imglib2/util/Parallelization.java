@@ -0,0 +1,144 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Helpers to split a loop over a range {@code [0, size)} into chunks, and to
+ * process the chunks in parallel using an {@link ExecutorService}.
+ */
+public final class Parallelization
+{
+	private Parallelization()
+	{}
+
+	/**
+	 * A task that processes the elements {@code [offset, offset + length)} of
+	 * a range.
+	 */
+	public interface ChunkTask
+	{
+		void run( long offset, long length );
+	}
+
+	/**
+	 * Splits the range {@code [0, size)} into chunks, and runs {@code task}
+	 * for each chunk. If {@code executorService} is {@code null}, the whole
+	 * range is processed as a single chunk by the calling thread. Otherwise,
+	 * the range is split into four chunks per thread (to balance the load),
+	 * and the chunks are processed in parallel.
+	 */
+	public static void forEachChunk( final ExecutorService executorService, final long size, final ChunkTask task )
+	{
+		final long numChunks = executorService == null ? 1 : Math.min( size, 4L * numThreads( executorService ) );
+		forEachChunk( executorService, size, numChunks, task );
+	}
+
+	/**
+	 * Splits the range {@code [0, size)} into {@code numChunks} chunks, and
+	 * runs {@code task} for each chunk. The chunks are processed in parallel
+	 * using {@code executorService}. If {@code numChunks <= 1}, the whole range
+	 * is processed by the calling thread.
+	 */
+	public static void forEachChunk( final ExecutorService executorService, final long size, final long numChunks, final ChunkTask task )
+	{
+		if ( numChunks <= 1 )
+		{
+			task.run( 0, size );
+			return;
+		}
+		final List< Callable< Void > > tasks = new ArrayList<>();
+		for ( long i = 0; i < numChunks; i++ )
+		{
+			final long offset = i * size / numChunks;
+			final long length = ( i + 1 ) * size / numChunks - offset;
+			tasks.add( () -> {
+				task.run( offset, length );
+				return null;
+			} );
+		}
+		invokeAll( executorService, tasks );
+	}
+
+	/**
+	 * Runs all {@code tasks} using {@code executorService} and waits for them
+	 * to complete. If a task throws an exception, it is rethrown (wrapped in a
+	 * {@link RuntimeException} if it is a checked exception).
+	 */
+	public static < T > List< T > invokeAll( final ExecutorService executorService, final List< ? extends Callable< T > > tasks )
+	{
+		try
+		{
+			final List< Future< T > > futures = executorService.invokeAll( tasks );
+			final List< T > results = new ArrayList<>( futures.size() );
+			for ( final Future< T > future : futures )
+				results.add( future.get() );
+			return results;
+		}
+		catch ( final InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException( e );
+		}
+		catch ( final ExecutionException e )
+		{
+			final Throwable cause = e.getCause();
+			if ( cause instanceof RuntimeException )
+				throw ( RuntimeException ) cause;
+			if ( cause instanceof Error )
+				throw ( Error ) cause;
+			throw new RuntimeException( cause );
+		}
+	}
+
+	/**
+	 * Get the number of threads used by {@code executorService}. This is the
+	 * parallelism of a {@link ForkJoinPool}, or the number of available
+	 * processors for other {@link ExecutorService}s.
+	 */
+	public static int numThreads( final ExecutorService executorService )
+	{
+		if ( executorService instanceof ForkJoinPool )
+			return ( ( ForkJoinPool ) executorService ).getParallelism();
+		return Runtime.getRuntime().availableProcessors();
+	}
+}
@@ -452,6 +452,89 @@ public class Partition
 		return i;
 	}
 
+	/**
+	 * Partition a subarray of {@code values}.
+	 *
+	 * The element at index {@code j} is taken as the pivot value. The elements
+	 * {@code [i,j]} are reordered, such that all elements before the pivot are
+	 * smaller and all elements after the pivot are equal or larger than the
+	 * pivot. The index of the pivot element is returned.
+	 *
+	 * <p>
+	 * The {@code permutation} array is permuted in the same way as the values
+	 * array. Usually, this will be an array of indices, so that the partition
+	 * operation can be mirrored in another list.
+	 * </p>
+	 *
+	 * @param i
+	 *            index of first element of subarray
+	 * @param j
+	 *            index of last element of subarray
+	 * @param values
+	 *            array
+	 * @param permutation
+	 *            elements of this array are permuted in the same way as the
+	 *            elements in the values array
+	 * @return index of pivot element
+	 */
+	public static int partitionSubList( int i, int j, final double[] values, final int[] permutation )
+	{
+		final int pivotIndex = j;
+		final int permutationPivot = permutation[ j ];
+		final double pivot = values[ j-- ];
+
+		A: while ( true )
+		{
+			// move i forward while < pivot (and not at j)
+			while ( i <= j )
+			{
+				final double ti = values[ i ];
+				if ( ti >= pivot )
+					break;
+				++i;
+			}
+			// now [i] is the place where the next value < pivot is to be
+			// inserted
+
+			if ( i > j )
+				break;
+
+			// move j backward while >= pivot (and not at i)
+			while ( true )
+			{
+				final double tj = values[ j ];
+				if ( tj < pivot )
+				{
+					// swap [j] with [i]
+					final int indicesTmp = permutation[ i ];
+					permutation[ i ] = permutation[ j ];
+					permutation[ j ] = indicesTmp;
+					final double tmp = values[ i ];
+					values[ i ] = values[ j ];
+					values[ j ] = tmp;
+					++i;
+					--j;
+					break;
+				}
+				else if ( j == i )
+				{
+					break A;
+				}
+				--j;
+			}
+		}
+
+		// we are done. put the pivot element here.
+		if ( i != pivotIndex )
+		{
+			values[ pivotIndex ] = values[ i ];
+			values[ i ] = pivot;
+			permutation[ pivotIndex ] = permutation[ i ];
+			permutation[ i ] = permutationPivot;
+		}
+		return i;
+	}
+
 	/**
 	 * Partition a subarray of {@code values}.
 	 *
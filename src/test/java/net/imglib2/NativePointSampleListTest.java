@@ -0,0 +1,87 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+
+import org.junit.Test;
+
+public class NativePointSampleListTest
+{
+	@Test
+	public void testAddAndIterate()
+	{
+		final int n = 2;
+		final int m = 500;
+		final Random rnd = new Random( 42 );
+		final long[][] positions = new long[ m ][ n ];
+		final int[] values = new int[ m ];
+		final NativePointSampleList< UnsignedShortType > list = new NativePointSampleList< UnsignedShortType >( new UnsignedShortType(), n, 3 );
+		for ( int i = 0; i < m; ++i )
+		{
+			for ( int d = 0; d < n; ++d )
+				positions[ i ][ d ] = rnd.nextInt( 1000 ) - 500;
+			values[ i ] = rnd.nextInt( 65536 );
+			list.add( Point.wrap( positions[ i ] ), new UnsignedShortType( values[ i ] ) );
+		}
+		assertEquals( m, list.size() );
+
+		final long[] min = { Long.MAX_VALUE, Long.MAX_VALUE };
+		final long[] max = { Long.MIN_VALUE, Long.MIN_VALUE };
+		final long[] position = new long[ n ];
+		final Cursor< UnsignedShortType > cursor = list.localizingCursor();
+		for ( int i = 0; i < m; ++i )
+		{
+			assertEquals( values[ i ], cursor.next().get() );
+			cursor.localize( position );
+			for ( int d = 0; d < n; ++d )
+			{
+				assertEquals( positions[ i ][ d ], position[ d ] );
+				assertEquals( positions[ i ][ d ], cursor.getLongPosition( d ) );
+				min[ d ] = Math.min( min[ d ], position[ d ] );
+				max[ d ] = Math.max( max[ d ], position[ d ] );
+			}
+		}
+		for ( int d = 0; d < n; ++d )
+		{
+			assertEquals( min[ d ], list.min( d ) );
+			assertEquals( max[ d ], list.max( d ) );
+		}
+	}
+}
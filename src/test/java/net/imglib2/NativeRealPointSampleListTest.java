@@ -0,0 +1,229 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Random;
+
+import net.imglib2.neighborsearch.NearestNeighborSearchOnFlatKDTree;
+import net.imglib2.neighborsearch.NearestNeighborSearchOnIterableRealInterval;
+import net.imglib2.neighborsearch.NearestNeighborSearchOnKDTree;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.real.DoubleType;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class NativeRealPointSampleListTest
+{
+	final static private int n = 3;
+
+	final static private int m = 1000;
+
+	private NativeRealPointSampleList< DoubleType > list;
+
+	private ArrayList< RealPoint > points;
+
+	private ArrayList< DoubleType > samples;
+
+	@Before
+	public void init()
+	{
+		final Random rnd = new Random( 123456 );
+		// start small to test growing
+		list = new NativeRealPointSampleList< DoubleType >( new DoubleType(), n, 1 );
+		points = new ArrayList< RealPoint >();
+		samples = new ArrayList< DoubleType >();
+		for ( int i = 0; i < m; ++i )
+		{
+			final double[] position = new double[ n ];
+			for ( int d = 0; d < n; ++d )
+				position[ d ] = rnd.nextDouble();
+			final RealPoint point = new RealPoint( position );
+			final DoubleType sample = new DoubleType( rnd.nextDouble() );
+			points.add( point );
+			samples.add( sample );
+			if ( i % 2 == 0 )
+				list.add( point, sample );
+			else
+				list.add( position, sample );
+		}
+	}
+
+	@Test
+	public void testIteration()
+	{
+		assertEquals( m, list.size() );
+		final Iterator< DoubleType > sampleIterator = samples.iterator();
+		for ( final DoubleType t : list )
+			assertEquals( sampleIterator.next().get(), t.get(), 0 );
+		assertFalse( sampleIterator.hasNext() );
+		assertEquals( samples.get( 0 ).get(), list.firstElement().get(), 0 );
+	}
+
+	@Test
+	public void testPositionAndBounds()
+	{
+		final double[] min = new double[ n ];
+		final double[] max = new double[ n ];
+		for ( int d = 0; d < n; ++d )
+		{
+			min[ d ] = Double.MAX_VALUE;
+			max[ d ] = -Double.MAX_VALUE;
+		}
+		final Iterator< RealPoint > pointIterator = points.iterator();
+		final RealCursor< DoubleType > cursor = list.localizingCursor();
+		final double[] position = new double[ n ];
+		while ( cursor.hasNext() )
+		{
+			cursor.fwd();
+			final RealPoint point = pointIterator.next();
+			cursor.localize( position );
+			for ( int d = 0; d < n; ++d )
+			{
+				assertEquals( point.getDoublePosition( d ), cursor.getDoublePosition( d ), 0 );
+				assertEquals( point.getDoublePosition( d ), position[ d ], 0 );
+				min[ d ] = Math.min( min[ d ], position[ d ] );
+				max[ d ] = Math.max( max[ d ], position[ d ] );
+			}
+		}
+		for ( int d = 0; d < n; ++d )
+		{
+			assertEquals( min[ d ], list.realMin( d ), 0 );
+			assertEquals( max[ d ], list.realMax( d ), 0 );
+		}
+	}
+
+	@Test
+	public void testCopyAndJump()
+	{
+		final RealCursor< DoubleType > cursor = list.cursor();
+		cursor.jumpFwd( 10 );
+		final RealCursor< DoubleType > copy = cursor.copyCursor();
+		cursor.fwd();
+		copy.fwd();
+		assertEquals( samples.get( 10 ).get(), cursor.get().get(), 0 );
+		assertEquals( samples.get( 10 ).get(), copy.get().get(), 0 );
+		assertEquals( points.get( 10 ).getDoublePosition( 2 ), copy.getDoublePosition( 2 ), 0 );
+		copy.fwd();
+		assertEquals( samples.get( 11 ).get(), copy.get().get(), 0 );
+		assertEquals( samples.get( 10 ).get(), cursor.get().get(), 0 );
+	}
+
+	@Test
+	public void testSamplesAreCopied()
+	{
+		final NativeRealPointSampleList< IntType > ints = new NativeRealPointSampleList< IntType >( new IntType(), 1 );
+		final IntType sample = new IntType( 1 );
+		ints.add( new double[] { 0 }, sample );
+		sample.set( 2 );
+		ints.add( new double[] { 1 }, sample );
+		final RealCursor< IntType > cursor = ints.cursor();
+		assertEquals( 1, cursor.next().get() );
+		assertEquals( 2, cursor.next().get() );
+		cursor.get().set( 3 );
+		final RealCursor< IntType > other = ints.cursor();
+		other.jumpFwd( 2 );
+		assertEquals( 3, other.get().get() );
+	}
+
+	@Test
+	public void testBitType()
+	{
+		final NativeRealPointSampleList< BitType > bits = new NativeRealPointSampleList< BitType >( new BitType(), 2, 5 );
+		for ( int i = 0; i < 200; ++i )
+			bits.add( new double[] { i, -i }, new BitType( i % 3 == 0 ) );
+		int i = 0;
+		for ( final BitType t : bits )
+			assertEquals( i++ % 3 == 0, t.get() );
+		assertEquals( 200, i );
+	}
+
+	@Test
+	public void testNearestNeighborSearch()
+	{
+		final KDTree< DoubleType > tree = new KDTree< DoubleType >( list );
+		final NearestNeighborSearchOnKDTree< DoubleType > kdSearch = new NearestNeighborSearchOnKDTree< DoubleType >( tree );
+		final NearestNeighborSearchOnIterableRealInterval< DoubleType > linearSearch = new NearestNeighborSearchOnIterableRealInterval< DoubleType >( list );
+		final Random rnd = new Random( 42 );
+		final RealPoint query = new RealPoint( n );
+		for ( int i = 0; i < 100; ++i )
+		{
+			for ( int d = 0; d < n; ++d )
+				query.setPosition( rnd.nextDouble(), d );
+			kdSearch.search( query );
+			linearSearch.search( query );
+			assertEquals( linearSearch.getSquareDistance(), kdSearch.getSquareDistance(), 0 );
+			assertEquals( linearSearch.getSampler().get().get(), kdSearch.getSampler().get().get(), 0 );
+			assertTrue( kdSearch.getSquareDistance() < Double.MAX_VALUE );
+		}
+	}
+
+	@Test
+	public void testFlatKDTree()
+	{
+		// the coordinate array has spare capacity after growing
+		list.add( new double[] { 0.5, 0.5, 0.5 }, new DoubleType( 7 ) );
+		final FlatKDTree< DoubleType > tree = list.createFlatKDTree();
+		assertEquals( m + 1, tree.size() );
+		final NearestNeighborSearchOnFlatKDTree< DoubleType > kdSearch = new NearestNeighborSearchOnFlatKDTree< DoubleType >( tree );
+		final NearestNeighborSearchOnIterableRealInterval< DoubleType > linearSearch = new NearestNeighborSearchOnIterableRealInterval< DoubleType >( list );
+		final Random rnd = new Random( 43 );
+		final RealPoint query = new RealPoint( n );
+		for ( int i = 0; i < 100; ++i )
+		{
+			for ( int d = 0; d < n; ++d )
+				query.setPosition( rnd.nextDouble(), d );
+			kdSearch.search( query );
+			linearSearch.search( query );
+			assertEquals( linearSearch.getSquareDistance(), kdSearch.getSquareDistance(), 0 );
+			assertEquals( linearSearch.getSampler().get().get(), kdSearch.getSampler().get().get(), 0 );
+		}
+		kdSearch.search( new RealPoint( 0.5, 0.5, 0.5 ) );
+		assertEquals( 7, kdSearch.getSampler().get().get(), 0 );
+
+		// values remain valid when the list grows
+		for ( int i = 0; i < 2 * m; ++i )
+			list.add( new double[] { 2, 2, 2 }, new DoubleType( -1 ) );
+		kdSearch.search( new RealPoint( 0.5, 0.5, 0.5 ) );
+		assertEquals( 7, kdSearch.getSampler().get().get(), 0 );
+	}
+}
@@ -0,0 +1,161 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.display.projector;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.converter.Converter;
+import net.imglib2.converter.RealARGBConverter;
+import net.imglib2.display.projector.composite.CompositeXYProjector;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.view.Views;
+
+public class MultiThreadedProjectorTest
+{
+	private static final ExecutorService executor = Executors.newFixedThreadPool( 3 );
+
+	private static final int width = 67;
+
+	private static final int height = 45;
+
+	private final ArrayImg< UnsignedByteType, ? > source;
+
+	private final Converter< UnsignedByteType, ARGBType > converter = new RealARGBConverter<>( 0, 255 );
+
+	public MultiThreadedProjectorTest()
+	{
+		final byte[] data = new byte[ width * height * 3 ];
+		new Random( 1 ).nextBytes( data );
+		source = ArrayImgs.unsignedBytes( data, width, height, 3 );
+	}
+
+	@AfterClass
+	public static void shutdown()
+	{
+		executor.shutdown();
+	}
+
+	private static ArrayImg< ARGBType, IntArray > createTarget()
+	{
+		return ArrayImgs.argbs( width, height );
+	}
+
+	private static int[] pixels( final ArrayImg< ARGBType, IntArray > img )
+	{
+		return img.update( null ).getCurrentStorageArray();
+	}
+
+	@Test
+	public void testIterableIntervalProjector2D()
+	{
+		// flat iteration order target
+		final ArrayImg< ARGBType, IntArray > expected = createTarget();
+		final IterableIntervalProjector2D< UnsignedByteType, ARGBType > p1 = new IterableIntervalProjector2D<>( 0, 1, source, expected, converter );
+		p1.setPosition( 1, 2 );
+		p1.map();
+
+		final ArrayImg< ARGBType, IntArray > actual = createTarget();
+		final IterableIntervalProjector2D< UnsignedByteType, ARGBType > p2 = new IterableIntervalProjector2D<>( 0, 1, source, actual, converter ).multiThreaded( executor );
+		p2.setPosition( 1, 2 );
+		p2.map();
+		assertArrayEquals( pixels( expected ), pixels( actual ) );
+
+		// equal iteration order
+		final RandomAccessibleInterval< UnsignedByteType > slice = Views.hyperSlice( source, 2, 1 );
+		final ArrayImg< ARGBType, IntArray > actualSlice = createTarget();
+		new IterableIntervalProjector2D<>( 0, 1, Views.zeroMin( slice ), actualSlice, converter ).multiThreaded( executor ).map();
+		assertArrayEquals( pixels( expected ), pixels( actualSlice ) );
+
+		// target with non-flat iteration order
+		final RandomAccessibleInterval< ARGBType > cells = new CellImgFactory< ARGBType >( 16 ).create( new long[] { width, height }, new ARGBType() );
+		final IterableIntervalProjector2D< UnsignedByteType, ARGBType > p3 = new IterableIntervalProjector2D<>( 0, 1, source, Views.iterable( cells ), converter ).multiThreaded( executor );
+		p3.setPosition( 1, 2 );
+		p3.map();
+		final ArrayImg< ARGBType, IntArray > copy = createTarget();
+		Views.interval( Views.pair( cells, copy ), copy ).forEach( p -> p.getB().set( p.getA() ) );
+		assertArrayEquals( pixels( expected ), pixels( copy ) );
+	}
+
+	@Test
+	public void testRandomAccessibleProjector2D()
+	{
+		final ArrayImg< ARGBType, IntArray > expected = createTarget();
+		final RandomAccessibleProjector2D< UnsignedByteType, ARGBType > p1 = new RandomAccessibleProjector2D<>( 0, 1, source, expected, converter );
+		p1.setPosition( 2, 2 );
+		p1.map();
+
+		final ArrayImg< ARGBType, IntArray > actual = createTarget();
+		final RandomAccessibleProjector2D< UnsignedByteType, ARGBType > p2 = new RandomAccessibleProjector2D<>( 0, 1, source, actual, converter ).multiThreaded( executor );
+		p2.setPosition( 2, 2 );
+		p2.map();
+		assertArrayEquals( pixels( expected ), pixels( actual ) );
+	}
+
+	@Test
+	public void testCompositeXYProjector()
+	{
+		final ArrayList< Converter< UnsignedByteType, ARGBType > > converters = new ArrayList<>();
+		for ( int c = 0; c < 3; ++c )
+			converters.add( converter );
+
+		for ( final boolean composite : new boolean[] { false, true } )
+		{
+			final ArrayImg< ARGBType, IntArray > expected = createTarget();
+			final CompositeXYProjector< UnsignedByteType > p1 = new CompositeXYProjector<>( source, expected, converters, 2 );
+			p1.setComposite( composite );
+			p1.map();
+
+			final ArrayImg< ARGBType, IntArray > actual = createTarget();
+			final CompositeXYProjector< UnsignedByteType > p2 = new CompositeXYProjector<>( source, actual, converters, 2 ).multiThreaded( executor );
+			p2.setComposite( composite );
+			p2.map();
+			assertArrayEquals( pixels( expected ), pixels( actual ) );
+		}
+	}
+}
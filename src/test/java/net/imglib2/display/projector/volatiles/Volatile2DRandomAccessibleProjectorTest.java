@@ -0,0 +1,137 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.display.projector.volatiles;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.Volatile;
+import net.imglib2.converter.Converter;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.list.ListImg;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.view.Views;
+
+public class Volatile2DRandomAccessibleProjectorTest
+{
+	private static final int width = 10;
+
+	private static final int height = 8;
+
+	private final List< Volatile< IntType > > pixels = new ArrayList<>();
+
+	private final ListImg< Volatile< IntType > > source;
+
+	private final AtomicInteger numConversions = new AtomicInteger();
+
+	private final Converter< Volatile< IntType >, IntType > converter = ( a, b ) -> {
+		numConversions.incrementAndGet();
+		b.set( a.isValid() ? a.get().get() : -1 );
+	};
+
+	public Volatile2DRandomAccessibleProjectorTest()
+	{
+		for ( int i = 0; i < width * height; ++i )
+			pixels.add( new Volatile<>( new IntType( i ), i % 2 == 0 ) );
+		source = new ListImg<>( pixels, width, height );
+	}
+
+	private void checkIncremental( final RandomAccessibleInterval< IntType > target )
+	{
+		final int size = width * height;
+		final Volatile2DRandomAccessibleProjector< IntType, Volatile< IntType >, IntType > projector = new Volatile2DRandomAccessibleProjector<>( 0, 1, source, target, converter );
+
+		projector.map();
+		assertEquals( size, numConversions.get() );
+		assertEquals( size / 2, projector.getNumInvalidPixels() );
+		assertFalse( projector.isValid() );
+
+		// nothing changed: only the invalid pixels are rendered again
+		projector.map();
+		assertEquals( size + size / 2, numConversions.get() );
+		assertEquals( size / 2, projector.getNumInvalidPixels() );
+
+		// some data arrived
+		for ( int i = 1; i < 21; i += 2 )
+			pixels.get( i ).setValid( true );
+		projector.map();
+		assertEquals( 2 * size, numConversions.get() );
+		assertEquals( size / 2 - 10, projector.getNumInvalidPixels() );
+
+		// all data arrived
+		for ( final Volatile< IntType > pixel : pixels )
+			pixel.setValid( true );
+		projector.map();
+		assertEquals( 2 * size + size / 2 - 10, numConversions.get() );
+		assertEquals( 0, projector.getNumInvalidPixels() );
+		assertTrue( projector.isValid() );
+		int i = 0;
+		for ( final IntType t : Views.flatIterable( target ) )
+			assertEquals( i++, t.get() );
+
+		// everything is valid: nothing to render
+		numConversions.set( 0 );
+		projector.map();
+		assertEquals( 0, numConversions.get() );
+		assertTrue( projector.isValid() );
+
+		// forcing a full repaint
+		projector.invalidate();
+		projector.map();
+		assertEquals( size, numConversions.get() );
+		assertTrue( projector.isValid() );
+	}
+
+	@Test
+	public void testFlatTarget()
+	{
+		checkIncremental( ArrayImgs.ints( width, height ) );
+	}
+
+	@Test
+	public void testCellTarget()
+	{
+		checkIncremental( new CellImgFactory< IntType >( 3 ).create( new long[] { width, height }, new IntType() ) );
+	}
+}
@@ -34,11 +34,17 @@
 
 package net.imglib2.histogram;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import net.imglib2.img.Img;
+import net.imglib2.img.cell.CellImgFactory;
 import net.imglib2.type.numeric.integer.UnsignedByteType;
 
 import org.junit.Test;
@@ -104,6 +110,40 @@ public class Histogram1dTest
 		assertEquals( 0, hist.upperTailCount() );
 	}
 
+	@Test
+	public void testParallelCounting()
+	{
+		final Img< UnsignedByteType > img = new CellImgFactory< UnsignedByteType >( 32 ).create( new long[] { 200, 150 }, new UnsignedByteType() );
+		final Random rnd = new Random( 42 );
+		for ( final UnsignedByteType t : img )
+			t.set( rnd.nextInt( 256 ) );
+
+		final ExecutorService executor = Executors.newFixedThreadPool( 3 );
+		try
+		{
+			for ( final boolean tails : new boolean[] { false, true } )
+			{
+				final BinMapper1d< UnsignedByteType > binMapper = new Integer1dBinMapper< UnsignedByteType >( 20, 200, tails );
+				final Histogram1d< UnsignedByteType > expected = new Histogram1d< UnsignedByteType >( img, binMapper );
+				final Histogram1d< UnsignedByteType > hist = new Histogram1d< UnsignedByteType >( binMapper );
+				hist.countData( img, executor );
+				assertArrayEquals( expected.toLongArray(), hist.toLongArray() );
+				assertEquals( expected.ignoredCount(), hist.ignoredCount() );
+				assertEquals( expected.totalCount(), hist.totalCount() );
+				assertEquals( expected.distributionCount(), hist.distributionCount() );
+
+				hist.addData( img, executor );
+				hist.subtractData( img, executor );
+				assertArrayEquals( expected.toLongArray(), hist.toLongArray() );
+				assertEquals( expected.ignoredCount(), hist.ignoredCount() );
+			}
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+
 	private List< UnsignedByteType > getData1()
 	{
 		final List< UnsignedByteType > data = new ArrayList< UnsignedByteType >();
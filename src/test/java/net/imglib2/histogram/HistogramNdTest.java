@@ -34,18 +34,23 @@
 
 package net.imglib2.histogram;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import net.imglib2.Cursor;
 import net.imglib2.img.Img;
 import net.imglib2.img.array.ArrayImgFactory;
 import net.imglib2.type.numeric.ARGBType;
 import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.LongType;
 import net.imglib2.type.numeric.integer.UnsignedByteType;
 
 import org.junit.Test;
@@ -58,6 +63,52 @@ import org.junit.Test;
 public class HistogramNdTest
 {
 
+	@Test
+	public void testParallelCounting()
+	{
+		final long[] dims = new long[] { 123, 77 };
+		final List< Img< IntType > > data = new ArrayList< Img< IntType > >();
+		final List< Iterable< IntType > > iterables = new ArrayList< Iterable< IntType > >();
+		final Random rnd = new Random( 17 );
+		for ( int i = 0; i < 2; i++ )
+		{
+			final Img< IntType > img = new ArrayImgFactory< IntType >().create( dims, new IntType() );
+			for ( final IntType t : img )
+				t.set( rnd.nextInt( 100 ) );
+			data.add( img );
+			iterables.add( img );
+		}
+
+		final List< BinMapper1d< IntType > > binMappers = new ArrayList< BinMapper1d< IntType > >();
+		binMappers.add( new Integer1dBinMapper< IntType >( 10, 50, false ) );
+		binMappers.add( new Integer1dBinMapper< IntType >( 0, 25, true ) );
+
+		final HistogramNd< IntType > expected = new HistogramNd< IntType >( iterables, binMappers );
+		final HistogramNd< IntType > hist = new HistogramNd< IntType >( binMappers );
+		final ExecutorService executor = Executors.newFixedThreadPool( 3 );
+		try
+		{
+			hist.countData( data, executor );
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+
+		assertEquals( expected.ignoredCount(), hist.ignoredCount() );
+		assertEquals( expected.distributionCount(), hist.distributionCount() );
+		final long[] expectedCounts = new long[ ( int ) expected.size() ];
+		final long[] counts = new long[ ( int ) hist.size() ];
+		final Cursor< LongType > ce = expected.cursor();
+		final Cursor< LongType > c = hist.cursor();
+		for ( int i = 0; i < counts.length; ++i )
+		{
+			expectedCounts[ i ] = ce.next().get();
+			counts[ i ] = c.next().get();
+		}
+		assertArrayEquals( expectedCounts, counts );
+	}
+
 	@Test
 	public void testUnconstrainedNoTails()
 	{
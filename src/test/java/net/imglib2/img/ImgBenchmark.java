@@ -0,0 +1,307 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.IterableInterval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.list.ListImgFactory;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.img.sparse.NtreeImgFactory;
+import net.imglib2.loops.LoopBuilder;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+
+/**
+ * Benchmark of the basic access patterns for all {@link Img}
+ * implementations: iteration with a cursor and a localizing cursor, random
+ * access, iteration of a sub-interval, and copying. The image type, the pixel
+ * type, the number of dimensions, and the view through which the image is
+ * accessed are parameters. Run {@link #main(String...)} to measure all
+ * combinations, or pass {@code -p img=CellImg} etc. to the JMH command line
+ * to select a subset.
+ * <p>
+ * All images have about 2<sup>20</sup> pixels. {@code NtreeImg} and
+ * {@code ListImg} are filled with a blocky pattern, so that the tree has a
+ * realistic depth.
+ * </p>
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 4, time = 200, timeUnit = TimeUnit.MILLISECONDS )
+@Measurement( iterations = 8, time = 200, timeUnit = TimeUnit.MILLISECONDS )
+@Fork( 1 )
+public class ImgBenchmark
+{
+	@Param( { "ArrayImg", "PlanarImg", "CellImg", "NtreeImg", "ListImg" } )
+	public String img;
+
+	@Param( { "UnsignedByteType", "UnsignedShortType", "FloatType", "DoubleType" } )
+	public String type;
+
+	@Param( { "2", "3" } )
+	public int numDimensions;
+
+	/**
+	 * How the image is accessed: directly, through a translated view,
+	 * through a view with permuted axes, or through a view of a sub-interval.
+	 */
+	@Param( { "none", "translate", "permute", "interval" } )
+	public String view;
+
+	private static final int numRandomAccesses = 1 << 16;
+
+	private RandomAccessibleInterval< ? extends RealType< ? > > source;
+
+	private Copy< ? > copy;
+
+	private FinalInterval subInterval;
+
+	private long[][] randomPositions;
+
+	@Setup
+	public void setup()
+	{
+		final long[] dimensions = numDimensions == 2 ? new long[] { 1024, 1024 } : new long[] { 128, 128, 64 };
+		switch ( type )
+		{
+		case "UnsignedByteType":
+			setup( new UnsignedByteType(), dimensions );
+			break;
+		case "UnsignedShortType":
+			setup( new UnsignedShortType(), dimensions );
+			break;
+		case "FloatType":
+			setup( new FloatType(), dimensions );
+			break;
+		case "DoubleType":
+			setup( new DoubleType(), dimensions );
+			break;
+		default:
+			throw new IllegalArgumentException( "Unknown pixel type " + type );
+		}
+
+		// the central half of the source in each dimension
+		final long[] min = new long[ numDimensions ];
+		final long[] max = new long[ numDimensions ];
+		for ( int d = 0; d < numDimensions; ++d )
+		{
+			min[ d ] = source.min( d ) + source.dimension( d ) / 4;
+			max[ d ] = source.max( d ) - source.dimension( d ) / 4;
+		}
+		subInterval = new FinalInterval( min, max );
+
+		final Random random = new Random( 1 );
+		randomPositions = new long[ numRandomAccesses ][ numDimensions ];
+		for ( final long[] position : randomPositions )
+			for ( int d = 0; d < numDimensions; ++d )
+				position[ d ] = source.min( d ) + random.nextInt( ( int ) source.dimension( d ) );
+	}
+
+	private < T extends NativeType< T > & RealType< T > > void setup( final T type, final long[] dimensions )
+	{
+		final ImgFactory< T > factory = factory();
+		final Img< T > image = factory.create( dimensions, type );
+		final Cursor< T > c = image.localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			long value = 0;
+			for ( int d = 0; d < numDimensions; ++d )
+				value += c.getLongPosition( d ) / 16;
+			c.get().setReal( value % 100 );
+		}
+
+		final RandomAccessibleInterval< T > viewed = view( image );
+		source = viewed;
+		copy = new Copy<>( viewed, factory.create( viewed, type ) );
+	}
+
+	private < T extends NativeType< T > > ImgFactory< T > factory()
+	{
+		switch ( img )
+		{
+		case "ArrayImg":
+			return new ArrayImgFactory<>();
+		case "PlanarImg":
+			return new PlanarImgFactory<>();
+		case "CellImg":
+			return new CellImgFactory<>( 64 );
+		case "NtreeImg":
+			return new NtreeImgFactory<>();
+		case "ListImg":
+			return new ListImgFactory<>();
+		default:
+			throw new IllegalArgumentException( "Unknown img " + img );
+		}
+	}
+
+	private < T > RandomAccessibleInterval< T > view( final Img< T > image )
+	{
+		switch ( view )
+		{
+		case "none":
+			return image;
+		case "translate":
+			final long[] translation = new long[ numDimensions ];
+			translation[ 0 ] = 10;
+			return Views.translate( image, translation );
+		case "permute":
+			return Views.permute( image, 0, 1 );
+		case "interval":
+			return Views.interval( image, Intervals.expand( image, -1 ) );
+		default:
+			throw new IllegalArgumentException( "Unknown view " + view );
+		}
+	}
+
+	/**
+	 * Copies a source into a target with the same pixel type.
+	 */
+	private static class Copy< T extends RealType< T > >
+	{
+		final RandomAccessibleInterval< T > source;
+
+		final RandomAccessibleInterval< T > target;
+
+		Copy( final RandomAccessibleInterval< T > source, final Img< T > target )
+		{
+			this.source = source;
+			this.target = Views.translate( target, Intervals.minAsLongArray( source ) );
+		}
+
+		void run()
+		{
+			LoopBuilder.setImages( source, target ).forEachPixel( ( s, t ) -> t.set( s ) );
+		}
+	}
+
+	private static double sum( final IterableInterval< ? extends RealType< ? > > iterable )
+	{
+		double sum = 0;
+		final Cursor< ? extends RealType< ? > > c = iterable.cursor();
+		while ( c.hasNext() )
+			sum += c.next().getRealDouble();
+		return sum;
+	}
+
+	@Benchmark
+	public double cursor()
+	{
+		return sum( Views.iterable( source ) );
+	}
+
+	@Benchmark
+	public double localizingCursor()
+	{
+		double sum = 0;
+		final Cursor< ? extends RealType< ? > > c = Views.iterable( source ).localizingCursor();
+		while ( c.hasNext() )
+		{
+			sum += c.next().getRealDouble();
+			sum += c.getLongPosition( 0 );
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public double flatIterationCursor()
+	{
+		return sum( Views.flatIterable( source ) );
+	}
+
+	@Benchmark
+	public double randomAccess()
+	{
+		double sum = 0;
+		final RandomAccess< ? extends RealType< ? > > ra = source.randomAccess();
+		for ( final long[] position : randomPositions )
+		{
+			ra.setPosition( position );
+			sum += ra.get().getRealDouble();
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public double subIntervalCursor()
+	{
+		return sum( Views.interval( source, subInterval ) );
+	}
+
+	@Benchmark
+	public void copy()
+	{
+		copy.run();
+	}
+
+	public static void main( final String... args ) throws RunnerException
+	{
+		final Options opt = new OptionsBuilder()
+				.include( ImgBenchmark.class.getSimpleName() )
+				.build();
+		new Runner( opt ).run();
+	}
+}
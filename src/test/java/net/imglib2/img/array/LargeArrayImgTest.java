@@ -0,0 +1,122 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.img.array;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.loops.LoopBuilder;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.util.Fraction;
+import net.imglib2.view.Views;
+
+public class LargeArrayImgTest
+{
+	@Test
+	public void testSegmentDimensions()
+	{
+		final Fraction one = new Fraction();
+		assertArrayEquals( new int[] { 10, 20, 3 }, LargeArrayImgFactory.getSegmentDimensions( new long[] { 10, 20, 3 }, one, 1000 ) );
+		assertArrayEquals( new int[] { 10, 20, 1 }, LargeArrayImgFactory.getSegmentDimensions( new long[] { 10, 20, 3 }, one, 200 ) );
+		assertArrayEquals( new int[] { 10, 7, 1 }, LargeArrayImgFactory.getSegmentDimensions( new long[] { 10, 20, 3 }, one, 75 ) );
+		assertArrayEquals( new int[] { 7, 1, 1 }, LargeArrayImgFactory.getSegmentDimensions( new long[] { 10, 20, 3 }, one, 7 ) );
+		assertArrayEquals( new int[] { 100000, 21474 }, LargeArrayImgFactory.getSegmentDimensions( new long[] { 100000, 100000 }, one, Integer.MAX_VALUE ) );
+		assertArrayEquals( new int[] { 64, 2 }, LargeArrayImgFactory.getSegmentDimensions( new long[] { 64, 64 }, new Fraction( 1, 64 ), 2 ) );
+	}
+
+	@Test
+	public void testSegmentDimensionsSubByteType()
+	{
+		// with less than one entity per pixel, segments are limited by the
+		// number of pixels that fits into an int
+		final Fraction bits = new Fraction( 1, 64 );
+		assertArrayEquals( new int[] { Integer.MAX_VALUE }, LargeArrayImgFactory.getSegmentDimensions( new long[] { 3000000000L }, bits, Integer.MAX_VALUE ) );
+		assertArrayEquals( new int[] { 50000, 42949 }, LargeArrayImgFactory.getSegmentDimensions( new long[] { 50000, 50000 }, bits, Integer.MAX_VALUE ) );
+		assertArrayEquals( new int[] { 64, 2 }, LargeArrayImgFactory.getSegmentDimensions( new long[] { 64, 64 }, bits, 2 ) );
+		assertArrayEquals( new int[] { 1000, 1000, 2147 }, LargeArrayImgFactory.getSegmentDimensions( new long[] { 1000, 1000, 5000 }, new Fraction( 12, 64 ), Integer.MAX_VALUE ) );
+	}
+
+	@Test
+	public void testFlatIteration()
+	{
+		final long[] dimensions = { 13, 7, 5 };
+		final LargeArrayImg< IntType, ? > img = new LargeArrayImgFactory< IntType >( 50 ).create( dimensions, new IntType() );
+		assertEquals( 15, img.getSegmentGrid().gridDimension( 1 ) * img.getSegmentGrid().gridDimension( 2 ) );
+		final Img< IntType > reference = ArrayImgs.ints( dimensions );
+		assertEquals( reference.iterationOrder(), img.iterationOrder() );
+		assertSame( img, Views.flatIterable( img ) );
+
+		final Cursor< IntType > c = img.cursor();
+		for ( int i = 0; c.hasNext(); ++i )
+			c.next().set( i );
+
+		final RandomAccess< IntType > ra = img.randomAccess();
+		final Cursor< IntType > r = reference.localizingCursor();
+		for ( int i = 0; r.hasNext(); ++i )
+		{
+			r.fwd();
+			ra.setPosition( r );
+			assertEquals( i, ra.get().get() );
+		}
+
+		LoopBuilder.setImages( img, reference ).forEachPixel( ( a, b ) -> b.set( a ) );
+		final Cursor< IntType > s = reference.cursor();
+		for ( int i = 0; s.hasNext(); ++i )
+			assertEquals( i, s.next().get() );
+
+		final LargeArrayImg< IntType, ? > copy = img.copy();
+		final Cursor< IntType > t = copy.cursor();
+		for ( int i = 0; t.hasNext(); ++i )
+			assertEquals( i, t.next().get() );
+	}
+
+	@Test
+	public void testBitType()
+	{
+		final LargeArrayImg< BitType, ? > img = new LargeArrayImgFactory< BitType >( 3 ).create( new long[] { 100, 10 }, new BitType() );
+		int i = 0;
+		for ( final BitType t : img )
+			t.set( i++ % 7 == 0 );
+		i = 0;
+		for ( final BitType t : img )
+			assertEquals( i++ % 7 == 0, t.get() );
+	}
+}
@@ -0,0 +1,128 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.img.array;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import net.imglib2.Cursor;
+import net.imglib2.img.basictypeaccess.nio.ShortBufferAccess;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.type.numeric.complex.ComplexDoubleType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+
+public class OffHeapArrayImgFactoryTest
+{
+	@Test
+	public void testCreate()
+	{
+		final ArrayImg< FloatType, ? > floats = new OffHeapArrayImgFactory< FloatType >().create( new long[] { 10, 20 }, new FloatType() );
+		int i = 0;
+		for ( final FloatType t : floats )
+			t.setReal( i++ * 0.5 );
+		i = 0;
+		for ( final FloatType t : floats )
+			assertEquals( i++ * 0.5, t.getRealDouble(), 0 );
+
+		final ArrayImg< BitType, ? > bits = new OffHeapArrayImgFactory< BitType >().create( new long[] { 100, 3 }, new BitType() );
+		i = 0;
+		for ( final BitType t : bits )
+			t.set( i++ % 3 == 0 );
+		i = 0;
+		for ( final BitType t : bits )
+			assertEquals( i++ % 3 == 0, t.get() );
+
+		final ArrayImg< ComplexDoubleType, ? > complex = new OffHeapArrayImgFactory< ComplexDoubleType >().create( new long[] { 5, 5 }, new ComplexDoubleType() );
+		i = 0;
+		for ( final ComplexDoubleType t : complex )
+			t.set( i, -i++ );
+		i = 0;
+		for ( final ComplexDoubleType t : complex )
+		{
+			assertEquals( i, t.getRealDouble(), 0 );
+			assertEquals( -i++, t.getImaginaryDouble(), 0 );
+		}
+	}
+
+	@Test
+	public void testWrapBuffer()
+	{
+		final ByteBuffer buffer = ByteBuffer.allocate( 200 ).order( ByteOrder.LITTLE_ENDIAN );
+		final ArrayImg< UnsignedShortType, ? > img = new OffHeapArrayImgFactory< UnsignedShortType >( buffer ).create( new long[] { 10, 10 }, new UnsignedShortType() );
+		assertTrue( img.update( null ) instanceof ShortBufferAccess );
+		img.forEach( t -> t.set( 0x1234 ) );
+		assertEquals( 0x34, buffer.get( 0 ) );
+		assertEquals( 0x12, buffer.get( 1 ) );
+		assertEquals( 0x1234, buffer.getShort( 198 ) );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testWrapTooSmallBuffer()
+	{
+		new OffHeapArrayImgFactory< UnsignedByteType >( ByteBuffer.allocate( 99 ) ).create( new long[] { 10, 10 }, new UnsignedByteType() );
+	}
+
+	@Test
+	public void testMap() throws IOException
+	{
+		final Path file = Files.createTempFile( "imglib2", ".raw" );
+		try
+		{
+			final long[] dimensions = { 7, 9, 3 };
+			final ArrayImg< UnsignedShortType, ? > img = OffHeapArrayImgFactory.map( file, ByteOrder.BIG_ENDIAN, new UnsignedShortType(), dimensions );
+			final Cursor< UnsignedShortType > c = img.cursor();
+			for ( int i = 0; c.hasNext(); ++i )
+				c.next().set( i );
+			final ArrayImg< UnsignedShortType, ? > mapped = OffHeapArrayImgFactory.map( file, ByteOrder.BIG_ENDIAN, new UnsignedShortType(), dimensions );
+			final Cursor< UnsignedShortType > d = mapped.cursor();
+			for ( int i = 0; d.hasNext(); ++i )
+				assertEquals( i, d.next().get() );
+			assertEquals( 7 * 9 * 3 * 2, Files.size( file ) );
+		}
+		finally
+		{
+			Files.deleteIfExists( file );
+		}
+	}
+}
@@ -0,0 +1,293 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import net.imglib2.img.basictypeaccess.volatiles.array.VolatileShortArray;
+import net.imglib2.img.cell.LazyCellImg.Get;
+import net.imglib2.util.Fraction;
+
+public class AsyncCellCacheTest
+{
+	private final CellGrid grid = new CellGrid( new long[] { 50, 40 }, new int[] { 10, 10 } );
+
+	private Cell< VolatileShortArray > load( final long index )
+	{
+		final long[] cellMin = new long[ 2 ];
+		final int[] cellDims = new int[ 2 ];
+		grid.getCellDimensions( index, cellMin, cellDims );
+		final short[] data = new short[ cellDims[ 0 ] * cellDims[ 1 ] ];
+		Arrays.fill( data, ( short ) index );
+		return new Cell<>( cellDims, cellMin, new VolatileShortArray( data, true ) );
+	}
+
+	@Test
+	public void testPlaceholderIsReplaced() throws InterruptedException
+	{
+		final CountDownLatch gate = new CountDownLatch( 1 );
+		final Get< Cell< VolatileShortArray > > loader = index -> {
+			try
+			{
+				gate.await();
+			}
+			catch ( final InterruptedException e )
+			{
+				throw new RuntimeException( e );
+			}
+			return load( index );
+		};
+		try (final AsyncCellCache< VolatileShortArray > cache = new AsyncCellCache<>( grid, new VolatileShortArray( 0, false ), new Fraction(), loader, 2 ))
+		{
+			final CountDownLatch loaded = new CountDownLatch( 1 );
+			cache.setLoadListener( index -> loaded.countDown() );
+
+			final Cell< VolatileShortArray > placeholder = cache.get( 7 );
+			assertFalse( placeholder.getData().isValid() );
+			assertEquals( 100, placeholder.getData().getCurrentStorageArray().length );
+			assertSame( placeholder, cache.get( 7 ) );
+			assertFalse( cache.isLoaded( 7 ) );
+
+			gate.countDown();
+			assertTrue( loaded.await( 10, TimeUnit.SECONDS ) );
+			assertTrue( cache.isLoaded( 7 ) );
+			final Cell< VolatileShortArray > cell = cache.get( 7 );
+			assertTrue( cell.getData().isValid() );
+			assertEquals( 7, cell.getData().getValue( 0 ) );
+			assertEquals( 1, cache.getLoadCount() );
+			assertEquals( 0, cache.getNumQueuedRequests() );
+		}
+	}
+
+	@Test
+	public void testPriorities() throws InterruptedException
+	{
+		final CountDownLatch started = new CountDownLatch( 1 );
+		final CountDownLatch gate = new CountDownLatch( 1 );
+		final List< Long > order = Collections.synchronizedList( new ArrayList<>() );
+		final Get< Cell< VolatileShortArray > > loader = index -> {
+			try
+			{
+				started.countDown();
+				gate.await();
+			}
+			catch ( final InterruptedException e )
+			{
+				throw new RuntimeException( e );
+			}
+			order.add( index );
+			return load( index );
+		};
+		try (final AsyncCellCache< VolatileShortArray > cache = new AsyncCellCache<>( grid, new VolatileShortArray( 0, false ), new Fraction(), loader, 1 ))
+		{
+			final CountDownLatch loaded = new CountDownLatch( 5 );
+			cache.setLoadListener( index -> loaded.countDown() );
+
+			// occupy the fetcher thread
+			cache.get( 0 );
+			assertTrue( started.await( 10, TimeUnit.SECONDS ) );
+
+			cache.prefetch( 1, AsyncCellCache.PREFETCH );
+			cache.prefetch( 2, AsyncCellCache.BACKGROUND );
+			cache.prefetch( 3, AsyncCellCache.PREFETCH );
+			cache.prefetch( 4, AsyncCellCache.BACKGROUND );
+			// moving a request forward
+			cache.get( 4 );
+
+			gate.countDown();
+			assertTrue( loaded.await( 10, TimeUnit.SECONDS ) );
+			assertArrayEquals( new Long[] { 0l, 4l, 3l, 1l, 2l }, order.toArray( new Long[ 0 ] ) );
+		}
+	}
+
+	@Test
+	public void testCancelRequests() throws InterruptedException
+	{
+		final CountDownLatch started = new CountDownLatch( 1 );
+		final CountDownLatch gate = new CountDownLatch( 1 );
+		final Get< Cell< VolatileShortArray > > loader = index -> {
+			try
+			{
+				started.countDown();
+				gate.await();
+			}
+			catch ( final InterruptedException e )
+			{
+				throw new RuntimeException( e );
+			}
+			return load( index );
+		};
+		try (final AsyncCellCache< VolatileShortArray > cache = new AsyncCellCache<>( grid, new VolatileShortArray( 0, false ), new Fraction(), loader, 1 ))
+		{
+			final CountDownLatch loaded = new CountDownLatch( 2 );
+			cache.setLoadListener( index -> loaded.countDown() );
+
+			cache.get( 0 );
+			assertTrue( started.await( 10, TimeUnit.SECONDS ) );
+			cache.get( 1 );
+			cache.get( 2 );
+			assertEquals( 2, cache.getNumQueuedRequests() );
+
+			// the viewport changed: only cell 3 is visible now
+			cache.cancelRequests();
+			cache.get( 3 );
+			assertEquals( 1, cache.getNumQueuedRequests() );
+
+			gate.countDown();
+			assertTrue( loaded.await( 10, TimeUnit.SECONDS ) );
+			assertTrue( cache.isLoaded( 0 ) );
+			assertTrue( cache.isLoaded( 3 ) );
+			assertFalse( cache.isLoaded( 1 ) );
+			assertFalse( cache.isLoaded( 2 ) );
+		}
+	}
+
+	@Test
+	public void testFailedLoadIsRetried() throws InterruptedException
+	{
+		final AtomicBoolean fail = new AtomicBoolean( true );
+		final Get< Cell< VolatileShortArray > > loader = index -> {
+			if ( fail.getAndSet( false ) )
+				throw new IllegalStateException( "failed" );
+			return load( index );
+		};
+		try (final AsyncCellCache< VolatileShortArray > cache = new AsyncCellCache<>( grid, new VolatileShortArray( 0, false ), new Fraction(), loader, 1 ))
+		{
+			final CountDownLatch loaded = new CountDownLatch( 1 );
+			cache.setLoadListener( index -> loaded.countDown() );
+
+			assertFalse( cache.get( 3 ).getData().isValid() );
+			while ( cache.getFailureCount() == 0 || cache.getNumLoading() > 0 )
+				Thread.sleep( 1 );
+			assertFalse( cache.isLoaded( 3 ) );
+
+			assertFalse( cache.get( 3 ).getData().isValid() );
+			assertTrue( loaded.await( 10, TimeUnit.SECONDS ) );
+			assertTrue( cache.get( 3 ).getData().isValid() );
+		}
+	}
+
+	@Test
+	public void testFetcherSurvivesError() throws InterruptedException
+	{
+		final AssertionError error = new AssertionError( "failed" );
+		final AtomicBoolean fail = new AtomicBoolean( true );
+		final Get< Cell< VolatileShortArray > > loader = index -> {
+			if ( fail.getAndSet( false ) )
+				throw error;
+			return load( index );
+		};
+		try (final AsyncCellCache< VolatileShortArray > cache = new AsyncCellCache<>( grid, new VolatileShortArray( 0, false ), new Fraction(), loader, 1 ))
+		{
+			final CountDownLatch failed = new CountDownLatch( 1 );
+			final CountDownLatch loaded = new CountDownLatch( 1 );
+			final List< Throwable > causes = Collections.synchronizedList( new ArrayList<>() );
+			cache.setLoadListener( new AsyncCellCache.LoadListener()
+			{
+				@Override
+				public void cellLoaded( final long index )
+				{
+					loaded.countDown();
+				}
+
+				@Override
+				public void cellFailed( final long index, final Throwable cause )
+				{
+					causes.add( cause );
+					failed.countDown();
+				}
+			} );
+
+			assertNull( cache.getLastFailure() );
+			cache.get( 5 );
+			assertTrue( failed.await( 10, TimeUnit.SECONDS ) );
+			assertSame( error, causes.get( 0 ) );
+			assertSame( error, cache.getLastFailure() );
+
+			// the single fetcher thread is still running
+			while ( cache.getNumLoading() > 0 )
+				Thread.sleep( 1 );
+			cache.get( 5 );
+			assertTrue( loaded.await( 10, TimeUnit.SECONDS ) );
+			assertTrue( cache.isLoaded( 5 ) );
+		}
+	}
+
+	@Test
+	public void testMaxBytes() throws InterruptedException
+	{
+		final int numCells = 20;
+		final CountDownLatch loaded = new CountDownLatch( numCells );
+		// each cell holds 10 * 10 shorts = 200 bytes
+		try (final AsyncCellCache< VolatileShortArray > cache = new AsyncCellCache<>( grid, new VolatileShortArray( 0, false ), new Fraction(), this::load, 1, 1000 ))
+		{
+			cache.setLoadListener( index -> loaded.countDown() );
+			for ( long i = 0; i < numCells; ++i )
+			{
+				cache.get( i );
+				assertTrue( cache.getWeight() <= 1000 );
+			}
+			assertTrue( loaded.await( 10, TimeUnit.SECONDS ) );
+			assertEquals( 5, cache.size() );
+			assertEquals( 1000, cache.getWeight() );
+
+			// evicted cells are loaded again
+			long evicted = 0;
+			while ( cache.isLoaded( evicted ) )
+				++evicted;
+			assertFalse( cache.get( evicted ).getData().isValid() );
+			while ( !cache.isLoaded( evicted ) )
+				Thread.sleep( 1 );
+			assertEquals( evicted, cache.get( evicted ).getData().getValue( 0 ) );
+			assertEquals( numCells + 1, cache.getLoadCount() );
+			assertTrue( cache.getWeight() <= 1000 );
+		}
+	}
+}
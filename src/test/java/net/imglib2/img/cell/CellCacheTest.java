@@ -0,0 +1,229 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.img.cell;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import net.imglib2.Cursor;
+import net.imglib2.img.basictypeaccess.array.ShortArray;
+import net.imglib2.img.cell.LazyCellImg.Get;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+
+public class CellCacheTest
+{
+	private final CellGrid grid = new CellGrid( new long[] { 40, 30 }, new int[] { 10, 10 } );
+
+	private final AtomicInteger numLoads = new AtomicInteger();
+
+	private final Get< Cell< ShortArray > > loader = index -> {
+		numLoads.incrementAndGet();
+		final long[] cellMin = new long[ 2 ];
+		final int[] cellDims = new int[ 2 ];
+		grid.getCellDimensions( index, cellMin, cellDims );
+		final short[] data = new short[ cellDims[ 0 ] * cellDims[ 1 ] ];
+		for ( int i = 0; i < data.length; ++i )
+			data[ i ] = ( short ) index;
+		return new Cell<>( cellDims, cellMin, new ShortArray( data ) );
+	};
+
+	@Test
+	public void testLeastRecentlyUsedEviction()
+	{
+		final BoundedCellCache< ShortArray > cache = BoundedCellCache.withMaxCells( loader, 2 );
+		final List< Long > evicted = new ArrayList<>();
+		cache.setEvictionListener( ( index, cell ) -> evicted.add( index ) );
+
+		final Cell< ShortArray > cell0 = cache.get( 0 );
+		cache.get( 1 );
+		assertSame( cell0, cache.get( 0 ) );
+		cache.get( 2 );
+
+		assertEquals( 2, cache.size() );
+		assertArrayEquals( new Object[] { 1l }, evicted.toArray() );
+		assertEquals( 3, numLoads.get() );
+		assertEquals( 3, cache.getMissCount() );
+		assertEquals( 1, cache.getHitCount() );
+		assertEquals( 1, cache.getEvictionCount() );
+
+		cache.invalidateAll();
+		assertEquals( 0, cache.size() );
+		assertEquals( 3, cache.getEvictionCount() );
+	}
+
+	@Test
+	public void testMaxBytes()
+	{
+		// each full cell holds 10 * 10 shorts = 200 bytes
+		final BoundedCellCache< ShortArray > cache = BoundedCellCache.withMaxBytes( loader, 500 );
+		for ( long i = 0; i < grid.getGridDimensions()[ 0 ] * grid.getGridDimensions()[ 1 ]; ++i )
+			cache.get( i );
+		assertEquals( 2, cache.size() );
+		assertEquals( 400, cache.getWeight() );
+		assertEquals( 10, cache.getEvictionCount() );
+	}
+
+	@Test
+	public void testSoftRefCache()
+	{
+		final SoftRefCellCache< ShortArray > cache = new SoftRefCellCache<>( loader );
+		final Cell< ShortArray > cell = cache.get( 5 );
+		assertSame( cell, cache.get( 5 ) );
+		assertEquals( 1, numLoads.get() );
+		cache.invalidateAll();
+		assertEquals( 0, cache.size() );
+		assertEquals( 1, cache.getEvictionCount() );
+	}
+
+	@Test
+	public void testConcurrentLoadsAreDeduplicated() throws Exception
+	{
+		final CountDownLatch latch = new CountDownLatch( 1 );
+		final BoundedCellCache< ShortArray > cache = BoundedCellCache.withMaxCells( index -> {
+			try
+			{
+				latch.await();
+			}
+			catch ( final InterruptedException e )
+			{
+				throw new RuntimeException( e );
+			}
+			return loader.get( index );
+		}, 10 );
+
+		final int numThreads = 8;
+		final ExecutorService executor = Executors.newFixedThreadPool( numThreads );
+		final List< Future< Cell< ShortArray > > > futures = new ArrayList<>();
+		for ( int i = 0; i < numThreads; ++i )
+			futures.add( executor.submit( () -> cache.get( 3 ) ) );
+		Thread.sleep( 50 );
+		latch.countDown();
+		final Cell< ShortArray > cell = futures.get( 0 ).get();
+		for ( final Future< Cell< ShortArray > > future : futures )
+			assertSame( cell, future.get() );
+		executor.shutdown();
+
+		assertEquals( 1, numLoads.get() );
+		assertEquals( 1, cache.getMissCount() );
+		assertEquals( numThreads - 1, cache.getHitCount() );
+	}
+
+	@Test
+	public void testRepeatedEvictionOfResurrectedCell() throws Exception
+	{
+		final BoundedCellCache< ShortArray > cache = BoundedCellCache.withMaxCells( loader, 1 );
+		final CountDownLatch started1 = new CountDownLatch( 1 );
+		final CountDownLatch started2 = new CountDownLatch( 1 );
+		final CountDownLatch release1 = new CountDownLatch( 1 );
+		final CountDownLatch release2 = new CountDownLatch( 1 );
+		final List< Short > written = new ArrayList<>();
+		cache.setEvictionListener( ( index, cell ) -> {
+			if ( index != 0 )
+				return;
+			final int call;
+			synchronized ( written )
+			{
+				written.add( cell.getData().getValue( 0 ) );
+				call = written.size();
+			}
+			try
+			{
+				( call == 1 ? started1 : started2 ).countDown();
+				( call == 1 ? release1 : release2 ).await();
+			}
+			catch ( final InterruptedException e )
+			{
+				throw new RuntimeException( e );
+			}
+		} );
+
+		final Cell< ShortArray > cell = cache.get( 0 );
+		final ExecutorService executor = Executors.newFixedThreadPool( 2 );
+		final Future< ? > evict1 = executor.submit( () -> cache.get( 1 ) );
+		started1.await();
+
+		// resurrect the cell while it is written back, and modify it
+		assertSame( cell, cache.get( 0 ) );
+		cell.getData().setValue( 0, ( short ) 42 );
+		final Future< ? > evict2 = executor.submit( () -> cache.get( 2 ) );
+		Thread.sleep( 50 );
+		synchronized ( written )
+		{
+			// the second write-back waits for the first
+			assertEquals( 1, written.size() );
+		}
+
+		release1.countDown();
+		evict1.get();
+		started2.await();
+		// the second write-back is still running
+		assertSame( cell, cache.get( 0 ) );
+		assertEquals( 3, numLoads.get() );
+
+		release2.countDown();
+		evict2.get();
+		executor.shutdown();
+		assertArrayEquals( new Object[] { ( short ) 0, ( short ) 42 }, written.toArray() );
+	}
+
+	@Test
+	public void testLazyCellImg()
+	{
+		final BoundedCellCache< ShortArray > cache = BoundedCellCache.withMaxCells( loader, 3 );
+		final LazyCellImg< UnsignedShortType, ShortArray > img = new LazyCellImg<>( grid, new UnsignedShortType(), cache );
+		final long[] position = new long[ 2 ];
+		final long[] cellPosition = new long[ 2 ];
+		final Cursor< UnsignedShortType > c = img.localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			c.localize( position );
+			grid.getCellPosition( position, cellPosition );
+			assertEquals( cellPosition[ 0 ] + 4 * cellPosition[ 1 ], c.get().get() );
+		}
+		assertEquals( 12, cache.getMissCount() );
+		assertEquals( 3, cache.size() );
+	}
+}
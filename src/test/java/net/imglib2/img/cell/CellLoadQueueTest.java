@@ -0,0 +1,128 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class CellLoadQueueTest
+{
+	@Test
+	public void testOrder() throws InterruptedException
+	{
+		final CellLoadQueue queue = new CellLoadQueue( 3 );
+		queue.put( 1, 1 );
+		queue.put( 2, 2 );
+		queue.put( 3, 0 );
+		queue.put( 4, 1 );
+		queue.put( 5, 0 );
+		assertEquals( 5, queue.size() );
+
+		// most urgent level first, most recent request first within a level
+		assertEquals( 5, queue.take() );
+		assertEquals( 3, queue.take() );
+		assertEquals( 4, queue.take() );
+		assertEquals( 1, queue.take() );
+		assertEquals( 2, queue.take() );
+		assertEquals( 0, queue.size() );
+	}
+
+	@Test
+	public void testRequeue() throws InterruptedException
+	{
+		final CellLoadQueue queue = new CellLoadQueue( 3 );
+		queue.put( 1, 1 );
+		queue.put( 2, 1 );
+
+		// moving a request to the front of its level
+		assertTrue( queue.put( 1, 1 ) );
+		// a request is not demoted
+		assertFalse( queue.put( 1, 2 ) );
+		// promoting a request
+		assertTrue( queue.put( 2, 0 ) );
+		assertEquals( 2, queue.size() );
+
+		assertEquals( 2, queue.take() );
+		assertEquals( 1, queue.take() );
+		assertEquals( 0, queue.size() );
+	}
+
+	@Test
+	public void testRemoveAndClear() throws InterruptedException
+	{
+		final CellLoadQueue queue = new CellLoadQueue( 2 );
+		for ( long i = 0; i < 1000; ++i )
+			queue.put( i % 10, ( int ) ( i % 2 ) );
+		assertEquals( 10, queue.size() );
+		assertTrue( queue.remove( 3 ) );
+		assertFalse( queue.remove( 3 ) );
+		assertFalse( queue.contains( 3 ) );
+		assertEquals( 9, queue.size() );
+
+		queue.clear();
+		assertEquals( 0, queue.size() );
+		queue.put( 42, 1 );
+		assertEquals( 42, queue.take() );
+	}
+
+	@Test
+	public void testTakeBlocks() throws InterruptedException
+	{
+		final CellLoadQueue queue = new CellLoadQueue( 1 );
+		final AtomicLong taken = new AtomicLong( -1 );
+		final CountDownLatch done = new CountDownLatch( 1 );
+		final Thread consumer = new Thread( () -> {
+			try
+			{
+				taken.set( queue.take() );
+				done.countDown();
+			}
+			catch ( final InterruptedException e )
+			{}
+		} );
+		consumer.start();
+		assertFalse( done.await( 50, TimeUnit.MILLISECONDS ) );
+		queue.put( 17, 0 );
+		assertTrue( done.await( 10, TimeUnit.SECONDS ) );
+		assertEquals( 17, taken.get() );
+	}
+}
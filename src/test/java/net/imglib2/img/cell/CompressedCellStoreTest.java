@@ -0,0 +1,106 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import net.imglib2.Cursor;
+import net.imglib2.img.basictypeaccess.array.DirtyShortArray;
+import net.imglib2.img.cell.LazyCellImg.Get;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+
+public class CompressedCellStoreTest
+{
+	private final CellGrid grid = new CellGrid( new long[] { 50, 40 }, new int[] { 10, 10 } );
+
+	private final AtomicInteger numLoads = new AtomicInteger();
+
+	private final Get< Cell< DirtyShortArray > > loader = index -> {
+		numLoads.incrementAndGet();
+		final long[] cellMin = new long[ 2 ];
+		final int[] cellDims = new int[ 2 ];
+		grid.getCellDimensions( index, cellMin, cellDims );
+		return new Cell<>( cellDims, cellMin, new DirtyShortArray( cellDims[ 0 ] * cellDims[ 1 ] ) );
+	};
+
+	@Test
+	public void testModifiedCellsSurviveEviction()
+	{
+		final CompressedCellStore< DirtyShortArray > store = new CompressedCellStore<>( grid, new DirtyShortArray( 0 ), loader );
+		// room for 3 cells of 10 * 10 shorts
+		final BoundedCellCache< DirtyShortArray > cache = store.createCache( 600 );
+		final LazyCellImg< UnsignedShortType, DirtyShortArray > img = new LazyCellImg<>( grid, new UnsignedShortType(), cache );
+		final int numCells = 20;
+
+		// read everything: clean cells are evicted without compressing
+		img.forEach( t -> assertEquals( 0, t.get() ) );
+		assertEquals( numCells, numLoads.get() );
+		assertEquals( 0, store.getCompressCount() );
+
+		// modify everything: each modified cell is compressed once
+		final Cursor< UnsignedShortType > c = img.localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			c.get().set( c.getIntPosition( 1 ) < 20 ? 7 : c.getIntPosition( 0 ) + 100 * c.getIntPosition( 1 ) );
+		}
+		assertEquals( 2 * numCells, numLoads.get() );
+		assertEquals( numCells - 3, store.getCompressCount() );
+
+		// read everything: modified cells are decompressed
+		cache.invalidateAll();
+		assertEquals( numCells, store.getCompressCount() );
+		assertEquals( numCells, store.getNumCompressedCells() );
+		assertEquals( numCells * 200, store.getUncompressedBytes() );
+		assertTrue( store.getCompressedBytes() < store.getUncompressedBytes() );
+		final Cursor< UnsignedShortType > d = img.localizingCursor();
+		while ( d.hasNext() )
+		{
+			d.fwd();
+			assertEquals( d.getIntPosition( 1 ) < 20 ? 7 : d.getIntPosition( 0 ) + 100 * d.getIntPosition( 1 ), d.get().get() );
+		}
+		assertEquals( 2 * numCells, numLoads.get() );
+		assertEquals( numCells, store.getDecompressCount() );
+
+		// decompressed cells are clean
+		cache.invalidateAll();
+		assertEquals( numCells, store.getCompressCount() );
+	}
+}
@@ -0,0 +1,146 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.sparse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.img.Img;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.junit.Test;
+
+public class CompactNtreeTest
+{
+	@Test
+	public void testSetGet()
+	{
+		final long[] dims = new long[] { 37, 20, 9 };
+		final CompactIntNtree access = new CompactIntNtree( dims, new long[ 3 ], 5 );
+		final Ntree< Integer > reference = new Ntree< Integer >( dims, 5 );
+		final Random rnd = new Random( 123 );
+		final long[] pos = new long[ 3 ];
+		final CompactIntNtree positioned = access.createInstance( pos );
+		for ( int i = 0; i < 5000; ++i )
+		{
+			for ( int d = 0; d < 3; ++d )
+				pos[ d ] = rnd.nextInt( ( int ) dims[ d ] );
+			final int value = rnd.nextInt( 3 );
+			positioned.setValue( 0, value );
+			reference.createNodeWithValue( pos, value );
+		}
+		for ( pos[ 2 ] = 0; pos[ 2 ] < dims[ 2 ]; ++pos[ 2 ] )
+			for ( pos[ 1 ] = 0; pos[ 1 ] < dims[ 1 ]; ++pos[ 1 ] )
+				for ( pos[ 0 ] = 0; pos[ 0 ] < dims[ 0 ]; ++pos[ 0 ] )
+					assertEquals( reference.getNode( pos ).getValue().intValue(), positioned.getValue( 0 ) );
+	}
+
+	@Test
+	public void testMergeAndReuse()
+	{
+		final long[] dims = new long[] { 64, 64 };
+		final long[] pos = new long[ 2 ];
+		final CompactFloatNtree access = new CompactFloatNtree( dims, pos, 0 );
+		final CompactNtree tree = access.getCurrentStorageNtree();
+		assertEquals( 1, tree.numNodes() );
+
+		int capacity = 0;
+		for ( int pass = 0; pass < 3; ++pass )
+		{
+			for ( pos[ 1 ] = 10; pos[ 1 ] < 20; ++pos[ 1 ] )
+				for ( pos[ 0 ] = 5; pos[ 0 ] < 50; ++pos[ 0 ] )
+					access.setValue( 0, 1.5f );
+			assertTrue( tree.numNodes() > 1 );
+
+			// setting the same value again does not change the tree
+			final int numNodes = tree.numNodes();
+			pos[ 0 ] = 7;
+			pos[ 1 ] = 11;
+			access.setValue( 0, 1.5f );
+			assertEquals( numNodes, tree.numNodes() );
+
+			for ( pos[ 1 ] = 10; pos[ 1 ] < 20; ++pos[ 1 ] )
+				for ( pos[ 0 ] = 5; pos[ 0 ] < 50; ++pos[ 0 ] )
+					access.setValue( 0, 0 );
+			assertEquals( 1, tree.numNodes() );
+			assertEquals( -1, tree.getFirstChild( 0 ) );
+
+			// freed nodes are reused by later passes
+			if ( pass == 0 )
+				capacity = tree.capacity();
+			else
+				assertEquals( capacity, tree.capacity() );
+		}
+	}
+
+	@Test
+	public void testImg() throws IncompatibleTypeException
+	{
+		final long[] dims = new long[] { 30, 17 };
+		final Img< IntType > img = new CompactNtreeImgFactory< IntType >().create( dims, new IntType() );
+		assertTrue( img.factory() instanceof CompactNtreeImgFactory );
+
+		final RandomAccess< IntType > ra = img.randomAccess();
+		for ( int y = 0; y < dims[ 1 ]; ++y )
+			for ( int x = 0; x < dims[ 0 ]; ++x )
+				if ( x > 10 && y < 5 )
+				{
+					ra.setPosition( new long[] { x, y } );
+					ra.get().set( x + y );
+				}
+
+		final Cursor< IntType > c = img.localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			final int x = c.getIntPosition( 0 );
+			final int y = c.getIntPosition( 1 );
+			assertEquals( x > 10 && y < 5 ? x + y : 0, c.get().get() );
+		}
+
+		final Img< FloatType > fimg = img.factory().imgFactory( new FloatType() ).create( dims, new FloatType() );
+		final Cursor< FloatType > fc = fimg.cursor();
+		while ( fc.hasNext() )
+			fc.next().set( 0.25f );
+		for ( final FloatType t : fimg )
+			assertEquals( 0.25f, t.get(), 0 );
+	}
+}
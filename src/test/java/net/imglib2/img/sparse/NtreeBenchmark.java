@@ -0,0 +1,133 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.sparse;
+
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * Benchmark concurrent reads and writes of an {@link Ntree}. Run
+ * {@link #main(String...)} to measure the throughput with 1, 2, 4 and 8
+ * threads. Reads should scale with the number of threads, because they do not
+ * lock.
+ */
+@State( Scope.Benchmark )
+public class NtreeBenchmark
+{
+	private static final long[] dimensions = { 256, 256, 64 };
+
+	private final Ntree< Integer > tree = new Ntree< Integer >( dimensions, 0 );
+
+	@Setup
+	public void setup()
+	{
+		// paint some random boxes, so that reads descend several levels
+		final Random random = new Random( 1 );
+		final long[] position = new long[ dimensions.length ];
+		for ( int i = 0; i < 200; ++i )
+		{
+			final long[] min = new long[ dimensions.length ];
+			for ( int d = 0; d < dimensions.length; ++d )
+				min[ d ] = random.nextInt( ( int ) dimensions[ d ] - 8 );
+			final int value = 1 + random.nextInt( 10 );
+			for ( position[ 2 ] = min[ 2 ]; position[ 2 ] < min[ 2 ] + 8; ++position[ 2 ] )
+				for ( position[ 1 ] = min[ 1 ]; position[ 1 ] < min[ 1 ] + 8; ++position[ 1 ] )
+					for ( position[ 0 ] = min[ 0 ]; position[ 0 ] < min[ 0 ] + 8; ++position[ 0 ] )
+						tree.createNodeWithValue( position, value );
+		}
+	}
+
+	@State( Scope.Thread )
+	public static class ThreadState
+	{
+		final Random random = new Random();
+
+		final long[] position = new long[ dimensions.length ];
+
+		void nextPosition()
+		{
+			for ( int d = 0; d < dimensions.length; ++d )
+				position[ d ] = random.nextInt( ( int ) dimensions[ d ] );
+		}
+	}
+
+	@Benchmark
+	public int read( final ThreadState state )
+	{
+		int sum = 0;
+		for ( int i = 0; i < 1000; ++i )
+		{
+			state.nextPosition();
+			sum += tree.getNode( state.position ).getValue();
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public void write( final ThreadState state )
+	{
+		for ( int i = 0; i < 1000; ++i )
+		{
+			state.nextPosition();
+			tree.createNodeWithValue( state.position, state.random.nextInt( 10 ) );
+		}
+	}
+
+	public static void main( final String... args ) throws RunnerException
+	{
+		for ( final int threads : new int[] { 1, 2, 4, 8 } )
+		{
+			final Options opt = new OptionsBuilder()
+					.include( NtreeBenchmark.class.getSimpleName() )
+					.threads( threads )
+					.forks( 0 )
+					.warmupIterations( 4 )
+					.measurementIterations( 8 )
+					.warmupTime( TimeValue.milliseconds( 100 ) )
+					.measurementTime( TimeValue.milliseconds( 100 ) )
+					.build();
+			new Runner( opt ).run();
+		}
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.sparse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.view.Views;
+
+import org.junit.Test;
+
+public class NtreeBlockCursorTest
+{
+	private static NtreeImg< IntType, ? > createImg( final ImgFactory< IntType > factory, final long[] dims )
+	{
+		final Img< IntType > img = factory.create( dims, new IntType() );
+		final Random rnd = new Random( 42 );
+		final RandomAccess< IntType > ra = img.randomAccess();
+		for ( int r = 0; r < 5; ++r )
+		{
+			final long[] min = new long[ dims.length ];
+			final long[] max = new long[ dims.length ];
+			for ( int d = 0; d < dims.length; ++d )
+			{
+				min[ d ] = rnd.nextInt( ( int ) dims[ d ] );
+				max[ d ] = min[ d ] + rnd.nextInt( ( int ) ( dims[ d ] - min[ d ] ) );
+			}
+			final int value = rnd.nextInt( 4 );
+			final Cursor< IntType > c = Views.interval( img, min, max ).cursor();
+			while ( c.hasNext() )
+			{
+				c.fwd();
+				ra.setPosition( c );
+				ra.get().set( value );
+			}
+		}
+		return ( NtreeImg< IntType, ? > ) img;
+	}
+
+	private static void checkBlocks( final NtreeImg< IntType, ? > img )
+	{
+		long sum = 0;
+		for ( final IntType t : img )
+			sum += t.get();
+
+		long blockSum = 0;
+		long numPixels = 0;
+		final NtreeBlockCursor< IntType > blocks = img.blockCursor();
+		while ( blocks.hasNext() )
+		{
+			final int value = blocks.next().get();
+			blockSum += value * blocks.size();
+			numPixels += blocks.size();
+			for ( int d = 0; d < img.numDimensions(); ++d )
+			{
+				assertTrue( blocks.min( d ) >= 0 );
+				assertTrue( blocks.max( d ) < img.dimension( d ) );
+			}
+			for ( final IntType t : Views.interval( img, blocks ) )
+				assertEquals( value, t.get() );
+		}
+		assertEquals( img.size(), numPixels );
+		assertEquals( sum, blockSum );
+	}
+
+	@Test
+	public void testNtreeImg()
+	{
+		checkBlocks( createImg( new NtreeImgFactory< IntType >(), new long[] { 37, 20, 9 } ) );
+	}
+
+	@Test
+	public void testCompactNtreeImg()
+	{
+		checkBlocks( createImg( new CompactNtreeImgFactory< IntType >(), new long[] { 37, 20, 9 } ) );
+	}
+
+	@Test
+	public void testUniform()
+	{
+		final NtreeImg< IntType, ? > img = ( NtreeImg< IntType, ? > ) new NtreeImgFactory< IntType >().create( new long[] { 100, 3 }, new IntType() );
+		final RandomAccess< IntType > ra = img.randomAccess();
+		ra.setPosition( new long[] { 99, 2 } );
+		ra.get().set( 7 );
+		ra.get().set( 0 );
+
+		final NtreeBlockCursor< IntType > blocks = img.blockCursor();
+		assertTrue( blocks.hasNext() );
+		assertEquals( 0, blocks.next().get() );
+		assertEquals( img.size(), blocks.size() );
+		assertTrue( !blocks.hasNext() );
+
+		blocks.reset();
+		assertTrue( blocks.hasNext() );
+	}
+
+	@Test
+	public void testValueIsNotLinked()
+	{
+		final NtreeImg< IntType, ? > img = ( NtreeImg< IntType, ? > ) new CompactNtreeImgFactory< IntType >().create( new long[] { 16, 16 }, new IntType() );
+		final NtreeBlockCursor< IntType > blocks = img.blockCursor();
+		blocks.next().set( 5 );
+		final NtreeBlockCursor< IntType > copy = blocks.copy();
+		assertEquals( 5, copy.get().get() );
+		for ( final IntType t : img )
+			assertEquals( 0, t.get() );
+		blocks.reset();
+		assertEquals( 0, blocks.next().get() );
+	}
+}
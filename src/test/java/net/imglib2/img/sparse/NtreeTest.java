@@ -34,9 +34,18 @@
 
 package net.imglib2.img.sparse;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import org.junit.Test;
 
 /**
@@ -94,4 +103,91 @@ public class NtreeTest
 
 		assertFalse( t.root.hasChildren() );
 	}
+
+	@Test
+	public void test_concurrentReadWrite() throws Exception
+	{
+		final int v = 0;
+		final long[] dims = new long[] { 64, 64 };
+		final Ntree< Integer > t = new Ntree< Integer >( dims, v );
+		final int numWriters = 4;
+		final AtomicBoolean done = new AtomicBoolean( false );
+		final ExecutorService executor = Executors.newFixedThreadPool( numWriters + 2 );
+		try
+		{
+			// readers run until the writers are done, and must always find
+			// one of the values written to a pixel
+			final List< Future< Void > > readers = new ArrayList< Future< Void > >();
+			for ( int r = 0; r < 2; ++r )
+			{
+				readers.add( executor.submit( new Callable< Void >()
+				{
+					@Override
+					public Void call()
+					{
+						final long[] pos = new long[ 2 ];
+						while ( !done.get() )
+						{
+							for ( pos[ 1 ] = 0; pos[ 1 ] < dims[ 1 ]; ++pos[ 1 ] )
+								for ( pos[ 0 ] = 0; pos[ 0 ] < dims[ 0 ]; ++pos[ 0 ] )
+								{
+									final int value = t.getNode( pos ).getValue();
+									assertTrue( value == v || value == expectedValue( pos ) );
+								}
+						}
+						return null;
+					}
+				} ) );
+			}
+
+			// each writer paints every numWriters-th row, several times
+			// switching between background and label value
+			final List< Callable< Void > > writers = new ArrayList< Callable< Void > >();
+			for ( int w = 0; w < numWriters; ++w )
+			{
+				final int offset = w;
+				writers.add( new Callable< Void >()
+				{
+					@Override
+					public Void call()
+					{
+						final long[] pos = new long[ 2 ];
+						for ( int pass = 0; pass < 5; ++pass )
+						{
+							for ( pos[ 1 ] = offset; pos[ 1 ] < dims[ 1 ]; pos[ 1 ] += numWriters )
+								for ( pos[ 0 ] = 0; pos[ 0 ] < dims[ 0 ]; ++pos[ 0 ] )
+									t.createNodeWithValue( pos, pass % 2 == 0 ? expectedValue( pos ) : v );
+						}
+						return null;
+					}
+				} );
+			}
+			for ( final Future< Void > f : executor.invokeAll( writers ) )
+				f.get();
+			done.set( true );
+			for ( final Future< Void > f : readers )
+				f.get();
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+
+		final long[] pos = new long[ 2 ];
+		for ( pos[ 1 ] = 0; pos[ 1 ] < dims[ 1 ]; ++pos[ 1 ] )
+			for ( pos[ 0 ] = 0; pos[ 0 ] < dims[ 0 ]; ++pos[ 0 ] )
+				assertEquals( expectedValue( pos ), t.getNode( pos ).getValue().intValue() );
+
+		// painting everything back to the background value merges all nodes
+		for ( pos[ 1 ] = 0; pos[ 1 ] < dims[ 1 ]; ++pos[ 1 ] )
+			for ( pos[ 0 ] = 0; pos[ 0 ] < dims[ 0 ]; ++pos[ 0 ] )
+				t.createNodeWithValue( pos, v );
+		assertFalse( t.root.hasChildren() );
+		assertEquals( v, t.root.getValue().intValue() );
+	}
+
+	private static int expectedValue( final long[] pos )
+	{
+		return 1 + ( int ) ( ( pos[ 0 ] / 8 + pos[ 1 ] / 8 ) % 3 );
+	}
 }
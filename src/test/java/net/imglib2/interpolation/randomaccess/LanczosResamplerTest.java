@@ -0,0 +1,270 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.interpolation.randomaccess;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RealRandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+import org.junit.Test;
+
+public class LanczosResamplerTest
+{
+	private static Img< DoubleType > randomImg( final long... dimensions )
+	{
+		final Img< DoubleType > img = new ArrayImgFactory< DoubleType >().create( dimensions, new DoubleType() );
+		final Random random = new Random( 42 );
+		for ( final DoubleType t : img )
+			t.set( random.nextDouble() * 100 );
+		return img;
+	}
+
+	/**
+	 * Compute the value at source position {@code p} with the full
+	 * {@code k^n} kernel. For {@code |scale| < 1}, the kernel is stretched by
+	 * {@code 1 / |scale|} and normalized.
+	 */
+	private static double expected( final RandomAccessible< DoubleType > source, final LanczosResampler.Kernel kernel, final double[] scale, final double[] p )
+	{
+		final int n = p.length;
+		final long[] start = new long[ n ];
+		final double[][] w = new double[ n ][];
+		long numWeights = 1;
+		for ( int d = 0; d < n; ++d )
+		{
+			final double stretch = Math.min( 1, Math.abs( scale[ d ] ) );
+			final int radius = ( int ) Math.ceil( kernel.radius() / stretch );
+			start[ d ] = ( long ) Math.floor( p[ d ] ) - radius + 1;
+			w[ d ] = new double[ 2 * radius ];
+			double sum = 0;
+			for ( int i = 0; i < w[ d ].length; ++i )
+			{
+				w[ d ][ i ] = stretch * kernel.weight( stretch * ( p[ d ] - start[ d ] - i ) );
+				sum += w[ d ][ i ];
+			}
+			if ( stretch < 1 )
+				for ( int i = 0; i < w[ d ].length; ++i )
+					w[ d ][ i ] /= sum;
+			numWeights *= w[ d ].length;
+		}
+		final RandomAccess< DoubleType > a = source.randomAccess();
+		double sum = 0;
+		for ( long i = 0; i < numWeights; ++i )
+		{
+			long index = i;
+			double weight = 1;
+			for ( int d = 0; d < n; ++d )
+			{
+				final int offset = ( int ) ( index % w[ d ].length );
+				index /= w[ d ].length;
+				a.setPosition( start[ d ] + offset, d );
+				weight *= w[ d ][ offset ];
+			}
+			sum += weight * a.get().get();
+		}
+		return sum;
+	}
+
+	private static void check( final RandomAccessible< DoubleType > source, final Img< DoubleType > target, final double[] scale, final double[] translation, final int alpha, final double checkFraction )
+	{
+		final LanczosResampler.Kernel kernel = LanczosResampler.lanczos( alpha );
+		final int n = target.numDimensions();
+		final double[] p = new double[ n ];
+		final Random random = new Random( 1 );
+		final Cursor< DoubleType > c = target.localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			if ( random.nextDouble() >= checkFraction )
+				continue;
+			for ( int d = 0; d < n; ++d )
+				p[ d ] = ( c.getDoublePosition( d ) - translation[ d ] ) / scale[ d ];
+			assertEquals( expected( source, kernel, scale, p ), c.get().get(), 1e-9 );
+		}
+	}
+
+	@Test
+	public void testUpsample2D()
+	{
+		final RandomAccessible< DoubleType > source = Views.extendMirrorSingle( randomImg( 17, 13 ) );
+		final Img< DoubleType > target = new ArrayImgFactory< DoubleType >().create( new long[] { 40, 31 }, new DoubleType() );
+		new LanczosResampler<>( source, 3, false ).scale( target, 2.3, 2.4 );
+		check( source, target, new double[] { 2.3, 2.4 }, new double[ 2 ], 3, 1 );
+	}
+
+	@Test
+	public void testDownsampleMirrored3D()
+	{
+		final RandomAccessible< DoubleType > source = Views.extendBorder( randomImg( 19, 17, 15 ) );
+		final Img< DoubleType > target = new ArrayImgFactory< DoubleType >().create( new long[] { 9, 8, 7 }, new DoubleType() );
+		final double[] scale = { -0.5, 0.45, 0.4 };
+		final double[] translation = { 8.3, -0.2, 1.1 };
+		new LanczosResampler<>( source, 2, false ).resample( target, scale, translation );
+		check( source, target, scale, translation, 2, 1 );
+	}
+
+	@Test
+	public void testTilesMultiThreaded()
+	{
+		// large enough to be split into several tiles
+		final RandomAccessible< DoubleType > source = Views.extendMirrorDouble( randomImg( 150, 150, 50 ) );
+		final Img< DoubleType > target = new ArrayImgFactory< DoubleType >().create( new long[] { 300, 300, 100 }, new DoubleType() );
+		final double[] scale = { 2, 2, 2 };
+		final ExecutorService es = Executors.newFixedThreadPool( 4 );
+		try
+		{
+			new LanczosResampler<>( source, 3, false ).multiThreaded( es ).scale( target, scale );
+		}
+		finally
+		{
+			es.shutdown();
+		}
+		check( source, target, scale, new double[ 3 ], 3, 2e-4 );
+	}
+
+	@Test
+	public void testStrongDownsampling()
+	{
+		final RandomAccessible< DoubleType > source = Views.extendPeriodic( randomImg( 64, 64, 64 ) );
+		final Img< DoubleType > target = new ArrayImgFactory< DoubleType >().create( new long[] { 40, 40, 40 }, new DoubleType() );
+		final double[] scale = { 1.0 / 8, 1.0 / 6, 1.0 / 5 };
+		new LanczosResampler<>( source, 2, false ).scale( target, scale );
+		check( source, target, scale, new double[ 3 ], 2, 2e-3 );
+	}
+
+	@Test
+	public void testDownsampleConstant()
+	{
+		final Img< DoubleType > img = new ArrayImgFactory< DoubleType >().create( new long[] { 50, 40 }, new DoubleType() );
+		for ( final DoubleType t : img )
+			t.set( 42 );
+		final Img< DoubleType > target = new ArrayImgFactory< DoubleType >().create( new long[] { 13, 7 }, new DoubleType() );
+		new LanczosResampler<>( Views.extendBorder( img ), 3, false ).resample( target, new double[] { 0.26, -0.17 }, new double[] { 0.3, 6.4 } );
+		for ( final DoubleType t : target )
+			assertEquals( 42, t.get(), 1e-9 );
+	}
+
+	@Test
+	public void testDownsampleSmooth()
+	{
+		// a smooth image is reproduced, a pattern at the pixel frequency is
+		// averaged out instead of aliased
+		final Img< DoubleType > smooth = new ArrayImgFactory< DoubleType >().create( new long[] { 400, 400 }, new DoubleType() );
+		final Img< DoubleType > checkerboard = new ArrayImgFactory< DoubleType >().create( new long[] { 400, 400 }, new DoubleType() );
+		final Cursor< DoubleType > c = smooth.localizingCursor();
+		final RandomAccess< DoubleType > r = checkerboard.randomAccess();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			final double x = c.getDoublePosition( 0 ), y = c.getDoublePosition( 1 );
+			c.get().set( 50 + 20 * Math.sin( 2 * Math.PI * x / 200 ) * Math.cos( 2 * Math.PI * y / 400 ) );
+			r.setPosition( c );
+			r.get().set( ( c.getLongPosition( 0 ) + c.getLongPosition( 1 ) ) % 2 == 0 ? 0 : 100 );
+		}
+		final double[] scale = { 0.1, 1 / 7.5 };
+		final Img< DoubleType > smoothTarget = new ArrayImgFactory< DoubleType >().create( new long[] { 40, 53 }, new DoubleType() );
+		final Img< DoubleType > checkerboardTarget = new ArrayImgFactory< DoubleType >().create( new long[] { 40, 53 }, new DoubleType() );
+		new LanczosResampler<>( Views.extendPeriodic( smooth ), 3, false ).scale( smoothTarget, scale );
+		new LanczosResampler<>( Views.extendPeriodic( checkerboard ), 3, false ).scale( checkerboardTarget, scale );
+		final Cursor< DoubleType > s = smoothTarget.localizingCursor();
+		final Cursor< DoubleType > b = checkerboardTarget.cursor();
+		while ( s.hasNext() )
+		{
+			s.fwd();
+			final double x = s.getDoublePosition( 0 ) / scale[ 0 ], y = s.getDoublePosition( 1 ) / scale[ 1 ];
+			assertEquals( 50 + 20 * Math.sin( 2 * Math.PI * x / 200 ) * Math.cos( 2 * Math.PI * y / 400 ), s.get().get(), 0.5 );
+			assertEquals( 50, b.next().get(), 1 );
+		}
+	}
+
+	@Test
+	public void testMatchesLanczosInterpolator()
+	{
+		final Img< FloatType > img = new ArrayImgFactory< FloatType >().create( new long[] { 20 }, new FloatType() );
+		final Random random = new Random( 42 );
+		for ( final FloatType t : img )
+			t.set( random.nextFloat() * 100 );
+		final RandomAccessible< FloatType > source = Views.extendMirrorSingle( img );
+		final Img< FloatType > target = new ArrayImgFactory< FloatType >().create( new long[] { 37 }, new FloatType() );
+		new LanczosResampler<>( source ).scale( target, 1.7 );
+		final RealRandomAccess< FloatType > interpolator = Views.interpolate( source, new LanczosInterpolatorFactory< FloatType >() ).realRandomAccess();
+		final Cursor< FloatType > c = target.localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			interpolator.setPosition( c.getDoublePosition( 0 ) / 1.7, 0 );
+			// the interpolator approximates the kernel with a lookup table
+			assertEquals( interpolator.get().get(), c.get().get(), 0.5 );
+		}
+	}
+
+	@Test
+	public void testClip()
+	{
+		final Img< UnsignedByteType > img = new ArrayImgFactory< UnsignedByteType >().create( new long[] { 16 }, new UnsignedByteType() );
+		int i = 0;
+		for ( final UnsignedByteType t : img )
+			t.set( ( i++ / 4 ) % 2 == 0 ? 0 : 255 );
+		final RandomAccessible< UnsignedByteType > source = Views.extendBorder( img );
+		final Img< UnsignedByteType > clipped = new ArrayImgFactory< UnsignedByteType >().create( new long[] { 64 }, new UnsignedByteType() );
+		final Img< FloatType > unclipped = new ArrayImgFactory< FloatType >().create( new long[] { 64 }, new FloatType() );
+		new LanczosResampler<>( source ).scale( clipped, 4 );
+		new LanczosResampler<>( source, 3, false ).scale( unclipped, 4 );
+		final Cursor< UnsignedByteType > c = clipped.cursor();
+		final Cursor< FloatType > u = unclipped.cursor();
+		boolean overshoot = false;
+		while ( c.hasNext() )
+		{
+			final double value = u.next().get();
+			overshoot |= value < 0 || value > 255;
+			assertEquals( Math.round( Math.max( 0, Math.min( 255, value ) ) ), c.next().get() );
+		}
+		assertTrue( overshoot );
+	}
+}
@@ -0,0 +1,170 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.interpolation.randomaccess;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RealRandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.view.Views;
+
+import org.junit.Test;
+
+public class NLinearResamplerTest
+{
+	private static Img< DoubleType > randomImg( final long... dimensions )
+	{
+		final Img< DoubleType > img = new ArrayImgFactory< DoubleType >().create( dimensions, new DoubleType() );
+		final Random random = new Random( 42 );
+		for ( final DoubleType t : img )
+			t.set( random.nextDouble() * 100 );
+		return img;
+	}
+
+	/**
+	 * Check each target pixel against the {@link NLinearInterpolator}.
+	 */
+	private static void check( final RandomAccessible< DoubleType > source, final Img< DoubleType > target, final double[] affine )
+	{
+		final int n = target.numDimensions();
+		final RealRandomAccess< DoubleType > interpolator = Views.interpolate( source, new NLinearInterpolatorFactory< DoubleType >() ).realRandomAccess();
+		final double[] position = new double[ n ];
+		final Cursor< DoubleType > c = target.localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			for ( int r = 0; r < n; ++r )
+			{
+				double s = affine[ r * ( n + 1 ) + n ];
+				for ( int d = 0; d < n; ++d )
+					s += affine[ r * ( n + 1 ) + d ] * c.getDoublePosition( d );
+				position[ r ] = s;
+			}
+			interpolator.setPosition( position );
+			assertEquals( interpolator.get().get(), c.get().get(), 1e-9 );
+		}
+	}
+
+	@Test
+	public void testScale()
+	{
+		final RandomAccessible< DoubleType > source = Views.extendMirrorSingle( randomImg( 17, 13 ) );
+		final Img< DoubleType > target = new ArrayImgFactory< DoubleType >().create( new long[] { 40, 31 }, new DoubleType() );
+		new NLinearResampler<>( source ).scale( target, 2.3, 2.4 );
+		check( source, target, new double[] { 1 / 2.3, 0, 0, 0, 1 / 2.4, 0 } );
+	}
+
+	@Test
+	public void testMirroredTranslatedScale()
+	{
+		// dimension 0 is mirrored and downsampled, so consecutive target
+		// pixels move backwards by more than one source pixel
+		final RandomAccessible< DoubleType > source = Views.extendBorder( randomImg( 19, 7, 5 ) );
+		final Img< DoubleType > target = new ArrayImgFactory< DoubleType >().create( new long[] { 12, 9, 8 }, new DoubleType() );
+		final double[] affine = {
+				-1.7, 0, 0, 18.2,
+				0, 0.8, 0, -0.3,
+				0, 0, 0.6, 0.25 };
+		new NLinearResampler<>( source ).resample( target, affine );
+		check( source, target, affine );
+	}
+
+	@Test
+	public void testRotation()
+	{
+		final RandomAccessible< DoubleType > source = Views.extendZero( randomImg( 23, 21 ) );
+		final Img< DoubleType > target = new ArrayImgFactory< DoubleType >().create( new long[] { 30, 30 }, new DoubleType() );
+		final double a = Math.toRadians( 33 );
+		final double[] affine = {
+				Math.cos( a ), -Math.sin( a ), 3.5,
+				Math.sin( a ), Math.cos( a ), -4.2 };
+		new NLinearResampler<>( source ).resample( target, affine );
+		check( source, target, affine );
+	}
+
+	@Test
+	public void test3DAffineMultiThreaded()
+	{
+		final RandomAccessible< DoubleType > source = Views.extendMirrorDouble( randomImg( 11, 12, 13 ) );
+		final Img< DoubleType > target = new ArrayImgFactory< DoubleType >().create( new long[] { 15, 14, 13 }, new DoubleType() );
+		final double[] affine = {
+				0.7, 0.1, 0.2, 1.1,
+				-0.2, 0.9, 0.05, 0.3,
+				0.1, -0.1, 1.1, -0.7 };
+		final ExecutorService es = Executors.newFixedThreadPool( 4 );
+		try
+		{
+			new NLinearResampler<>( source ).multiThreaded( es ).resample( target, affine );
+		}
+		finally
+		{
+			es.shutdown();
+		}
+		check( source, target, affine );
+	}
+
+	@Test
+	public void test1D()
+	{
+		final RandomAccessible< DoubleType > source = Views.extendBorder( randomImg( 10 ) );
+		final Img< DoubleType > target = new ArrayImgFactory< DoubleType >().create( new long[] { 23 }, new DoubleType() );
+		new NLinearResampler<>( source ).scale( target, 2.2 );
+		check( source, target, new double[] { 1 / 2.2, 0 } );
+	}
+
+	@Test
+	public void testIntegerTarget()
+	{
+		final Img< DoubleType > img = randomImg( 10, 10 );
+		final RandomAccessible< DoubleType > source = Views.extendBorder( img );
+		final Img< UnsignedShortType > target = new ArrayImgFactory< UnsignedShortType >().create( new long[] { 25, 25 }, new UnsignedShortType() );
+		final Img< DoubleType > expected = new ArrayImgFactory< DoubleType >().create( new long[] { 25, 25 }, new DoubleType() );
+		new NLinearResampler<>( source ).scale( target, 2.5, 2.5 );
+		new NLinearResampler<>( source ).scale( expected, 2.5, 2.5 );
+		final Cursor< UnsignedShortType > c = target.cursor();
+		final Cursor< DoubleType > e = expected.cursor();
+		while ( c.hasNext() )
+			assertEquals( Math.round( e.next().get() ), c.next().get() );
+	}
+}
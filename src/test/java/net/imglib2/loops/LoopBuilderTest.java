@@ -43,6 +43,8 @@ import net.imglib2.Cursor;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.img.Img;
 import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.planar.PlanarImgs;
 import net.imglib2.type.numeric.integer.IntType;
 import net.imglib2.util.Intervals;
 import net.imglib2.view.Views;
@@ -66,6 +68,52 @@ public class LoopBuilderTest
 		assertSum( sum );
 	}
 
+	@Test
+	public void testLoopBuilderMultiThreaded()
+	{
+		final RandomAccessibleInterval< IntType > sum = ArrayImgs.ints(
+				Intervals.dimensionsAsLongArray( imageA ) );
+		LoopBuilder.setImages( imageA, imageB, sum ).multiThreaded().forEachPixel(
+				( a, b, s ) -> {
+					s.set( a.get() + b.get() );
+				} );
+		assertSum( sum );
+	}
+
+	@Test
+	public void testLoopBuilderOnCellImgs()
+	{
+		final long[] dimensions = { 20, 15, 7 };
+		final Img< IntType > a = new CellImgFactory< IntType >( 4, 5, 3 ).create( dimensions, new IntType() );
+		final Img< IntType > b = new CellImgFactory< IntType >( 4, 5, 3 ).create( dimensions, new IntType() );
+		final Random random = new Random( 1 );
+		a.forEach( x -> x.set( random.nextInt() ) );
+		LoopBuilder.setImages( a, b ).forEachPixel( ( x, y ) -> y.set( x ) );
+		assertImagesEqual( a, b );
+		LoopBuilder.setImages( a, b ).multiThreaded().forEachPixel( ( x, y ) -> y.set( -x.get() ) );
+		final Cursor< IntType > c = a.cursor();
+		b.forEach( y -> assertEquals( -c.next().get(), y.get() ) );
+	}
+
+	@Test
+	public void testLoopBuilderOnArrayAndPlanarImg()
+	{
+		final Img< IntType > a = ArrayImgs.ints( 6, 5, 4 );
+		final Img< IntType > b = PlanarImgs.ints( 6, 5, 4 );
+		final Random random = new Random( 2 );
+		a.forEach( x -> x.set( random.nextInt() ) );
+		LoopBuilder.setImages( a, b ).multiThreaded().forEachPixel( ( x, y ) -> y.set( x ) );
+		assertImagesEqual( a, b );
+	}
+
+	private void assertImagesEqual( final RandomAccessibleInterval< IntType > expected, final RandomAccessibleInterval< IntType > actual )
+	{
+		final Cursor< IntType > e = Views.flatIterable( expected ).cursor();
+		final Cursor< IntType > a = Views.flatIterable( actual ).cursor();
+		while ( e.hasNext() )
+			assertEquals( e.next().get(), a.next().get() );
+	}
+
 	private RandomAccessibleInterval< IntType > randomImage( final int randomSeed )
 	{
 		final Img< IntType > result = ArrayImgs.ints( 3, 2, 5 );
@@ -37,6 +37,7 @@ import static org.junit.Assert.assertEquals;
 
 import org.junit.Test;
 
+import net.imglib2.Cursor;
 import net.imglib2.RandomAccess;
 import net.imglib2.img.Img;
 import net.imglib2.img.array.ArrayImgs;
@@ -71,4 +72,21 @@ public class LoopUtilsTest
 		// test
 		img.forEach( value -> assertEquals( 42, value.get() ) );
 	}
+
+	@Test
+	public void testIteratorLoop()
+	{
+		// setup
+		final Img< IntType > img = ArrayImgs.ints( 4, 5 );
+		final Cursor< IntType > cursor = img.cursor();
+		cursor.jumpFwd( 3 );
+		// process
+		final Runnable loop = LoopUtils.createIteratorLoop( cursor, 10,
+				() -> cursor.get().set( 42 ) );
+		loop.run();
+		// test
+		final Cursor< IntType > c = img.cursor();
+		for ( int i = 0; i < 20; i++ )
+			assertEquals( ( i >= 3 && i < 13 ) ? 42 : 0, c.next().get() );
+	}
 }
@@ -0,0 +1,241 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.nearestneighbor;
+
+import static net.imglib2.nearestneighbor.NeighborSearchTestHelper.randomPoint;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import net.imglib2.DynamicKDTree;
+import net.imglib2.FlatKDTree;
+import net.imglib2.RealPoint;
+import net.imglib2.RealPointSampleList;
+import net.imglib2.neighborsearch.KNearestNeighborSearchOnDynamicKDTree;
+import net.imglib2.neighborsearch.NearestNeighborSearchOnDynamicKDTree;
+import net.imglib2.neighborsearch.RadiusNeighborSearchOnDynamicKDTree;
+import net.imglib2.type.numeric.integer.IntType;
+
+import org.junit.Test;
+
+public class DynamicKDTreeTest
+{
+	/**
+	 * Compare searches on {@code tree} to linear search over {@code points}
+	 * (mapping ids to positions).
+	 */
+	private static void checkSearches( final Random rnd, final DynamicKDTree< RealPoint > tree, final Map< Integer, RealPoint > points, final int numQueries )
+	{
+		NeighborSearchTestHelper.checkSearches( rnd, points.values(),
+				new NearestNeighborSearchOnDynamicKDTree< RealPoint >( tree ),
+				new KNearestNeighborSearchOnDynamicKDTree< RealPoint >( tree, 4 ),
+				new RadiusNeighborSearchOnDynamicKDTree< RealPoint >( tree ),
+				numQueries );
+	}
+
+	/**
+	 * Check that level {@code l} holds at most {@code 2^l} points, less than
+	 * half of which are deleted, and that the points of {@code points} are in
+	 * exactly one level.
+	 */
+	private static void checkLevels( final DynamicKDTree< RealPoint > tree, final Map< Integer, RealPoint > points )
+	{
+		final Set< Integer > ids = new HashSet< Integer >();
+		for ( int level = 0; level < tree.numLevels(); ++level )
+		{
+			final FlatKDTree< RealPoint > t = tree.getLevel( level );
+			if ( t == null )
+				continue;
+			assertTrue( t.size() <= 1 << level );
+			int numDeleted = 0;
+			for ( int i = 0; i < t.size(); ++i )
+			{
+				final int id = tree.getId( level, i );
+				if ( tree.contains( id ) )
+					assertTrue( ids.add( id ) );
+				else
+					++numDeleted;
+			}
+			assertTrue( 2 * numDeleted < t.size() );
+		}
+		assertEquals( points.keySet(), ids );
+	}
+
+	@Test
+	public void testInsertRemove()
+	{
+		final Random rnd = new Random( 8899 );
+		for ( final int n : new int[] { 1, 2, 3 } )
+		{
+			final DynamicKDTree< RealPoint > tree = new DynamicKDTree< RealPoint >( n );
+			final Map< Integer, RealPoint > points = new HashMap< Integer, RealPoint >();
+			checkSearches( rnd, tree, points, 5 );
+			for ( int i = 0; i < 500; ++i )
+			{
+				final RealPoint p = randomPoint( rnd, n, 5 );
+				points.put( tree.insert( p, p ), p );
+			}
+			checkLevels( tree, points );
+			for ( int frame = 0; frame < 20; ++frame )
+			{
+				// move some points by removing and re-inserting them
+				final ArrayList< Integer > ids = new ArrayList< Integer >( points.keySet() );
+				for ( int i = 0; i < 50; ++i )
+				{
+					final int id = ids.get( rnd.nextInt( ids.size() ) );
+					final RealPoint p = points.remove( id );
+					if ( p != null )
+					{
+						tree.remove( id );
+						for ( int d = 0; d < n; ++d )
+							p.move( rnd.nextDouble() * 0.4 - 0.2, d );
+						points.put( tree.insert( p, p ), p );
+					}
+				}
+				// remove many points, such that levels are rebuilt
+				for ( int i = 0; i < ( frame < 10 ? 40 : 60 ); ++i )
+				{
+					final int id = ids.get( rnd.nextInt( ids.size() ) );
+					if ( points.remove( id ) != null )
+					{
+						tree.remove( id );
+						assertFalse( tree.contains( id ) );
+					}
+				}
+				for ( int i = 0; i < 25; ++i )
+				{
+					final RealPoint p = randomPoint( rnd, n, 5 );
+					final int id = tree.insert( p, p );
+					assertFalse( points.containsKey( id ) );
+					assertTrue( tree.contains( id ) );
+					points.put( id, p );
+				}
+				assertEquals( points.size(), tree.size() );
+				checkLevels( tree, points );
+				checkSearches( rnd, tree, points, 20 );
+			}
+			for ( final int id : new ArrayList< Integer >( points.keySet() ) )
+			{
+				tree.remove( id );
+				points.remove( id );
+			}
+			assertEquals( 0, tree.size() );
+			checkLevels( tree, points );
+			checkSearches( rnd, tree, points, 5 );
+			tree.clear();
+			checkLevels( tree, points );
+		}
+	}
+
+	@Test
+	public void testLevelRebuild()
+	{
+		final Random rnd = new Random( 51 );
+		final DynamicKDTree< RealPoint > tree = new DynamicKDTree< RealPoint >( 2 );
+		for ( int i = 0; i < 8; ++i )
+		{
+			final RealPoint p = randomPoint( rnd, 2, 5 );
+			assertEquals( i, tree.insert( p, p ) );
+		}
+		// the first 8 points are merged into level 3
+		assertEquals( 8, tree.getLevel( 3 ).size() );
+		for ( int level = 0; level < 3; ++level )
+			assertNull( tree.getLevel( level ) );
+
+		// deleted points stay in their level until half of it is deleted, and
+		// their ids are not reused
+		tree.remove( 1 );
+		tree.remove( 4 );
+		tree.remove( 6 );
+		assertEquals( 5, tree.size() );
+		assertEquals( 8, tree.getLevel( 3 ).size() );
+		RealPoint p = randomPoint( rnd, 2, 5 );
+		assertEquals( 8, tree.insert( p, p ) );
+		tree.remove( 7 );
+		assertEquals( 4, tree.getLevel( 3 ).size() );
+
+		// once the level is rebuilt, the ids of its deleted points are reused
+		final List< Integer > deleted = Arrays.asList( 1, 4, 6, 7 );
+		final Set< Integer > reused = new HashSet< Integer >();
+		for ( int i = 0; i < 4; ++i )
+		{
+			p = randomPoint( rnd, 2, 5 );
+			final int id = tree.insert( p, p );
+			assertTrue( deleted.contains( id ) );
+			reused.add( id );
+		}
+		assertEquals( 4, reused.size() );
+		p = randomPoint( rnd, 2, 5 );
+		assertEquals( 9, tree.insert( p, p ) );
+		assertEquals( 10, tree.size() );
+	}
+
+	@Test
+	public void testIterableRealInterval()
+	{
+		final Random rnd = new Random( 7 );
+		final RealPointSampleList< IntType > list = new RealPointSampleList< IntType >( 3 );
+		final ArrayList< RealPoint > points = new ArrayList< RealPoint >();
+		for ( int i = 0; i < 300; ++i )
+		{
+			final RealPoint p = randomPoint( rnd, 3, 5 );
+			points.add( p );
+			list.add( p, new IntType( i ) );
+		}
+		final DynamicKDTree< IntType > tree = new DynamicKDTree< IntType >( list );
+		assertEquals( 300, tree.size() );
+		// all points are put into a single level
+		assertEquals( 300, tree.getLevel( 9 ).size() );
+		final NearestNeighborSearchOnDynamicKDTree< IntType > search = new NearestNeighborSearchOnDynamicKDTree< IntType >( tree );
+		for ( int i = 0; i < 300; ++i )
+		{
+			search.search( points.get( i ) );
+			assertEquals( 0, search.getSquareDistance(), 0 );
+			assertEquals( i, search.getSampler().get().get() );
+			// ids are assigned in iteration order
+			assertEquals( i, search.getId() );
+		}
+	}
+}
@@ -0,0 +1,187 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.nearestneighbor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import net.imglib2.FlatKDTree;
+import net.imglib2.KDTree;
+import net.imglib2.RealPoint;
+import net.imglib2.neighborsearch.KNearestNeighborSearchOnFlatKDTree;
+import net.imglib2.neighborsearch.KNearestNeighborSearchOnKDTree;
+import net.imglib2.neighborsearch.NearestNeighborSearchOnFlatKDTree;
+import net.imglib2.neighborsearch.RadiusNeighborSearchOnFlatKDTree;
+import net.imglib2.neighborsearch.RadiusNeighborSearchOnKDTree;
+
+import org.junit.Test;
+
+public class FlatKDTreeTest
+{
+	private static ArrayList< RealPoint > createRandomPoints( final Random rnd, final int numDimensions, final int numPoints )
+	{
+		final ArrayList< RealPoint > points = new ArrayList< RealPoint >();
+		final double[] p = new double[ numDimensions ];
+		for ( int i = 0; i < numPoints; ++i )
+		{
+			for ( int d = 0; d < numDimensions; ++d )
+				p[ d ] = rnd.nextDouble() * 10 - 5;
+			points.add( new RealPoint( p ) );
+		}
+		return points;
+	}
+
+	private static double squDistance( final RealPoint a, final RealPoint b )
+	{
+		double sum = 0;
+		for ( int d = 0; d < a.numDimensions(); ++d )
+		{
+			final double diff = a.getDoublePosition( d ) - b.getDoublePosition( d );
+			sum += diff * diff;
+		}
+		return sum;
+	}
+
+	@Test
+	public void testNearestNeighborSearch()
+	{
+		final Random rnd = new Random( 4379 );
+		for ( final int numPoints : new int[] { 1, 2, 3, 7, 8, 100, 1001 } )
+		{
+			final ArrayList< RealPoint > points = createRandomPoints( rnd, 3, numPoints );
+			final FlatKDTree< RealPoint > tree = new FlatKDTree< RealPoint >( points, points );
+			assertEquals( numPoints, tree.size() );
+			final NearestNeighborSearchOnFlatKDTree< RealPoint > search = new NearestNeighborSearchOnFlatKDTree< RealPoint >( tree );
+			for ( final RealPoint query : createRandomPoints( rnd, 3, 100 ) )
+			{
+				int expectedIndex = 0;
+				for ( int i = 1; i < numPoints; ++i )
+					if ( squDistance( points.get( i ), query ) < squDistance( points.get( expectedIndex ), query ) )
+						expectedIndex = i;
+
+				search.search( query );
+				assertEquals( expectedIndex, search.getValueIndex() );
+				assertSame( points.get( expectedIndex ), search.getSampler().get() );
+				assertEquals( squDistance( points.get( expectedIndex ), query ), search.getSquareDistance(), 0 );
+				for ( int d = 0; d < 3; ++d )
+					assertEquals( points.get( expectedIndex ).getDoublePosition( d ), search.getPosition().getDoublePosition( d ), 0 );
+			}
+		}
+	}
+
+	@Test
+	public void testKNearestNeighborSearch()
+	{
+		final Random rnd = new Random( 3462 );
+		final int k = 5;
+		final ArrayList< RealPoint > points = createRandomPoints( rnd, 3, 2000 );
+		final ArrayList< Integer > values = new ArrayList< Integer >();
+		for ( int i = 0; i < points.size(); ++i )
+			values.add( i );
+		final FlatKDTree< Integer > tree = new FlatKDTree< Integer >( values, points );
+		final KNearestNeighborSearchOnFlatKDTree< Integer > search = new KNearestNeighborSearchOnFlatKDTree< Integer >( tree, k );
+		final KNearestNeighborSearchOnKDTree< RealPoint > reference = new KNearestNeighborSearchOnKDTree< RealPoint >( new KDTree< RealPoint >( points, new ArrayList< RealPoint >( points ) ), k );
+		for ( final RealPoint query : createRandomPoints( rnd, 3, 200 ) )
+		{
+			search.search( query );
+			reference.search( query );
+			for ( int i = 0; i < k; ++i )
+			{
+				assertEquals( reference.getSquareDistance( i ), search.getSquareDistance( i ), 0 );
+				final int index = search.getValueIndex( i );
+				assertEquals( index, search.getSampler( i ).get().intValue() );
+				assertSame( reference.getSampler( i ).get(), points.get( index ) );
+			}
+		}
+	}
+
+	@Test
+	public void testRadiusNeighborSearch()
+	{
+		final Random rnd = new Random( 8677 );
+		final ArrayList< RealPoint > points = createRandomPoints( rnd, 2, 2000 );
+		final FlatKDTree< RealPoint > tree = new FlatKDTree< RealPoint >( points, points );
+		final RadiusNeighborSearchOnFlatKDTree< RealPoint > search = new RadiusNeighborSearchOnFlatKDTree< RealPoint >( tree );
+		final RadiusNeighborSearchOnKDTree< RealPoint > reference = new RadiusNeighborSearchOnKDTree< RealPoint >( new KDTree< RealPoint >( points, new ArrayList< RealPoint >( points ) ) );
+		for ( final RealPoint query : createRandomPoints( rnd, 2, 200 ) )
+		{
+			final double radius = rnd.nextDouble();
+			search.search( query, radius, true );
+			reference.search( query, radius, true );
+			assertEquals( reference.numNeighbors(), search.numNeighbors() );
+			final double[] expected = new double[ reference.numNeighbors() ];
+			final double[] actual = new double[ search.numNeighbors() ];
+			for ( int i = 0; i < expected.length; ++i )
+			{
+				expected[ i ] = reference.getSquareDistance( i );
+				actual[ i ] = search.getSquareDistance( i );
+				assertEquals( actual[ i ], squDistance( search.getSampler( i ).get(), query ), 0 );
+			}
+			assertEquals( Arrays.toString( expected ), Arrays.toString( actual ) );
+		}
+	}
+
+	@Test
+	public void testTreeLayout()
+	{
+		final Random rnd = new Random( 12 );
+		final ArrayList< RealPoint > points = createRandomPoints( rnd, 2, 1000 );
+		final FlatKDTree< RealPoint > tree = new FlatKDTree< RealPoint >( points, points );
+		checkSubtree( tree, 0, 0, new double[] { Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY }, new double[] { Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY } );
+	}
+
+	private static void checkSubtree( final FlatKDTree< ? > tree, final int node, final int depth, final double[] min, final double[] max )
+	{
+		if ( node >= tree.size() )
+			return;
+		for ( int d = 0; d < tree.numDimensions(); ++d )
+		{
+			final double x = tree.getDoublePosition( node, d );
+			assertEquals( true, x >= min[ d ] && x <= max[ d ] );
+		}
+		final int d = depth % tree.numDimensions();
+		final double split = tree.getDoublePosition( node, d );
+		final double[] leftMax = max.clone();
+		leftMax[ d ] = split;
+		final double[] rightMin = min.clone();
+		rightMin[ d ] = split;
+		checkSubtree( tree, 2 * node + 1, depth + 1, min, leftMax );
+		checkSubtree( tree, 2 * node + 2, depth + 1, rightMin, max );
+	}
+}
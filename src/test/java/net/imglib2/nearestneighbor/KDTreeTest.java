@@ -34,18 +34,25 @@
 
 package net.imglib2.nearestneighbor;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 import net.imglib2.KDTree;
+import net.imglib2.KDTreeNode;
 import net.imglib2.RealPoint;
+import net.imglib2.RealPointSampleList;
 import net.imglib2.neighborsearch.KNearestNeighborSearchOnKDTree;
 import net.imglib2.neighborsearch.NearestNeighborSearchOnKDTree;
 import net.imglib2.neighborsearch.RadiusNeighborSearchOnKDTree;
+import net.imglib2.type.numeric.integer.IntType;
 import net.imglib2.util.ValuePair;
 
 import org.junit.Test;
@@ -436,6 +443,66 @@ public class KDTreeTest
 		assertTrue( testRadiusNeighbor( 3, 1000, 100, -5, 5 ) );
 	}
 
+	protected static ArrayList< RealPoint > createRandomPoints( final int numDimensions, final int numPoints, final long seed )
+	{
+		final ArrayList< RealPoint > points = new ArrayList< RealPoint >();
+		final Random rnd = new Random( seed );
+		final double[] p = new double[ numDimensions ];
+		for ( int i = 0; i < numPoints; ++i )
+		{
+			for ( int d = 0; d < numDimensions; ++d )
+				p[ d ] = rnd.nextDouble();
+			points.add( new RealPoint( p ) );
+		}
+		return points;
+	}
+
+	protected static < T > void assertEqualTrees( final KDTreeNode< T > expected, final KDTreeNode< T > actual, final boolean sameValues )
+	{
+		if ( expected == null )
+		{
+			assertNull( actual );
+			return;
+		}
+		assertEquals( expected.getSplitDimension(), actual.getSplitDimension() );
+		for ( int d = 0; d < expected.numDimensions(); ++d )
+			assertEquals( expected.getDoublePosition( d ), actual.getDoublePosition( d ), 0 );
+		if ( sameValues )
+			assertSame( expected.get(), actual.get() );
+		else
+			assertEquals( expected.get(), actual.get() );
+		assertEqualTrees( expected.left, actual.left, sameValues );
+		assertEqualTrees( expected.right, actual.right, sameValues );
+	}
+
+	@Test
+	public void testKDTreeParallelConstruction()
+	{
+		final ForkJoinPool pool = new ForkJoinPool( 4 );
+		final ArrayList< RealPoint > points = createRandomPoints( 3, 50000, 3245345 );
+		final ArrayList< Integer > values = new ArrayList< Integer >();
+		for ( int i = 0; i < points.size(); ++i )
+			values.add( i );
+
+		final KDTree< RealPoint > sequential = new KDTree< RealPoint >( new ArrayList< RealPoint >( points ), new ArrayList< RealPoint >( points ) );
+		final ArrayList< RealPoint > elements = new ArrayList< RealPoint >( points );
+		final KDTree< RealPoint > parallel = new KDTree< RealPoint >( elements, elements, pool );
+		assertEqualTrees( sequential.getRoot(), parallel.getRoot(), true );
+
+		final KDTree< Integer > sequentialValues = new KDTree< Integer >( values, new ArrayList< RealPoint >( points ) );
+		final KDTree< Integer > parallelValues = new KDTree< Integer >( values, new ArrayList< RealPoint >( points ), pool );
+		assertEqualTrees( sequentialValues.getRoot(), parallelValues.getRoot(), true );
+
+		final RealPointSampleList< IntType > samples = new RealPointSampleList< IntType >( 3 );
+		for ( int i = 0; i < points.size(); ++i )
+			samples.add( points.get( i ), new IntType( i ) );
+		final KDTree< IntType > sequentialSamples = new KDTree< IntType >( samples );
+		final KDTree< IntType > parallelSamples = new KDTree< IntType >( samples, pool );
+		assertEqualTrees( sequentialSamples.getRoot(), parallelSamples.getRoot(), false );
+
+		pool.shutdown();
+	}
+
 	public static void main( final String[] args )
 	{
 		for ( int i = 0; i < 5; ++i )
@@ -0,0 +1,137 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.nearestneighbor;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.imglib2.FlatKDTree;
+import net.imglib2.RealPoint;
+import net.imglib2.neighborsearch.KNearestNeighborBatchSearchOnFlatKDTree;
+import net.imglib2.neighborsearch.KNearestNeighborSearchOnFlatKDTree;
+
+import org.junit.Test;
+
+public class KNearestNeighborBatchSearchOnFlatKDTreeTest
+{
+	private static double[] randomCoordinates( final Random rnd, final int length )
+	{
+		final double[] coordinates = new double[ length ];
+		for ( int i = 0; i < length; ++i )
+			coordinates[ i ] = rnd.nextDouble();
+		return coordinates;
+	}
+
+	@Test
+	public void testBatchSearch()
+	{
+		final Random rnd = new Random( 1234 );
+		final int n = 3;
+		final int k = 4;
+		final int numPoints = 5000;
+		final int numQueries = 3000;
+
+		final ArrayList< Integer > values = new ArrayList< Integer >();
+		for ( int i = 0; i < numPoints; ++i )
+			values.add( i );
+		final FlatKDTree< Integer > tree = new FlatKDTree< Integer >( values, randomCoordinates( rnd, numPoints * n ), n );
+
+		final double[] queries = randomCoordinates( rnd, numQueries * n );
+		final ArrayList< RealPoint > queryPoints = new ArrayList< RealPoint >();
+		for ( int q = 0; q < numQueries; ++q )
+			queryPoints.add( new RealPoint( Arrays.copyOfRange( queries, q * n, q * n + n ) ) );
+
+		final int[] expectedIndices = new int[ numQueries * k ];
+		final double[] expectedDistances = new double[ numQueries * k ];
+		final KNearestNeighborSearchOnFlatKDTree< Integer > search = new KNearestNeighborSearchOnFlatKDTree< Integer >( tree, k );
+		for ( int q = 0; q < numQueries; ++q )
+		{
+			search.search( queryPoints.get( q ) );
+			for ( int i = 0; i < k; ++i )
+			{
+				expectedIndices[ q * k + i ] = search.getValueIndex( i );
+				expectedDistances[ q * k + i ] = search.getSquareDistance( i );
+			}
+		}
+
+		final int[] indices = new int[ numQueries * k ];
+		final double[] distances = new double[ numQueries * k ];
+		new KNearestNeighborBatchSearchOnFlatKDTree< Integer >( tree, k ).search( queries, indices, distances );
+		assertArrayEquals( expectedIndices, indices );
+		assertArrayEquals( expectedDistances, distances, 0 );
+
+		final ExecutorService executor = Executors.newFixedThreadPool( 4 );
+		try
+		{
+			final KNearestNeighborBatchSearchOnFlatKDTree< Integer > batch = new KNearestNeighborBatchSearchOnFlatKDTree< Integer >( tree, k ).multiThreaded( executor );
+
+			Arrays.fill( indices, 0 );
+			Arrays.fill( distances, 0 );
+			batch.search( queries, indices, distances );
+			assertArrayEquals( expectedIndices, indices );
+			assertArrayEquals( expectedDistances, distances, 0 );
+
+			Arrays.fill( indices, 0 );
+			batch.search( queryPoints, indices, null );
+			assertArrayEquals( expectedIndices, indices );
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testFewerPointsThanK()
+	{
+		final ArrayList< RealPoint > points = new ArrayList< RealPoint >();
+		points.add( new RealPoint( 0.0, 0.0 ) );
+		points.add( new RealPoint( 1.0, 0.0 ) );
+		final FlatKDTree< RealPoint > tree = new FlatKDTree< RealPoint >( points, points );
+
+		final int[] indices = new int[ 3 ];
+		final double[] distances = new double[ 3 ];
+		new KNearestNeighborBatchSearchOnFlatKDTree< RealPoint >( tree, 3 ).multiThreaded().search( new double[] { 0.9, 0 }, indices, distances );
+		assertArrayEquals( new int[] { 1, 0, -1 }, indices );
+		assertEquals( 0.01, distances[ 0 ], 1e-10 );
+		assertEquals( 0.81, distances[ 1 ], 1e-10 );
+	}
+}
@@ -0,0 +1,152 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.nearestneighbor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Random;
+import java.util.Set;
+
+import net.imglib2.RealLocalizable;
+import net.imglib2.RealPoint;
+import net.imglib2.Sampler;
+import net.imglib2.neighborsearch.KNearestNeighborSearch;
+import net.imglib2.neighborsearch.NearestNeighborSearch;
+import net.imglib2.neighborsearch.RadiusNeighborSearch;
+
+/**
+ * Compares neighbor searches on dynamic point collections to linear search.
+ * The values of the searched points are expected to be their positions.
+ */
+class NeighborSearchTestHelper
+{
+	static RealPoint randomPoint( final Random rnd, final int numDimensions, final double extent )
+	{
+		final RealPoint p = new RealPoint( numDimensions );
+		for ( int d = 0; d < numDimensions; ++d )
+			p.setPosition( rnd.nextDouble() * 2 * extent - extent, d );
+		return p;
+	}
+
+	static double squDistance( final RealLocalizable a, final RealLocalizable b )
+	{
+		double sum = 0;
+		for ( int d = 0; d < a.numDimensions(); ++d )
+		{
+			final double diff = a.getDoublePosition( d ) - b.getDoublePosition( d );
+			sum += diff * diff;
+		}
+		return sum;
+	}
+
+	/**
+	 * Compare {@code nn}, {@code knn} and {@code radius} searches for random
+	 * queries to linear search over {@code points}.
+	 */
+	static void checkSearches(
+			final Random rnd,
+			final Collection< RealPoint > points,
+			final NearestNeighborSearch< RealPoint > nn,
+			final KNearestNeighborSearch< RealPoint > knn,
+			final RadiusNeighborSearch< RealPoint > radius,
+			final int numQueries )
+	{
+		final int n = nn.numDimensions();
+		final Set< RealPoint > contained = Collections.newSetFromMap( new IdentityHashMap< RealPoint, Boolean >() );
+		contained.addAll( points );
+		for ( int q = 0; q < numQueries; ++q )
+		{
+			// some queries are far outside the point cloud
+			final RealPoint query = randomPoint( rnd, n, q % 10 == 0 ? 20 : 5 );
+
+			final double[] squDistances = new double[ points.size() ];
+			int i = 0;
+			for ( final RealPoint p : points )
+				squDistances[ i++ ] = squDistance( p, query );
+			Arrays.sort( squDistances );
+
+			nn.search( query );
+			if ( points.isEmpty() )
+				assertEquals( Double.MAX_VALUE, nn.getSquareDistance(), 0 );
+			else
+			{
+				assertEquals( squDistances[ 0 ], nn.getSquareDistance(), 0 );
+				checkNeighbor( contained, nn.getSampler(), nn.getPosition(), query, squDistances[ 0 ] );
+			}
+
+			knn.search( query );
+			for ( int j = 0; j < knn.getK(); ++j )
+			{
+				if ( j < squDistances.length )
+				{
+					assertEquals( squDistances[ j ], knn.getSquareDistance( j ), 0 );
+					checkNeighbor( contained, knn.getSampler( j ), knn.getPosition( j ), query, squDistances[ j ] );
+				}
+				else
+					assertEquals( Double.MAX_VALUE, knn.getSquareDistance( j ), 0 );
+			}
+
+			final double r = rnd.nextDouble() * 2;
+			radius.search( query, r, true );
+			int expected = 0;
+			while ( expected < squDistances.length && squDistances[ expected ] <= r * r )
+				++expected;
+			assertEquals( expected, radius.numNeighbors() );
+			for ( int j = 0; j < expected; ++j )
+			{
+				assertEquals( squDistances[ j ], radius.getSquareDistance( j ), 0 );
+				checkNeighbor( contained, radius.getSampler( j ), radius.getPosition( j ), query, squDistances[ j ] );
+			}
+		}
+	}
+
+	/**
+	 * Check that a neighbor is one of the {@code contained} points, at the
+	 * position and distance reported by the search.
+	 */
+	private static void checkNeighbor( final Set< RealPoint > contained, final Sampler< RealPoint > sampler, final RealLocalizable position, final RealLocalizable query, final double squDistance )
+	{
+		final RealPoint p = sampler.get();
+		assertTrue( contained.contains( p ) );
+		assertEquals( squDistance, squDistance( p, query ), 0 );
+		for ( int d = 0; d < p.numDimensions(); ++d )
+			assertEquals( p.getDoublePosition( d ), position.getDoublePosition( d ), 0 );
+	}
+}
@@ -0,0 +1,165 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.nearestneighbor;
+
+import static net.imglib2.nearestneighbor.NeighborSearchTestHelper.randomPoint;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import net.imglib2.RealPoint;
+import net.imglib2.RealPointSampleList;
+import net.imglib2.SpatialHashGrid;
+import net.imglib2.neighborsearch.KNearestNeighborSearchOnSpatialHashGrid;
+import net.imglib2.neighborsearch.NearestNeighborSearchOnSpatialHashGrid;
+import net.imglib2.neighborsearch.RadiusNeighborSearchOnSpatialHashGrid;
+import net.imglib2.type.numeric.integer.IntType;
+
+import org.junit.Test;
+
+public class SpatialHashGridTest
+{
+	/**
+	 * Compare searches on {@code grid} to linear search over {@code points}
+	 * (mapping ids to positions).
+	 */
+	private static void checkSearches( final Random rnd, final SpatialHashGrid< RealPoint > grid, final Map< Integer, RealPoint > points, final int numQueries )
+	{
+		NeighborSearchTestHelper.checkSearches( rnd, points.values(),
+				new NearestNeighborSearchOnSpatialHashGrid< RealPoint >( grid ),
+				new KNearestNeighborSearchOnSpatialHashGrid< RealPoint >( grid, 4 ),
+				new RadiusNeighborSearchOnSpatialHashGrid< RealPoint >( grid ),
+				numQueries );
+	}
+
+	@Test
+	public void testSearch()
+	{
+		final Random rnd = new Random( 3462 );
+		for ( final int n : new int[] { 1, 2, 3 } )
+			for ( final double cellSize : new double[] { 0.05, 0.7, 3, 100 } )
+				for ( final int numPoints : new int[] { 0, 1, 2, 7, 1000 } )
+				{
+					final SpatialHashGrid< RealPoint > grid = new SpatialHashGrid< RealPoint >( n, cellSize );
+					final Map< Integer, RealPoint > points = new HashMap< Integer, RealPoint >();
+					for ( int i = 0; i < numPoints; ++i )
+					{
+						final RealPoint p = randomPoint( rnd, n, 5 );
+						points.put( grid.insert( p, p ), p );
+					}
+					assertEquals( numPoints, grid.size() );
+					checkSearches( rnd, grid, points, 50 );
+				}
+	}
+
+	@Test
+	public void testInsertMoveRemove()
+	{
+		final Random rnd = new Random( 8899 );
+		final int n = 2;
+		final SpatialHashGrid< RealPoint > grid = new SpatialHashGrid< RealPoint >( n, 0.5 );
+		final Map< Integer, RealPoint > points = new HashMap< Integer, RealPoint >();
+		for ( int i = 0; i < 500; ++i )
+		{
+			final RealPoint p = randomPoint( rnd, n, 5 );
+			points.put( grid.insert( p, p ), p );
+		}
+		for ( int frame = 0; frame < 10; ++frame )
+		{
+			// move all points a bit, such that some change cells
+			for ( final Map.Entry< Integer, RealPoint > e : points.entrySet() )
+			{
+				final RealPoint p = e.getValue();
+				for ( int d = 0; d < n; ++d )
+					p.move( rnd.nextDouble() * 0.4 - 0.2, d );
+				grid.move( e.getKey(), p );
+			}
+			// remove and insert some points
+			final ArrayList< Integer > ids = new ArrayList< Integer >( points.keySet() );
+			for ( int i = 0; i < 20; ++i )
+			{
+				final int id = ids.get( rnd.nextInt( ids.size() ) );
+				if ( points.remove( id ) != null )
+				{
+					grid.remove( id );
+					assertFalse( grid.contains( id ) );
+				}
+			}
+			for ( int i = 0; i < 25; ++i )
+			{
+				final RealPoint p = randomPoint( rnd, n, 5 );
+				final int id = grid.insert( p, p );
+				assertFalse( points.containsKey( id ) );
+				points.put( id, p );
+			}
+			assertEquals( points.size(), grid.size() );
+			checkSearches( rnd, grid, points, 20 );
+		}
+		grid.clear();
+		points.clear();
+		checkSearches( rnd, grid, points, 5 );
+	}
+
+	@Test
+	public void testIterableRealInterval()
+	{
+		final Random rnd = new Random( 7 );
+		final RealPointSampleList< IntType > list = new RealPointSampleList< IntType >( 3 );
+		final ArrayList< RealPoint > points = new ArrayList< RealPoint >();
+		for ( int i = 0; i < 300; ++i )
+		{
+			final RealPoint p = randomPoint( rnd, 3, 5 );
+			points.add( p );
+			list.add( p, new IntType( i ) );
+		}
+		final SpatialHashGrid< IntType > grid = new SpatialHashGrid< IntType >( list );
+		assertEquals( 300, grid.size() );
+		assertTrue( grid.getCellSize() > 0 );
+		final NearestNeighborSearchOnSpatialHashGrid< IntType > search = new NearestNeighborSearchOnSpatialHashGrid< IntType >( grid );
+		for ( int i = 0; i < 300; ++i )
+		{
+			search.search( points.get( i ) );
+			assertEquals( 0, search.getSquareDistance(), 0 );
+			assertEquals( i, search.getSampler().get().get() );
+			// ids are assigned in iteration order
+			assertEquals( i, search.getId() );
+		}
+	}
+}
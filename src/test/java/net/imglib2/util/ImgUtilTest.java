@@ -38,16 +38,33 @@ import static net.imglib2.util.Util.percentile;
 import static net.imglib2.util.Util.quicksort;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
 
+import net.imglib2.Cursor;
 import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.img.Img;
 import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.list.ListImgFactory;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.type.numeric.complex.ComplexDoubleType;
 import net.imglib2.type.numeric.integer.IntType;
 import net.imglib2.type.numeric.integer.LongType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
 import net.imglib2.type.numeric.real.DoubleType;
 import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
 
 import org.junit.Test;
 
@@ -367,4 +384,88 @@ public class ImgUtilTest
 		}
 	}
 
+	private static final long[] copyDimensions = { 13, 11, 5 };
+
+	private static < T extends NativeType< T > > List< RandomAccessibleInterval< T > > copyImgs( final T type )
+	{
+		final List< RandomAccessibleInterval< T > > imgs = new ArrayList<>();
+		imgs.add( new ArrayImgFactory< T >().create( copyDimensions, type ) );
+		imgs.add( new PlanarImgFactory< T >().create( copyDimensions, type ) );
+		imgs.add( new CellImgFactory< T >( 4, 3, 2 ).create( copyDimensions, type ) );
+		imgs.add( new ListImgFactory< T >().create( copyDimensions, type ) );
+		// a translated sub-interval of a larger image
+		final long[] largerDimensions = { 17, 14, 9 };
+		imgs.add( Views.translate( Views.offsetInterval( new ArrayImgFactory< T >().create( largerDimensions, type ), new long[] { 3, 2, 1 }, copyDimensions ), 5, -7, 2 ) );
+		imgs.add( Views.offsetInterval( new CellImgFactory< T >( 5, 4, 3 ).create( largerDimensions, type ), new long[] { 1, 3, 2 }, copyDimensions ) );
+		// a view that cannot be copied in bulk
+		imgs.add( Views.zeroMin( Views.invertAxis( new ArrayImgFactory< T >().create( copyDimensions, type ), 0 ) ) );
+		return imgs;
+	}
+
+	private static < T extends NativeType< T > > void testCopy( final T type, final BiConsumer< T, Long > setter, final ExecutorService executorService )
+	{
+		for ( final RandomAccessibleInterval< T > source : copyImgs( type ) )
+		{
+			final RandomAccess< T > sa = source.randomAccess();
+			final long[] position = new long[ 3 ];
+			for ( long i = 0; i < Intervals.numElements( source ); ++i )
+			{
+				IntervalIndexer.indexToPositionWithOffset( i, copyDimensions, Intervals.minAsLongArray( source ), position );
+				sa.setPosition( position );
+				setter.accept( sa.get(), i );
+			}
+			for ( final RandomAccessibleInterval< T > target : copyImgs( type ) )
+			{
+				if ( executorService == null )
+					ImgUtil.copy( source, target );
+				else
+					ImgUtil.copy( source, target, executorService );
+				final Cursor< T > c = Views.flatIterable( Views.zeroMin( source ) ).cursor();
+				final Cursor< T > t = Views.flatIterable( Views.zeroMin( target ) ).cursor();
+				while ( c.hasNext() )
+					assertTrue( c.next().valueEquals( t.next() ) );
+			}
+		}
+	}
+
+	@Test
+	public void testCopyRandomAccessibleInterval()
+	{
+		testCopy( new IntType(), ( t, i ) -> t.set( i.intValue() ), null );
+		testCopy( new UnsignedByteType(), ( t, i ) -> t.set( i.intValue() ), null );
+		testCopy( new ComplexDoubleType(), ( t, i ) -> t.set( i, -i ), null );
+		testCopy( new BitType(), ( t, i ) -> t.set( i % 3 == 0 ), null );
+	}
+
+	@Test
+	public void testCopyRandomAccessibleIntervalMultiThreaded()
+	{
+		final ExecutorService es = Executors.newFixedThreadPool( 4 );
+		try
+		{
+			testCopy( new FloatType(), ( t, i ) -> t.set( i ), es );
+			testCopy( new ComplexDoubleType(), ( t, i ) -> t.set( i, -i ), es );
+		}
+		finally
+		{
+			es.shutdown();
+		}
+	}
+
+	@Test
+	public void testCopyRandomAccessibleInterval1D()
+	{
+		final int[] data = { 1, 2, 3, 4, 5 };
+		final Img< IntType > target = ArrayImgs.ints( 3 );
+		ImgUtil.copy( Views.interval( ArrayImgs.ints( data, 5 ), new long[] { 1 }, new long[] { 3 } ), target );
+		final Cursor< IntType > c = target.cursor();
+		for ( int i = 2; i <= 4; ++i )
+			assertEquals( i, c.next().get() );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testCopyRandomAccessibleIntervalDimensionsDiffer()
+	{
+		ImgUtil.copy( ArrayImgs.ints( 3, 4 ), ArrayImgs.ints( 4, 3 ) );
+	}
 }